@@ -6,15 +6,26 @@ GC_OPTS="-XX:+UseG1GC -XX:MaxGCPauseMillis=200 -XX:+UseStringDeduplication"
 KUBE_OPTS="-Dkubernetes.api.host=${KUBE_API_HOST:-kubernetes.default.svc} -Dkubernetes.api.port=${KUBE_API_PORT:-443} -Dkubernetes.api.cert=${KUBE_API_CERT:-/var/run/secrets/kubernetes.io/serviceaccount/ca.crt} -Dkubernetes.api.token=${KUBE_API_TOKEN:-/var/run/secrets/kubernetes.io/serviceaccount/token}"
 
 if [ -v ${STATFUL_ENVIRONMENT} ]; then
-    STATFUL_OPTS="-Dstatful.token=${STATFUL_TOKEN} -Dstatful.dryrun=${STATFUL_DRYRUN:-false} -Dstatful.host=${STATFUL_HOST:-api.statful.com}"
+    STATFUL_OPTS="-Dstatful.token=${STATFUL_TOKEN} -Dstatful.dryrun=${STATFUL_DRYRUN:-false} -Dstatful.host=${STATFUL_HOST:-api.statful.com} -Dstatful.flush.size=${STATFUL_FLUSH_SIZE:-1000} -Dstatful.flush.interval=${STATFUL_FLUSH_INTERVAL:-10000} ${STATFUL_BUFFER_SIZE:+-Dstatful.buffer.size=${STATFUL_BUFFER_SIZE}}"
 else
-    STATFUL_OPTS="-Dstatful.token=${STATFUL_TOKEN} -Dstatful.dryrun=${STATFUL_DRYRUN:-false} -Dstatful.host=${STATFUL_HOST:-api.statful.com} -Dstatful.environment=${STATFUL_ENVIRONMENT}"
+    STATFUL_OPTS="-Dstatful.token=${STATFUL_TOKEN} -Dstatful.dryrun=${STATFUL_DRYRUN:-false} -Dstatful.host=${STATFUL_HOST:-api.statful.com} -Dstatful.flush.size=${STATFUL_FLUSH_SIZE:-1000} -Dstatful.flush.interval=${STATFUL_FLUSH_INTERVAL:-10000} ${STATFUL_BUFFER_SIZE:+-Dstatful.buffer.size=${STATFUL_BUFFER_SIZE}} -Dstatful.environment=${STATFUL_ENVIRONMENT}"
 fi
 
 if [ -v ${COLLECTOR_IGNORE} ]; then
-    COLLECTOR_OPTS="-Dcollector.period=${COLLECTOR_PERIOD:-60000} -Ddevelopment.logging.enabled=${DEV_LOGGING:-false} -Dcollector.cadvisor.disabled=${COLLECTOR_CADVISOR_DISABLED:-false} -Dcollector.nodes.disabled=${COLLECTOR_NODES_DISABLED:-false} -Dcollector.metricsserver.disabled=${COLLECTOR_METRICSSERVER_DISABLED:-false}"
+    COLLECTOR_OPTS="-Dcollector.period=${COLLECTOR_PERIOD:-60000} -Ddevelopment.logging.enabled=${DEV_LOGGING:-false} -Dcollector.cadvisor.disabled=${COLLECTOR_CADVISOR_DISABLED:-false} -Dcollector.nodes.disabled=${COLLECTOR_NODES_DISABLED:-false} -Dcollector.metricsserver.disabled=${COLLECTOR_METRICSSERVER_DISABLED:-false} -Dcollector.protobuf.disabled=${COLLECTOR_PROTOBUF_DISABLED:-false} -Dcollector.watch.disabled=${COLLECTOR_WATCH_DISABLED:-false}"
 else
-    COLLECTOR_OPTS="-Dcollector.period=${COLLECTOR_PERIOD:-60000} -Ddevelopment.logging.enabled=${DEV_LOGGING:-false} -Dcollector.cadvisor.disabled=${COLLECTOR_CADVISOR_DISABLED:-false} -Dcollector.nodes.disabled=${COLLECTOR_NODES_DISABLED:-false} -Dcollector.metricsserver.disabled=${COLLECTOR_METRICSSERVER_DISABLED:-false} -Dcollector.ignore=${COLLECTOR_IGNORE}"
+    COLLECTOR_OPTS="-Dcollector.period=${COLLECTOR_PERIOD:-60000} -Ddevelopment.logging.enabled=${DEV_LOGGING:-false} -Dcollector.cadvisor.disabled=${COLLECTOR_CADVISOR_DISABLED:-false} -Dcollector.nodes.disabled=${COLLECTOR_NODES_DISABLED:-false} -Dcollector.metricsserver.disabled=${COLLECTOR_METRICSSERVER_DISABLED:-false} -Dcollector.protobuf.disabled=${COLLECTOR_PROTOBUF_DISABLED:-false} -Dcollector.watch.disabled=${COLLECTOR_WATCH_DISABLED:-false} -Dcollector.ignore=${COLLECTOR_IGNORE}"
+fi
+
+if [ -n "${COLLECTOR_SHARD_REPLICAS}" ]; then
+    # The host name of a stateful set pod ends with its ordinal, the one of a deployment pod does not
+    COLLECTOR_SHARD_ORDINAL=${COLLECTOR_SHARD_ORDINAL:-${HOSTNAME##*-}}
+    case "${COLLECTOR_SHARD_ORDINAL}" in
+        ''|*[!0-9]*)
+            echo "COLLECTOR_SHARD_ORDINAL must be a number, got '${COLLECTOR_SHARD_ORDINAL}'. Run sharded collectors as a stateful set or set it explicitly." >&2
+            exit 1
+            ;;
+    esac
 fi
 
 exec java \
@@ -31,8 +42,34 @@ exec java \
     -Dcollector.secret.name=${COLLECTOR_SECRET_NAME:-k8s-prometheus-metrics-collector} \
     -Dcollector.ignore.metric.regex=${COLLECTOR_IGNORE_METRIC_REGEX} \
     -Dcollector.ignore.metric=${COLLECTOR_IGNORE_METRIC} \
+    -Dcollector.include.metric.regex=${COLLECTOR_INCLUDE_METRIC_REGEX} \
+    -Dcollector.include.metric=${COLLECTOR_INCLUDE_METRIC} \
     -Dcollector.ignore.tags.regex=${COLLECTOR_IGNORE_TAGS_REGEX} \
     -Dcollector.ignore.tags=${COLLECTOR_IGNORE_TAGS} \
     -Dcollector.replacement.tag=${COLLECTOR_REPLACEMENT_TAG} \
+    ${COLLECTOR_ROLLUPS:+-Dcollector.rollups=${COLLECTOR_ROLLUPS}} \
+    -Dcollector.cardinality.limit.metric=${COLLECTOR_CARDINALITY_LIMIT_METRIC:-0} \
+    -Dcollector.cardinality.limit=${COLLECTOR_CARDINALITY_LIMIT:-0} \
+    -Dcollector.cardinality.overflow=${COLLECTOR_CARDINALITY_OVERFLOW:-collapse} \
+    -Dcollector.cardinality.top=${COLLECTOR_CARDINALITY_TOP:-10} \
+    -Dcollector.delta.heartbeat=${COLLECTOR_DELTA_HEARTBEAT:-0} \
+    -Dcollector.counters=${COLLECTOR_COUNTERS:-raw} \
+    ${COLLECTOR_COUNTERS_GAP:+-Dcollector.counters.gap=${COLLECTOR_COUNTERS_GAP}} \
+    -Dcollector.tags.cache.size=${COLLECTOR_TAGS_CACHE_SIZE:-10000} \
+    -Dcollector.replacement.tag.cache.size=${COLLECTOR_REPLACEMENT_TAG_CACHE_SIZE:-10000} \
+    -Dcollector.infinite.values=${COLLECTOR_INFINITE_VALUES:-drop} \
+    ${COLLECTOR_PARSER_THREADS:+-Dcollector.parser.threads=${COLLECTOR_PARSER_THREADS}} \
+    -Dcollector.parser.batch.size=${COLLECTOR_PARSER_BATCH_SIZE:-1048576} \
+    -Dcollector.emit.batch.size=${COLLECTOR_EMIT_BATCH_SIZE:-500} \
+    -Dcollector.emit.batch.linger=${COLLECTOR_EMIT_BATCH_LINGER:-100} \
+    -Dcollector.emit.queue.capacity=${COLLECTOR_EMIT_QUEUE_CAPACITY:-50000} \
+    ${COLLECTOR_CYCLE_DEADLINE:+-Dcollector.cycle.deadline=${COLLECTOR_CYCLE_DEADLINE}} \
+    -Dcollector.cycle.overrun=${COLLECTOR_CYCLE_OVERRUN:-skip} \
+    ${COLLECTOR_SHARD_REPLICAS:+-Dcollector.shard.replicas=${COLLECTOR_SHARD_REPLICAS} -Dcollector.shard.ordinal=${COLLECTOR_SHARD_ORDINAL}} \
+    -Dcollector.list.page.size=${COLLECTOR_LIST_PAGE_SIZE:-500} \
+    -Dcollector.list.protobuf.enabled=${COLLECTOR_LIST_PROTOBUF_ENABLED:-false} \
+    -Dcollector.scrape.concurrency=${COLLECTOR_SCRAPE_CONCURRENCY:-32} \
+    -Dcollector.scrape.concurrency.source=${COLLECTOR_SCRAPE_CONCURRENCY_SOURCE:-16} \
+    -Dcollector.scrape.spread=${COLLECTOR_SCRAPE_SPREAD:-0.5} \
     -jar \
     /opt/${APPLICATION_NAME}/${APPLICATION_NAME}.jar
\ No newline at end of file
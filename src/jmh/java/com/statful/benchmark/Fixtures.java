@@ -0,0 +1,255 @@
+package com.statful.benchmark;
+
+import com.statful.collector.k8s.domain.ContainerInfo;
+import com.statful.collector.k8s.domain.ListPage;
+import com.statful.collector.k8s.domain.NodeInfo;
+import com.statful.collector.k8s.domain.PodInfo;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.reactivex.core.buffer.Buffer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Recorded and synthetic payloads shared by the benchmarks. Synthetic payloads are generated from a fixed seed, so
+ * every run and every fork measures the same input.
+ */
+public final class Fixtures {
+    public static final String CADVISOR = "/fixtures/cadvisor.txt";
+    public static final String NODE_METRICS = "/fixtures/node-metrics.txt";
+
+    public static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final long SEED = 42;
+    private static final int REPLICAS = 5;
+    private static final int CONTAINERS = 2;
+    private static final String[] CPU_QUANTITIES = {"100m", "250m", "500m", "1", "2", "1500m"};
+    private static final String[] MEMORY_QUANTITIES = {"64Mi", "128Mi", "256Mi", "1Gi", "512M", "2G"};
+    private static final String ALPHANUMERIC = "bcdfghjklmnpqrstvwxz2456789";
+
+    private Fixtures() {
+    }
+
+    public static String read(String resource) {
+        try (InputStream input = Fixtures.class.getResourceAsStream(resource)) {
+            if (input == null) {
+                throw new IllegalArgumentException("Missing fixture " + resource);
+            }
+
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+
+            for (int read = input.read(buffer); read >= 0; read = input.read(buffer)) {
+                output.write(buffer, 0, read);
+            }
+
+            return new String(output.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Scales a text exposition as if it was scraped from a node running as many copies of its pods, keeping each
+     * family in one block like a real scrape does.
+     */
+    public static String scale(String text, int copies) {
+        final StringBuilder scaled = new StringBuilder(text.length() * copies);
+        final List<String> samples = new ArrayList<>();
+
+        for (String line : text.split("\n")) {
+            if (line.startsWith("#")) {
+                appendCopies(scaled, samples, copies);
+                scaled.append(line).append('\n');
+            } else if (!line.isEmpty()) {
+                samples.add(line);
+            }
+        }
+        appendCopies(scaled, samples, copies);
+
+        return scaled.toString();
+    }
+
+    private static void appendCopies(StringBuilder scaled, List<String> samples, int copies) {
+        for (int copy = 0; copy < copies; copy++) {
+            for (String sample : samples) {
+                // Recorded pod names end with a generated suffix, which is made distinct per copy
+                scaled.append(copy == 0 ? sample : sample.replace("8xk2z", "p" + copy).replace("c6d87", "q" + copy)).append('\n');
+            }
+        }
+        samples.clear();
+    }
+
+    public static List<Buffer> chunks(byte[] bytes) {
+        final List<Buffer> chunks = new ArrayList<>();
+
+        for (int offset = 0; offset < bytes.length; offset += CHUNK_SIZE) {
+            chunks.add(Buffer.buffer().appendBytes(bytes, offset, Math.min(CHUNK_SIZE, bytes.length - offset)));
+        }
+
+        return chunks;
+    }
+
+    /**
+     * @return a pod list of the api server, with deployments of a few replicas spread across the nodes
+     */
+    public static JsonObject podList(int pods, int nodes) {
+        final Random random = new Random(SEED);
+        final JsonArray items = new JsonArray();
+
+        for (int pod = 0; pod < pods; pod++) {
+            final String deployment = "service-" + pod / REPLICAS;
+            final JsonArray containers = new JsonArray();
+
+            for (int container = 0; container < CONTAINERS; container++) {
+                containers.add(new JsonObject()
+                        .put("name", container == 0 ? deployment : "sidecar")
+                        .put("resources", new JsonObject()
+                                .put("limits", new JsonObject()
+                                        .put("cpu", pick(random, CPU_QUANTITIES))
+                                        .put("memory", pick(random, MEMORY_QUANTITIES)))
+                                .put("requests", new JsonObject()
+                                        .put("cpu", pick(random, CPU_QUANTITIES))
+                                        .put("memory", pick(random, MEMORY_QUANTITIES)))));
+            }
+
+            final String replicaSet = deployment + "-" + suffix(random, 10);
+
+            items.add(new JsonObject()
+                    .put("metadata", new JsonObject()
+                            .put("name", replicaSet + "-" + suffix(random, 5))
+                            .put("namespace", "default")
+                            .put("ownerReferences", new JsonArray().add(new JsonObject()
+                                    .put("kind", "ReplicaSet")
+                                    .put("name", replicaSet)
+                                    .put("controller", true))))
+                    .put("spec", new JsonObject()
+                            .put("nodeName", nodeName(pod % nodes))
+                            .put("containers", containers)));
+        }
+
+        return new JsonObject().put("metadata", listMetadata()).put("items", items);
+    }
+
+    public static JsonObject nodeList(int nodes) {
+        final JsonArray items = new JsonArray();
+
+        for (int node = 0; node < nodes; node++) {
+            items.add(new JsonObject()
+                    .put("metadata", new JsonObject()
+                            .put("name", nodeName(node))
+                            .put("labels", new JsonObject().put("kubernetes.io/role", "node"))));
+        }
+
+        return new JsonObject().put("metadata", listMetadata()).put("items", items);
+    }
+
+    /**
+     * @return the pods of a pod list as decoded for the collector
+     */
+    public static ListPage<PodInfo> podPage(JsonObject podList) {
+        return new ListPage<>(podList.getJsonArray("items").stream()
+                .map(JsonObject.class::cast)
+                .map(pod -> new PodInfo(
+                        pod.getJsonObject("metadata").getString("name"),
+                        pod.getJsonObject("metadata").getString("namespace"),
+                        pod.getJsonObject("spec").getString("nodeName"),
+                        pod.getJsonObject("spec").getJsonArray("containers").stream()
+                                .map(JsonObject.class::cast)
+                                .map(Fixtures::container)
+                                .collect(Collectors.toList()),
+                        "ReplicaSet",
+                        pod.getJsonObject("metadata").getJsonArray("ownerReferences").getJsonObject(0).getString("name")))
+                .collect(Collectors.toList()), podList.getJsonObject("metadata").getString("resourceVersion"), null);
+    }
+
+    /**
+     * @return the nodes of a node list as decoded for the collector
+     */
+    public static ListPage<NodeInfo> nodePage(JsonObject nodeList) {
+        return new ListPage<>(nodeList.getJsonArray("items").stream()
+                .map(JsonObject.class::cast)
+                .map(node -> {
+                    final Map<String, String> labels = new HashMap<>();
+                    node.getJsonObject("metadata").getJsonObject("labels").forEach(label -> labels.put(label.getKey(), (String) label.getValue()));
+                    return new NodeInfo(node.getJsonObject("metadata").getString("name"), labels);
+                })
+                .collect(Collectors.toList()), nodeList.getJsonObject("metadata").getString("resourceVersion"), null);
+    }
+
+    /**
+     * @return a pod metrics list of the metrics server, usage is in nanocores and kibibytes like it reports
+     */
+    public static JsonObject metricsServerPods(int pods) {
+        final Random random = new Random(SEED);
+        final JsonArray items = new JsonArray();
+
+        for (int pod = 0; pod < pods; pod++) {
+            final JsonArray containers = new JsonArray();
+
+            for (int container = 0; container < CONTAINERS; container++) {
+                containers.add(new JsonObject()
+                        .put("name", container == 0 ? "service-" + pod / REPLICAS : "sidecar")
+                        .put("usage", usage(random)));
+            }
+
+            items.add(new JsonObject()
+                    .put("metadata", new JsonObject().put("name", "service-" + pod / REPLICAS + "-" + suffix(random, 5)))
+                    .put("containers", containers));
+        }
+
+        return new JsonObject().put("items", items);
+    }
+
+    public static JsonObject metricsServerNode(String node) {
+        return new JsonObject()
+                .put("metadata", new JsonObject().put("name", node))
+                .put("usage", usage(new Random(SEED)));
+    }
+
+    public static String nodeName(int node) {
+        return "ip-10-0-" + node / 256 + "-" + node % 256 + ".eu-west-1.compute.internal";
+    }
+
+    private static ContainerInfo container(JsonObject container) {
+        final JsonObject limits = container.getJsonObject("resources").getJsonObject("limits");
+        final JsonObject requests = container.getJsonObject("resources").getJsonObject("requests");
+
+        return new ContainerInfo(container.getString("name"),
+                limits.getString("cpu"), limits.getString("memory"), requests.getString("cpu"), requests.getString("memory"));
+    }
+
+    private static JsonObject listMetadata() {
+        return new JsonObject().put("resourceVersion", "1");
+    }
+
+    private static JsonObject usage(Random random) {
+        return new JsonObject()
+                .put("cpu", random.nextInt(2_000_000_000) + "n")
+                .put("memory", random.nextInt(4_000_000) + "Ki");
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static String suffix(Random random, int length) {
+        final StringBuilder suffix = new StringBuilder(length);
+
+        for (int i = 0; i < length; i++) {
+            suffix.append(ALPHANUMERIC.charAt(random.nextInt(ALPHANUMERIC.length())));
+        }
+
+        return suffix.toString();
+    }
+}
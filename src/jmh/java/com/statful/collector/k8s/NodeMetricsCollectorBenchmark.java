@@ -0,0 +1,176 @@
+package com.statful.collector.k8s;
+
+import com.statful.benchmark.Fixtures;
+import com.statful.collector.k8s.clients.BufferStream;
+import com.statful.collector.k8s.clients.KubeApi;
+import com.statful.collector.k8s.clients.SimpleWebClient;
+import com.statful.collector.k8s.domain.ListPage;
+import com.statful.collector.k8s.domain.NodeInfo;
+import com.statful.collector.k8s.domain.PodInfo;
+import com.statful.collector.k8s.domain.WatchEvent;
+import com.statful.collector.k8s.emission.MetricEmitter;
+import com.statful.collector.k8s.inventory.Inventory;
+import com.statful.collector.k8s.scheduling.ScrapeScheduler;
+import com.statful.converter.prometheus.PrometheusParser;
+import com.statful.converter.prometheus.PrometheusParserOptions;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+import io.vertx.core.json.JsonObject;
+import io.vertx.reactivex.core.buffer.Buffer;
+import io.vertx.reactivex.core.eventbus.EventBus;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a whole collection against in-memory clients, so only the collector and the conversions are measured. Api
+ * responses are decoded up front, as they reach the collector already decoded, and metrics are sent to a black hole.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class NodeMetricsCollectorBenchmark {
+    // Scheduling defaults to at most 110 pods on a node
+    private static final int MAX_PODS_PER_NODE = 110;
+    // Starts are not delayed, so a collection runs at once
+    private static final JsonObject SPREAD_DISABLED = new JsonObject().put("collector.scrape.spread", 0);
+    // Every metric reaches the black hole on its own, batching is measured by the emitter benchmark
+    private static final JsonObject BATCHING_DISABLED = new JsonObject().put("collector.emit.batch.size", 1).put("collector.emit.queue.capacity", 0);
+
+    @Param({"1000", "10000", "100000"})
+    public int pods;
+
+    @Param({"10"})
+    public int nodes;
+
+    @Param({"false", "true"})
+    public boolean watch;
+
+    private BlackholeEventBus eventBus;
+    private NodeMetricsCollector collector;
+
+    @Setup
+    public void setUp() {
+        final PrometheusParser parser = new PrometheusParser(PrometheusParserOptions.Builder.fromConfig(new JsonObject()).build());
+        final String cAdvisorMetrics = Fixtures.scale(Fixtures.read(Fixtures.CADVISOR), Math.min(MAX_PODS_PER_NODE, Math.max(1, pods / nodes)));
+
+        final InMemoryKubeApi kubeApi = new InMemoryKubeApi(Fixtures.podPage(Fixtures.podList(pods, nodes)), Fixtures.nodePage(Fixtures.nodeList(nodes)), Fixtures.metricsServerPods(pods),
+                Fixtures.chunks(Fixtures.read(Fixtures.NODE_METRICS).getBytes(StandardCharsets.UTF_8)),
+                Fixtures.chunks(cAdvisorMetrics.getBytes(StandardCharsets.UTF_8)));
+        final Inventory<PodInfo> podInventory = Inventory.pods(kubeApi, Schedulers.trampoline());
+        final Inventory<NodeInfo> nodeInventory = Inventory.nodes(kubeApi, Schedulers.trampoline());
+
+        if (watch) {
+            // Listed once, the in-memory watches never send events
+            podInventory.watch().subscribe();
+            nodeInventory.watch().subscribe();
+        }
+
+        eventBus = new BlackholeEventBus();
+        collector = new NodeMetricsCollector(kubeApi, new SimpleWebClient.Client(null),
+                new MetricEmitter(eventBus, BATCHING_DISABLED, Schedulers.trampoline()), parser, parser, new ScrapeScheduler(SPREAD_DISABLED, Schedulers.trampoline()), podInventory, nodeInventory, SPREAD_DISABLED);
+    }
+
+    @Benchmark
+    public void collect(Blackhole blackhole) {
+        eventBus.blackhole = blackhole;
+        collector.collect().blockingAwait();
+    }
+
+    private static final class BlackholeEventBus extends EventBus {
+        private Blackhole blackhole;
+
+        private BlackholeEventBus() {
+            super(null);
+        }
+
+        @Override
+        public EventBus send(String address, Object message) {
+            blackhole.consume(message);
+            return this;
+        }
+    }
+
+    private static final class InMemoryKubeApi extends KubeApi.Client {
+        private final ListPage<PodInfo> pods;
+        private final ListPage<NodeInfo> nodes;
+        private final JsonObject metricsServerPods;
+        private final List<Buffer> nodeMetrics;
+        private final List<Buffer> cAdvisorMetrics;
+
+        private InMemoryKubeApi(ListPage<PodInfo> pods, ListPage<NodeInfo> nodes, JsonObject metricsServerPods, List<Buffer> nodeMetrics, List<Buffer> cAdvisorMetrics) {
+            super(null);
+            this.pods = pods;
+            this.nodes = nodes;
+            this.metricsServerPods = metricsServerPods;
+            this.nodeMetrics = nodeMetrics;
+            this.cAdvisorMetrics = cAdvisorMetrics;
+        }
+
+        @Override
+        public Flowable<ListPage<NodeInfo>> listNodes() {
+            return Flowable.just(nodes);
+        }
+
+        @Override
+        public Flowable<ListPage<PodInfo>> listPods() {
+            return Flowable.just(pods);
+        }
+
+        @Override
+        public Single<BufferStream.Response> getNodeMetrics(String node) {
+            return Single.just(new InMemoryResponse(nodeMetrics));
+        }
+
+        @Override
+        public Single<BufferStream.Response> getCAdvisorNodeMetrics(String node) {
+            return Single.just(new InMemoryResponse(cAdvisorMetrics));
+        }
+
+        @Override
+        public Single<JsonObject> getMetricsServerNodeMetrics(String node) {
+            return Single.just(Fixtures.metricsServerNode(node));
+        }
+
+        @Override
+        public Single<JsonObject> getMetricsServerPodsMetrics() {
+            return Single.just(metricsServerPods);
+        }
+
+        @Override
+        public Flowable<WatchEvent<NodeInfo>> watchNodes(String resourceVersion) {
+            return Flowable.never();
+        }
+
+        @Override
+        public Flowable<WatchEvent<PodInfo>> watchPods(String resourceVersion) {
+            return Flowable.never();
+        }
+    }
+
+    private static final class InMemoryResponse extends BufferStream.Response {
+        private final List<Buffer> chunks;
+
+        private InMemoryResponse(List<Buffer> chunks) {
+            super(null, null, null);
+            this.chunks = chunks;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return null;
+        }
+
+        @Override
+        public Flowable<Buffer> body() {
+            return Flowable.fromIterable(chunks);
+        }
+    }
+}
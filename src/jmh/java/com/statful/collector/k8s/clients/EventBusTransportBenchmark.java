@@ -0,0 +1,69 @@
+package com.statful.collector.k8s.clients;
+
+import com.statful.benchmark.Fixtures;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requests a pod list over the event bus of a single vertx instance, replied with the default codec, which copies it,
+ * or with the local codec of the client verticles, which passes it as it is.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class EventBusTransportBenchmark {
+    private static final String ADDRESS = "getPods";
+
+    @Param({"1000", "10000"})
+    public int pods;
+
+    @Param({"default", "local"})
+    public String codec;
+
+    private Vertx vertx;
+    private EventBus eventBus;
+
+    @Setup
+    public void setUp() {
+        final JsonObject podList = Fixtures.podList(pods, 100);
+
+        vertx = Vertx.vertx();
+        eventBus = vertx.eventBus();
+
+        final DeliveryOptions options = "local".equals(codec)
+                ? LocalCodecs.register(eventBus, "benchmark").json()
+                : new DeliveryOptions();
+
+        eventBus.consumer(ADDRESS, message -> message.reply(podList, options));
+    }
+
+    @TearDown
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Benchmark
+    public JsonObject request() throws Exception {
+        final CompletableFuture<JsonObject> reply = new CompletableFuture<>();
+
+        eventBus.<JsonObject>send(ADDRESS, "", result -> {
+            if (result.succeeded()) {
+                reply.complete(result.result().body());
+            } else {
+                reply.completeExceptionally(result.cause());
+            }
+        });
+
+        return reply.get();
+    }
+}
@@ -0,0 +1,236 @@
+package com.statful.collector.k8s.clients;
+
+import com.statful.benchmark.Fixtures;
+import com.statful.collector.k8s.domain.ListPage;
+import com.statful.collector.k8s.domain.PodInfo;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes a page of the pod list as received in json, into a tree and with the streaming decoder, and in protobuf.
+ * Pods carry the metadata and status the api server returns along with the fields the collector reads, the protobuf
+ * page is encoded from the same pods with the field numbers of the api server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KubernetesListDecoderBenchmark {
+    private static final String TIMESTAMP = "2019-10-02T07:06:40Z";
+    private static final long EPOCH_SECONDS = 1569999999L;
+    private static final String DIGEST = "4f53cda18c2baa0c0354bb5f9a3ecbe5ed12ab4d8e11ba873c2f11161202b945";
+
+    @Param({"500", "10000"})
+    public int pods;
+
+    private Buffer json;
+    private byte[] jsonBytes;
+    private byte[] protobuf;
+
+    @Setup
+    public void setUp() {
+        final JsonObject podList = Fixtures.podList(pods, 100);
+
+        podList.getJsonArray("items").stream().map(JsonObject.class::cast).forEach(KubernetesListDecoderBenchmark::addStatus);
+
+        json = podList.toBuffer();
+        jsonBytes = json.getBytes();
+        protobuf = encodePodList(podList);
+    }
+
+    @Benchmark
+    public JsonObject decodeJsonTree() {
+        return json.toJsonObject();
+    }
+
+    @Benchmark
+    public ListPage<PodInfo> decodeJson() {
+        return KubernetesJsonDecoder.decodePodList(jsonBytes);
+    }
+
+    @Benchmark
+    public ListPage<PodInfo> decodeProtobuf() {
+        return KubernetesProtobufDecoder.decodePodList(protobuf);
+    }
+
+    private static void addStatus(JsonObject pod) {
+        final String name = pod.getJsonObject("metadata").getString("name");
+        final JsonArray conditions = new JsonArray();
+        final JsonArray containerStatuses = new JsonArray();
+
+        for (String condition : new String[]{"Initialized", "Ready", "ContainersReady", "PodScheduled"}) {
+            conditions.add(new JsonObject().put("type", condition).put("status", "True").put("lastTransitionTime", TIMESTAMP));
+        }
+        pod.getJsonObject("spec").getJsonArray("containers").stream().map(JsonObject.class::cast).forEach(container -> containerStatuses.add(new JsonObject()
+                .put("name", container.getString("name"))
+                .put("state", new JsonObject().put("running", new JsonObject().put("startedAt", TIMESTAMP)))
+                .put("ready", true)
+                .put("restartCount", 0)
+                .put("image", "registry.example.com/" + container.getString("name") + ":1.0.0")
+                .put("imageID", "docker-pullable://registry.example.com/" + container.getString("name") + "@sha256:" + DIGEST)
+                .put("containerID", "docker://" + DIGEST)));
+
+        pod.getJsonObject("metadata")
+                .put("uid", UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8)).toString())
+                .put("resourceVersion", "123456789")
+                .put("creationTimestamp", TIMESTAMP)
+                .put("labels", new JsonObject().put("app", name.substring(0, name.indexOf('-', 8))).put("pod-template-hash", "5d8c6b7f9"))
+                .put("annotations", new JsonObject().put("kubernetes.io/psp", "eks.privileged"))
+                .put("ownerReferences", new JsonArray().add(new JsonObject()
+                        .put("apiVersion", "apps/v1")
+                        .put("kind", "ReplicaSet")
+                        .put("name", name.substring(0, name.lastIndexOf('-')))
+                        .put("uid", UUID.nameUUIDFromBytes(name.substring(0, name.lastIndexOf('-')).getBytes(StandardCharsets.UTF_8)).toString())
+                        .put("controller", true)));
+        pod.put("status", new JsonObject()
+                .put("phase", "Running")
+                .put("conditions", conditions)
+                .put("hostIP", "10.0.1.23")
+                .put("podIP", "10.0.42.17")
+                .put("startTime", TIMESTAMP)
+                .put("containerStatuses", containerStatuses));
+    }
+
+    private static byte[] encodePodList(JsonObject podList) {
+        final ByteArrayOutputStream list = new ByteArrayOutputStream();
+
+        message(list, 1, string(2, podList.getJsonObject("metadata").getString("resourceVersion")));
+        podList.getJsonArray("items").stream().map(JsonObject.class::cast).forEach(pod -> {
+            final JsonObject metadata = pod.getJsonObject("metadata");
+            final JsonObject spec = pod.getJsonObject("spec");
+            final ByteArrayOutputStream encodedSpec = new ByteArrayOutputStream();
+
+            spec.getJsonArray("containers").stream().map(JsonObject.class::cast).forEach(container -> {
+                final JsonObject resources = container.getJsonObject("resources");
+                final ByteArrayOutputStream encodedResources = new ByteArrayOutputStream();
+
+                quantities(encodedResources, 1, resources.getJsonObject("limits"));
+                quantities(encodedResources, 2, resources.getJsonObject("requests"));
+                message(encodedSpec, 2, concat(string(1, container.getString("name")), field(8, encodedResources.toByteArray())));
+            });
+            write(encodedSpec, string(10, spec.getString("nodeName")));
+
+            final JsonObject owner = metadata.getJsonArray("ownerReferences").getJsonObject(0);
+            final ByteArrayOutputStream encodedMetadata = new ByteArrayOutputStream();
+
+            write(encodedMetadata, concat(
+                    string(1, metadata.getString("name")),
+                    string(3, metadata.getString("namespace")),
+                    string(5, metadata.getString("uid")),
+                    string(6, metadata.getString("resourceVersion")),
+                    field(8, number(1, EPOCH_SECONDS))));
+            strings(encodedMetadata, 11, metadata.getJsonObject("labels"));
+            strings(encodedMetadata, 12, metadata.getJsonObject("annotations"));
+            message(encodedMetadata, 13, concat(
+                    string(1, owner.getString("kind")),
+                    string(3, owner.getString("name")),
+                    string(4, owner.getString("uid")),
+                    string(5, owner.getString("apiVersion")),
+                    number(6, 1)));
+
+            final JsonObject status = pod.getJsonObject("status");
+            final ByteArrayOutputStream encodedStatus = new ByteArrayOutputStream();
+
+            write(encodedStatus, string(1, status.getString("phase")));
+            status.getJsonArray("conditions").stream().map(JsonObject.class::cast).forEach(condition -> message(encodedStatus, 2, concat(
+                    string(1, condition.getString("type")),
+                    string(2, condition.getString("status")),
+                    field(4, number(1, EPOCH_SECONDS)))));
+            write(encodedStatus, concat(
+                    string(5, status.getString("hostIP")),
+                    string(6, status.getString("podIP")),
+                    field(7, number(1, EPOCH_SECONDS))));
+            status.getJsonArray("containerStatuses").stream().map(JsonObject.class::cast).forEach(containerStatus -> message(encodedStatus, 8, concat(
+                    string(1, containerStatus.getString("name")),
+                    field(2, field(2, field(1, number(1, EPOCH_SECONDS)))),
+                    number(4, 1),
+                    number(5, 0),
+                    string(6, containerStatus.getString("image")),
+                    string(7, containerStatus.getString("imageID")),
+                    string(8, containerStatus.getString("containerID")))));
+
+            message(list, 2, concat(
+                    field(1, encodedMetadata.toByteArray()),
+                    field(2, encodedSpec.toByteArray()),
+                    field(3, encodedStatus.toByteArray())));
+        });
+
+        final ByteArrayOutputStream envelope = new ByteArrayOutputStream();
+        write(envelope, new byte[]{'k', '8', 's', 0});
+        write(envelope, field(1, concat(string(1, "v1"), string(2, "PodList"))));
+        write(envelope, field(2, list.toByteArray()));
+
+        return envelope.toByteArray();
+    }
+
+    private static void strings(ByteArrayOutputStream output, int number, JsonObject map) {
+        for (Map.Entry<String, Object> entry : map) {
+            message(output, number, concat(string(1, entry.getKey()), string(2, (String) entry.getValue())));
+        }
+    }
+
+    private static void quantities(ByteArrayOutputStream output, int number, JsonObject quantities) {
+        for (Map.Entry<String, Object> quantity : quantities) {
+            message(output, number, concat(string(1, quantity.getKey()), field(2, string(1, (String) quantity.getValue()))));
+        }
+    }
+
+    private static void message(ByteArrayOutputStream output, int number, byte[] message) {
+        write(output, field(number, message));
+    }
+
+    private static byte[] string(int number, String value) {
+        return field(number, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] number(int number, long value) {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        varint(output, number << 3);
+        varint(output, value);
+
+        return output.toByteArray();
+    }
+
+    private static byte[] field(int number, byte[] value) {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        varint(output, number << 3 | 2);
+        varint(output, value.length);
+        write(output, value);
+
+        return output.toByteArray();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        for (byte[] part : parts) {
+            write(output, part);
+        }
+
+        return output.toByteArray();
+    }
+
+    private static void varint(ByteArrayOutputStream output, long value) {
+        while ((value & ~0x7FL) != 0) {
+            output.write((int) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        output.write((int) value);
+    }
+
+    private static void write(ByteArrayOutputStream output, byte[] bytes) {
+        output.write(bytes, 0, bytes.length);
+    }
+}
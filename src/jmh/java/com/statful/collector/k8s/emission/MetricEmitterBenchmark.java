@@ -0,0 +1,104 @@
+package com.statful.collector.k8s.emission;
+
+import com.statful.client.CustomMetric;
+import com.statful.client.CustomMetricsConsumer;
+import com.statful.client.MetricType;
+import com.statful.utils.Pair;
+import io.reactivex.schedulers.Schedulers;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+import io.vertx.core.json.JsonObject;
+import io.vertx.reactivex.core.Vertx;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Emits metrics from a thread outside the event loop, as the converting pool does, until a consumer standing in for
+ * the statful client received them all. A batch size of 1 sends every metric as its own event bus message, which needs an unbounded queue.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class MetricEmitterBenchmark {
+    private static final int METRICS = 10000;
+
+    @Param({"1", "100", "500"})
+    public int batchSize;
+
+    private Vertx vertx;
+    private MetricEmitter emitter;
+    private CustomMetric metric;
+    private final AtomicLong received = new AtomicLong();
+    private long emitted;
+
+    @Setup
+    public void setUp() {
+        vertx = Vertx.vertx();
+        vertx.eventBus().getDelegate().registerDefaultCodec(CustomMetric.class, new StatfulCodec());
+        vertx.eventBus().localConsumer(CustomMetricsConsumer.ADDRESS, message -> received.incrementAndGet());
+
+        // Batches are flushed explicitly, so the linger never fires, and the queue is unbounded, which a batch size of 1 needs
+        emitter = new MetricEmitter(vertx.eventBus(), new JsonObject()
+                .put("collector.emit.batch.size", batchSize)
+                .put("collector.emit.batch.linger", 0)
+                .put("collector.emit.queue.capacity", 0), Schedulers.trampoline()).register();
+        metric = new CustomMetric.Builder()
+                .withMetricName("container_cpu_usage_seconds_total")
+                .withValue(1)
+                .withTags(Collections.singletonList(new Pair<>("container", "api")))
+                .withMetricType(MetricType.COUNTER)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(METRICS)
+    public void emit() {
+        for (int i = 0; i < METRICS; i++) {
+            emitter.emit(metric);
+        }
+        emitter.flush();
+
+        emitted += METRICS;
+        while (received.get() < emitted) {
+            Thread.yield();
+        }
+    }
+
+    private static final class StatfulCodec implements MessageCodec<CustomMetric, CustomMetric> {
+        @Override
+        public void encodeToWire(Buffer buffer, CustomMetric metric) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CustomMetric decodeFromWire(int position, Buffer buffer) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CustomMetric transform(CustomMetric metric) {
+            return metric;
+        }
+
+        @Override
+        public String name() {
+            return "statful";
+        }
+
+        @Override
+        public byte systemCodecID() {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.statful.converter.prometheus;
+
+import com.statful.benchmark.Fixtures;
+import com.statful.utils.Pair;
+import io.reactivex.Flowable;
+import io.vertx.core.json.JsonObject;
+import io.vertx.reactivex.core.buffer.Buffer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converts recorded node scrapes with the default options, from a whole string and from a stream of chunks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrometheusParserBenchmark {
+    private static final List<Pair<String, String>> TAGS = Collections.singletonList(new Pair<>("node", Fixtures.nodeName(0)));
+
+    @Param({"cadvisor-small", "cadvisor-medium", "cadvisor-huge", "node"})
+    public String fixture;
+
+    private String text;
+    private List<Buffer> chunks;
+    private PrometheusParser parser;
+
+    @Setup
+    public void setUp() {
+        text = text(fixture);
+        chunks = Fixtures.chunks(text.getBytes(StandardCharsets.UTF_8));
+        parser = new PrometheusParser(PrometheusParserOptions.Builder.fromConfig(new JsonObject()).build());
+    }
+
+    static String text(String fixture) {
+        switch (fixture) {
+            case "cadvisor-small":
+                return Fixtures.read(Fixtures.CADVISOR);
+            case "cadvisor-medium":
+                return Fixtures.scale(Fixtures.read(Fixtures.CADVISOR), 100);
+            case "cadvisor-huge":
+                return Fixtures.scale(Fixtures.read(Fixtures.CADVISOR), 2000);
+            case "node":
+                return Fixtures.read(Fixtures.NODE_METRICS);
+            default:
+                throw new IllegalArgumentException("Unknown fixture " + fixture);
+        }
+    }
+
+    @Benchmark
+    public void convert(Blackhole blackhole) {
+        parser.convert(text, TAGS, blackhole::consume);
+    }
+
+    @Benchmark
+    public void rxConvertChunks(Blackhole blackhole) {
+        parser.rxConvert(Flowable.fromIterable(chunks), TAGS).blockingSubscribe(blackhole::consume);
+    }
+}
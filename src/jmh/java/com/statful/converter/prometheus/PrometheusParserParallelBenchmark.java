@@ -0,0 +1,59 @@
+package com.statful.converter.prometheus;
+
+import com.statful.benchmark.Fixtures;
+import com.statful.utils.Pair;
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
+import io.vertx.core.json.JsonObject;
+import io.vertx.reactivex.core.buffer.Buffer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converts a large streamed cAdvisor scrape in batches on a pool of the given size, to see how conversion scales with
+ * the available cores. A single thread is the baseline, as batches are then converted one after the other.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrometheusParserParallelBenchmark {
+    // About 14MB, like the cAdvisor scrape of a node running a couple thousand containers
+    private static final int CADVISOR_COPIES = 2000;
+    private static final List<Pair<String, String>> TAGS = Collections.singletonList(new Pair<>("node", Fixtures.nodeName(0)));
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private List<Buffer> chunks;
+    private ExecutorService executor;
+    private PrometheusParser parser;
+
+    @Setup
+    public void setUp() {
+        chunks = Fixtures.chunks(Fixtures.scale(Fixtures.read(Fixtures.CADVISOR), CADVISOR_COPIES).getBytes(StandardCharsets.UTF_8));
+        executor = Executors.newFixedThreadPool(threads);
+        parser = new PrometheusParser(PrometheusParserOptions.Builder.fromConfig(new JsonObject())
+                .withParserThreads(threads)
+                .build(), Schedulers.from(executor));
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public void rxConvertChunks(Blackhole blackhole) {
+        parser.rxConvert(Flowable.fromIterable(chunks), TAGS).blockingSubscribe(blackhole::consume);
+    }
+}
@@ -0,0 +1,45 @@
+package com.statful.converter.util;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses the quantities found in pod specs, once per container resource on every collection, and the usage reported
+ * by the metrics server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResourceQuantityParserBenchmark {
+    private static final String[] CPU_QUANTITIES = {"100m", "250m", "500m", "1", "2", "1500m", "0.5", ""};
+    private static final String[] MEMORY_QUANTITIES = {"64Mi", "128Mi", "256Mi", "1Gi", "512M", "2G", "131072Ki", ""};
+    private static final String[] CPU_USAGES = {"123456789n", "28305474n", "1999871n", "2m", "975632n", "1004591234n", "0", "3m"};
+    private static final String[] MEMORY_USAGES = {"291283Ki", "18052Ki", "1048576Ki", "2048Ki", "734220Ki", "12Mi", "0", "5124Ki"};
+
+    @Benchmark
+    public void parseCpuResource(Blackhole blackhole) {
+        for (String quantity : CPU_QUANTITIES) {
+            blackhole.consume(ResourceQuantityParser.parseCpuResource(quantity));
+        }
+    }
+
+    @Benchmark
+    public void parseMemoryResource(Blackhole blackhole) {
+        for (String quantity : MEMORY_QUANTITIES) {
+            blackhole.consume(ResourceQuantityParser.parseMemoryResource(quantity));
+        }
+    }
+
+    @Benchmark
+    public void parseUsage(Blackhole blackhole) {
+        for (int i = 0; i < CPU_USAGES.length; i++) {
+            blackhole.consume(ResourceQuantityParser.parseCpuUsage(CPU_USAGES[i]));
+            blackhole.consume(ResourceQuantityParser.parseMemoryUsage(MEMORY_USAGES[i]));
+        }
+    }
+}
@@ -2,46 +2,77 @@ package com.statful.collector.k8s;
 
 import com.google.common.collect.Lists;
 import com.statful.client.CustomMetric;
-import com.statful.client.CustomMetricsConsumer;
 import com.statful.client.MetricType;
+import com.statful.collector.k8s.cardinality.CardinalityGuard;
+import com.statful.collector.k8s.clients.BufferStream;
 import com.statful.collector.k8s.clients.KubeApi;
 import com.statful.collector.k8s.clients.SimpleWebClient;
+import com.statful.collector.k8s.counter.CounterRates;
+import com.statful.collector.k8s.delta.DeltaSuppressor;
+import com.statful.collector.k8s.domain.ContainerInfo;
+import com.statful.collector.k8s.domain.NodeInfo;
+import com.statful.collector.k8s.domain.PodInfo;
+import com.statful.collector.k8s.emission.MetricEmitter;
+import com.statful.collector.k8s.emission.Priority;
+import com.statful.collector.k8s.inventory.Inventory;
+import com.statful.collector.k8s.rollup.Rollups;
+import com.statful.collector.k8s.scheduling.ScrapeScheduler;
+import com.statful.collector.k8s.scheduling.Shard;
+import com.statful.collector.k8s.utils.Fingerprints;
 import com.statful.collector.k8s.utils.Loggable;
 import com.statful.converter.Converter;
+import com.statful.converter.prometheus.PrometheusProtobufParser;
 import com.statful.converter.util.ResourceQuantityParser;
 import com.statful.utils.Pair;
 import io.reactivex.Completable;
 import io.reactivex.Flowable;
-import io.reactivex.Observable;
-import io.reactivex.ObservableSource;
+import io.reactivex.Single;
 import io.vertx.core.json.JsonArray;
+import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.json.JsonObject;
-import io.vertx.reactivex.core.eventbus.EventBus;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import static java.util.Collections.emptyList;
 
 public class NodeMetricsCollector implements Loggable {
-    private static final String ITEMS = "items";
-    private static final String METADATA = "metadata";
-    private static final String NAME = "name";
     private static final String ROLE = "role";
-    private static final String LABELS = "labels";
     private static final String KUBERNETES_IO_ROLE = "kubernetes.io/role";
 
+    private static final String NODE_SOURCE = "node";
+    private static final String CADVISOR_SOURCE = "cadvisor";
+    private static final String METRICS_SERVER_SOURCE = "metricsserver";
+    private static final String ENDPOINT_SOURCE = "endpoint";
+
     private static final Pattern POD_GENERATED = Pattern.compile("-?\\w{9,10}-\\w{5}($|_)");
+    private static final String REPLICA_SET = "ReplicaSet";
+    // Pod template hashes are encoded with the consonants and digits of safe strings, or were decimal before
+    private static final Pattern POD_TEMPLATE_HASH = Pattern.compile("-([bcdfghjklmnpqrstvwxz2456789]{6,10}|\\d{6,10})$");
 
     private final KubeApi.Client kubeApi;
     private final SimpleWebClient.Client simpleWebClient;
-    private final EventBus eventBus;
+    private final MetricEmitter emitter;
     private final Converter converter;
+    private final Converter protobufConverter;
+    private final ScrapeScheduler scrapeScheduler;
+    private final Shard shard;
+    private final Rollups rollups;
+    private final CardinalityGuard cardinalityGuard;
+    private final DeltaSuppressor deltas;
+    private final CounterRates counters;
+    private final boolean fingerprinted;
+    private final Inventory<PodInfo> pods;
+    private final Inventory<NodeInfo> nodes;
 
     private final Boolean cAdvisorMetricsDisabled;
     private final Boolean nodeMetricsDisabled;
@@ -51,139 +82,277 @@ public class NodeMetricsCollector implements Loggable {
 
     private final Map<String, List<Pair<String, String>>> nodeTagsMap;
 
+    private final AtomicInteger outstandingRequests = new AtomicInteger();
+    private final AtomicLong samplesSent = new AtomicLong();
+
     public NodeMetricsCollector(KubeApi.Client kubeApi,
                                 SimpleWebClient.Client simpleWebClient,
-                                EventBus eventBus,
+                                MetricEmitter emitter,
                                 Converter converter,
+                                Converter protobufConverter,
+                                ScrapeScheduler scrapeScheduler,
+                                Inventory<PodInfo> pods,
+                                Inventory<NodeInfo> nodes,
                                 JsonObject config) {
         this.kubeApi = kubeApi;
         this.simpleWebClient = simpleWebClient;
-        this.eventBus = eventBus;
+        this.emitter = emitter;
         this.converter = converter;
+        this.protobufConverter = protobufConverter;
+        this.scrapeScheduler = scrapeScheduler;
+        this.pods = pods;
+        this.nodes = nodes;
         this.additionalEndpoints = config.getJsonArray("collector.additionalEndpoints", new JsonArray(Collections.emptyList()));
         this.cAdvisorMetricsDisabled = config.getBoolean("collector.cadvisor.disabled", false);
         this.nodeMetricsDisabled = config.getBoolean("collector.nodes.disabled", false);
         this.metricsServerMetricsDisabled = config.getBoolean("collector.metricsserver.disabled", false);
         this.nodeTagsMap = new ConcurrentHashMap<>();
+        this.shard = Shard.fromConfig(config);
+        this.rollups = Rollups.fromConfig(config);
+        this.cardinalityGuard = CardinalityGuard.fromConfig(config);
+        this.deltas = DeltaSuppressor.fromConfig(config);
+        this.counters = CounterRates.fromConfig(config);
+        this.fingerprinted = cardinalityGuard.isEnabled() || deltas.isEnabled() || counters.isEnabled();
+
+        if (shard.getReplicas() > 1) {
+            log().info("Collecting shard {0} of {1} replicas", shard.getOrdinal(), shard.getReplicas());
+        }
     }
 
-    public void collect() {
-        getMetricsServerPodsMetrics();
-        getPodMetrics();
-        getClusterNodeMetrics();
-        collectAdditionalEndpoints();
+    /**
+     * Collects every source once. Failures of a source are logged, so the cycle always completes, and disposing it
+     * cancels the requests still in flight. Samples held for the whole cycle, like rollups, are sent once it completes
+     * and dropped when it is cancelled.
+     */
+    public Completable collect() {
+        return Completable.defer(() -> {
+            final long start = System.currentTimeMillis();
+            final long samplesBefore = samplesSent.get();
+
+            rollups.reset();
+            cardinalityGuard.reset();
+            deltas.advance();
+            counters.advance();
+            return Completable.mergeArray(getMetricsServerPodsMetrics(), getPodMetrics(), getClusterNodeMetrics(), collectAdditionalEndpoints())
+                    .doOnComplete(() -> {
+                        rollups.drain().forEach(metric -> sendChanged(metric, Priority.NORMAL));
+                        cardinalityGuard.report().forEach(this::sendMetric);
+                        deltas.report().forEach(this::sendMetric);
+                        counters.report().forEach(this::sendMetric);
+                        sendCycleMetrics("complete", start, samplesBefore);
+                    })
+                    // Runs before the requests are cancelled, so they are still counted as outstanding
+                    .doOnDispose(() -> {
+                        rollups.reset();
+                        sendCycleMetrics("cancelled", start, samplesBefore);
+                    });
+        });
     }
 
-    private void collectAdditionalEndpoints() {
-        additionalEndpoints.stream()
-                .map(JsonObject.class::cast)
-                .forEach(this::collectAdditionalEndpoint);
+    private void sendCycleMetrics(String status, long start, long samplesBefore) {
+        final List<Pair<String, String>> tags = Collections.singletonList(new Pair<>("status", status));
+        final long samples = samplesSent.get() - samplesBefore;
+        final int outstanding = outstandingRequests.get() + scrapeScheduler.getWaiting();
+
+        sendMetric(new CustomMetric.Builder()
+                .withMetricName("collection.duration")
+                .withValue(System.currentTimeMillis() - start)
+                .withTags(tags)
+                .withMetricType(MetricType.TIMER)
+                .build());
+        sendMetric(new CustomMetric.Builder()
+                .withMetricName("collection.requests.outstanding")
+                .withValue(outstanding)
+                .withTags(tags)
+                .withMetricType(MetricType.GAUGE)
+                .build());
+        sendMetric(new CustomMetric.Builder()
+                .withMetricName("collection.samples")
+                .withValue(samples)
+                .withTags(tags)
+                .withMetricType(MetricType.GAUGE)
+                .build());
+        converter.report(Collections.singletonList(new Pair<>("format", "text"))).forEach(this::sendMetric);
+        protobufConverter.report(Collections.singletonList(new Pair<>("format", "protobuf"))).forEach(this::sendMetric);
+        emitter.reportStatistics();
+        emitter.flush();
+    }
+
+    private Completable collectAdditionalEndpoints() {
+        return Flowable.fromIterable(additionalEndpoints)
+                .cast(JsonObject.class)
+                .flatMapCompletable(this::collectAdditionalEndpoint);
     }
 
-    private void collectAdditionalEndpoint(JsonObject additionalEndpoint) {
+    private Completable collectAdditionalEndpoint(JsonObject additionalEndpoint) {
         final String url = additionalEndpoint.getString("url");
         final JsonObject tags = additionalEndpoint.getJsonObject("tags", new JsonObject(Collections.emptyMap()));
 
-        simpleWebClient.getEndpoint(url)
-                .subscribe(text -> converter.convert(text, buildAdditionalEndpointTags(tags), this::sendMetric),
-                        e -> log().error("Failed to convert metrics for additional endpoint {0}", url));
+        if (!shard.owns(url)) {
+            return Completable.complete();
+        }
+
+        return schedule(ENDPOINT_SOURCE, url, convert(simpleWebClient.getEndpoint(url), buildAdditionalEndpointTags(tags)))
+                .doOnNext(metric -> sendScraped(metric, Priority.NORMAL))
+                .ignoreElements()
+                .doOnError(e -> log().error("Failed to convert metrics for additional endpoint {0}", url))
+                .onErrorComplete();
     }
 
-    private void getClusterNodeMetrics() {
-        getNodeMetadata()
-                .flatMapCompletable(this::getNodeMetrics, true, 1)
-                .subscribe(() -> {
-                }, error -> log().error("Failed to send metrics", error));
+    private Completable getClusterNodeMetrics() {
+        // Scrapes of every node are started together, the scrape scheduler spreads and limits them
+        return getNodeMetadata()
+                .flatMapCompletable(this::getNodeMetrics, true, Integer.MAX_VALUE)
+                .doOnError(error -> log().error("Failed to send metrics", error))
+                .onErrorComplete();
     }
 
-    private Completable getNodeMetrics(JsonObject nodeInfo) {
-        final String node = nodeInfo.getString(NAME);
+    private Completable getNodeMetrics(NodeInfo nodeInfo) {
+        final String node = nodeInfo.getName();
+        // Tags of every node are kept, the resource metrics of pods on nodes of other shards need them too
         final List<Pair<String, String>> tags = buildNodeTags(nodeInfo);
 
-        getNodeMetrics(node, tags);
-        getMetricsServerNodeMetrics(node, tags);
-        getCAdvisorMetrics(node, tags);
+        if (!shard.owns(node)) {
+            return Completable.complete();
+        }
 
-        return Completable.complete();
+        return Completable.mergeArray(getNodeMetrics(node, tags), getMetricsServerNodeMetrics(node, tags), getCAdvisorMetrics(node, tags));
     }
 
-    private void getNodeMetrics(String node, List<Pair<String, String>> tags) {
-        if (!nodeMetricsDisabled) {
-            kubeApi.getNodeMetrics(node)
-                    .subscribe(text -> converter.convert(text, tags, this::sendMetric), e -> log().error("Failed to convert metrics for node {0}", e, node));
+    private Completable getNodeMetrics(String node, List<Pair<String, String>> tags) {
+        if (nodeMetricsDisabled) {
+            return Completable.complete();
         }
+
+        return schedule(NODE_SOURCE, node, convert(kubeApi.getNodeMetrics(node), tags))
+                .doOnNext(metric -> sendScraped(metric, Priority.NORMAL))
+                .ignoreElements()
+                .doOnError(e -> log().error("Failed to convert metrics for node {0}", e, node))
+                .onErrorComplete();
     }
 
-    private void getCAdvisorMetrics(String node, List<Pair<String, String>> tags) {
-        if (!cAdvisorMetricsDisabled) {
-            kubeApi.getCAdvisorNodeMetrics(node)
-                    .subscribe(text -> converter.convert(text, tags, this::sendMetric), e -> log().error("Failed to convert cAdvisor metrics for node {0}", e, node));
+    private Completable getCAdvisorMetrics(String node, List<Pair<String, String>> tags) {
+        if (cAdvisorMetricsDisabled) {
+            return Completable.complete();
         }
+
+        return schedule(CADVISOR_SOURCE, node, convert(kubeApi.getCAdvisorNodeMetrics(node), tags))
+                .doOnNext(metric -> sendScraped(metric, Priority.LOW))
+                .ignoreElements()
+                .doOnError(e -> log().error("Failed to convert cAdvisor metrics for node {0}", e, node))
+                .onErrorComplete();
     }
 
-    private void getMetricsServerNodeMetrics(String node, List<Pair<String, String>> tags) {
-        if (!metricsServerMetricsDisabled) {
-            kubeApi.getMetricsServerNodeMetrics(node)
-                    .subscribe(metrics -> buildUsageMetrics("node", metrics, tags), e -> log().error("Failed to convert metrics-server metrics for node {0}", e, node));
-        }
+    private <T> Flowable<T> schedule(String source, String target, Flowable<T> scrape) {
+        // Scrapes only start once the metrics already queued leave room for theirs
+        return scrapeScheduler.schedule(source, target, Completable.defer(emitter::awaitCapacity).andThen(track(scrape)), queueWait -> sendMetric(new CustomMetric.Builder()
+                .withMetricName("scrape.queue.wait")
+                .withValue(queueWait)
+                .withTags(Collections.singletonList(new Pair<>("source", source)))
+                .withMetricType(MetricType.TIMER)
+                .build()));
+    }
+
+    private <T> Flowable<T> track(Flowable<T> request) {
+        return request
+                .doOnSubscribe(subscription -> outstandingRequests.incrementAndGet())
+                .doFinally(outstandingRequests::decrementAndGet);
+    }
+
+    private <T> Single<T> track(Single<T> request) {
+        return request
+                .doOnSubscribe(disposable -> outstandingRequests.incrementAndGet())
+                .doFinally(outstandingRequests::decrementAndGet);
+    }
+
+    private Flowable<CustomMetric> convert(Single<BufferStream.Response> metrics, List<Pair<String, String>> tags) {
+        return metrics.flatMapPublisher(response -> {
+            final String contentType = response.getHeader(HttpHeaders.CONTENT_TYPE.toString());
+            final Converter responseConverter = PrometheusProtobufParser.isProtobuf(contentType) ? protobufConverter : converter;
+
+            return responseConverter.rxConvert(response.body(), tags);
+        });
     }
 
-    private void getMetricsServerPodsMetrics() {
-        if (!metricsServerMetricsDisabled) {
-            kubeApi.getMetricsServerPodsMetrics()
-                    .flattenAsFlowable(result -> result.getJsonArray("items"))
-                    .cast(JsonObject.class)
-                    .flatMapIterable(podMetrics -> podMetrics.getJsonArray("containers"))
-                    .cast(JsonObject.class)
-                    .subscribe(container -> buildUsageMetrics("pod", container, buildContainerTags(container)), e -> log().error("Failed to convert metrics-server metrics for pods", e));
+    private Completable getMetricsServerNodeMetrics(String node, List<Pair<String, String>> tags) {
+        if (metricsServerMetricsDisabled) {
+            return Completable.complete();
         }
+
+        return schedule(METRICS_SERVER_SOURCE, node, kubeApi.getMetricsServerNodeMetrics(node).toFlowable())
+                .doOnNext(metrics -> buildUsageMetrics("node", metrics, tags))
+                .ignoreElements()
+                .doOnError(e -> log().error("Failed to convert metrics-server metrics for node {0}", e, node))
+                .onErrorComplete();
     }
 
-    private Flowable<JsonObject> getNodeMetadata() {
-        return kubeApi.getNodes()
-                .flattenAsFlowable(response -> response.getJsonArray(ITEMS))
+    private Completable getMetricsServerPodsMetrics() {
+        if (metricsServerMetricsDisabled || !shard.ownsClusterSources()) {
+            return Completable.complete();
+        }
+
+        return track(kubeApi.getMetricsServerPodsMetrics())
+                .flattenAsFlowable(result -> result.getJsonArray("items"))
+                .cast(JsonObject.class)
+                .flatMapIterable(podMetrics -> podMetrics.getJsonArray("containers"))
                 .cast(JsonObject.class)
-                .map(item -> item.getJsonObject(METADATA));
+                .doOnNext(container -> buildUsageMetrics("pod", container, buildContainerTags(container)))
+                .ignoreElements()
+                .doOnError(e -> log().error("Failed to convert metrics-server metrics for pods", e))
+                .onErrorComplete();
     }
 
-    private void getPodMetrics() {
-        kubeApi.getPods()
-                .flattenAsFlowable(response -> response.getJsonArray(ITEMS))
-                .cast(JsonObject.class)
-                .groupBy(this::trimPodGeneratedName)
-                .subscribe(pods -> {
-                    final String podName = pods.getKey();
-
-                    final ArrayList<Pair<String, String>> tags = Lists.newArrayList(new Pair<>("pod_name", podName));
-
-                    final Flowable<JsonObject> cachedPods = pods.cache();
-
-                    cachedPods.count()
-                            .map(podCount -> new CustomMetric.Builder()
-                                    .withMetricName("pod")
-                                    .withValue(podCount)
-                                    .withAggregations(emptyList())
-                                    .withTags(tags)
-                                    .build())
-                            .subscribe(this::sendMetric, e -> log().error("Failed to convert count metrics for pods", e));
-
-                    cachedPods
-                            .first(new JsonObject())
-                            .map(pod -> pod.getJsonObject("spec"))
-                            .flatMapObservable(podSpec -> {
-                                final JsonArray containers = podSpec.getJsonArray("containers");
-                                final String nodeName = podSpec.getString("nodeName");
-                                return Observable.fromIterable(containers)
-                                        .cast(JsonObject.class)
-                                        .flatMap(container -> getContainerResourceMetrics(tags, container, nodeName));
-                            })
-                            .subscribe(this::sendMetric, e -> log().error("Failed to convert resource metrics for pods", e));
-                }, e -> log().error("Failed to convert metrics for pods", e));
+    private Flowable<NodeInfo> getNodeMetadata() {
+        return track(nodes.list());
     }
 
-    private ObservableSource<? extends CustomMetric> getContainerResourceMetrics(ArrayList<Pair<String, String>> tags, JsonObject container, String nodeName) {
-        final String containerName = container.getString("name");
-        final JsonObject resources = container.getJsonObject("resources");
+    private Completable getPodMetrics() {
+        if (!shard.ownsClusterSources()) {
+            return Completable.complete();
+        }
+
+        // Pods are counted per workload as they are listed, keeping the first pod of each for its resources
+        return track(pods.list())
+                .reduceWith(LinkedHashMap<String, PodGroup>::new, (groups, pod) -> {
+                    final String workload = getWorkloadName(pod);
+                    PodGroup group = groups.get(workload);
+
+                    if (group == null) {
+                        group = new PodGroup(pod);
+                        groups.put(workload, group);
+                    }
+                    group.count++;
+                    return groups;
+                })
+                .doOnSuccess(groups -> groups.forEach(this::sendPodMetrics))
+                .ignoreElement()
+                .doOnError(e -> log().error("Failed to convert metrics for pods", e))
+                .onErrorComplete();
+    }
+
+    private void sendPodMetrics(String workload, PodGroup group) {
+        final ArrayList<Pair<String, String>> tags = Lists.newArrayList(new Pair<>("pod_name", workload));
+
+        sendChanged(new CustomMetric.Builder()
+                .withMetricName("pod")
+                .withValue(group.count)
+                .withAggregations(emptyList())
+                .withTags(tags)
+                .build(), Priority.HIGH);
+
+        try {
+            for (ContainerInfo container : group.pod.getContainers()) {
+                for (CustomMetric metric : getContainerResourceMetrics(tags, container, group.pod.getNodeName())) {
+                    sendChanged(metric, Priority.HIGH);
+                }
+            }
+        } catch (RuntimeException e) {
+            log().error("Failed to convert resource metrics for pods", e);
+        }
+    }
+
+    private List<CustomMetric> getContainerResourceMetrics(List<Pair<String, String>> tags, ContainerInfo container, String nodeName) {
+        final String containerName = container.getName();
 
         final ArrayList<Pair<String, String>> containerTags = new ArrayList<>(tags);
         containerTags.add(new Pair<>("container_name", containerName));
@@ -194,71 +363,125 @@ public class NodeMetricsCollector implements Loggable {
             containerTags.add(new Pair<>("node", nodeName));
         }
 
-        final JsonObject limits = resources.getJsonObject("limits", new JsonObject());
-        final JsonObject requests = resources.getJsonObject("requests", new JsonObject());
-
-        return Observable.fromArray(
+        return Arrays.asList(
                 new CustomMetric.Builder()
                         .withMetricName("pod.cpu.limit")
-                        .withValue(ResourceQuantityParser.parseCpuResource(limits.getString("cpu", "")))
+                        .withValue(ResourceQuantityParser.parseCpuResource(container.getCpuLimit()))
                         .withTags(containerTags).withAggregations(emptyList())
                         .build(),
                 new CustomMetric.Builder()
                         .withMetricName("pod.memory.limit")
-                        .withValue(ResourceQuantityParser.parseMemoryResource(limits.getString("memory", "")))
+                        .withValue(ResourceQuantityParser.parseMemoryResource(container.getMemoryLimit()))
                         .withTags(containerTags).withAggregations(emptyList())
                         .build(),
                 new CustomMetric.Builder()
                         .withMetricName("pod.cpu.request")
-                        .withValue(ResourceQuantityParser.parseCpuResource(requests.getString("cpu", "")))
+                        .withValue(ResourceQuantityParser.parseCpuResource(container.getCpuRequest()))
                         .withTags(containerTags).withAggregations(emptyList())
                         .build(),
                 new CustomMetric.Builder()
                         .withMetricName("pod.memory.request")
-                        .withValue(ResourceQuantityParser.parseMemoryResource(requests.getString("memory", "")))
+                        .withValue(ResourceQuantityParser.parseMemoryResource(container.getMemoryRequest()))
                         .withTags(containerTags).withAggregations(emptyList())
                         .build());
     }
 
-    private String trimPodGeneratedName(JsonObject pod) {
-        final String string = pod.getJsonObject(METADATA).getString(NAME);
-        return POD_GENERATED.matcher(string).replaceAll("");
+    /**
+     * @return the name of the workload controlling a pod, the deployment of its replica set, or else the name of the
+     * pod without its generated suffixes. Replica sets not named like those of deployments keep their name.
+     */
+    private static String getWorkloadName(PodInfo pod) {
+        final String owner = pod.getOwnerName();
+
+        if (owner == null) {
+            return POD_GENERATED.matcher(pod.getName()).replaceAll("");
+        }
+
+        if (REPLICA_SET.equals(pod.getOwnerKind())) {
+            // Replica sets of deployments are named after the deployment and the hash of its pod template
+            return POD_TEMPLATE_HASH.matcher(owner).replaceFirst("");
+        }
+
+        return owner;
     }
 
     private void buildUsageMetrics(String name, JsonObject json, List<Pair<String, String>> tags) {
         final JsonObject usage = json.getJsonObject("usage");
 
-        final long cpu = Long.parseLong(usage.getString("cpu").replaceAll("\\D+", ""));
-        final long memory = Long.parseLong(usage.getString("memory").replaceAll("\\D+", ""));
+        // Usage is in millicores and bytes, like the resource limits and requests of pods
+        sendUsageMetric(name + ".cpu", ResourceQuantityParser.parseCpuUsage(usage.getString("cpu")), tags);
+        sendUsageMetric(name + ".memory", ResourceQuantityParser.parseMemoryUsage(usage.getString("memory")), tags);
+    }
 
-        sendMetric(new CustomMetric.Builder()
-                .withMetricName(name + ".cpu")
-                .withValue(cpu).withTags(tags)
-                .withMetricType(MetricType.COUNTER)
-                .build());
+    private void sendUsageMetric(String metricName, double value, List<Pair<String, String>> tags) {
+        if (Double.isNaN(value)) {
+            log().warn("Dropping {0} with an invalid quantity", metricName);
+            return;
+        }
 
         sendMetric(new CustomMetric.Builder()
-                .withMetricName(name + ".memory")
-                .withValue(memory).withTags(tags)
-                .withMetricType(MetricType.COUNTER)
+                .withMetricName(metricName)
+                .withValue(value).withTags(tags)
+                // Usage is a reading at the time of the sample, not a total
+                .withMetricType(MetricType.GAUGE)
                 .build());
     }
 
+    /**
+     * Sends a metric of the highest priority, like pod resources and metrics of the collector itself
+     */
     private void sendMetric(CustomMetric metric) {
-        try {
-            eventBus.send(CustomMetricsConsumer.ADDRESS, metric);
-        } catch (Throwable t) {
-            log().error("Failed to send metric: {0}", t, metric.toMetricLine());
+        sendMetric(metric, Priority.HIGH);
+    }
+
+    /**
+     * Converts a scraped counter once its series has a previous sample, so rollups sum the increases of their series
+     * rather than their totals, and sends it unless it is rolled up or its series is past the cardinality limits. The
+     * series is fingerprinted once for the counters, the limits and the deltas, and only when one of them is enabled.
+     */
+    private void sendScraped(CustomMetric metric, Priority priority) {
+        final long fingerprint = fingerprinted ? Fingerprints.of(metric) : 0;
+        // Counters converted keep the name and tags, so their series keeps its fingerprint
+        final CustomMetric converted = counters.convert(metric, fingerprint);
+
+        if (converted != null && rollups.accumulate(converted) && cardinalityGuard.admit(converted, fingerprint) != null) {
+            sendChanged(converted, fingerprint, priority);
+        }
+    }
+
+    private void sendChanged(CustomMetric metric, Priority priority) {
+        sendChanged(metric, deltas.isEnabled() ? Fingerprints.of(metric) : 0, priority);
+    }
+
+    /**
+     * Sends a metric unless its series has the value it was last sent with, and is not due its heartbeat. The value of
+     * a metric dropped by the emitter is forgotten, so its series is sent again by the next cycle.
+     */
+    private void sendChanged(CustomMetric metric, long fingerprint, Priority priority) {
+        if (deltas.changed(metric, fingerprint) && !sendMetric(metric, priority)) {
+            deltas.forget(fingerprint);
         }
     }
 
+    /**
+     * @return whether the emitter accepted the metric, rather than dropping it with its queue full
+     */
+    private boolean sendMetric(CustomMetric metric, Priority priority) {
+        final boolean accepted = emitter.emit(metric, priority);
+
+        if (accepted) {
+            samplesSent.incrementAndGet();
+        }
+        return accepted;
+    }
+
     private ArrayList<Pair<String, String>> buildContainerTags(JsonObject container) {
         return Lists.newArrayList(new Pair<>("pod_name", container.getString("name")));
     }
 
-    private List<Pair<String, String>> buildNodeTags(JsonObject node) {
-        final String name = node.getString(NAME);
-        final String role = node.getJsonObject(LABELS).getString(KUBERNETES_IO_ROLE);
+    private List<Pair<String, String>> buildNodeTags(NodeInfo node) {
+        final String name = node.getName();
+        final String role = node.getLabels().get(KUBERNETES_IO_ROLE);
         final List<Pair<String, String>> nodeTags = Lists.newArrayList(new Pair<>("node", name), new Pair<>(ROLE, role));
 
         nodeTagsMap.put(name, nodeTags);
@@ -271,4 +494,16 @@ public class NodeMetricsCollector implements Loggable {
                 .map(entry -> new Pair<>(entry.getKey(), (String) entry.getValue()))
                 .collect(Collectors.toList());
     }
+
+    /**
+     * The pods of a workload, counted, and the first of them, whose resources stand for those of the workload
+     */
+    private static final class PodGroup {
+        private final PodInfo pod;
+        private long count;
+
+        private PodGroup(PodInfo pod) {
+            this.pod = pod;
+        }
+    }
 }
@@ -0,0 +1,297 @@
+package com.statful.collector.k8s.cardinality;
+
+import com.statful.client.CustomMetric;
+import com.statful.client.MetricType;
+import com.statful.collector.k8s.utils.Fingerprints;
+import com.statful.collector.k8s.utils.Loggable;
+import com.statful.utils.Pair;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Limits the number of distinct series, tag sets of a metric, sent in a collection cycle, for each metric and for
+ * all of them together, so a label explosion of an exporter does not multiply what is sent.
+ * <p>
+ * Series admitted are kept as hashes, so a series already admitted keeps passing, and the memory of each metric is
+ * bounded by its limit. Samples of new series past a limit are dropped, or collapsed into a single series of the
+ * metric tagged {@code __overflow__}, sent once the cycle completes with their count and sum. The distinct series of
+ * each metric are estimated with a HyperLogLog, including those overflowing, and the metrics overflowing the most are
+ * reported once the cycle completes. Without limits, the default, every sample is admitted as is.
+ */
+public class CardinalityGuard implements Loggable {
+    static final Pair<String, String> OVERFLOW_TAG = new Pair<>("__overflow__", "true");
+    static final List<Pair<String, String>> OVERFLOW_COUNT_TAGS = Arrays.asList(OVERFLOW_TAG, new Pair<>("aggregation", "count"));
+    static final List<Pair<String, String>> OVERFLOW_SUM_TAGS = Arrays.asList(OVERFLOW_TAG, new Pair<>("aggregation", "sum"));
+
+    private static final String COLLECTOR_CARDINALITY_LIMIT_METRIC = "collector.cardinality.limit.metric";
+    private static final String COLLECTOR_CARDINALITY_LIMIT = "collector.cardinality.limit";
+    private static final String COLLECTOR_CARDINALITY_OVERFLOW = "collector.cardinality.overflow";
+    private static final String COLLECTOR_CARDINALITY_TOP = "collector.cardinality.top";
+    private static final int DEFAULT_METRIC_LIMIT = 0;
+    private static final int DEFAULT_LIMIT = 0;
+    private static final String DEFAULT_OVERFLOW = "collapse";
+    private static final int DEFAULT_TOP = 10;
+    // About 3% of error in 1KB per metric
+    private static final int PRECISION = 10;
+    // Extra counters keep the estimates of the top metrics accurate
+    private static final int COUNTERS_PER_TOP = 4;
+
+    private final int metricLimit;
+    private final int limit;
+    private final boolean collapse;
+    private final int top;
+    private final boolean enabled;
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+    private final Map<String, Overflow> overflows = new ConcurrentHashMap<>();
+    private final AtomicInteger admitted = new AtomicInteger();
+    private final SpaceSaving offenders;
+
+    /**
+     * @param metricLimit series of each metric, 0 for no limit
+     * @param limit       series of all metrics, 0 for no limit
+     * @param collapse    whether samples past the limits are sent as an overflow series rather than dropped
+     * @param top         number of metrics overflowing the most that are reported
+     */
+    public CardinalityGuard(int metricLimit, int limit, boolean collapse, int top) {
+        this.metricLimit = metricLimit <= 0 ? Integer.MAX_VALUE : metricLimit;
+        this.limit = limit <= 0 ? Integer.MAX_VALUE : limit;
+        this.collapse = collapse;
+        this.top = top;
+        this.enabled = metricLimit > 0 || limit > 0;
+        this.offenders = new SpaceSaving(Math.max(1, top * COUNTERS_PER_TOP));
+    }
+
+    public static CardinalityGuard fromConfig(JsonObject config) {
+        final String overflow = config.getString(COLLECTOR_CARDINALITY_OVERFLOW, DEFAULT_OVERFLOW);
+
+        if (!"collapse".equals(overflow) && !"drop".equals(overflow)) {
+            throw new IllegalArgumentException("Unknown cardinality overflow, expected collapse or drop: " + overflow);
+        }
+
+        return new CardinalityGuard(config.getInteger(COLLECTOR_CARDINALITY_LIMIT_METRIC, DEFAULT_METRIC_LIMIT),
+                config.getInteger(COLLECTOR_CARDINALITY_LIMIT, DEFAULT_LIMIT),
+                "collapse".equals(overflow),
+                config.getInteger(COLLECTOR_CARDINALITY_TOP, DEFAULT_TOP));
+    }
+
+    /**
+     * Safe to call from any thread.
+     *
+     * @param fingerprint the {@link Fingerprints fingerprint} of the series of the metric
+     * @return the metric while its series is within the limits, otherwise null, as it is dropped or collapsed into the
+     * overflow series of the metric
+     */
+    public CustomMetric admit(CustomMetric metric, long fingerprint) {
+        if (!enabled) {
+            return metric;
+        }
+
+        final Series metricSeries = series.computeIfAbsent(metric.getMetricName(), $ -> new Series());
+
+        synchronized (metricSeries) {
+            metricSeries.sketch.add(fingerprint);
+
+            if (metricSeries.hashes.contains(fingerprint)) {
+                return metric;
+            }
+
+            if (metricSeries.hashes.size() < metricLimit && reserve()) {
+                metricSeries.hashes.add(fingerprint);
+                return metric;
+            }
+        }
+
+        offenders.add(metric.getMetricName());
+
+        if (collapse) {
+            overflows.computeIfAbsent(metric.getMetricName(), $ -> new Overflow(metric.getMetricType())).add(metric.getValue());
+        }
+
+        return null;
+    }
+
+    /**
+     * @return whether series are limited, otherwise every metric is admitted without its fingerprint
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return when a limit was reached in the cycle, the count and sum of the overflow series of each metric, the
+     * series admitted, and for the metrics overflowing the most their samples past the limits and their estimated
+     * distinct series
+     */
+    public List<CustomMetric> report() {
+        final List<Map.Entry<String, Long>> worst = offenders.top(top);
+
+        if (worst.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final List<CustomMetric> metrics = new ArrayList<>(overflows.size() * 2 + worst.size() * 2 + 1);
+
+        overflows.forEach((name, overflow) -> {
+            metrics.add(metric(name, overflow.count.sum(), OVERFLOW_COUNT_TAGS, MetricType.COUNTER));
+            metrics.add(new CustomMetric.Builder()
+                    .withMetricName(name)
+                    .withValue(overflow.sum.sum())
+                    .withTags(OVERFLOW_SUM_TAGS)
+                    .withMetricType(overflow.type)
+                    .build());
+        });
+        metrics.add(metric("cardinality.series.admitted", admitted.get(), Collections.emptyList(), MetricType.GAUGE));
+
+        for (Map.Entry<String, Long> offender : worst) {
+            final List<Pair<String, String>> tags = Collections.singletonList(new Pair<>("metric", offender.getKey()));
+            final Series metricSeries = series.get(offender.getKey());
+            final long estimate;
+
+            synchronized (metricSeries) {
+                estimate = metricSeries.sketch.estimate();
+            }
+
+            metrics.add(metric("cardinality.overflow", offender.getValue(), tags, MetricType.COUNTER));
+            metrics.add(metric("cardinality.series", estimate, tags, MetricType.GAUGE));
+        }
+
+        log().warn("Metrics over the cardinality limits, with their samples overflowing: {0}", worst.stream()
+                .map(offender -> offender.getKey() + " " + offender.getValue())
+                .collect(Collectors.joining(", ")));
+
+        return metrics;
+    }
+
+    /**
+     * Forgets the series of the cycle, so the next one is limited on its own
+     */
+    public void reset() {
+        series.clear();
+        overflows.clear();
+        admitted.set(0);
+        offenders.clear();
+    }
+
+    private boolean reserve() {
+        while (true) {
+            final int current = admitted.get();
+
+            if (current >= limit) {
+                return false;
+            }
+            if (admitted.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private static CustomMetric metric(String name, long value, List<Pair<String, String>> tags, MetricType type) {
+        return new CustomMetric.Builder()
+                .withMetricName(name)
+                .withValue(value)
+                .withTags(tags)
+                .withMetricType(type)
+                .build();
+    }
+
+    private static final class Series {
+        private final LongSet hashes = new LongSet();
+        private final HyperLogLog sketch = new HyperLogLog(PRECISION);
+    }
+
+    private static final class Overflow {
+        private final MetricType type;
+        private final LongAdder count = new LongAdder();
+        private final DoubleAdder sum = new DoubleAdder();
+
+        private Overflow(MetricType type) {
+            this.type = type;
+        }
+
+        private void add(Number value) {
+            count.increment();
+            sum.add(value.doubleValue());
+        }
+    }
+
+    /**
+     * Open addressing set of hashes, without boxing them
+     */
+    private static final class LongSet {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private long[] slots = new long[INITIAL_CAPACITY];
+        private boolean containsZero;
+        private int size;
+
+        private int size() {
+            return size;
+        }
+
+        private boolean contains(long value) {
+            if (value == 0) {
+                return containsZero;
+            }
+
+            for (int slot = slot(value, slots.length); slots[slot] != 0; slot = (slot + 1) & (slots.length - 1)) {
+                if (slots[slot] == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void add(long value) {
+            if (value == 0) {
+                if (!containsZero) {
+                    containsZero = true;
+                    size++;
+                }
+                return;
+            }
+
+            if ((size + 1) * 2 > slots.length) {
+                final long[] previous = slots;
+
+                slots = new long[previous.length * 2];
+                for (long previousValue : previous) {
+                    if (previousValue != 0) {
+                        insert(previousValue);
+                    }
+                }
+            }
+
+            if (insert(value)) {
+                size++;
+            }
+        }
+
+        private boolean insert(long value) {
+            int slot = slot(value, slots.length);
+
+            while (slots[slot] != 0) {
+                if (slots[slot] == value) {
+                    return false;
+                }
+                slot = (slot + 1) & (slots.length - 1);
+            }
+
+            slots[slot] = value;
+            return true;
+        }
+
+        private static int slot(long value, int length) {
+            return (int) (value ^ (value >>> 32)) & (length - 1);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.statful.collector.k8s.cardinality;
+
+import java.util.Arrays;
+
+/**
+ * Estimates the number of distinct hashes added in a fixed amount of memory, one byte per register, with a standard
+ * error of about {@code 1.04 / sqrt(2^precision)}.
+ */
+final class HyperLogLog {
+    private final int precision;
+    private final byte[] registers;
+
+    /**
+     * @param precision number of hash bits selecting a register, between 4 and 16
+     */
+    HyperLogLog(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("Precision must be between 4 and 16: " + precision);
+        }
+
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * @param hash a well mixed 64 bit hash of the value
+     */
+    void add(long hash) {
+        final int index = (int) (hash >>> (64 - precision));
+        // The marker bit bounds the rank when every remaining bit is zero
+        final int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    long estimate() {
+        final int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+
+        final double estimate = alpha(m) * m * m / sum;
+
+        // Small cardinalities are counted more precisely from the registers still empty
+        if (estimate <= 2.5 * m && zeros > 0) {
+            return Math.round(m * Math.log((double) m / zeros));
+        }
+        return Math.round(estimate);
+    }
+
+    void clear() {
+        Arrays.fill(registers, (byte) 0);
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+}
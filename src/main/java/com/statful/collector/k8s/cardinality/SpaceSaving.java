@@ -0,0 +1,61 @@
+package com.statful.collector.k8s.cardinality;
+
+import java.util.AbstractMap;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Counts the most frequent keys of a stream in a fixed number of counters. A key not counted takes over the counter
+ * of the smallest count, inheriting that count as its possible overestimate, so any key more frequent than the
+ * total divided by the number of counters is always kept.
+ */
+final class SpaceSaving {
+    private final int capacity;
+    private final Map<String, long[]> counters;
+
+    SpaceSaving(int capacity) {
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    synchronized void add(String key) {
+        final long[] counter = counters.get(key);
+
+        if (counter != null) {
+            counter[0]++;
+        } else if (counters.size() < capacity) {
+            counters.put(key, new long[]{1});
+        } else {
+            String smallest = null;
+            long smallestCount = Long.MAX_VALUE;
+
+            for (Map.Entry<String, long[]> entry : counters.entrySet()) {
+                if (entry.getValue()[0] < smallestCount) {
+                    smallest = entry.getKey();
+                    smallestCount = entry.getValue()[0];
+                }
+            }
+
+            counters.remove(smallest);
+            counters.put(key, new long[]{smallestCount + 1});
+        }
+    }
+
+    /**
+     * @return up to the given number of keys with the largest counts, largest first
+     */
+    synchronized List<Map.Entry<String, Long>> top(int count) {
+        return counters.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, long[]> entry) -> entry.getValue()[0]).reversed())
+                .limit(count)
+                .<Map.Entry<String, Long>>map(entry -> new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue()[0]))
+                .collect(Collectors.toList());
+    }
+
+    synchronized void clear() {
+        counters.clear();
+    }
+}
@@ -0,0 +1,115 @@
+package com.statful.collector.k8s.clients;
+
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
+import io.vertx.reactivex.core.buffer.Buffer;
+import io.vertx.reactivex.core.eventbus.EventBus;
+import io.vertx.reactivex.core.eventbus.Message;
+import io.vertx.reactivex.core.eventbus.MessageConsumer;
+
+import java.util.UUID;
+
+/**
+ * Streams response bodies over the event bus as a sequence of buffer chunks.
+ * <p>
+ * The requester sends a private chunk address along with the request. The responder replies with the response headers
+ * and waits for the requester to subscribe to the body, then sends one chunk at a time and only sends the next one
+ * after the previous was acknowledged, which the requester does when its subscriber asks for more, so at most one
+ * chunk is in flight and memory does not depend on the body size.
+ */
+public final class BufferStream {
+    private static final String CHUNK_ADDRESS_HEADER = "chunk-address";
+
+    private static final String END_HEADER = "end";
+    private static final String ERROR_HEADER = "error";
+
+    private BufferStream() {
+    }
+
+    /**
+     * Requests a stream from the given address. The returned single is cold, each subscription issues a new request.
+     */
+    public static Single<Response> request(EventBus eventBus, String address, String body) {
+        return Single.defer(() -> {
+            final String chunkAddress = address + "." + UUID.randomUUID();
+            final DeliveryOptions options = new DeliveryOptions().addHeader(CHUNK_ADDRESS_HEADER, chunkAddress);
+
+            return eventBus.rxSend(address, body, options)
+                    .map(start -> new Response(eventBus, chunkAddress, start));
+        });
+    }
+
+    /**
+     * Replies to the requester of the given message with the given headers, then pipes the chunks once it subscribes
+     * to the body, waiting for each chunk to be acknowledged.
+     */
+    public static Completable respond(EventBus eventBus, Message<?> request, DeliveryOptions headers, Flowable<Buffer> chunks) {
+        return respond(eventBus, request, headers, new DeliveryOptions(), chunks);
+    }
+
+    /**
+     * Same as {@link #respond(EventBus, Message, DeliveryOptions, Flowable)}
+     *
+     * @param chunkOptions the options chunks are sent with, like the codec passing them on without a copy
+     */
+    public static Completable respond(EventBus eventBus, Message<?> request, DeliveryOptions headers, DeliveryOptions chunkOptions, Flowable<Buffer> chunks) {
+        final String chunkAddress = request.headers().get(CHUNK_ADDRESS_HEADER);
+
+        return request.rxReply(null, headers)
+                .flatMapCompletable(start -> chunks
+                        .concatMapSingle(chunk -> eventBus.rxSend(chunkAddress, chunk.getDelegate(), chunkOptions))
+                        .ignoreElements())
+                .doOnComplete(() -> eventBus.send(chunkAddress, io.vertx.core.buffer.Buffer.buffer(),
+                        new DeliveryOptions().addHeader(END_HEADER, "")))
+                .doOnError(error -> eventBus.send(chunkAddress, io.vertx.core.buffer.Buffer.buffer(),
+                        new DeliveryOptions().addHeader(ERROR_HEADER, String.valueOf(error.getMessage()))));
+    }
+
+    private static <T> Message<T> checkError(Message<T> message) {
+        if (message.headers().contains(ERROR_HEADER)) {
+            throw new ReplyException(ReplyFailure.RECIPIENT_FAILURE, message.headers().get(ERROR_HEADER));
+        }
+        return message;
+    }
+
+    public static class Response {
+        private final EventBus eventBus;
+        private final String chunkAddress;
+        private final Message<?> start;
+
+        protected Response(EventBus eventBus, String chunkAddress, Message<?> start) {
+            this.eventBus = eventBus;
+            this.chunkAddress = chunkAddress;
+            this.start = start;
+        }
+
+        public String getHeader(String name) {
+            return start.headers().get(name);
+        }
+
+        /**
+         * Starts streaming the body, which can only be subscribed once. The responder gives up if it is not
+         * subscribed within the event bus send timeout.
+         */
+        public Flowable<Buffer> body() {
+            return Flowable.defer(() -> {
+                final MessageConsumer<io.vertx.core.buffer.Buffer> consumer = eventBus.consumer(chunkAddress);
+
+                final Flowable<Buffer> chunks = consumer.toFlowable()
+                        .map(BufferStream::checkError)
+                        .takeWhile(message -> !message.headers().contains(END_HEADER))
+                        .map(message -> {
+                            message.reply(null);
+                            return Buffer.newInstance(message.body());
+                        });
+
+                // The consumer is registered once the chunks are subscribed, only then the responder may start
+                return chunks.mergeWith(Completable.fromAction(() -> start.reply(null)));
+            });
+        }
+    }
+}
@@ -1,9 +1,21 @@
 package com.statful.collector.k8s.clients;
 
+import com.statful.collector.k8s.domain.KubernetesObject;
+import com.statful.collector.k8s.domain.ListPage;
+import com.statful.collector.k8s.domain.NodeInfo;
+import com.statful.collector.k8s.domain.PodInfo;
+import com.statful.collector.k8s.domain.WatchEvent;
 import com.statful.collector.k8s.utils.Loggable;
+import com.statful.converter.util.LineAssembler;
+import com.statful.converter.prometheus.PrometheusProtobufParser;
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Single;
+import io.reactivex.processors.UnicastProcessor;
 import io.vertx.core.Future;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.net.PemTrustOptions;
@@ -13,10 +25,15 @@ import io.vertx.reactivex.core.AbstractVerticle;
 import io.vertx.reactivex.core.buffer.Buffer;
 import io.vertx.reactivex.core.eventbus.EventBus;
 import io.vertx.reactivex.core.eventbus.Message;
+import io.vertx.reactivex.core.http.HttpClient;
+import io.vertx.reactivex.core.http.HttpClientRequest;
+import io.vertx.reactivex.core.http.HttpClientResponse;
 import io.vertx.reactivex.ext.web.client.HttpRequest;
 import io.vertx.reactivex.ext.web.client.HttpResponse;
 import io.vertx.reactivex.ext.web.client.WebClient;
 
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Function;
 
 public class KubeApi extends AbstractVerticle implements Loggable {
@@ -25,6 +42,9 @@ public class KubeApi extends AbstractVerticle implements Loggable {
     private static final String KUBERNETES_API_PORT_KEY = "kubernetes.api.port";
     private static final String KUBERNETES_API_CERT_KEY = "kubernetes.api.cert";
     private static final String KUBERNETES_API_TOKEN_KEY = "kubernetes.api.token";
+    private static final String PROTOBUF_DISABLED_KEY = "collector.protobuf.disabled";
+    private static final String LIST_PAGE_SIZE_KEY = "collector.list.page.size";
+    private static final String LIST_PROTOBUF_ENABLED_KEY = "collector.list.protobuf.enabled";
 
     private static final String DEFAULT_KUBE_API_HOST = "kubernetes.default.svc.cluster.local";
     private static final String DEFAULT_KUBE_API_CERT_LOCATION = "/var/run/secrets/kubernetes.io/serviceaccount/ca.crt";
@@ -36,6 +56,11 @@ public class KubeApi extends AbstractVerticle implements Loggable {
     private static final String CADVISOR_METRICS = "/proxy/metrics/cadvisor";
     private static final String METRICS_SERVER_PODS = "/apis/metrics.k8s.io/v1beta1/pods/";
     private static final String METRICS_SERVER_NODES = "/apis/metrics.k8s.io/v1beta1/nodes/";
+    private static final String WATCH_NODE = "/api/v1/nodes";
+    private static final String WATCH_POD = "/api/v1/pods";
+    private static final String WATCH_QUERY = "?watch=true&allowWatchBookmarks=true&timeoutSeconds=";
+    private static final String RESOURCE_VERSION_QUERY = "&resourceVersion=";
+    private static final int MIN_WATCH_TIMEOUT_SECONDS = 300;
 
     private static final String GET_NODES = "getNodes";
     private static final String GET_PODS = "getPods";
@@ -43,14 +68,28 @@ public class KubeApi extends AbstractVerticle implements Loggable {
     private static final String GET_CADVISOR_NODE_METRICS = "getCAdvisorNodeMetrics";
     private static final String GET_METRICS_SERVER_NODE_METRICS = "getMetricsServerNodeMetrics";
     private static final String GET_METRICS_SERVER_PODS_METRICS = "getMetricsServerPodsMetrics";
+    private static final String WATCH_NODES = "watchNodes";
+    private static final String WATCH_PODS = "watchPods";
+
+    // Same preference as the prometheus server, text is still accepted from kubelets that do not support protobuf
+    private static final String METRICS_ACCEPT = PrometheusProtobufParser.CONTENT_TYPE + ";q=0.7,text/plain;version=0.0.4;q=0.3,*/*;q=0.1";
+    private static final String JSON_ACCEPT = "application/json";
+    // Api servers without protobuf support for a resource answer json
+    private static final String LIST_ACCEPT = KubernetesProtobufDecoder.CONTENT_TYPE + "," + JSON_ACCEPT;
 
     private static final int SSL_PORT = 443;
     private static final int DEFAULT_KUBE_API_PORT = SSL_PORT;
+    private static final int DEFAULT_LIST_PAGE_SIZE = 500;
 
+    private HttpClient httpClient;
     private WebClient client;
     private boolean isDevLoggingEnabled;
     private Buffer token;
     private boolean useAuthentication;
+    private boolean isProtobufDisabled;
+    private int listPageSize;
+    private boolean isListProtobufEnabled;
+    private LocalCodecs localCodecs;
 
     private JsonObject config;
 
@@ -61,10 +100,14 @@ public class KubeApi extends AbstractVerticle implements Loggable {
     @Override
     public void start(Future<Void> startFuture) {
         isDevLoggingEnabled = config.getBoolean(DEV_MODE_KEY, Boolean.FALSE);
+        isProtobufDisabled = config.getBoolean(PROTOBUF_DISABLED_KEY, Boolean.FALSE);
+        listPageSize = config.getInteger(LIST_PAGE_SIZE_KEY, DEFAULT_LIST_PAGE_SIZE);
+        isListProtobufEnabled = config.getBoolean(LIST_PROTOBUF_ENABLED_KEY, Boolean.FALSE);
         final String host = config.getString(KUBERNETES_API_HOST_KEY, DEFAULT_KUBE_API_HOST);
         final int port = config.getInteger(KUBERNETES_API_PORT_KEY, DEFAULT_KUBE_API_PORT);
 
         initWebClient(config, host, port);
+        localCodecs = LocalCodecs.register(vertx.eventBus().getDelegate(), deploymentID());
         registerConsumers();
 
         if (port == SSL_PORT) {
@@ -74,6 +117,11 @@ public class KubeApi extends AbstractVerticle implements Loggable {
         }
     }
 
+    @Override
+    public void stop() {
+        localCodecs.unregister();
+    }
+
     private void readToken(Future<Void> startFuture, JsonObject config) {
         useAuthentication = true;
         final String tokenLocation = config.getString(KUBERNETES_API_TOKEN_KEY, DEFAULT_KUBE_API_TOKEN_LOCATION);
@@ -90,7 +138,8 @@ public class KubeApi extends AbstractVerticle implements Loggable {
     private void initWebClient(JsonObject config, String host, int port) {
         WebClientOptions options = buildWebClientOptions(config, host, port);
 
-        client = WebClient.create(vertx, options);
+        httpClient = vertx.createHttpClient(options);
+        client = WebClient.wrap(httpClient, options);
     }
 
     private WebClientOptions buildWebClientOptions(JsonObject config, String host, int port) {
@@ -121,22 +170,46 @@ public class KubeApi extends AbstractVerticle implements Loggable {
         vertx.eventBus().consumer(GET_CADVISOR_NODE_METRICS, this::getCAdvisorNodeMetrics);
         vertx.eventBus().consumer(GET_METRICS_SERVER_NODE_METRICS, this::getMetricsServerNodeMetrics);
         vertx.eventBus().consumer(GET_METRICS_SERVER_PODS_METRICS, this::getMetricsServerPodsMetrics);
+        vertx.eventBus().consumer(WATCH_NODES, this::watchNodes);
+        vertx.eventBus().consumer(WATCH_PODS, this::watchPods);
     }
 
     private void getNodes(Message<String> message) {
-        request(BASE_NODE, message, HttpResponse::bodyAsJsonObject);
+        listPage(BASE_NODE, message, KubernetesJsonDecoder::decodeNodeList, KubernetesProtobufDecoder::decodeNodeList);
     }
 
     private void getPods(Message<String> message) {
-        request(BASE_POD, message, HttpResponse::bodyAsJsonObject);
+        listPage(BASE_POD, message, KubernetesJsonDecoder::decodePodList, KubernetesProtobufDecoder::decodePodList);
     }
 
     private void getNodeMetrics(Message<String> message) {
-        request(BASE_NODE + message.body() + METRICS, message, HttpResponse::bodyAsString);
+        stream(BASE_NODE + message.body() + METRICS, message, getMetricsAccept());
     }
 
     private void getCAdvisorNodeMetrics(Message<String> message) {
-        request(BASE_NODE + message.body() + CADVISOR_METRICS, message, HttpResponse::bodyAsString);
+        stream(BASE_NODE + message.body() + CADVISOR_METRICS, message, getMetricsAccept());
+    }
+
+    private void watchNodes(Message<String> message) {
+        stream(WATCH_NODE + watchQuery(message.body()), message, JSON_ACCEPT);
+    }
+
+    private void watchPods(Message<String> message) {
+        stream(WATCH_POD + watchQuery(message.body()), message, JSON_ACCEPT);
+    }
+
+    /**
+     * The api server ends the watch after a timeout between 5 and 10 minutes, randomized like the kubernetes clients
+     * do, so watches are renewed on a live connection and the watches of several collectors do not end together
+     */
+    private static String watchQuery(String resourceVersion) {
+        final int timeoutSeconds = MIN_WATCH_TIMEOUT_SECONDS + ThreadLocalRandom.current().nextInt(MIN_WATCH_TIMEOUT_SECONDS);
+
+        return WATCH_QUERY + timeoutSeconds + RESOURCE_VERSION_QUERY + resourceVersion;
+    }
+
+    private String getMetricsAccept() {
+        return isProtobufDisabled ? null : METRICS_ACCEPT;
     }
 
     private void getMetricsServerNodeMetrics(Message<String> message) {
@@ -147,13 +220,46 @@ public class KubeApi extends AbstractVerticle implements Loggable {
         request(METRICS_SERVER_PODS, message, HttpResponse::bodyAsJsonObject);
     }
 
-    private <T> void request(String url, Message<String> message, Function<HttpResponse<Buffer>, T> mapper) {
+    /**
+     * Lists a page of at most the configured size, starting from the continue token in the message, if any. When
+     * enabled, the page is requested in protobuf, the decoder matching the content type of the response is used.
+     */
+    private <T extends KubernetesObject> void listPage(String url,
+                                                       Message<String> message,
+                                                       Function<byte[], ListPage<T>> jsonDecoder,
+                                                       Function<byte[], ListPage<T>> protobufDecoder) {
+        final HttpRequest<Buffer> request = client.get(url);
+
+        if (listPageSize > 0) {
+            request.addQueryParam("limit", String.valueOf(listPageSize));
+        }
+
+        if (message.body() != null && !message.body().isEmpty()) {
+            request.addQueryParam("continue", message.body());
+        }
+
+        if (isListProtobufEnabled) {
+            request.putHeader(HttpHeaders.ACCEPT.toString(), LIST_ACCEPT);
+        }
+
+        send(request, url, message, response -> KubernetesProtobufDecoder.isProtobuf(response.getHeader(HttpHeaders.CONTENT_TYPE.toString()))
+                ? protobufDecoder.apply(response.body().getBytes())
+                : jsonDecoder.apply(response.body().getBytes()), localCodecs.listPage());
+    }
+
+    private void request(String url, Message<String> message, Function<HttpResponse<Buffer>, JsonObject> mapper) {
+        send(client.get(url), url, message, mapper, localCodecs.json());
+    }
+
+    private <T> void send(HttpRequest<Buffer> request,
+                          String url,
+                          Message<String> message,
+                          Function<HttpResponse<Buffer>, T> mapper,
+                          DeliveryOptions replyOptions) {
         if (isDevLoggingEnabled) {
             log().info("{0} - {1} executed", HttpMethod.GET, url);
         }
 
-        final HttpRequest<Buffer> request = client.get(url);
-
         if (useAuthentication) {
             request.putHeader("Authorization", "Bearer " + token.toString());
         }
@@ -162,7 +268,60 @@ public class KubeApi extends AbstractVerticle implements Loggable {
                 .rxSend()
                 .doOnSuccess(response -> logResponse(url, response))
                 .map(response -> handleBody(response, mapper))
-                .subscribe(message::reply, error -> log().error("{0} - {1} failed", error, HttpMethod.GET, url));
+                .subscribe(body -> message.reply(body, replyOptions), error -> log().error("{0} - {1} failed", error, HttpMethod.GET, url));
+    }
+
+    private void stream(String url, Message<String> message, String accept) {
+        if (isDevLoggingEnabled) {
+            log().info("{0} - {1} executed", HttpMethod.GET, url);
+        }
+
+        final HttpClientRequest request = httpClient.get(url);
+
+        if (useAuthentication) {
+            request.putHeader("Authorization", "Bearer " + token.toString());
+        }
+
+        if (accept != null) {
+            request.putHeader(HttpHeaders.ACCEPT.toString(), accept);
+        }
+
+        request.toFlowable()
+                .firstOrError()
+                .flatMapCompletable(response -> streamBody(url, message, response))
+                .subscribe(() -> {
+                }, error -> {
+                    log().error("{0} - {1} failed", error, HttpMethod.GET, url);
+                    request.reset();
+                    // The status is kept, a watch has to list again when answered 410 Gone
+                    final int failureCode = error instanceof HttpStatusException
+                            ? ((HttpStatusException) error).getStatusCode()
+                            : HttpResponseStatus.INTERNAL_SERVER_ERROR.code();
+                    message.fail(failureCode, String.valueOf(error.getMessage()));
+                });
+
+        request.end();
+    }
+
+    private Completable streamBody(String url, Message<String> message, HttpClientResponse response) {
+        if (response.statusCode() != HttpResponseStatus.OK.code()) {
+            response.bodyHandler(body -> log().error("{0} - {1} executed response status code {2} {3} body {4}", HttpMethod.GET, url, response.statusCode(), response.statusMessage(), body));
+            return Completable.error(new HttpStatusException(response.statusCode()));
+        } else if (isDevLoggingEnabled) {
+            log().info("{0} - {1} executed response status code {2} {3}", HttpMethod.GET, url, response.statusCode(), response.statusMessage());
+        }
+
+        final DeliveryOptions headers = new DeliveryOptions();
+        final String contentType = response.getHeader(HttpHeaders.CONTENT_TYPE.toString());
+
+        if (contentType != null) {
+            headers.addHeader(HttpHeaders.CONTENT_TYPE.toString(), contentType);
+        }
+
+        // Nothing is read until the requester subscribes to the body
+        response.pause();
+
+        return BufferStream.respond(vertx.eventBus(), message, headers, localCodecs.buffer(), response.toFlowable());
     }
 
     private <T> T handleBody(HttpResponse<Buffer> response, Function<HttpResponse<Buffer>, T> mapper) {
@@ -188,26 +347,56 @@ public class KubeApi extends AbstractVerticle implements Loggable {
             this.eventBus = client;
         }
 
-        public Single<JsonObject> getNodes() {
-            return eventBus.<JsonObject>rxSend(KubeApi.GET_NODES, "")
-                    .map(Message::body);
+        /**
+         * @return the pages of the node list, each requested once the previous one arrived
+         */
+        public Flowable<ListPage<NodeInfo>> listNodes() {
+            return listPages(this::getNodes);
         }
 
-        public Single<JsonObject> getPods() {
-            return eventBus.<JsonObject>rxSend(KubeApi.GET_PODS, "")
-                    .map(Message::body);
+        /**
+         * @return the pages of the pod list, each requested once the previous one arrived
+         */
+        public Flowable<ListPage<PodInfo>> listPods() {
+            return listPages(this::getPods);
         }
 
-        public Single<String> getNodeMetrics(String node) {
-            return eventBus.<String>rxSend(KubeApi.GET_NODE_METRICS, node)
+        public Single<ListPage<NodeInfo>> getNodes(String continueToken) {
+            return eventBus.<ListPage<NodeInfo>>rxSend(KubeApi.GET_NODES, continueToken)
                     .map(Message::body);
         }
 
-        public Single<String> getCAdvisorNodeMetrics(String node) {
-            return eventBus.<String>rxSend(KubeApi.GET_CADVISOR_NODE_METRICS, node)
+        public Single<ListPage<PodInfo>> getPods(String continueToken) {
+            return eventBus.<ListPage<PodInfo>>rxSend(KubeApi.GET_PODS, continueToken)
                     .map(Message::body);
         }
 
+        private <T extends KubernetesObject> Flowable<ListPage<T>> listPages(io.reactivex.functions.Function<String, Single<ListPage<T>>> getPage) {
+            return Flowable.defer(() -> {
+                final UnicastProcessor<String> continueTokens = UnicastProcessor.create();
+                continueTokens.onNext("");
+
+                // The next page is requested while the current one is processed, at most two pages are held
+                return continueTokens
+                        .concatMapSingle(getPage)
+                        .doOnNext(page -> {
+                            if (page.isLast()) {
+                                continueTokens.onComplete();
+                            } else {
+                                continueTokens.onNext(page.getContinueToken());
+                            }
+                        });
+            });
+        }
+
+        public Single<BufferStream.Response> getNodeMetrics(String node) {
+            return BufferStream.request(eventBus, KubeApi.GET_NODE_METRICS, node);
+        }
+
+        public Single<BufferStream.Response> getCAdvisorNodeMetrics(String node) {
+            return BufferStream.request(eventBus, KubeApi.GET_CADVISOR_NODE_METRICS, node);
+        }
+
         public Single<JsonObject> getMetricsServerNodeMetrics(String node) {
             return eventBus.<JsonObject>rxSend(KubeApi.GET_METRICS_SERVER_NODE_METRICS, node)
                     .map(Message::body);
@@ -217,5 +406,38 @@ public class KubeApi extends AbstractVerticle implements Loggable {
             return eventBus.<JsonObject>rxSend(KubeApi.GET_METRICS_SERVER_PODS_METRICS, "")
                     .map(Message::body);
         }
+
+        /**
+         * @return the watch events of nodes since the resource version
+         */
+        public Flowable<WatchEvent<NodeInfo>> watchNodes(String resourceVersion) {
+            return watch(KubeApi.WATCH_NODES, resourceVersion, KubernetesJsonDecoder::decodeNodeEvent);
+        }
+
+        /**
+         * @return the watch events of pods since the resource version
+         */
+        public Flowable<WatchEvent<PodInfo>> watchPods(String resourceVersion) {
+            return watch(KubeApi.WATCH_PODS, resourceVersion, KubernetesJsonDecoder::decodePodEvent);
+        }
+
+        /**
+         * Decodes the stream of a watch, one json object per line, lines may be split across chunks
+         */
+        private <T extends KubernetesObject> Flowable<WatchEvent<T>> watch(String address,
+                                                                          String resourceVersion,
+                                                                          io.reactivex.functions.Function<String, WatchEvent<T>> decoder) {
+            return BufferStream.request(eventBus, address, resourceVersion)
+                    .flatMapPublisher(response -> {
+                        final LineAssembler lineAssembler = new LineAssembler();
+
+                        return response.body()
+                                .map(lineAssembler::append)
+                                .concatWith(Flowable.fromCallable(lineAssembler::flush));
+                    })
+                    .concatMapIterable(lines -> Arrays.asList(lines.split("\n")))
+                    .filter(line -> !line.isEmpty())
+                    .map(decoder);
+        }
     }
 }
@@ -0,0 +1,257 @@
+package com.statful.collector.k8s.clients;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.statful.collector.k8s.domain.ContainerInfo;
+import com.statful.collector.k8s.domain.KubernetesObject;
+import com.statful.collector.k8s.domain.ListPage;
+import com.statful.collector.k8s.domain.NodeInfo;
+import com.statful.collector.k8s.domain.PodInfo;
+import com.statful.collector.k8s.domain.WatchEvent;
+import io.vertx.core.json.DecodeException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Decodes pod and node lists and watch events of the api server from json with a streaming parser, keeping only the
+ * fields the collector reads: names, namespaces, node labels, node names and container resources. Every other field
+ * is skipped as it is parsed, without building a tree of the whole list.
+ */
+final class KubernetesJsonDecoder {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private KubernetesJsonDecoder() {
+    }
+
+    static ListPage<PodInfo> decodePodList(byte[] bytes) {
+        return decodeList(bytes, false, ObjectFields::toPod);
+    }
+
+    static ListPage<NodeInfo> decodeNodeList(byte[] bytes) {
+        return decodeList(bytes, true, ObjectFields::toNode);
+    }
+
+    static WatchEvent<PodInfo> decodePodEvent(String line) {
+        return decodeEvent(line, false, ObjectFields::toPod);
+    }
+
+    static WatchEvent<NodeInfo> decodeNodeEvent(String line) {
+        return decodeEvent(line, true, ObjectFields::toNode);
+    }
+
+    private static <T extends KubernetesObject> ListPage<T> decodeList(byte[] bytes, boolean labels, Function<ObjectFields, T> build) {
+        try (JsonParser parser = JSON_FACTORY.createParser(bytes)) {
+            final List<T> items = new ArrayList<>();
+            String resourceVersion = null;
+            String continueToken = null;
+
+            expect(parser, JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                final JsonToken token = parser.nextToken();
+
+                if ("metadata".equals(field) && token == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        final String metadataField = parser.getCurrentName();
+                        parser.nextToken();
+
+                        if ("resourceVersion".equals(metadataField)) {
+                            resourceVersion = readString(parser);
+                        } else if ("continue".equals(metadataField)) {
+                            continueToken = readString(parser);
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                } else if ("items".equals(field) && token == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        items.add(build.apply(readObject(parser, labels)));
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            return new ListPage<>(items, resourceVersion, continueToken);
+        } catch (IOException e) {
+            throw new DecodeException("Failed to decode list: " + e.getMessage());
+        }
+    }
+
+    private static <T extends KubernetesObject> WatchEvent<T> decodeEvent(String line, boolean labels, Function<ObjectFields, T> build) {
+        try (JsonParser parser = JSON_FACTORY.createParser(line)) {
+            String type = null;
+            ObjectFields object = new ObjectFields();
+
+            expect(parser, JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                final JsonToken token = parser.nextToken();
+
+                if ("type".equals(field)) {
+                    type = readString(parser);
+                } else if ("object".equals(field) && token == JsonToken.START_OBJECT) {
+                    object = readObject(parser, labels);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            // Bookmarks and errors only carry a version or a status
+            final boolean hasObject = WatchEvent.ADDED.equals(type) || WatchEvent.MODIFIED.equals(type) || WatchEvent.DELETED.equals(type);
+
+            return new WatchEvent<>(type, hasObject ? build.apply(object) : null, object.resourceVersion, object.code, object.message);
+        } catch (IOException e) {
+            throw new DecodeException("Failed to decode watch event: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the object starting at the current token, up to its end
+     */
+    private static ObjectFields readObject(JsonParser parser, boolean labels) throws IOException {
+        final ObjectFields object = new ObjectFields();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken token = parser.nextToken();
+
+            if ("metadata".equals(field) && token == JsonToken.START_OBJECT) {
+                readObjectMeta(parser, object, labels);
+            } else if ("spec".equals(field) && token == JsonToken.START_OBJECT) {
+                readSpec(parser, object);
+            } else if ("code".equals(field) && token == JsonToken.VALUE_NUMBER_INT) {
+                object.code = parser.getIntValue();
+            } else if ("message".equals(field)) {
+                object.message = readString(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        return object;
+    }
+
+    private static void readObjectMeta(JsonParser parser, ObjectFields object, boolean labels) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken token = parser.nextToken();
+
+            if ("name".equals(field)) {
+                object.name = readString(parser);
+            } else if ("namespace".equals(field)) {
+                object.namespace = readString(parser);
+            } else if ("resourceVersion".equals(field)) {
+                object.resourceVersion = readString(parser);
+            } else if (labels && "labels".equals(field) && token == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    final String key = parser.getCurrentName();
+                    parser.nextToken();
+                    object.addLabel(key, readString(parser));
+                }
+            } else if (!labels && "ownerReferences".equals(field) && token == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    readOwner(parser, object);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static void readOwner(JsonParser parser, ObjectFields object) throws IOException {
+        String kind = null;
+        String name = null;
+        boolean controller = false;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken token = parser.nextToken();
+
+            if ("kind".equals(field)) {
+                kind = readString(parser);
+            } else if ("name".equals(field)) {
+                name = readString(parser);
+            } else if ("controller".equals(field)) {
+                controller = token == JsonToken.VALUE_TRUE;
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        if (name != null) {
+            object.addOwner(kind, name, controller);
+        }
+    }
+
+    private static void readSpec(JsonParser parser, ObjectFields object) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken token = parser.nextToken();
+
+            if ("nodeName".equals(field)) {
+                object.nodeName = readString(parser);
+            } else if ("containers".equals(field) && token == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    object.addContainer(readContainer(parser));
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static ContainerInfo readContainer(JsonParser parser) throws IOException {
+        final ObjectFields.Container container = new ObjectFields.Container();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken token = parser.nextToken();
+
+            if ("name".equals(field)) {
+                container.name = readString(parser);
+            } else if ("resources".equals(field) && token == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    final String resourcesField = parser.getCurrentName();
+                    final boolean limits = "limits".equals(resourcesField);
+
+                    if (parser.nextToken() == JsonToken.START_OBJECT && (limits || "requests".equals(resourcesField))) {
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            final String resource = parser.getCurrentName();
+                            parser.nextToken();
+                            container.setQuantity(limits, resource, readString(parser));
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        return container.build();
+    }
+
+    /**
+     * @return the string at the current token, null for any other value, which is skipped
+     */
+    private static String readString(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_STRING) {
+            return parser.getText();
+        }
+
+        parser.skipChildren();
+        return null;
+    }
+
+    private static void expect(JsonParser parser, JsonToken expected) throws IOException {
+        if (parser.nextToken() != expected) {
+            throw new DecodeException("Expected " + expected + " at " + parser.getCurrentLocation());
+        }
+    }
+}
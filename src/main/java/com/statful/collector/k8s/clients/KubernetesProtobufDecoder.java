@@ -0,0 +1,315 @@
+package com.statful.collector.k8s.clients;
+
+import com.statful.converter.util.ProtobufReader;
+import com.statful.collector.k8s.domain.ContainerInfo;
+import com.statful.collector.k8s.domain.KubernetesObject;
+import com.statful.collector.k8s.domain.ListPage;
+import com.statful.collector.k8s.domain.NodeInfo;
+import com.statful.collector.k8s.domain.PodInfo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static com.statful.converter.util.ProtobufReader.LENGTH_DELIMITED;
+import static com.statful.converter.util.ProtobufReader.VARINT;
+
+/**
+ * Decodes pod and node lists of the api server in its protobuf encoding, keeping only the fields the collector reads:
+ * names, namespaces, node labels, pod owners, node names and container resources. Every other field is skipped without being
+ * decoded.
+ * <p>
+ * A response is the {@code k8s\0} magic number followed by a {@code runtime.Unknown} envelope, whose raw bytes are the
+ * {@code PodList} or {@code NodeList} message.
+ */
+final class KubernetesProtobufDecoder {
+    static final String CONTENT_TYPE = "application/vnd.kubernetes.protobuf";
+
+    private static final byte[] MAGIC = {'k', '8', 's', 0};
+
+    // runtime.Unknown fields
+    private static final int UNKNOWN_RAW = 2 << 3 | LENGTH_DELIMITED;
+
+    // PodList and NodeList fields
+    private static final int LIST_METADATA = 1 << 3 | LENGTH_DELIMITED;
+    private static final int LIST_ITEMS = 2 << 3 | LENGTH_DELIMITED;
+
+    // ListMeta fields
+    private static final int LIST_META_RESOURCE_VERSION = 2 << 3 | LENGTH_DELIMITED;
+    private static final int LIST_META_CONTINUE = 3 << 3 | LENGTH_DELIMITED;
+
+    // Pod and Node fields
+    private static final int OBJECT_METADATA = 1 << 3 | LENGTH_DELIMITED;
+    private static final int OBJECT_SPEC = 2 << 3 | LENGTH_DELIMITED;
+
+    // ObjectMeta fields
+    private static final int META_NAME = 1 << 3 | LENGTH_DELIMITED;
+    private static final int META_NAMESPACE = 3 << 3 | LENGTH_DELIMITED;
+    private static final int META_LABELS = 11 << 3 | LENGTH_DELIMITED;
+    private static final int META_OWNER_REFERENCES = 13 << 3 | LENGTH_DELIMITED;
+
+    // OwnerReference fields
+    private static final int OWNER_KIND = 1 << 3 | LENGTH_DELIMITED;
+    private static final int OWNER_NAME = 3 << 3 | LENGTH_DELIMITED;
+    private static final int OWNER_CONTROLLER = 6 << 3 | VARINT;
+
+    // PodSpec fields
+    private static final int POD_SPEC_CONTAINERS = 2 << 3 | LENGTH_DELIMITED;
+    private static final int POD_SPEC_NODE_NAME = 10 << 3 | LENGTH_DELIMITED;
+
+    // Container fields
+    private static final int CONTAINER_NAME = 1 << 3 | LENGTH_DELIMITED;
+    private static final int CONTAINER_RESOURCES = 8 << 3 | LENGTH_DELIMITED;
+
+    // ResourceRequirements fields
+    private static final int RESOURCES_LIMITS = 1 << 3 | LENGTH_DELIMITED;
+    private static final int RESOURCES_REQUESTS = 2 << 3 | LENGTH_DELIMITED;
+
+    // Map entry fields, and the string of a Quantity
+    private static final int ENTRY_KEY = 1 << 3 | LENGTH_DELIMITED;
+    private static final int ENTRY_VALUE = 2 << 3 | LENGTH_DELIMITED;
+    private static final int QUANTITY_STRING = 1 << 3 | LENGTH_DELIMITED;
+
+    // Resource names repeat on every container, they are matched without decoding copies
+    private static final String[] RESOURCE_NAMES = {"cpu", "memory", "ephemeral-storage"};
+    private static final byte[][] ENCODED_RESOURCE_NAMES = encode(RESOURCE_NAMES);
+    private static final String[] OWNER_KINDS = {"ReplicaSet", "StatefulSet", "DaemonSet", "Job"};
+    private static final byte[][] ENCODED_OWNER_KINDS = encode(OWNER_KINDS);
+
+    private KubernetesProtobufDecoder() {
+    }
+
+    private static byte[][] encode(String[] values) {
+        final byte[][] encoded = new byte[values.length][];
+
+        for (int i = 0; i < values.length; i++) {
+            encoded[i] = values[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return encoded;
+    }
+
+    static boolean isProtobuf(String contentType) {
+        return contentType != null && contentType.startsWith(CONTENT_TYPE);
+    }
+
+    static ListPage<PodInfo> decodePodList(byte[] bytes) {
+        return decodeList(bytes, false, ObjectFields::toPod);
+    }
+
+    static ListPage<NodeInfo> decodeNodeList(byte[] bytes) {
+        return decodeList(bytes, true, ObjectFields::toNode);
+    }
+
+    private static <T extends KubernetesObject> ListPage<T> decodeList(byte[] bytes, boolean labels, Function<ObjectFields, T> build) {
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (bytes.length < MAGIC.length || bytes[i] != MAGIC[i]) {
+                throw new IllegalArgumentException("Missing the kubernetes protobuf magic number");
+            }
+        }
+
+        final ProtobufReader reader = new ProtobufReader(bytes, MAGIC.length, bytes.length - MAGIC.length);
+        final List<T> items = new ArrayList<>();
+        String resourceVersion = null;
+        String continueToken = null;
+
+        while (reader.hasRemaining()) {
+            final int tag = reader.readTag();
+
+            if (tag == UNKNOWN_RAW) {
+                final int rawLimit = reader.pushLimit();
+                while (reader.hasRemaining()) {
+                    final int listTag = reader.readTag();
+
+                    if (listTag == LIST_METADATA) {
+                        final int limit = reader.pushLimit();
+                        while (reader.hasRemaining()) {
+                            final int metadataTag = reader.readTag();
+
+                            if (metadataTag == LIST_META_RESOURCE_VERSION) {
+                                resourceVersion = reader.readString();
+                            } else if (metadataTag == LIST_META_CONTINUE) {
+                                continueToken = reader.readString();
+                            } else {
+                                reader.skipField(metadataTag);
+                            }
+                        }
+                        reader.popLimit(limit);
+                    } else if (listTag == LIST_ITEMS) {
+                        final int limit = reader.pushLimit();
+                        items.add(build.apply(readObject(reader, labels)));
+                        reader.popLimit(limit);
+                    } else {
+                        reader.skipField(listTag);
+                    }
+                }
+                reader.popLimit(rawLimit);
+            } else {
+                reader.skipField(tag);
+            }
+        }
+
+        return new ListPage<>(items, resourceVersion, continueToken);
+    }
+
+    private static ObjectFields readObject(ProtobufReader reader, boolean labels) {
+        final ObjectFields object = new ObjectFields();
+
+        while (reader.hasRemaining()) {
+            final int tag = reader.readTag();
+
+            if (tag == OBJECT_METADATA) {
+                final int limit = reader.pushLimit();
+                readObjectMeta(reader, object, labels);
+                reader.popLimit(limit);
+            } else if (tag == OBJECT_SPEC && !labels) {
+                // Only the spec of pods is read
+                final int limit = reader.pushLimit();
+                readPodSpec(reader, object);
+                reader.popLimit(limit);
+            } else {
+                reader.skipField(tag);
+            }
+        }
+
+        return object;
+    }
+
+    private static void readObjectMeta(ProtobufReader reader, ObjectFields object, boolean labels) {
+        while (reader.hasRemaining()) {
+            final int tag = reader.readTag();
+
+            if (tag == META_NAME) {
+                object.name = reader.readString();
+            } else if (tag == META_NAMESPACE) {
+                object.namespace = reader.readString();
+            } else if (tag == META_LABELS && labels) {
+                final int limit = reader.pushLimit();
+                String key = "";
+                String value = "";
+
+                while (reader.hasRemaining()) {
+                    final int entryTag = reader.readTag();
+
+                    if (entryTag == ENTRY_KEY) {
+                        key = reader.readString();
+                    } else if (entryTag == ENTRY_VALUE) {
+                        value = reader.readString();
+                    } else {
+                        reader.skipField(entryTag);
+                    }
+                }
+                object.addLabel(key, value);
+                reader.popLimit(limit);
+            } else if (tag == META_OWNER_REFERENCES && !labels) {
+                final int limit = reader.pushLimit();
+                readOwner(reader, object);
+                reader.popLimit(limit);
+            } else {
+                reader.skipField(tag);
+            }
+        }
+    }
+
+    private static void readOwner(ProtobufReader reader, ObjectFields object) {
+        String kind = null;
+        String name = null;
+        boolean controller = false;
+
+        while (reader.hasRemaining()) {
+            final int tag = reader.readTag();
+
+            if (tag == OWNER_KIND) {
+                kind = reader.readString(OWNER_KINDS, ENCODED_OWNER_KINDS);
+            } else if (tag == OWNER_NAME) {
+                name = reader.readString();
+            } else if (tag == OWNER_CONTROLLER) {
+                controller = reader.readVarint() != 0;
+            } else {
+                reader.skipField(tag);
+            }
+        }
+
+        if (name != null) {
+            object.addOwner(kind, name, controller);
+        }
+    }
+
+    private static void readPodSpec(ProtobufReader reader, ObjectFields object) {
+        while (reader.hasRemaining()) {
+            final int tag = reader.readTag();
+
+            if (tag == POD_SPEC_CONTAINERS) {
+                final int limit = reader.pushLimit();
+                object.addContainer(readContainer(reader));
+                reader.popLimit(limit);
+            } else if (tag == POD_SPEC_NODE_NAME) {
+                object.nodeName = reader.readString();
+            } else {
+                reader.skipField(tag);
+            }
+        }
+    }
+
+    private static ContainerInfo readContainer(ProtobufReader reader) {
+        final ObjectFields.Container container = new ObjectFields.Container();
+
+        while (reader.hasRemaining()) {
+            final int tag = reader.readTag();
+
+            if (tag == CONTAINER_NAME) {
+                container.name = reader.readString();
+            } else if (tag == CONTAINER_RESOURCES) {
+                final int limit = reader.pushLimit();
+                while (reader.hasRemaining()) {
+                    final int resourcesTag = reader.readTag();
+
+                    if (resourcesTag == RESOURCES_LIMITS || resourcesTag == RESOURCES_REQUESTS) {
+                        final int entryLimit = reader.pushLimit();
+                        readQuantity(reader, container, resourcesTag == RESOURCES_LIMITS);
+                        reader.popLimit(entryLimit);
+                    } else {
+                        reader.skipField(resourcesTag);
+                    }
+                }
+                reader.popLimit(limit);
+            } else {
+                reader.skipField(tag);
+            }
+        }
+
+        return container.build();
+    }
+
+    /**
+     * Reads an entry of the limits or requests of a container, from a resource name to a quantity holding a string
+     */
+    private static void readQuantity(ProtobufReader reader, ObjectFields.Container container, boolean limit) {
+        String resource = "";
+        String quantity = "";
+
+        while (reader.hasRemaining()) {
+            final int tag = reader.readTag();
+
+            if (tag == ENTRY_KEY) {
+                resource = reader.readString(RESOURCE_NAMES, ENCODED_RESOURCE_NAMES);
+            } else if (tag == ENTRY_VALUE) {
+                final int quantityLimit = reader.pushLimit();
+                while (reader.hasRemaining()) {
+                    final int quantityTag = reader.readTag();
+
+                    if (quantityTag == QUANTITY_STRING) {
+                        quantity = reader.readString();
+                    } else {
+                        reader.skipField(quantityTag);
+                    }
+                }
+                reader.popLimit(quantityLimit);
+            } else {
+                reader.skipField(tag);
+            }
+        }
+
+        container.setQuantity(limit, resource, quantity);
+    }
+}
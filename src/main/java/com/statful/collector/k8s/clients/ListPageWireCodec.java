@@ -0,0 +1,141 @@
+package com.statful.collector.k8s.clients;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.statful.collector.k8s.domain.ContainerInfo;
+import com.statful.collector.k8s.domain.KubernetesObject;
+import com.statful.collector.k8s.domain.ListPage;
+import com.statful.collector.k8s.domain.NodeInfo;
+import com.statful.collector.k8s.domain.PodInfo;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+import io.vertx.core.json.EncodeException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Sends pages of pods or nodes to other nodes of a cluster as the json list of the api server, holding only the
+ * fields that were decoded, preceded by whether it lists nodes and the length of the json.
+ */
+final class ListPageWireCodec implements MessageCodec<ListPage<?>, ListPage<?>> {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final byte PODS = 0;
+    private static final byte NODES = 1;
+
+    @Override
+    public void encodeToWire(Buffer buffer, ListPage<?> page) {
+        final boolean nodes = !page.getItems().isEmpty() && page.getItems().get(0) instanceof NodeInfo;
+        final byte[] json = encode(page);
+
+        buffer.appendByte(nodes ? NODES : PODS)
+                .appendInt(json.length)
+                .appendBytes(json);
+    }
+
+    @Override
+    public ListPage<?> decodeFromWire(int position, Buffer buffer) {
+        final byte kind = buffer.getByte(position);
+        final int length = buffer.getInt(position + 1);
+        final byte[] json = buffer.getBytes(position + 5, position + 5 + length);
+
+        return kind == NODES ? KubernetesJsonDecoder.decodeNodeList(json) : KubernetesJsonDecoder.decodePodList(json);
+    }
+
+    @Override
+    public ListPage<?> transform(ListPage<?> page) {
+        return page;
+    }
+
+    @Override
+    public String name() {
+        return "list-page";
+    }
+
+    @Override
+    public byte systemCodecID() {
+        return -1;
+    }
+
+    private static byte[] encode(ListPage<?> page) {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(output)) {
+            generator.writeStartObject();
+            generator.writeObjectFieldStart("metadata");
+            writeString(generator, "resourceVersion", page.getResourceVersion());
+            writeString(generator, "continue", page.getContinueToken());
+            generator.writeEndObject();
+
+            generator.writeArrayFieldStart("items");
+            for (KubernetesObject item : page.getItems()) {
+                generator.writeStartObject();
+                generator.writeObjectFieldStart("metadata");
+                writeString(generator, "name", item.getName());
+                writeString(generator, "namespace", item.getNamespace());
+                if (item instanceof NodeInfo) {
+                    generator.writeObjectFieldStart("labels");
+                    for (Map.Entry<String, String> label : ((NodeInfo) item).getLabels().entrySet()) {
+                        writeString(generator, label.getKey(), label.getValue());
+                    }
+                    generator.writeEndObject();
+                }
+                if (item instanceof PodInfo && ((PodInfo) item).getOwnerName() != null) {
+                    writeOwner(generator, (PodInfo) item);
+                }
+                generator.writeEndObject();
+                if (item instanceof PodInfo) {
+                    writeSpec(generator, (PodInfo) item);
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new EncodeException("Failed to encode list page: " + e.getMessage());
+        }
+
+        return output.toByteArray();
+    }
+
+    private static void writeOwner(JsonGenerator generator, PodInfo pod) throws IOException {
+        generator.writeArrayFieldStart("ownerReferences");
+        generator.writeStartObject();
+        writeString(generator, "kind", pod.getOwnerKind());
+        writeString(generator, "name", pod.getOwnerName());
+        generator.writeBooleanField("controller", true);
+        generator.writeEndObject();
+        generator.writeEndArray();
+    }
+
+    private static void writeSpec(JsonGenerator generator, PodInfo pod) throws IOException {
+        generator.writeObjectFieldStart("spec");
+        writeString(generator, "nodeName", pod.getNodeName());
+        generator.writeArrayFieldStart("containers");
+        for (ContainerInfo container : pod.getContainers()) {
+            generator.writeStartObject();
+            writeString(generator, "name", container.getName());
+            generator.writeObjectFieldStart("resources");
+            generator.writeObjectFieldStart("limits");
+            writeString(generator, "cpu", container.getCpuLimit());
+            writeString(generator, "memory", container.getMemoryLimit());
+            generator.writeEndObject();
+            generator.writeObjectFieldStart("requests");
+            writeString(generator, "cpu", container.getCpuRequest());
+            writeString(generator, "memory", container.getMemoryRequest());
+            generator.writeEndObject();
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    private static void writeString(JsonGenerator generator, String field, String value) throws IOException {
+        if (value != null) {
+            generator.writeStringField(field, value);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.statful.collector.k8s.clients;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+
+/**
+ * Passes objects to consumers of the same vertx instance as they are, without the copy the default codecs make, so
+ * the objects must not be changed once sent. Consumers on other nodes of a cluster receive them encoded with the
+ * given wire codec.
+ */
+final class LocalCodec<T> implements MessageCodec<T, T> {
+    private final String name;
+    private final MessageCodec<T, T> wireCodec;
+
+    LocalCodec(String name, MessageCodec<T, T> wireCodec) {
+        this.name = name;
+        this.wireCodec = wireCodec;
+    }
+
+    @Override
+    public void encodeToWire(Buffer buffer, T value) {
+        wireCodec.encodeToWire(buffer, value);
+    }
+
+    @Override
+    public T decodeFromWire(int position, Buffer buffer) {
+        return wireCodec.decodeFromWire(position, buffer);
+    }
+
+    @Override
+    public T transform(T value) {
+        return value;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public byte systemCodecID() {
+        return -1;
+    }
+}
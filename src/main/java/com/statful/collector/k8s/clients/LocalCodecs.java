@@ -0,0 +1,64 @@
+package com.statful.collector.k8s.clients;
+
+import com.statful.collector.k8s.domain.ListPage;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.impl.codecs.BufferMessageCodec;
+import io.vertx.core.eventbus.impl.codecs.JsonObjectMessageCodec;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The local codecs of the responses a client verticle sends, registered under names of its own so each verticle
+ * registers and unregisters them independently.
+ * <p>
+ * Responses are built for the reply and never touched again, so consumers in the same vertx instance receive them
+ * without the copy the event bus makes by default, which for a page of the pod list or a chunk of metrics is as large
+ * as the response itself.
+ */
+final class LocalCodecs {
+    private final EventBus eventBus;
+    private final LocalCodec<JsonObject> json;
+    private final LocalCodec<Buffer> buffer;
+    private final LocalCodec<ListPage<?>> listPage;
+
+    private LocalCodecs(EventBus eventBus, String owner) {
+        this.eventBus = eventBus;
+        this.json = new LocalCodec<>("local-json-" + owner, new JsonObjectMessageCodec());
+        this.buffer = new LocalCodec<>("local-buffer-" + owner, new BufferMessageCodec());
+        this.listPage = new LocalCodec<>("local-list-page-" + owner, new ListPageWireCodec());
+    }
+
+    /**
+     * @param owner unique within the vertx instance, like the deployment id of the verticle
+     */
+    static LocalCodecs register(EventBus eventBus, String owner) {
+        final LocalCodecs codecs = new LocalCodecs(eventBus, owner);
+
+        codecs.all().forEach(eventBus::registerCodec);
+        return codecs;
+    }
+
+    void unregister() {
+        all().forEach(codec -> eventBus.unregisterCodec(codec.name()));
+    }
+
+    DeliveryOptions json() {
+        return new DeliveryOptions().setCodecName(json.name());
+    }
+
+    DeliveryOptions buffer() {
+        return new DeliveryOptions().setCodecName(buffer.name());
+    }
+
+    DeliveryOptions listPage() {
+        return new DeliveryOptions().setCodecName(listPage.name());
+    }
+
+    private List<LocalCodec<?>> all() {
+        return Arrays.asList(json, buffer, listPage);
+    }
+}
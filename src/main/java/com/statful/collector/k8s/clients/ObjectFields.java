@@ -0,0 +1,99 @@
+package com.statful.collector.k8s.clients;
+
+import com.statful.collector.k8s.domain.ContainerInfo;
+import com.statful.collector.k8s.domain.NodeInfo;
+import com.statful.collector.k8s.domain.PodInfo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The fields read from an object while it is decoded, in whatever order they come, built into a pod or a node once
+ * the object ends. Error events of watches carry a status instead, whose code and message are read as well.
+ */
+final class ObjectFields {
+    String name;
+    String namespace;
+    String resourceVersion;
+    String nodeName;
+    Map<String, String> labels;
+    List<ContainerInfo> containers;
+    String ownerKind;
+    String ownerName;
+    boolean ownerController;
+    int code;
+    String message;
+
+    void addLabel(String key, String value) {
+        if (labels == null) {
+            labels = new HashMap<>();
+        }
+        labels.put(key, value);
+    }
+
+    void addContainer(ContainerInfo container) {
+        if (containers == null) {
+            containers = new ArrayList<>(1);
+        }
+        containers.add(container);
+    }
+
+    /**
+     * Keeps the owner that is the controller of the object, or else the first one
+     */
+    void addOwner(String kind, String name, boolean controller) {
+        if (ownerName == null || (controller && !ownerController)) {
+            ownerKind = kind;
+            ownerName = name;
+            ownerController = controller;
+        }
+    }
+
+    PodInfo toPod() {
+        return new PodInfo(name, namespace, nodeName, containers == null
+                ? Collections.emptyList()
+                : Collections.unmodifiableList(containers), ownerKind, ownerName);
+    }
+
+    NodeInfo toNode() {
+        return new NodeInfo(name, labels == null ? Collections.emptyMap() : Collections.unmodifiableMap(labels));
+    }
+
+    /**
+     * The resources of a container being decoded
+     */
+    static final class Container {
+        String name;
+        String cpuLimit = "";
+        String memoryLimit = "";
+        String cpuRequest = "";
+        String memoryRequest = "";
+
+        void setQuantity(boolean limit, String resource, String quantity) {
+            if (quantity == null) {
+                return;
+            }
+
+            if ("cpu".equals(resource)) {
+                if (limit) {
+                    cpuLimit = quantity;
+                } else {
+                    cpuRequest = quantity;
+                }
+            } else if ("memory".equals(resource)) {
+                if (limit) {
+                    memoryLimit = quantity;
+                } else {
+                    memoryRequest = quantity;
+                }
+            }
+        }
+
+        ContainerInfo build() {
+            return new ContainerInfo(name, cpuLimit, memoryLimit, cpuRequest, memoryRequest);
+        }
+    }
+}
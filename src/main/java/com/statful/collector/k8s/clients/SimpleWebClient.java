@@ -2,26 +2,28 @@ package com.statful.collector.k8s.clients;
 
 import com.statful.collector.k8s.utils.Loggable;
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.reactivex.Completable;
 import io.reactivex.Single;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.client.WebClientOptions;
 import io.vertx.ext.web.handler.impl.HttpStatusException;
 import io.vertx.reactivex.core.AbstractVerticle;
-import io.vertx.reactivex.core.buffer.Buffer;
 import io.vertx.reactivex.core.eventbus.EventBus;
 import io.vertx.reactivex.core.eventbus.Message;
-import io.vertx.reactivex.ext.web.client.HttpResponse;
-import io.vertx.reactivex.ext.web.client.WebClient;
-
-import java.util.function.Function;
+import io.vertx.reactivex.core.http.HttpClient;
+import io.vertx.reactivex.core.http.HttpClientRequest;
+import io.vertx.reactivex.core.http.HttpClientResponse;
 
 public class SimpleWebClient extends AbstractVerticle implements Loggable {
     private static final String DEV_MODE_KEY = "development.logging.enabled";
     private static final String GET_ENDPOINT = "getEndpoint";
 
-    private WebClient client;
+    private HttpClient client;
     private boolean isDevLoggingEnabled;
+    private LocalCodecs localCodecs;
 
     public SimpleWebClient(JsonObject config) {
         this.isDevLoggingEnabled = config.getBoolean(DEV_MODE_KEY, false);
@@ -30,13 +32,19 @@ public class SimpleWebClient extends AbstractVerticle implements Loggable {
     @Override
     public void start() {
         initWebClient();
+        localCodecs = LocalCodecs.register(vertx.eventBus().getDelegate(), deploymentID());
         registerConsumers();
     }
 
+    @Override
+    public void stop() {
+        localCodecs.unregister();
+    }
+
     private void initWebClient() {
         WebClientOptions options = buildWebClientOptions();
 
-        client = WebClient.create(vertx, options);
+        client = vertx.createHttpClient(options);
     }
 
     private WebClientOptions buildWebClientOptions() {
@@ -50,35 +58,48 @@ public class SimpleWebClient extends AbstractVerticle implements Loggable {
     }
 
     private void getEndpoint(Message<String> message) {
-        request(message.body(), message, HttpResponse::bodyAsString);
+        stream(message.body(), message);
     }
 
-    private <T> void request(String url, Message<String> message, Function<HttpResponse<Buffer>, T> mapper) {
+    private void stream(String url, Message<String> message) {
         if (isDevLoggingEnabled) {
             log().info("{0} - {1} executed", HttpMethod.GET, url);
         }
 
-        client.getAbs(url)
-                .rxSend()
-                .doOnSuccess(response -> logResponse(url, response))
-                .map(response -> handleBody(response, mapper))
-                .subscribe(message::reply, error -> log().error("{0} - {1} failed", error, HttpMethod.GET, url));
-    }
+        final HttpClientRequest request = client.getAbs(url);
 
-    private <T> T handleBody(HttpResponse<Buffer> response, Function<HttpResponse<Buffer>, T> mapper) {
-        if (response.statusCode() != HttpResponseStatus.OK.code()) {
-            throw new HttpStatusException(response.statusCode());
-        }
+        request.toFlowable()
+                .firstOrError()
+                .flatMapCompletable(response -> streamBody(url, message, response))
+                .subscribe(() -> {
+                }, error -> {
+                    log().error("{0} - {1} failed", error, HttpMethod.GET, url);
+                    request.reset();
+                    message.fail(HttpResponseStatus.INTERNAL_SERVER_ERROR.code(), String.valueOf(error.getMessage()));
+                });
 
-        return mapper.apply(response);
+        request.end();
     }
 
-    private void logResponse(String url, HttpResponse<Buffer> response) {
+    private Completable streamBody(String url, Message<String> message, HttpClientResponse response) {
         if (response.statusCode() != HttpResponseStatus.OK.code()) {
-            log().error("{0} - {1} executed response status code {2} {3} body {4}", HttpMethod.GET, url, response.statusCode(), response.statusMessage(), response.bodyAsString());
+            response.bodyHandler(body -> log().error("{0} - {1} executed response status code {2} {3} body {4}", HttpMethod.GET, url, response.statusCode(), response.statusMessage(), body));
+            return Completable.error(new HttpStatusException(response.statusCode()));
         } else if (isDevLoggingEnabled) {
             log().info("{0} - {1} executed response status code {2} {3}", HttpMethod.GET, url, response.statusCode(), response.statusMessage());
         }
+
+        final DeliveryOptions headers = new DeliveryOptions();
+        final String contentType = response.getHeader(HttpHeaders.CONTENT_TYPE.toString());
+
+        if (contentType != null) {
+            headers.addHeader(HttpHeaders.CONTENT_TYPE.toString(), contentType);
+        }
+
+        // Nothing is read until the requester subscribes to the body
+        response.pause();
+
+        return BufferStream.respond(vertx.eventBus(), message, headers, localCodecs.buffer(), response.toFlowable());
     }
 
     public static class Client implements Loggable {
@@ -88,9 +109,8 @@ public class SimpleWebClient extends AbstractVerticle implements Loggable {
             this.eventBus = client;
         }
 
-        public Single<String> getEndpoint(String url) {
-            return eventBus.<String>rxSend(SimpleWebClient.GET_ENDPOINT, url)
-                    .map(Message::body);
+        public Single<BufferStream.Response> getEndpoint(String url) {
+            return BufferStream.request(eventBus, SimpleWebClient.GET_ENDPOINT, url);
         }
     }
 }
@@ -0,0 +1,38 @@
+package com.statful.collector.k8s.counter;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * What is sent for the samples of cumulative counters
+ */
+public enum CounterMode {
+    /**
+     * Cumulative values, as scraped
+     */
+    RAW,
+    /**
+     * Increase per second since the previous sample of the series, as a gauge
+     */
+    RATE,
+    /**
+     * Increase since the previous sample of the series, as a counter
+     */
+    DELTA;
+
+    /**
+     * @throws IllegalArgumentException when the mode is not one of raw, rate or delta
+     */
+    public static CounterMode from(String mode) {
+        if (mode == null || mode.isEmpty()) {
+            return RAW;
+        }
+
+        try {
+            return valueOf(mode.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid counter mode '" + mode + "', expected one of "
+                    + Arrays.stream(values()).map(value -> value.name().toLowerCase()).collect(Collectors.joining(", ")));
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.statful.collector.k8s.counter;
+
+import com.statful.client.CustomMetric;
+import com.statful.client.MetricType;
+import com.statful.collector.k8s.utils.Fingerprints;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Converts the cumulative samples of counters, like {@code container_cpu_usage_seconds_total} of cAdvisor, into their
+ * increase since the previous sample of the series, per second or as is, so rates are not computed downstream over
+ * every cumulative series.
+ * <p>
+ * The previous value and time of each series are kept by the fingerprint of the series, in open addressing tables of
+ * primitives that live across cycles. The first sample of a series, and one following a gap longer than the maximum,
+ * only starts it over. A value lower than the previous one is a reset of the counter, which counted from zero since.
+ * Series without a sample for longer than the gap are evicted as cycles start.
+ */
+public class CounterRates {
+    private static final String COLLECTOR_COUNTERS = "collector.counters";
+    private static final String COLLECTOR_COUNTERS_GAP = "collector.counters.gap";
+    private static final String COLLECTOR_PERIOD = "collector.period";
+    private static final int DEFAULT_PERIOD = 60000;
+    // Tolerates a couple of failed scrapes in a row
+    private static final int DEFAULT_GAP_PERIODS = 3;
+    private static final int SEGMENTS = 16;
+
+    private final CounterMode mode;
+    private final long gap;
+    private final LongSupplier clock;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder resets = new LongAdder();
+
+    /**
+     * @param gap   milliseconds after which the previous sample of a series is too old to convert from
+     * @param clock current time in milliseconds
+     */
+    public CounterRates(CounterMode mode, long gap, LongSupplier clock) {
+        this.mode = mode;
+        this.gap = gap;
+        this.clock = clock;
+        Arrays.setAll(segments, $ -> new Segment());
+    }
+
+    public static CounterRates fromConfig(JsonObject config) {
+        final int period = config.getInteger(COLLECTOR_PERIOD, DEFAULT_PERIOD);
+
+        return new CounterRates(CounterMode.from(config.getString(COLLECTOR_COUNTERS)),
+                config.getInteger(COLLECTOR_COUNTERS_GAP, period * DEFAULT_GAP_PERIODS),
+                System::currentTimeMillis);
+    }
+
+    /**
+     * Starts a collection cycle, evicting the series without a sample for longer than the gap
+     */
+    public void advance() {
+        if (mode == CounterMode.RAW) {
+            return;
+        }
+
+        final long oldest = clock.getAsLong() - gap;
+
+        for (Segment segment : segments) {
+            segment.evictOlderThan(oldest);
+        }
+    }
+
+    /**
+     * @return whether counters are converted, otherwise every metric is sent as is without its fingerprint
+     */
+    public boolean isEnabled() {
+        return mode != CounterMode.RAW;
+    }
+
+    /**
+     * Safe to call from any thread.
+     *
+     * @param hash the {@link Fingerprints fingerprint} of the series of the metric
+     * @return the increase of a counter since the previous sample of its series, the metric itself when it is not a
+     * counter or counters are sent as is, or null when the series has no previous sample to convert from
+     */
+    public CustomMetric convert(CustomMetric metric, long hash) {
+        if (!isEnabled() || metric.getMetricType() != MetricType.COUNTER) {
+            return metric;
+        }
+
+        // Zero marks the empty slots of the tables
+        final long fingerprint = hash == 0 ? 1 : hash;
+        final double value = metric.getValue().doubleValue();
+        final long now = clock.getAsLong();
+        final Segment segment = segments[(int) (fingerprint >>> 60)];
+        final double previous;
+        final long elapsed;
+
+        synchronized (segment) {
+            final int slot = segment.find(fingerprint);
+
+            if (slot < 0) {
+                segment.insert(fingerprint, value, now);
+                return null;
+            }
+
+            previous = Double.longBitsToDouble(segment.values[slot]);
+            elapsed = now - segment.times[slot];
+
+            // A series seen twice at once, like the same sample in two sources, keeps its first sample
+            if (elapsed <= 0) {
+                return null;
+            }
+
+            segment.values[slot] = Double.doubleToLongBits(value);
+            segment.times[slot] = now;
+        }
+
+        if (elapsed > gap) {
+            return null;
+        }
+
+        final double increase;
+        if (value < previous) {
+            resets.increment();
+            increase = value;
+        } else {
+            increase = value - previous;
+        }
+
+        return new CustomMetric.Builder()
+                .withMetricName(metric.getMetricName())
+                .withValue(mode == CounterMode.RATE ? increase * 1000 / elapsed : increase)
+                .withTags(metric.getTags())
+                .withMetricType(mode == CounterMode.RATE ? MetricType.GAUGE : MetricType.COUNTER)
+                .build();
+    }
+
+    /**
+     * @return unless counters are sent as is, the resets seen since the last report, the series tracked and the bytes
+     * of their tables
+     */
+    public List<CustomMetric> report() {
+        if (mode == CounterMode.RAW) {
+            return Collections.emptyList();
+        }
+
+        long series = 0;
+        long bytes = 0;
+
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                series += segment.size;
+                bytes += (long) segment.keys.length * Segment.BYTES_PER_SLOT;
+            }
+        }
+
+        return Arrays.asList(metric("counters.resets", resets.sumThenReset(), MetricType.COUNTER),
+                metric("counters.series", series, MetricType.GAUGE),
+                metric("counters.memory", bytes, MetricType.GAUGE));
+    }
+
+    private static CustomMetric metric(String name, long value, MetricType type) {
+        return new CustomMetric.Builder()
+                .withMetricName(name)
+                .withValue(value)
+                .withTags(Collections.emptyList())
+                .withMetricType(type)
+                .build();
+    }
+
+    /**
+     * Linear probing table of the fingerprints, previous values and times of part of the series. Guarded by itself.
+     */
+    private static final class Segment {
+        private static final int INITIAL_CAPACITY = 16;
+        private static final int BYTES_PER_SLOT = Long.BYTES * 3;
+
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private long[] values = new long[INITIAL_CAPACITY];
+        private long[] times = new long[INITIAL_CAPACITY];
+        private int size;
+
+        /**
+         * @return the slot of the key, or -1 when absent
+         */
+        private int find(long key) {
+            for (int slot = (int) key & (keys.length - 1); keys[slot] != 0; slot = (slot + 1) & (keys.length - 1)) {
+                if (keys[slot] == key) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Adds a key known to be absent
+         */
+        private void insert(long key, double value, long time) {
+            if ((size + 1) * 2 > keys.length) {
+                rehash(keys.length * 2, Long.MIN_VALUE);
+            }
+
+            int slot = (int) key & (keys.length - 1);
+            while (keys[slot] != 0) {
+                slot = (slot + 1) & (keys.length - 1);
+            }
+
+            keys[slot] = key;
+            values[slot] = Double.doubleToLongBits(value);
+            times[slot] = time;
+            size++;
+        }
+
+        private synchronized void evictOlderThan(long time) {
+            int live = 0;
+
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != 0 && times[slot] >= time) {
+                    live++;
+                }
+            }
+
+            if (live == size) {
+                return;
+            }
+
+            int capacity = INITIAL_CAPACITY;
+            while (capacity < live * 4) {
+                capacity <<= 1;
+            }
+            rehash(capacity, time);
+        }
+
+        /**
+         * Moves the entries of at least the given time into tables of the given capacity
+         */
+        private void rehash(int capacity, long time) {
+            final long[] previousKeys = keys;
+            final long[] previousValues = values;
+            final long[] previousTimes = times;
+
+            keys = new long[capacity];
+            values = new long[capacity];
+            times = new long[capacity];
+            size = 0;
+
+            for (int previous = 0; previous < previousKeys.length; previous++) {
+                if (previousKeys[previous] == 0 || previousTimes[previous] < time) {
+                    continue;
+                }
+
+                int slot = (int) previousKeys[previous] & (capacity - 1);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+
+                keys[slot] = previousKeys[previous];
+                values[slot] = previousValues[previous];
+                times[slot] = previousTimes[previous];
+                size++;
+            }
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.statful.collector.k8s.delta;
+
+import com.statful.client.CustomMetric;
+import com.statful.client.MetricType;
+import com.statful.collector.k8s.utils.Fingerprints;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Skips the samples of series whose value did not change since their last sample, like the resources of pods and
+ * most node gauges, so only changes are sent.
+ * <p>
+ * The last value of each series is kept by the fingerprint of the series, in open addressing tables of primitives,
+ * along with the cycle it was last seen in. Series not seen in the previous cycle are evicted when the next one
+ * starts, so memory follows the series still scraped as pods come and go. Unchanged series are still sent once every
+ * heartbeat cycles, spread across the cycles by their fingerprints, so they do not go stale downstream.
+ */
+public class DeltaSuppressor {
+    private static final String COLLECTOR_DELTA_HEARTBEAT = "collector.delta.heartbeat";
+    private static final int DEFAULT_HEARTBEAT = 0;
+    private static final int SEGMENTS = 16;
+
+    private final int heartbeat;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder suppressed = new LongAdder();
+
+    private volatile int generation;
+
+    /**
+     * @param heartbeat cycles after which unchanged series are sent again, 1 or less to send every sample
+     */
+    public DeltaSuppressor(int heartbeat) {
+        this.heartbeat = heartbeat;
+        Arrays.setAll(segments, $ -> new Segment());
+    }
+
+    public static DeltaSuppressor fromConfig(JsonObject config) {
+        return new DeltaSuppressor(config.getInteger(COLLECTOR_DELTA_HEARTBEAT, DEFAULT_HEARTBEAT));
+    }
+
+    /**
+     * Starts a collection cycle, evicting the series not seen in the previous one
+     */
+    public void advance() {
+        if (!isEnabled()) {
+            return;
+        }
+
+        final int previous = generation;
+
+        for (Segment segment : segments) {
+            segment.evictOlderThan(previous);
+        }
+        generation = previous + 1;
+    }
+
+    /**
+     * Records the value of the series of a sample. Safe to call from any thread.
+     *
+     * @param hash the {@link Fingerprints fingerprint} of the series of the metric
+     * @return whether the sample is to be sent, when its value changed, its series is new or due its heartbeat
+     */
+    public boolean changed(CustomMetric metric, long hash) {
+        if (!isEnabled()) {
+            return true;
+        }
+
+        // Zero marks the empty slots of the tables
+        final long fingerprint = hash == 0 ? 1 : hash;
+        final long value = Double.doubleToLongBits(metric.getValue().doubleValue());
+        final int current = generation;
+
+        if (segment(fingerprint).update(fingerprint, value, current) || Math.floorMod(fingerprint + current, heartbeat) == 0) {
+            return true;
+        }
+
+        suppressed.increment();
+        return false;
+    }
+
+    /**
+     * Forgets the value recorded for a series, like that of a sample that could not be sent after all, so its next
+     * sample is sent whatever its value. Safe to call from any thread.
+     *
+     * @param hash the {@link Fingerprints fingerprint} of the series
+     */
+    public void forget(long hash) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        final long fingerprint = hash == 0 ? 1 : hash;
+        segment(fingerprint).forget(fingerprint);
+    }
+
+    /**
+     * @return while enabled, the samples suppressed since the last report, the series tracked and the bytes of their tables
+     */
+    public List<CustomMetric> report() {
+        if (!isEnabled()) {
+            return Collections.emptyList();
+        }
+
+        long series = 0;
+        long bytes = 0;
+
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                series += segment.size;
+                bytes += (long) segment.keys.length * Segment.BYTES_PER_SLOT;
+            }
+        }
+
+        return Arrays.asList(metric("delta.suppressed", suppressed.sumThenReset(), MetricType.COUNTER),
+                metric("delta.series", series, MetricType.GAUGE),
+                metric("delta.memory", bytes, MetricType.GAUGE));
+    }
+
+    private static CustomMetric metric(String name, long value, MetricType type) {
+        return new CustomMetric.Builder()
+                .withMetricName(name)
+                .withValue(value)
+                .withTags(Collections.emptyList())
+                .withMetricType(type)
+                .build();
+    }
+
+    private Segment segment(long fingerprint) {
+        // The low bits select the slot within the segment
+        return segments[(int) (fingerprint >>> 60)];
+    }
+
+    public boolean isEnabled() {
+        return heartbeat > 1;
+    }
+
+    /**
+     * Linear probing table of the fingerprints, last values and generations of part of the series
+     */
+    private static final class Segment {
+        private static final int INITIAL_CAPACITY = 16;
+        private static final int BYTES_PER_SLOT = Long.BYTES * 2 + Integer.BYTES;
+        // A NaN never stored, as doubleToLongBits collapses every NaN into the canonical one
+        private static final long FORGOTTEN = Double.doubleToRawLongBits(Double.NaN) + 1;
+
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private long[] values = new long[INITIAL_CAPACITY];
+        private int[] generations = new int[INITIAL_CAPACITY];
+        private int size;
+
+        /**
+         * @return whether the series is new or its value changed
+         */
+        private synchronized boolean update(long key, long value, int generation) {
+            if ((size + 1) * 2 > keys.length) {
+                rehash(keys.length * 2, Integer.MIN_VALUE);
+            }
+
+            int slot = (int) key & (keys.length - 1);
+
+            while (keys[slot] != 0) {
+                if (keys[slot] == key) {
+                    final boolean changed = values[slot] != value;
+
+                    values[slot] = value;
+                    generations[slot] = generation;
+                    return changed;
+                }
+                slot = (slot + 1) & (keys.length - 1);
+            }
+
+            keys[slot] = key;
+            values[slot] = value;
+            generations[slot] = generation;
+            size++;
+            return true;
+        }
+
+        private synchronized void forget(long key) {
+            for (int slot = (int) key & (keys.length - 1); keys[slot] != 0; slot = (slot + 1) & (keys.length - 1)) {
+                if (keys[slot] == key) {
+                    values[slot] = FORGOTTEN;
+                    return;
+                }
+            }
+        }
+
+        private synchronized void evictOlderThan(int generation) {
+            int live = 0;
+
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != 0 && generations[slot] >= generation) {
+                    live++;
+                }
+            }
+
+            if (live == size) {
+                return;
+            }
+
+            int capacity = INITIAL_CAPACITY;
+            while (capacity < live * 4) {
+                capacity <<= 1;
+            }
+            rehash(capacity, generation);
+        }
+
+        /**
+         * Moves the entries of at least the given generation into tables of the given capacity
+         */
+        private void rehash(int capacity, int generation) {
+            final long[] previousKeys = keys;
+            final long[] previousValues = values;
+            final int[] previousGenerations = generations;
+
+            keys = new long[capacity];
+            values = new long[capacity];
+            generations = new int[capacity];
+            size = 0;
+
+            for (int previous = 0; previous < previousKeys.length; previous++) {
+                if (previousKeys[previous] == 0 || previousGenerations[previous] < generation) {
+                    continue;
+                }
+
+                int slot = (int) previousKeys[previous] & (capacity - 1);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+
+                keys[slot] = previousKeys[previous];
+                values[slot] = previousValues[previous];
+                generations[slot] = previousGenerations[previous];
+                size++;
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.statful.collector.k8s.domain;
+
+/**
+ * The resources of a container of a pod spec. Quantities are kept as listed, empty when not set.
+ */
+public final class ContainerInfo {
+    private final String name;
+    private final String cpuLimit;
+    private final String memoryLimit;
+    private final String cpuRequest;
+    private final String memoryRequest;
+
+    public ContainerInfo(String name, String cpuLimit, String memoryLimit, String cpuRequest, String memoryRequest) {
+        this.name = name;
+        this.cpuLimit = cpuLimit;
+        this.memoryLimit = memoryLimit;
+        this.cpuRequest = cpuRequest;
+        this.memoryRequest = memoryRequest;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getCpuLimit() {
+        return cpuLimit;
+    }
+
+    public String getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    public String getCpuRequest() {
+        return cpuRequest;
+    }
+
+    public String getMemoryRequest() {
+        return memoryRequest;
+    }
+}
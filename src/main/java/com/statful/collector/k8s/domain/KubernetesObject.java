@@ -0,0 +1,17 @@
+package com.statful.collector.k8s.domain;
+
+/**
+ * An object of the api server, identified by its name within its namespace, if namespaced
+ */
+public interface KubernetesObject {
+    String getName();
+
+    /**
+     * @return the namespace, null for objects of the whole cluster like nodes
+     */
+    String getNamespace();
+
+    default String getKey() {
+        return getNamespace() == null ? getName() : getNamespace() + "/" + getName();
+    }
+}
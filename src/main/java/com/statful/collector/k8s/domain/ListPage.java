@@ -0,0 +1,35 @@
+package com.statful.collector.k8s.domain;
+
+import java.util.List;
+
+/**
+ * A page of a list of the api server, with the resource version of the list and the token to continue from, empty
+ * on the last page
+ */
+public final class ListPage<T extends KubernetesObject> {
+    private final List<T> items;
+    private final String resourceVersion;
+    private final String continueToken;
+
+    public ListPage(List<T> items, String resourceVersion, String continueToken) {
+        this.items = items;
+        this.resourceVersion = resourceVersion;
+        this.continueToken = continueToken;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getResourceVersion() {
+        return resourceVersion;
+    }
+
+    public String getContinueToken() {
+        return continueToken;
+    }
+
+    public boolean isLast() {
+        return continueToken == null || continueToken.isEmpty();
+    }
+}
@@ -0,0 +1,30 @@
+package com.statful.collector.k8s.domain;
+
+import java.util.Map;
+
+/**
+ * The fields of a node the collector reads: its name and labels
+ */
+public final class NodeInfo implements KubernetesObject {
+    private final String name;
+    private final Map<String, String> labels;
+
+    public NodeInfo(String name, Map<String, String> labels) {
+        this.name = name;
+        this.labels = labels;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getNamespace() {
+        return null;
+    }
+
+    public Map<String, String> getLabels() {
+        return labels;
+    }
+}
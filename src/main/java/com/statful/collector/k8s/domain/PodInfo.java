@@ -0,0 +1,58 @@
+package com.statful.collector.k8s.domain;
+
+import java.util.List;
+
+/**
+ * The fields of a pod the collector reads: its name, the node it runs on, if scheduled, its containers and the
+ * workload controlling it, if any
+ */
+public final class PodInfo implements KubernetesObject {
+    private final String name;
+    private final String namespace;
+    private final String nodeName;
+    private final List<ContainerInfo> containers;
+    private final String ownerKind;
+    private final String ownerName;
+
+    public PodInfo(String name, String namespace, String nodeName, List<ContainerInfo> containers) {
+        this(name, namespace, nodeName, containers, null, null);
+    }
+
+    public PodInfo(String name, String namespace, String nodeName, List<ContainerInfo> containers, String ownerKind, String ownerName) {
+        this.name = name;
+        this.namespace = namespace;
+        this.nodeName = nodeName;
+        this.containers = containers;
+        this.ownerKind = ownerKind;
+        this.ownerName = ownerName;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public String getNodeName() {
+        return nodeName;
+    }
+
+    public List<ContainerInfo> getContainers() {
+        return containers;
+    }
+
+    /**
+     * @return the kind of the owner controlling the pod, like ReplicaSet, or null when it has none
+     */
+    public String getOwnerKind() {
+        return ownerKind;
+    }
+
+    public String getOwnerName() {
+        return ownerName;
+    }
+}
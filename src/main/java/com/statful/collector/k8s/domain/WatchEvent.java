@@ -0,0 +1,50 @@
+package com.statful.collector.k8s.domain;
+
+/**
+ * An event of a watch: the object added, modified or deleted, or only the resource version reached for bookmarks. The
+ * api server ends a watch with an error event holding the status code, 410 Gone when the version is too old.
+ */
+public final class WatchEvent<T extends KubernetesObject> {
+    public static final String ADDED = "ADDED";
+    public static final String MODIFIED = "MODIFIED";
+    public static final String DELETED = "DELETED";
+    public static final String BOOKMARK = "BOOKMARK";
+    public static final String ERROR = "ERROR";
+
+    private final String type;
+    private final T object;
+    private final String resourceVersion;
+    private final int code;
+    private final String message;
+
+    public WatchEvent(String type, T object, String resourceVersion, int code, String message) {
+        this.type = type;
+        this.object = object;
+        this.resourceVersion = resourceVersion;
+        this.code = code;
+        this.message = message;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public T getObject() {
+        return object;
+    }
+
+    public String getResourceVersion() {
+        return resourceVersion;
+    }
+
+    /**
+     * @return the status code of an error event, 0 otherwise
+     */
+    public int getCode() {
+        return code;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
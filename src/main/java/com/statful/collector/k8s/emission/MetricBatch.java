@@ -0,0 +1,24 @@
+package com.statful.collector.k8s.emission;
+
+import com.statful.client.CustomMetric;
+
+/**
+ * Metrics sent together to the statful client, with the time their first metric was queued
+ */
+final class MetricBatch {
+    private final CustomMetric[] metrics;
+    private final long queuedAt;
+
+    MetricBatch(CustomMetric[] metrics, long queuedAt) {
+        this.metrics = metrics;
+        this.queuedAt = queuedAt;
+    }
+
+    CustomMetric[] getMetrics() {
+        return metrics;
+    }
+
+    long getQueuedAt() {
+        return queuedAt;
+    }
+}
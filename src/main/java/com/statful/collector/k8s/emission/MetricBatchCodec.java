@@ -0,0 +1,37 @@
+package com.statful.collector.k8s.emission;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+
+/**
+ * Passes batches of metrics to the local consumer of the emitter as they are. Batches never leave the vertx instance,
+ * as the statful client they are forwarded to runs in it, so they have no wire encoding.
+ */
+final class MetricBatchCodec implements MessageCodec<MetricBatch, MetricBatch> {
+    static final String NAME = "metric-batch";
+
+    @Override
+    public void encodeToWire(Buffer buffer, MetricBatch batch) {
+        throw new UnsupportedOperationException("Metric batches are only delivered locally");
+    }
+
+    @Override
+    public MetricBatch decodeFromWire(int position, Buffer buffer) {
+        throw new UnsupportedOperationException("Metric batches are only delivered locally");
+    }
+
+    @Override
+    public MetricBatch transform(MetricBatch batch) {
+        return batch;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte systemCodecID() {
+        return -1;
+    }
+}
@@ -0,0 +1,337 @@
+package com.statful.collector.k8s.emission;
+
+import com.statful.client.CustomMetric;
+import com.statful.client.CustomMetricsConsumer;
+import com.statful.client.MetricType;
+import com.statful.collector.k8s.utils.Loggable;
+import com.statful.utils.Pair;
+import io.reactivex.Completable;
+import io.reactivex.Scheduler;
+import io.reactivex.subjects.CompletableSubject;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.reactivex.core.eventbus.EventBus;
+import io.vertx.reactivex.core.eventbus.MessageConsumer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Queues metrics for the statful client in batches.
+ * <p>
+ * Metrics are collected into an array until it is full, or until the linger time after its first metric, and the
+ * array is sent as a single message to a local consumer. Converting threads hand over a batch at a time, rather than
+ * queueing a task on the event loop for every metric. The consumer still forwards every metric of a batch to the
+ * statful client as a message of its own, from its own event loop, as the client only consumes single metrics.
+ * <p>
+ * Metrics queued and not yet forwarded are bounded by the queue capacity. Once a priority class fills its share of
+ * the capacity its metrics are dropped, and scrapes waiting on {@link #awaitCapacity()} only start once the queue is
+ * back below the share of the lowest class. Metrics leave the queue once forwarded to the statful client, not once the
+ * client flushed them, so the buffer of the client has to hold as many metrics as the queue, or the client discards
+ * those beyond it without them being counted as dropped here.
+ * <p>
+ * Without a capacity the queue is unbounded, and only then may metrics skip it altogether with a batch size of 1.
+ */
+public class MetricEmitter implements Loggable {
+    static final String BATCH_ADDRESS = "com.statful.collector.metrics.batch";
+
+    private static final String COLLECTOR_EMIT_BATCH_SIZE = "collector.emit.batch.size";
+    private static final String COLLECTOR_EMIT_BATCH_LINGER = "collector.emit.batch.linger";
+    public static final String COLLECTOR_EMIT_QUEUE_CAPACITY = "collector.emit.queue.capacity";
+    public static final int DEFAULT_QUEUE_CAPACITY = 50000;
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final int DEFAULT_BATCH_LINGER = 100;
+
+    private final EventBus eventBus;
+    private final Scheduler scheduler;
+    private final int batchSize;
+    private final long linger;
+    private final int[] limits;
+    private final int watermark;
+    private final DeliveryOptions batchOptions = new DeliveryOptions().setCodecName(MetricBatchCodec.NAME);
+
+    private final LongAdder[] enqueued = adders();
+    private final LongAdder[] dropped = adders();
+    private final LongAdder forwarded = new LongAdder();
+    private final AtomicLong maxForwardLatency = new AtomicLong();
+
+    private CustomMetric[] batch;
+    private int size;
+    private long batchNumber;
+    private long batchQueuedAt;
+    private int queued;
+    private CompletableSubject belowWatermark;
+    private MessageConsumer<MetricBatch> consumer;
+
+    /**
+     * @param scheduler where the linger of batches is timed
+     * @throws IllegalArgumentException when metrics would skip a queue with a capacity, with a batch size of 1
+     */
+    public MetricEmitter(EventBus eventBus, JsonObject config, Scheduler scheduler) {
+        final int capacity = config.getInteger(COLLECTOR_EMIT_QUEUE_CAPACITY, DEFAULT_QUEUE_CAPACITY);
+
+        this.eventBus = eventBus;
+        this.scheduler = scheduler;
+        this.batchSize = config.getInteger(COLLECTOR_EMIT_BATCH_SIZE, DEFAULT_BATCH_SIZE);
+        this.linger = config.getInteger(COLLECTOR_EMIT_BATCH_LINGER, DEFAULT_BATCH_LINGER);
+
+        if (!isBatching() && capacity > 0) {
+            throw new IllegalArgumentException("Invalid " + COLLECTOR_EMIT_BATCH_SIZE + " '" + batchSize + "', expected more than 1 while "
+                    + COLLECTOR_EMIT_QUEUE_CAPACITY + " is " + capacity + ", or a capacity of 0 to send metrics without queueing them");
+        }
+
+        this.limits = Arrays.stream(Priority.values()).mapToInt(priority -> capacity > 0 ? priority.limit(capacity) : Integer.MAX_VALUE).toArray();
+        this.watermark = limits[0];
+        this.batch = isBatching() ? new CustomMetric[batchSize] : null;
+    }
+
+    private static LongAdder[] adders() {
+        final LongAdder[] adders = new LongAdder[Priority.values().length];
+
+        Arrays.setAll(adders, $ -> new LongAdder());
+        return adders;
+    }
+
+    /**
+     * Registers the codec and the consumer of the batches, which forwards them from the event loop of the caller.
+     */
+    public MetricEmitter register() {
+        if (isBatching()) {
+            eventBus.getDelegate().registerCodec(new MetricBatchCodec());
+            consumer = eventBus.localConsumer(BATCH_ADDRESS, message -> forward(message.body()));
+        }
+        return this;
+    }
+
+    public void unregister() {
+        if (consumer != null) {
+            consumer.unregister();
+            eventBus.getDelegate().unregisterCodec(MetricBatchCodec.NAME);
+            consumer = null;
+        }
+    }
+
+    public void emit(CustomMetric metric) {
+        emit(metric, Priority.NORMAL);
+    }
+
+    /**
+     * Adds a metric to the current batch, sending it once full, or drops it when the queue holds the share of its
+     * priority. Safe to call from any thread.
+     *
+     * @return whether the metric was queued rather than dropped
+     */
+    public boolean emit(CustomMetric metric, Priority priority) {
+        // Metrics only skip the queue when it has no capacity to account them against
+        if (!isBatching()) {
+            enqueued[priority.ordinal()].increment();
+            send(metric);
+            forwarded.increment();
+            return true;
+        }
+
+        final MetricBatch full;
+        final boolean started;
+        final long number;
+
+        synchronized (this) {
+            if (queued >= limits[priority.ordinal()]) {
+                dropped[priority.ordinal()].increment();
+                return false;
+            }
+
+            queued++;
+            if (size == 0) {
+                batchQueuedAt = System.nanoTime();
+            }
+            batch[size++] = metric;
+            started = size == 1;
+            number = batchNumber;
+            full = size == batchSize ? takeBatch() : null;
+        }
+
+        enqueued[priority.ordinal()].increment();
+
+        if (full != null) {
+            sendBatch(full);
+        } else if (started && linger > 0) {
+            scheduler.scheduleDirect(() -> flush(number), linger, TimeUnit.MILLISECONDS);
+        }
+        return true;
+    }
+
+    /**
+     * Sends the metrics of the current batch without waiting for it to fill, like at the end of a collection.
+     */
+    public void flush() {
+        final MetricBatch pending;
+
+        synchronized (this) {
+            pending = size > 0 ? takeBatch() : null;
+        }
+
+        if (pending != null) {
+            sendBatch(pending);
+        }
+    }
+
+    /**
+     * @return completes at once while metrics of every priority are admitted, otherwise once enough queued metrics
+     * were forwarded
+     */
+    public Completable awaitCapacity() {
+        if (!isBatching()) {
+            return Completable.complete();
+        }
+
+        final CompletableSubject waiting;
+
+        synchronized (this) {
+            if (queued < watermark) {
+                return Completable.complete();
+            }
+
+            if (belowWatermark == null) {
+                belowWatermark = CompletableSubject.create();
+            }
+            waiting = belowWatermark;
+        }
+
+        // The pending batch may be all that is left to drain
+        flush();
+        return waiting;
+    }
+
+    /**
+     * Sends the metrics queued, dropped and forwarded to the statful client since the last report, and the longest a
+     * batch waited to be forwarded. They skip the queue, so they are not dropped along with the metrics they report
+     * on. Only batching has a queue to report on.
+     */
+    public void reportStatistics() {
+        if (!isBatching()) {
+            return;
+        }
+
+        long totalDropped = 0;
+
+        for (Priority priority : Priority.values()) {
+            final List<Pair<String, String>> tags = Collections.singletonList(new Pair<>("priority", priority.name().toLowerCase()));
+            final long priorityDropped = dropped[priority.ordinal()].sumThenReset();
+
+            totalDropped += priorityDropped;
+            send(metric("emission.enqueued", enqueued[priority.ordinal()].sumThenReset(), tags, MetricType.COUNTER));
+            send(metric("emission.dropped", priorityDropped, tags, MetricType.COUNTER));
+        }
+
+        final int queuedNow;
+        synchronized (this) {
+            queuedNow = queued;
+        }
+
+        send(metric("emission.forwarded", forwarded.sumThenReset(), Collections.emptyList(), MetricType.COUNTER));
+        send(metric("emission.forward.latency", maxForwardLatency.getAndSet(0), Collections.emptyList(), MetricType.TIMER));
+        send(metric("emission.queued", queuedNow, Collections.emptyList(), MetricType.GAUGE));
+
+        if (totalDropped > 0) {
+            log().warn("Dropped {0} metrics with the emission queue full", totalDropped);
+        }
+    }
+
+    private static CustomMetric metric(String name, long value, List<Pair<String, String>> tags, MetricType type) {
+        return new CustomMetric.Builder()
+                .withMetricName(name)
+                .withValue(value)
+                .withTags(tags)
+                .withMetricType(type)
+                .build();
+    }
+
+    /**
+     * Flushes the batch started with the given number, unless it was already sent
+     */
+    private void flush(long number) {
+        final MetricBatch pending;
+
+        synchronized (this) {
+            pending = size > 0 && batchNumber == number ? takeBatch() : null;
+        }
+
+        if (pending != null) {
+            sendBatch(pending);
+        }
+    }
+
+    private MetricBatch takeBatch() {
+        final CustomMetric[] taken = size == batch.length ? batch : Arrays.copyOf(batch, size);
+
+        batch = new CustomMetric[batchSize];
+        size = 0;
+        batchNumber++;
+        return new MetricBatch(taken, batchQueuedAt);
+    }
+
+    private void sendBatch(MetricBatch metrics) {
+        try {
+            eventBus.send(BATCH_ADDRESS, metrics, batchOptions);
+        } catch (Throwable t) {
+            log().error("Failed to send a batch of {0} metrics", t, metrics.getMetrics().length);
+            release(metrics.getMetrics().length);
+        }
+    }
+
+    /**
+     * One send per metric, {@link CustomMetricsConsumer} takes no batches
+     */
+    void forward(MetricBatch metrics) {
+        try {
+            for (CustomMetric metric : metrics.getMetrics()) {
+                send(metric);
+            }
+
+            forwarded.add(metrics.getMetrics().length);
+            maxForwardLatency.accumulateAndGet(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - metrics.getQueuedAt()), Math::max);
+        } finally {
+            // Metrics not forwarded are lost either way, and would otherwise hold their room for good
+            release(metrics.getMetrics().length);
+        }
+    }
+
+    /**
+     * Frees the room of metrics no longer queued, resuming waiting scrapes once below the watermark
+     */
+    private void release(int count) {
+        final CompletableSubject resumed;
+
+        synchronized (this) {
+            queued -= count;
+            resumed = queued < watermark ? belowWatermark : null;
+            if (resumed != null) {
+                belowWatermark = null;
+            }
+        }
+
+        if (resumed != null) {
+            resumed.onComplete();
+        }
+    }
+
+    private void send(CustomMetric metric) {
+        try {
+            eventBus.send(CustomMetricsConsumer.ADDRESS, metric);
+        } catch (Throwable t) {
+            // The metric line needs the options of the client, which metrics built here do not have
+            log().error("Failed to send metric: {0} {1}", t, metric.getMetricName(), metric.getTags() == null ? "" : metric.getTags().stream()
+                    .map(tag -> tag.getLeft() + "=" + tag.getRight())
+                    .collect(Collectors.joining(",")));
+        }
+    }
+
+    private boolean isBatching() {
+        return batchSize > 1;
+    }
+}
@@ -0,0 +1,30 @@
+package com.statful.collector.k8s.emission;
+
+/**
+ * Classes of metrics, shed from the lowest once the emission queue fills up. Each class is admitted until the queue
+ * holds its share of the capacity, so the highest class keeps room after the others are dropped.
+ */
+public enum Priority {
+    /**
+     * Detail metrics with many series, like those of cAdvisor
+     */
+    LOW(0.5),
+    /**
+     * Node and additional endpoint metrics
+     */
+    NORMAL(0.75),
+    /**
+     * Pod resources, metrics-server usage and the metrics of the collector itself
+     */
+    HIGH(1);
+
+    private final double share;
+
+    Priority(double share) {
+        this.share = share;
+    }
+
+    int limit(int capacity) {
+        return (int) (capacity * share);
+    }
+}
@@ -0,0 +1,172 @@
+package com.statful.collector.k8s.inventory;
+
+import com.statful.collector.k8s.clients.KubeApi;
+import com.statful.collector.k8s.domain.KubernetesObject;
+import com.statful.collector.k8s.domain.ListPage;
+import com.statful.collector.k8s.domain.NodeInfo;
+import com.statful.collector.k8s.domain.PodInfo;
+import com.statful.collector.k8s.domain.WatchEvent;
+import com.statful.collector.k8s.utils.Loggable;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.subjects.CompletableSubject;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.ext.web.handler.impl.HttpStatusException;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * In-memory copy of the pods or nodes of the cluster, kept up to date like the informers of the kubernetes clients.
+ * <p>
+ * Once watched, the inventory lists every item once, then follows a watch from the resource version of the list and
+ * applies the events as they come, resuming from the last version seen whenever the api server ends the watch, or when
+ * nothing came for longer than the api server keeps a watch open, as the connection may have been lost silently. When
+ * that version is too old to resume from, the api server answers 410 Gone and the inventory lists everything again.
+ * Items are held as decoded, with only the fields the collector reads. An inventory that is not watched lists every
+ * item on each call.
+ */
+public class Inventory<T extends KubernetesObject> implements Loggable {
+    private static final long RETRY_DELAY = 5000;
+    // Longer than the api server is asked to keep a watch open, so only a watch that stalled without ending times out
+    private static final long IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(11);
+
+    private final String kind;
+    private final Supplier<Flowable<ListPage<T>>> list;
+    private final Function<String, Flowable<WatchEvent<T>>> watch;
+    private final Scheduler scheduler;
+
+    private final CompletableSubject synced = CompletableSubject.create();
+    private volatile Map<String, T> items = new ConcurrentHashMap<>();
+    private volatile boolean watched;
+    private volatile String resourceVersion;
+
+    /**
+     * @param list      lists every item in pages, along with the resource version of the list
+     * @param watch     watches the changes since the given resource version
+     * @param scheduler where retries of failed watches are delayed
+     */
+    public Inventory(String kind,
+                     Supplier<Flowable<ListPage<T>>> list,
+                     Function<String, Flowable<WatchEvent<T>>> watch,
+                     Scheduler scheduler) {
+        this.kind = kind;
+        this.list = list;
+        this.watch = watch;
+        this.scheduler = scheduler;
+    }
+
+    public static Inventory<PodInfo> pods(KubeApi.Client kubeApi, Scheduler scheduler) {
+        return new Inventory<>("pods", kubeApi::listPods, kubeApi::watchPods, scheduler);
+    }
+
+    public static Inventory<NodeInfo> nodes(KubeApi.Client kubeApi, Scheduler scheduler) {
+        return new Inventory<>("nodes", kubeApi::listNodes, kubeApi::watchNodes, scheduler);
+    }
+
+    /**
+     * @return every item, from the inventory once it is synced when watched
+     */
+    public Flowable<T> list() {
+        if (!watched) {
+            return list.get().concatMapIterable(ListPage::getItems);
+        }
+
+        return synced.andThen(Flowable.defer(() -> Flowable.fromIterable(new ArrayList<>(items.values()))));
+    }
+
+    /**
+     * Keeps the inventory up to date. Failures are logged and retried, so it never completes, disposing it stops
+     * following changes.
+     */
+    public Completable watch() {
+        return Completable.defer(() -> {
+            watched = true;
+            return resourceVersion == null ? relist() : follow();
+        })
+                .repeat()
+                .retryWhen(errors -> errors.flatMap(error -> {
+                    if (isGone(error)) {
+                        log().info("Listing {0} again, resource version {1} is too old to watch", kind, resourceVersion);
+                        resourceVersion = null;
+                        return Flowable.just(0L);
+                    } else if (error instanceof TimeoutException) {
+                        log().warn("Watching {0} again from resource version {1}, no event in {2}ms", kind, resourceVersion, IDLE_TIMEOUT);
+                        return Flowable.just(0L);
+                    }
+
+                    log().error("Failed to watch {0}, retrying in {1}ms", error, kind, RETRY_DELAY);
+                    return Flowable.timer(RETRY_DELAY, TimeUnit.MILLISECONDS, scheduler);
+                }));
+    }
+
+    public boolean isSynced() {
+        return synced.hasComplete();
+    }
+
+    private Completable relist() {
+        return Completable.defer(() -> {
+            final Map<String, T> listed = new ConcurrentHashMap<>();
+            final AtomicReference<String> listedVersion = new AtomicReference<>();
+
+            return list.get()
+                    .doOnNext(page -> {
+                        page.getItems().forEach(item -> listed.put(item.getKey(), item));
+                        listedVersion.set(page.getResourceVersion());
+                    })
+                    .ignoreElements()
+                    .doOnComplete(() -> {
+                        items = listed;
+                        resourceVersion = listedVersion.get();
+                        synced.onComplete();
+                        log().info("Listed {0} {1} at resource version {2}", listed.size(), kind, resourceVersion);
+                    });
+        });
+    }
+
+    private Completable follow() {
+        return watch.apply(resourceVersion)
+                .timeout(IDLE_TIMEOUT, TimeUnit.MILLISECONDS, scheduler)
+                .doOnNext(this::apply)
+                .ignoreElements();
+    }
+
+    private void apply(WatchEvent<T> event) {
+        final String type = event.getType();
+
+        switch (type) {
+            case WatchEvent.ADDED:
+            case WatchEvent.MODIFIED:
+                items.put(event.getObject().getKey(), event.getObject());
+                break;
+            case WatchEvent.DELETED:
+                items.remove(event.getObject().getKey());
+                break;
+            case WatchEvent.BOOKMARK:
+                break;
+            case WatchEvent.ERROR:
+                // 410 when the resource version is too old
+                throw new HttpStatusException(event.getCode() == 0 ? HttpResponseStatus.INTERNAL_SERVER_ERROR.code() : event.getCode(), event.getMessage());
+            default:
+                log().warn("Ignoring {0} watch event of type {1}", kind, type);
+                return;
+        }
+
+        resourceVersion = event.getResourceVersion();
+    }
+
+    private static boolean isGone(Throwable error) {
+        final int gone = HttpResponseStatus.GONE.code();
+
+        return error instanceof HttpStatusException && ((HttpStatusException) error).getStatusCode() == gone
+                || error instanceof ReplyException && ((ReplyException) error).failureCode() == gone;
+    }
+}
@@ -0,0 +1,10 @@
+package com.statful.collector.k8s.rollup;
+
+/**
+ * How the samples of a group are combined into its rolled up value
+ */
+public enum Aggregation {
+    SUM,
+    MAX,
+    AVG
+}
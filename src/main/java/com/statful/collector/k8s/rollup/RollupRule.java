@@ -0,0 +1,77 @@
+package com.statful.collector.k8s.rollup;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Rolls up the samples of a metric into one value per distinct combination of the values of the grouping tags
+ */
+public final class RollupRule {
+    private static final String METRIC = "metric";
+    private static final String AGGREGATION = "aggregation";
+    private static final String GROUP_BY = "groupBy";
+    private static final String NAME = "name";
+    private static final String KEEP_RAW = "keepRaw";
+
+    private final String metric;
+    private final Aggregation aggregation;
+    private final List<String> groupBy;
+    private final String name;
+    private final boolean keepRaw;
+
+    /**
+     * @param name    of the rolled up metric
+     * @param keepRaw whether the samples rolled up are sent as well
+     */
+    public RollupRule(String metric, Aggregation aggregation, List<String> groupBy, String name, boolean keepRaw) {
+        this.metric = metric;
+        this.aggregation = aggregation;
+        this.groupBy = Collections.unmodifiableList(groupBy);
+        this.name = name;
+        this.keepRaw = keepRaw;
+    }
+
+    /**
+     * Reads a rule like {@code {"metric": "container_cpu_usage_seconds_total", "aggregation": "sum", "groupBy":
+     * ["namespace"]}}, named after the metric and its aggregation unless a name is given, and dropping the samples
+     * rolled up unless {@code keepRaw} is set.
+     */
+    static RollupRule fromJson(JsonObject rule) {
+        final String metric = rule.getString(METRIC);
+        final Aggregation aggregation = Aggregation.valueOf(rule.getString(AGGREGATION, "sum").toUpperCase());
+        final List<String> groupBy = rule.getJsonArray(GROUP_BY, new JsonArray()).stream()
+                .map(String.class::cast)
+                .collect(Collectors.toList());
+
+        if (metric == null || metric.isEmpty()) {
+            throw new IllegalArgumentException("Rollup without a metric: " + rule.encode());
+        }
+
+        return new RollupRule(metric, aggregation, groupBy, rule.getString(NAME, metric + "." + aggregation.name().toLowerCase()),
+                rule.getBoolean(KEEP_RAW, false));
+    }
+
+    public String getMetric() {
+        return metric;
+    }
+
+    public Aggregation getAggregation() {
+        return aggregation;
+    }
+
+    public List<String> getGroupBy() {
+        return groupBy;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isKeepRaw() {
+        return keepRaw;
+    }
+}
@@ -0,0 +1,185 @@
+package com.statful.collector.k8s.rollup;
+
+import com.statful.client.CustomMetric;
+import com.statful.client.MetricType;
+import com.statful.utils.Pair;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * Rolls up the samples of a collection cycle, like the per container series of cAdvisor, into series of the grouping
+ * tags only, like namespaces or workloads.
+ * <p>
+ * Samples are folded into an accumulator per group as they are converted, from every node and every converting
+ * thread, so memory grows with the number of groups and not with the number of samples. The rolled up metrics are
+ * taken once the cycle completes.
+ */
+public class Rollups {
+    private static final String COLLECTOR_ROLLUPS = "collector.rollups";
+
+    private final Map<String, List<RollupRule>> rules;
+    private final Map<GroupKey, Accumulator> accumulators = new ConcurrentHashMap<>();
+
+    public Rollups(List<RollupRule> rules) {
+        this.rules = rules.stream().collect(Collectors.groupingBy(RollupRule::getMetric, HashMap::new, Collectors.toList()));
+    }
+
+    public static Rollups fromConfig(JsonObject config) {
+        return new Rollups(config.getJsonArray(COLLECTOR_ROLLUPS, new JsonArray(emptyList())).stream()
+                .map(JsonObject.class::cast)
+                .map(RollupRule::fromJson)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Folds a sample into the groups of the rules of its metric. Safe to call from any thread.
+     *
+     * @return whether the sample is still to be sent, when no rule rolls it up or one of its rules keeps the samples
+     */
+    public boolean accumulate(CustomMetric metric) {
+        final List<RollupRule> metricRules = rules.isEmpty() ? null : rules.get(metric.getMetricName());
+
+        if (metricRules == null) {
+            return true;
+        }
+
+        final double value = metric.getValue().doubleValue();
+        boolean keepRaw = false;
+
+        for (RollupRule rule : metricRules) {
+            accumulators.computeIfAbsent(new GroupKey(rule, groupValues(rule, metric.getTags())), key -> new Accumulator(metric.getMetricType()))
+                    .add(value);
+            keepRaw |= rule.isKeepRaw();
+        }
+
+        return keepRaw;
+    }
+
+    /**
+     * @return the rolled up metrics of the samples accumulated so far, starting over
+     */
+    public List<CustomMetric> drain() {
+        final List<CustomMetric> metrics = new ArrayList<>(accumulators.size());
+
+        accumulators.keySet().forEach(key -> {
+            final Accumulator accumulator = accumulators.remove(key);
+
+            if (accumulator != null) {
+                metrics.add(key.toMetric(accumulator));
+            }
+        });
+
+        return metrics;
+    }
+
+    /**
+     * Discards the samples accumulated so far, like those of a cancelled cycle
+     */
+    public void reset() {
+        accumulators.clear();
+    }
+
+    private static String[] groupValues(RollupRule rule, List<Pair<String, String>> tags) {
+        final List<String> groupBy = rule.getGroupBy();
+        final String[] values = new String[groupBy.size()];
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = "";
+            for (Pair<String, String> tag : tags == null ? Collections.<Pair<String, String>>emptyList() : tags) {
+                if (groupBy.get(i).equals(tag.getLeft())) {
+                    values[i] = tag.getRight();
+                    break;
+                }
+            }
+        }
+
+        return values;
+    }
+
+    private static final class GroupKey {
+        private final RollupRule rule;
+        private final String[] values;
+        private final int hash;
+
+        private GroupKey(RollupRule rule, String[] values) {
+            this.rule = rule;
+            this.values = values;
+            this.hash = 31 * System.identityHashCode(rule) + Arrays.hashCode(values);
+        }
+
+        private CustomMetric toMetric(Accumulator accumulator) {
+            final List<Pair<String, String>> tags = new ArrayList<>(values.length);
+
+            // Samples without a grouping tag are grouped together, sent without it
+            for (int i = 0; i < values.length; i++) {
+                if (!values[i].isEmpty()) {
+                    tags.add(new Pair<>(rule.getGroupBy().get(i), values[i]));
+                }
+            }
+
+            return new CustomMetric.Builder()
+                    .withMetricName(rule.getName())
+                    .withValue(accumulator.get(rule.getAggregation()))
+                    .withTags(tags)
+                    .withMetricType(accumulator.type)
+                    .build();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof GroupKey)) {
+                return false;
+            }
+
+            final GroupKey key = (GroupKey) other;
+            return hash == key.hash && rule == key.rule && Arrays.equals(values, key.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Accumulator {
+        private final MetricType type;
+        private double sum;
+        private double max = Double.NEGATIVE_INFINITY;
+        private long count;
+
+        private Accumulator(MetricType type) {
+            this.type = type;
+        }
+
+        private synchronized void add(double value) {
+            sum += value;
+            max = Math.max(max, value);
+            count++;
+        }
+
+        private synchronized double get(Aggregation aggregation) {
+            switch (aggregation) {
+                case MAX:
+                    return max;
+                case AVG:
+                    return sum / count;
+                default:
+                    return sum;
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.statful.collector.k8s.scheduling;
+
+import io.reactivex.Flowable;
+import io.reactivex.subjects.CompletableSubject;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non blocking semaphore for reactive work. Work waits in line for a permit without holding a thread, and gives it
+ * back once it terminates or is cancelled, whether it was already running or still waiting.
+ */
+public class ConcurrencyLimiter {
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+    private final AtomicInteger drains = new AtomicInteger();
+    private int available;
+
+    public ConcurrencyLimiter(int permits) {
+        this.available = Math.max(1, permits);
+    }
+
+    /**
+     * @return the work, subscribed only once a permit was granted, in the order it was subscribed
+     */
+    public <T> Flowable<T> limit(Flowable<T> work) {
+        return Flowable.defer(() -> {
+            final Waiter waiter = new Waiter();
+
+            synchronized (this) {
+                waiters.add(waiter);
+            }
+            drain();
+
+            return waiter.granted.andThen(work).doFinally(() -> finish(waiter));
+        });
+    }
+
+    public synchronized int getWaiting() {
+        return waiters.size();
+    }
+
+    private void finish(Waiter waiter) {
+        synchronized (this) {
+            if (!waiter.isGranted) {
+                waiters.remove(waiter);
+                return;
+            }
+            available++;
+        }
+        drain();
+    }
+
+    /**
+     * Grants permits outside the lock and without recursion, as granted work may complete right away and release its
+     * permit from within this loop.
+     */
+    private void drain() {
+        if (drains.getAndIncrement() != 0) {
+            return;
+        }
+
+        do {
+            for (Waiter waiter = nextGranted(); waiter != null; waiter = nextGranted()) {
+                waiter.granted.onComplete();
+            }
+        } while (drains.decrementAndGet() != 0);
+    }
+
+    private synchronized Waiter nextGranted() {
+        if (available == 0 || waiters.isEmpty()) {
+            return null;
+        }
+
+        final Waiter waiter = waiters.poll();
+        waiter.isGranted = true;
+        available--;
+
+        return waiter;
+    }
+
+    private static final class Waiter {
+        private final CompletableSubject granted = CompletableSubject.create();
+        // Guarded by the limiter
+        private boolean isGranted;
+    }
+}
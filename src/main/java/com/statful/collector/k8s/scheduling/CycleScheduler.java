@@ -0,0 +1,98 @@
+package com.statful.collector.k8s.scheduling;
+
+import com.statful.collector.k8s.utils.Loggable;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * Runs collection cycles once per period, never two at the same time.
+ * <p>
+ * A cycle still running when its deadline is reached is cancelled, which cancels every request it has in flight. A
+ * cycle overruns when it lasts longer than the period, in which case the ticks missed meanwhile are either skipped,
+ * so the next cycle starts on the next tick, or delayed, so the next cycle starts as soon as the previous one ends.
+ */
+public class CycleScheduler implements Loggable {
+    private static final String COLLECTOR_PERIOD = "collector.period";
+    private static final String COLLECTOR_CYCLE_DEADLINE = "collector.cycle.deadline";
+    private static final String COLLECTOR_CYCLE_OVERRUN = "collector.cycle.overrun";
+    private static final int DEFAULT_PERIOD = 60000;
+
+    private final Scheduler scheduler;
+    private final long period;
+    private final long deadline;
+    private final OverrunPolicy overrunPolicy;
+
+    /**
+     * @param scheduler where periods and deadlines are timed
+     */
+    public CycleScheduler(JsonObject config, Scheduler scheduler) {
+        this.scheduler = scheduler;
+        this.period = config.getInteger(COLLECTOR_PERIOD, DEFAULT_PERIOD);
+        this.deadline = config.getInteger(COLLECTOR_CYCLE_DEADLINE, (int) period);
+        this.overrunPolicy = OverrunPolicy.from(config.getString(COLLECTOR_CYCLE_OVERRUN, ""));
+    }
+
+    /**
+     * @param cycle supplies the cycle to run on every tick, the first tick is one period after subscribing
+     * @return never completes, disposing it cancels the cycle running
+     */
+    public Completable run(Callable<Completable> cycle) {
+        final Flowable<Long> ticks = Flowable.interval(period, period, TimeUnit.MILLISECONDS, scheduler);
+
+        final Flowable<Long> pending = overrunPolicy == OverrunPolicy.DELAY
+                ? ticks.onBackpressureLatest()
+                : ticks.onBackpressureDrop(tick -> log().warn("Skipping collection cycle, the previous one is still running"));
+
+        return pending
+                // A single cycle at a time, the next tick is only requested once it ended
+                .flatMapCompletable(tick -> runCycle(cycle), false, 1);
+    }
+
+    private Completable runCycle(Callable<Completable> cycle) {
+        return Completable.defer(cycle)
+                .timeout(deadline, TimeUnit.MILLISECONDS, scheduler)
+                .doOnError(e -> {
+                    if (e instanceof TimeoutException) {
+                        log().warn("Collection cycle cancelled after reaching its deadline of {0}ms", deadline);
+                    } else {
+                        log().error("Collection cycle failed", e);
+                    }
+                })
+                .onErrorComplete();
+    }
+
+    enum OverrunPolicy {
+        /**
+         * Ticks missed while a cycle overruns are dropped
+         */
+        SKIP,
+        /**
+         * The latest tick missed while a cycle overruns starts the next cycle once it ends
+         */
+        DELAY;
+
+        /**
+         * @throws IllegalArgumentException when the policy is not one of skip or delay
+         */
+        static OverrunPolicy from(String policy) {
+            if (policy == null || policy.isEmpty()) {
+                return SKIP;
+            }
+
+            try {
+                return valueOf(policy.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid cycle overrun policy '" + policy + "', expected one of "
+                        + Arrays.stream(values()).map(value -> value.name().toLowerCase()).collect(Collectors.joining(", ")));
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.statful.collector.k8s.scheduling;
+
+import com.google.common.hash.Hashing;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.vertx.core.json.JsonObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * Schedules scrapes so that targets do not all hit the api server proxy at the same instant.
+ * <p>
+ * Each target starts at a fixed offset into the collection period, derived from a hash of its source and name, so
+ * starts are spread across the period and every target keeps the same phase from one period to the next. Once
+ * started, a scrape waits in line until both its source and the whole collector are below their limit of scrapes in
+ * flight, and holds its permits until its response is fully consumed.
+ */
+public class ScrapeScheduler {
+    private static final String COLLECTOR_PERIOD = "collector.period";
+    private static final String COLLECTOR_SCRAPE_CONCURRENCY = "collector.scrape.concurrency";
+    private static final String COLLECTOR_SCRAPE_CONCURRENCY_SOURCE = "collector.scrape.concurrency.source";
+    private static final String COLLECTOR_SCRAPE_SPREAD = "collector.scrape.spread";
+    private static final int DEFAULT_PERIOD = 60000;
+    private static final int DEFAULT_CONCURRENCY = 32;
+    private static final int DEFAULT_SOURCE_CONCURRENCY = 16;
+    private static final double DEFAULT_SPREAD = 0.5;
+
+    private final Scheduler scheduler;
+    private final long spreadWindow;
+    private final int sourceConcurrency;
+    private final ConcurrencyLimiter limiter;
+    private final Map<String, ConcurrencyLimiter> sourceLimiters = new ConcurrentHashMap<>();
+
+    /**
+     * @param scheduler where the delayed starts of scrapes are timed
+     */
+    public ScrapeScheduler(JsonObject config, Scheduler scheduler) {
+        this.scheduler = scheduler;
+        this.spreadWindow = (long) (config.getInteger(COLLECTOR_PERIOD, DEFAULT_PERIOD) * config.getDouble(COLLECTOR_SCRAPE_SPREAD, DEFAULT_SPREAD));
+        this.sourceConcurrency = config.getInteger(COLLECTOR_SCRAPE_CONCURRENCY_SOURCE, DEFAULT_SOURCE_CONCURRENCY);
+        this.limiter = new ConcurrencyLimiter(config.getInteger(COLLECTOR_SCRAPE_CONCURRENCY, DEFAULT_CONCURRENCY));
+    }
+
+    /**
+     * @param source    kind of scrape, limited on its own, like node or cadvisor
+     * @param target    what is scraped, like a node name, which sets the offset of its start
+     * @param scrape    the scrape, subscribed once it is its turn
+     * @param queueWait receives the milliseconds the scrape waited for a permit after its start offset
+     */
+    public <T> Flowable<T> schedule(String source, String target, Flowable<T> scrape, LongConsumer queueWait) {
+        final ConcurrencyLimiter sourceLimiter = sourceLimiters.computeIfAbsent(source, $ -> new ConcurrencyLimiter(sourceConcurrency));
+        final long offset = getOffset(source, target);
+
+        final Flowable<T> queued = Flowable.defer(() -> {
+            final long queuedAt = scheduler.now(TimeUnit.MILLISECONDS);
+
+            // The source permit is taken first, so scrapes waiting on a busy source do not hold global permits
+            return sourceLimiter.limit(limiter.limit(Flowable.defer(() -> {
+                queueWait.accept(scheduler.now(TimeUnit.MILLISECONDS) - queuedAt);
+                return scrape;
+            })));
+        });
+
+        return offset == 0 ? queued : Completable.timer(offset, TimeUnit.MILLISECONDS, scheduler).andThen(queued);
+    }
+
+    /**
+     * @return the delay of the start of the target into the spread window, the same for every period
+     */
+    long getOffset(String source, String target) {
+        if (spreadWindow <= 0) {
+            return 0;
+        }
+
+        final int hash = Hashing.murmur3_32().hashString(source + '/' + target, StandardCharsets.UTF_8).asInt();
+        return Math.floorMod((long) hash, spreadWindow);
+    }
+
+    /**
+     * @return the number of scrapes started and waiting for a permit
+     */
+    public int getWaiting() {
+        return limiter.getWaiting() + sourceLimiters.values().stream().mapToInt(ConcurrencyLimiter::getWaiting).sum();
+    }
+}
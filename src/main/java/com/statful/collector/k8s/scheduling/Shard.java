@@ -0,0 +1,101 @@
+package com.statful.collector.k8s.scheduling;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import io.vertx.core.json.JsonObject;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The part of the cluster scraped by one of several collector replicas, usually the pods of a stateful set, each
+ * configured with its ordinal and the number of replicas.
+ * <p>
+ * Targets are assigned with rendezvous hashing: every replica scores a target with a hash of its ordinal and the
+ * target name, and the highest score owns it. Assignments do not depend on the other targets, and changing the number
+ * of replicas from N to N + 1 only moves the targets now owned by the new replica, about 1 / (N + 1) of them. Cluster
+ * wide sources are collected by the first replica alone.
+ */
+public class Shard {
+    private static final String COLLECTOR_SHARD_ORDINAL = "collector.shard.ordinal";
+    private static final String COLLECTOR_SHARD_REPLICAS = "collector.shard.replicas";
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final int ordinal;
+    private final int replicas;
+
+    public Shard(int ordinal, int replicas) {
+        if (replicas < 1 || ordinal < 0 || ordinal >= replicas) {
+            throw new IllegalArgumentException("Invalid shard " + ordinal + " of " + replicas + " replicas");
+        }
+
+        this.ordinal = ordinal;
+        this.replicas = replicas;
+    }
+
+    /**
+     * @throws IllegalArgumentException when the ordinal or the number of replicas is not a number, like the host name
+     *                                  suffix of a pod that is not part of a stateful set
+     */
+    public static Shard fromConfig(JsonObject config) {
+        return new Shard(getNumber(config, COLLECTOR_SHARD_ORDINAL, 0), getNumber(config, COLLECTOR_SHARD_REPLICAS, 1));
+    }
+
+    /**
+     * System properties read by the configuration are numbers of any type, like 0.0 for an ordinal of 0
+     */
+    private static int getNumber(JsonObject config, String key, int defaultValue) {
+        final Object value = config.getValue(key);
+
+        if (value == null) {
+            return defaultValue;
+        } else if (!(value instanceof Number) || ((Number) value).doubleValue() != ((Number) value).intValue()) {
+            throw new IllegalArgumentException("Invalid " + key + " '" + value + "', expected a whole number");
+        }
+        return ((Number) value).intValue();
+    }
+
+    /**
+     * @return whether this replica scrapes the target, like a node name
+     */
+    public boolean owns(String target) {
+        return replicas == 1 || getOwner(target, replicas) == ordinal;
+    }
+
+    /**
+     * @return whether this replica collects the sources covering the whole cluster, like the pod list
+     */
+    public boolean ownsClusterSources() {
+        return ordinal == 0;
+    }
+
+    public int getOrdinal() {
+        return ordinal;
+    }
+
+    public int getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * @return the ordinal of the replica owning the target among the given number of replicas
+     */
+    static int getOwner(String target, int replicas) {
+        int owner = 0;
+        long highestScore = Long.MIN_VALUE;
+
+        for (int replica = 0; replica < replicas; replica++) {
+            final long score = HASH.newHasher()
+                    .putInt(replica)
+                    .putString(target, StandardCharsets.UTF_8)
+                    .hash()
+                    .asLong();
+
+            if (score > highestScore) {
+                highestScore = score;
+                owner = replica;
+            }
+        }
+
+        return owner;
+    }
+}
@@ -0,0 +1,36 @@
+package com.statful.collector.k8s.utils;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.statful.client.CustomMetric;
+import com.statful.utils.Pair;
+
+/**
+ * Identifies the series of a metric, its name and tags, with a 64 bit hash.
+ */
+public final class Fingerprints {
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private Fingerprints() {
+    }
+
+    /**
+     * @return the same fingerprint for the same name and tags, whatever the order of the tags
+     */
+    public static long of(CustomMetric metric) {
+        long tags = 0;
+
+        // Summing the hashes of the tags ignores their order without sorting them
+        if (metric.getTags() != null) {
+            for (Pair<String, String> tag : metric.getTags()) {
+                tags += HASH.newHasher()
+                        .putUnencodedChars(tag.getLeft())
+                        .putChar('=')
+                        .putUnencodedChars(String.valueOf(tag.getRight()))
+                        .hash().asLong();
+            }
+        }
+
+        return HASH.newHasher().putUnencodedChars(metric.getMetricName()).putLong(tags).hash().asLong();
+    }
+}
@@ -4,22 +4,34 @@ import com.statful.collector.k8s.NodeMetricsCollector;
 import com.statful.collector.k8s.clients.KubeApi;
 import com.statful.collector.k8s.clients.SimpleWebClient;
 import com.statful.collector.k8s.config.CollectorConfig;
+import com.statful.collector.k8s.domain.NodeInfo;
+import com.statful.collector.k8s.domain.PodInfo;
+import com.statful.collector.k8s.emission.MetricEmitter;
+import com.statful.collector.k8s.inventory.Inventory;
+import com.statful.collector.k8s.scheduling.CycleScheduler;
+import com.statful.collector.k8s.scheduling.ScrapeScheduler;
+import com.statful.collector.k8s.scheduling.Shard;
 import com.statful.collector.k8s.utils.Loggable;
 import com.statful.converter.prometheus.PrometheusParser;
 import com.statful.converter.prometheus.PrometheusParserOptions;
+import com.statful.converter.prometheus.PrometheusProtobufParser;
+import io.reactivex.Completable;
 import io.reactivex.Observable;
+import io.reactivex.Scheduler;
 import io.reactivex.Single;
 import io.vertx.core.Future;
 import io.vertx.core.json.JsonObject;
 import io.vertx.reactivex.config.ConfigRetriever;
 import io.vertx.reactivex.core.AbstractVerticle;
+import io.vertx.reactivex.core.RxHelper;
 import io.vertx.reactivex.core.eventbus.EventBus;
 
 import java.util.List;
 
 public class CollectionVerticle extends AbstractVerticle implements Loggable {
 
-    private static final int COLLECT_SCHEDULER_PERIOD = 60000;
+    private static final String PARSER_POOL_NAME = "prometheus-parser";
+    private static final String WATCH_DISABLED = "collector.watch.disabled";
 
     @Override
     public void start(Future<Void> startFuture) {
@@ -32,24 +44,57 @@ public class CollectionVerticle extends AbstractVerticle implements Loggable {
                 .flatMapSingle(this::deployVerticle)
                 .toList();
 
+        // Invalid configuration fails the start here, rather than once the collection is subscribed to
         config
-                .zipWith(verticles, (conf, $) -> conf)
-                .subscribe(conf -> {
-                    final int collectSchedulerPeriod = conf.getInteger("collector.period", COLLECT_SCHEDULER_PERIOD);
-
-                    final EventBus eventBus = vertx.eventBus();
-                    final KubeApi.Client kubeApi = new KubeApi.Client(eventBus);
-                    final SimpleWebClient.Client simpleWebClient = new SimpleWebClient.Client(eventBus);
-                    final PrometheusParser textParser = new PrometheusParser(buildPrometheusParserOptions(conf));
-                    final NodeMetricsCollector nodeMetricsCollector = new NodeMetricsCollector(kubeApi, simpleWebClient, eventBus, textParser, conf);
-
-                    vertx.setPeriodic(collectSchedulerPeriod, id -> nodeMetricsCollector.collect());
-                }, e -> {
+                .map(this::createCollection)
+                .zipWith(verticles, (collection, $) -> collection)
+                .subscribe(collection -> collection.subscribe(() -> {
+                }, e -> log().error("Collection stopped.", e)), e -> {
                     log().error("Failed to start collector.", e);
                     startFuture.fail(e);
                 });
     }
 
+    /**
+     * Reads the whole configuration, so invalid values throw before anything starts
+     *
+     * @return watches the inventories and runs collection cycles once subscribed to, never completes
+     */
+    private Completable createCollection(JsonObject conf) {
+        final EventBus eventBus = vertx.eventBus();
+        final KubeApi.Client kubeApi = new KubeApi.Client(eventBus);
+        final SimpleWebClient.Client simpleWebClient = new SimpleWebClient.Client(eventBus);
+        final PrometheusParserOptions parserOptions = buildPrometheusParserOptions(conf);
+        // Responses are converted on a dedicated pool, so large payloads never block the event loop
+        final Scheduler parserScheduler = RxHelper.blockingScheduler(
+                vertx.createSharedWorkerExecutor(PARSER_POOL_NAME, parserOptions.getParserThreads()));
+        final PrometheusParser textParser = new PrometheusParser(parserOptions, parserScheduler);
+        final PrometheusProtobufParser protobufParser = new PrometheusProtobufParser(parserOptions, parserScheduler);
+        final ScrapeScheduler scrapeScheduler = new ScrapeScheduler(conf, RxHelper.scheduler(vertx));
+        final Inventory<PodInfo> pods = Inventory.pods(kubeApi, RxHelper.scheduler(vertx));
+        final Inventory<NodeInfo> nodes = Inventory.nodes(kubeApi, RxHelper.scheduler(vertx));
+        final MetricEmitter emitter = new MetricEmitter(eventBus, conf, RxHelper.scheduler(vertx));
+        final NodeMetricsCollector nodeMetricsCollector = new NodeMetricsCollector(kubeApi, simpleWebClient, emitter, textParser, protobufParser,
+                scrapeScheduler, pods, nodes, conf);
+        final CycleScheduler cycleScheduler = new CycleScheduler(conf, RxHelper.scheduler(vertx));
+        final boolean watchDisabled = conf.getBoolean(WATCH_DISABLED, false);
+        // Only the shard collecting cluster wide sources reads the pods
+        final boolean watchPods = Shard.fromConfig(conf).ownsClusterSources();
+
+        return Completable.defer(() -> {
+            emitter.register();
+
+            if (!watchDisabled) {
+                if (watchPods) {
+                    pods.watch().subscribe();
+                }
+                nodes.watch().subscribe();
+            }
+
+            return cycleScheduler.run(nodeMetricsCollector::collect);
+        });
+    }
+
     private Single<String> deployVerticle(AbstractVerticle verticle) {
         return vertx.rxDeployVerticle(verticle)
                 .doOnSuccess(ignore -> log().info("{0} client successfully deployed.", verticle.getClass().getName()))
@@ -3,7 +3,9 @@ package com.statful.converter;
 import com.statful.client.CustomMetric;
 import com.statful.utils.Pair;
 import io.reactivex.Flowable;
+import io.vertx.reactivex.core.buffer.Buffer;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.function.Consumer;
 
@@ -13,8 +15,17 @@ public abstract class Converter {
     public abstract List<CustomMetric> convert(String text, List<Pair<String, String>> tags);
     public abstract Flowable<CustomMetric> rxConvert(String text);
     public abstract Flowable<CustomMetric> rxConvert(String text, List<Pair<String, String>> tags);
+    public abstract Flowable<CustomMetric> rxConvert(Flowable<Buffer> chunks);
+    public abstract Flowable<CustomMetric> rxConvert(Flowable<Buffer> chunks, List<Pair<String, String>> tags);
     protected abstract CustomMetric.Builder beforeBuild(CustomMetric.Builder builder);
     protected abstract CustomMetric afterBuild(CustomMetric metrics);
     protected abstract String beforeConversion(String metrics);
     protected abstract List<CustomMetric> afterConversion(List<CustomMetric> metrics);
+
+    /**
+     * @return metrics about the converter itself since the last report, tagged with the given tags
+     */
+    public List<CustomMetric> report(List<Pair<String, String>> tags) {
+        return Collections.emptyList();
+    }
 }
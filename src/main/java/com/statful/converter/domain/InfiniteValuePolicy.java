@@ -0,0 +1,29 @@
+package com.statful.converter.domain;
+
+public enum InfiniteValuePolicy {
+    /**
+     * Samples with an infinite value are not sent
+     */
+    DROP,
+    /**
+     * Infinite values are sent as the largest finite double of the same sign
+     */
+    CLAMP;
+
+    public static InfiniteValuePolicy from(String policy) {
+        return policy == null || policy.isEmpty() ? DROP : valueOf(policy.toUpperCase());
+    }
+
+    /**
+     * @return the value to send, or NaN when the sample should be dropped
+     */
+    public double apply(double value) {
+        if (!Double.isInfinite(value)) {
+            return value;
+        } else if (this == CLAMP) {
+            return value > 0 ? Double.MAX_VALUE : -Double.MAX_VALUE;
+        } else {
+            return Double.NaN;
+        }
+    }
+}
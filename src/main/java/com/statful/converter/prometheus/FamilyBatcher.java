@@ -0,0 +1,52 @@
+package com.statful.converter.prometheus;
+
+/**
+ * Groups complete lines of the text format into batches of whole families, cut right before a type line once a batch
+ * reaches the minimum size. Samples only depend on the type line of their family, so each batch can be converted on
+ * its own.
+ */
+final class FamilyBatcher {
+    private static final String TYPE_LINE = "\n# TYPE ";
+
+    private final int minBatchSize;
+    private final StringBuilder pending = new StringBuilder();
+    private int lastTypeLine;
+
+    FamilyBatcher(int minBatchSize) {
+        this.minBatchSize = minBatchSize;
+    }
+
+    /**
+     * @param lines complete lines, as given by the line assembler
+     * @return a batch of whole families, or an empty string while there is not enough text for one
+     */
+    String append(String lines) {
+        // Pending text always ends with a new line, which may be the start of a type line
+        final int searchFrom = Math.max(0, pending.length() - 1);
+        pending.append(lines);
+
+        for (int typeLine = pending.indexOf(TYPE_LINE, searchFrom); typeLine >= 0; typeLine = pending.indexOf(TYPE_LINE, typeLine + 1)) {
+            lastTypeLine = typeLine + 1;
+        }
+
+        if (pending.length() < minBatchSize || lastTypeLine == 0) {
+            return "";
+        }
+
+        final String batch = pending.substring(0, lastTypeLine);
+        pending.delete(0, lastTypeLine);
+        lastTypeLine = 0;
+
+        return batch;
+    }
+
+    /**
+     * @return the remaining families once the body ended, possibly empty
+     */
+    String flush() {
+        final String batch = pending.toString();
+        pending.setLength(0);
+        lastTypeLine = 0;
+        return batch;
+    }
+}
@@ -1,38 +1,37 @@
 package com.statful.converter.prometheus;
 
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableMap;
 import com.statful.client.CustomMetric;
 import com.statful.client.MetricType;
 import com.statful.collector.k8s.utils.Loggable;
 import com.statful.converter.Converter;
+import com.statful.converter.domain.InfiniteValuePolicy;
+import com.statful.converter.prometheus.PrometheusTextScanner.Line;
+import com.statful.converter.util.LineAssembler;
 import com.statful.utils.Pair;
-import io.reactivex.BackpressureStrategy;
 import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.functions.Function;
+import io.vertx.reactivex.core.buffer.Buffer;
 
-import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Consumer;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 public class PrometheusParser extends Converter implements Loggable {
 
-    private static final Pattern TYPE_PATTERN = Pattern.compile("# TYPE (?<name>[a-z_]+) (?<type>[a-z]+)");
-    private static final Pattern SAMPLE_PATTERN = Pattern.compile("^(?<name>[a-z_]+)(\\{(?<tags>[a-zA-Z0-9.+:/%?=&<>_\",-]+)})? (?<value>[0-9A-Za-z.e+-]+)");
-
-    private static final String NAME = "name";
-    private static final String TYPE = "type";
-    private static final String HISTOGRAM = "histogram";
-    private static final String SUMMARY = "summary";
-    private static final String VALUE = "value";
-    private static final String NOT_A_NUMBER = "NaN";
-    private static final String TAGS = "tags";
-    private static final String COUNTER = "counter";
-    private static final String GAUGE = "gauge";
-    private static final String SUM_SUFFIX = "_sum";
-    private static final String COUNT_SUFFIX = "_count";
+    static final String HISTOGRAM = "histogram";
+    static final String SUMMARY = "summary";
+    static final String COUNTER = "counter";
+    static final String GAUGE = "gauge";
+    static final String SUM_SUFFIX = "_sum";
+    static final String COUNT_SUFFIX = "_count";
 
     private static final Map<String, MetricType> METRIC_TYPE_CONVERTER = new ImmutableMap.Builder<String, MetricType>()
             .put(HISTOGRAM, MetricType.TIMER)
@@ -41,22 +40,104 @@ public class PrometheusParser extends Converter implements Loggable {
             .put(GAUGE, MetricType.GAUGE)
             .build();
 
-    private final List<Pair<Pattern, String>> tagValueReplacements;
+    private final TagValueReplacer tagValueReplacer;
     private final Pattern ignoreMetricNamesPattern;
     private final boolean shouldFilterMetricNamesByPattern;
     private final Set<String> ignoreMetricNames;
+    private final boolean hasMetricNamesAllowlist;
+    private final Pattern includeMetricNamesPattern;
+    private final boolean shouldIncludeMetricNamesByPattern;
+    private final Set<String> includeMetricNames;
+    private final ConcurrentMap<String, Boolean> familyDecisions = new ConcurrentHashMap<>();
     private final Pattern ignoreTagNamesPattern;
     private final boolean shouldFilterTagNamesByPattern;
     private final Set<String> ignoreTagNames;
+    private final Cache<String, List<Pair<String, String>>> tagsCache;
+    private CacheStats reportedTagsCacheStats = new CacheStats(0, 0, 0, 0, 0, 0);
+    private CacheStats reportedTagValueCacheStats = new CacheStats(0, 0, 0, 0, 0, 0);
+    private final Cache<String, String> tagValueCache;
+    private final InfiniteValuePolicy infiniteValuePolicy;
+    private final Scheduler scheduler;
+    private final int parserThreads;
+    private final int parserBatchSize;
 
     public PrometheusParser(PrometheusParserOptions options) {
-        this.tagValueReplacements = options.getTagValueReplacements();
+        this(options, null);
+    }
+
+    /**
+     * @param scheduler runs the conversion of streamed responses off the calling thread, in batches of whole families
+     *                  converted in parallel, or null to convert them sequentially on the calling thread
+     */
+    public PrometheusParser(PrometheusParserOptions options, Scheduler scheduler) {
+        this.tagValueReplacer = options.getTagValueReplacer();
         this.ignoreMetricNamesPattern = options.getIgnoreMetricNamesPattern();
         this.shouldFilterMetricNamesByPattern = options.shouldFilterMetricNamesByPattern();
         this.ignoreMetricNames = options.getIgnoreMetricNames();
+        this.hasMetricNamesAllowlist = options.hasMetricNamesAllowlist();
+        this.includeMetricNamesPattern = options.getIncludeMetricNamesPattern();
+        this.shouldIncludeMetricNamesByPattern = options.shouldIncludeMetricNamesByPattern();
+        this.includeMetricNames = options.getIncludeMetricNames();
         this.ignoreTagNamesPattern = options.getIgnoreTagNamesPattern();
         this.shouldFilterTagNamesByPattern = options.shouldFilterTagNamesByPattern();
         this.ignoreTagNames = options.getIgnoreTagNames();
+        this.tagsCache = CacheBuilder.newBuilder()
+                .maximumSize(options.getTagsCacheSize())
+                .recordStats()
+                .build();
+        this.tagValueCache = CacheBuilder.newBuilder()
+                .maximumSize(options.getTagValueCacheSize())
+                .recordStats()
+                .build();
+        this.infiniteValuePolicy = options.getInfiniteValuePolicy();
+        this.scheduler = scheduler;
+        this.parserThreads = options.getParserThreads();
+        this.parserBatchSize = options.getParserBatchSize();
+    }
+
+    /**
+     * @return hit, miss and eviction counters of the cache of converted label groups
+     */
+    public CacheStats getTagsCacheStats() {
+        return tagsCache.stats();
+    }
+
+    /**
+     * @return hit, miss and eviction counters of the cache of replaced tag values, only consulted for values that
+     * may match a replacement rule
+     */
+    public CacheStats getTagValueCacheStats() {
+        return tagValueCache.stats();
+    }
+
+    /**
+     * @return the hits, misses and evictions of the caches of converted label groups and of replaced tag values since
+     * the last report
+     */
+    @Override
+    public synchronized List<CustomMetric> report(List<Pair<String, String>> tags) {
+        final CacheStats tagsCacheStats = tagsCache.stats();
+        final CacheStats tagsCacheDelta = tagsCacheStats.minus(reportedTagsCacheStats);
+        reportedTagsCacheStats = tagsCacheStats;
+        final CacheStats tagValueCacheStats = tagValueCache.stats();
+        final CacheStats tagValueCacheDelta = tagValueCacheStats.minus(reportedTagValueCacheStats);
+        reportedTagValueCacheStats = tagValueCacheStats;
+
+        return Arrays.asList(cacheMetric("parser.tags.cache.hits", tagsCacheDelta.hitCount(), tags),
+                cacheMetric("parser.tags.cache.misses", tagsCacheDelta.missCount(), tags),
+                cacheMetric("parser.tags.cache.evictions", tagsCacheDelta.evictionCount(), tags),
+                cacheMetric("parser.tagvalues.cache.hits", tagValueCacheDelta.hitCount(), tags),
+                cacheMetric("parser.tagvalues.cache.misses", tagValueCacheDelta.missCount(), tags),
+                cacheMetric("parser.tagvalues.cache.evictions", tagValueCacheDelta.evictionCount(), tags));
+    }
+
+    private static CustomMetric cacheMetric(String name, long value, List<Pair<String, String>> tags) {
+        return new CustomMetric.Builder()
+                .withMetricName(name)
+                .withValue(value)
+                .withTags(tags)
+                .withMetricType(MetricType.COUNTER)
+                .build();
     }
 
     @Override
@@ -98,83 +179,188 @@ public class PrometheusParser extends Converter implements Loggable {
 
     @Override
     public Flowable<CustomMetric> rxConvert(String text, List<Pair<String, String>> tags) {
-        return Flowable.create(source -> {
-            try {
-                convert(text, tags, source::onNext);
-            } catch (Throwable e) {
-                source.onError(e);
-            } finally {
-                source.onComplete();
+        return Flowable.defer(() -> new Conversion(tags).feed(beforeConversion(text)).toFlowable());
+    }
+
+    @Override
+    public Flowable<CustomMetric> rxConvert(Flowable<Buffer> chunks) {
+        return rxConvert(chunks, Collections.emptyList());
+    }
+
+    @Override
+    public Flowable<CustomMetric> rxConvert(Flowable<Buffer> chunks, List<Pair<String, String>> tags) {
+        return Flowable.defer(() -> {
+            final LineAssembler lineAssembler = new LineAssembler();
+            final Flowable<String> lines = chunks.map(lineAssembler::append)
+                    .concatWith(Flowable.fromCallable(lineAssembler::flush));
+
+            if (scheduler == null) {
+                final Conversion conversion = new Conversion(tags);
+
+                // Lines are converted as they complete, keeping the family context of previous chunks
+                return lines.concatMap(text -> conversion.feed(beforeConversion(text)).toFlowable());
             }
-        }, BackpressureStrategy.BUFFER);
+
+            final FamilyBatcher familyBatcher = new FamilyBatcher(parserBatchSize);
+            final Flowable<String> batches = lines.map(familyBatcher::append)
+                    .concatWith(Flowable.fromCallable(familyBatcher::flush))
+                    .filter(batch -> !batch.isEmpty());
+
+            return convertBatches(batches, batch -> {
+                final List<CustomMetric> convertedMetrics = new ArrayList<>();
+                convert(batch, tags, convertedMetrics::add);
+                return convertedMetrics;
+            });
+        });
+    }
+
+    /**
+     * Converts independent batches on the scheduler, up to one per parser thread at a time, emitting their metrics in
+     * the order of the batches. Without a scheduler batches are converted one after the other on the calling thread.
+     */
+    protected <T> Flowable<CustomMetric> convertBatches(Flowable<T> batches, Function<T, List<CustomMetric>> conversion) {
+        if (scheduler == null) {
+            return batches.concatMapIterable(conversion);
+        }
+
+        return batches
+                .concatMapEager(batch -> Flowable.fromCallable(() -> conversion.apply(batch)).subscribeOn(scheduler), parserThreads, 1)
+                .concatMapIterable(convertedMetrics -> convertedMetrics);
+    }
+
+    /**
+     * @return the minimum size in bytes of the batches converted in parallel, or zero when conversions are sequential
+     */
+    protected int getBatchSize() {
+        return scheduler == null ? 0 : parserBatchSize;
     }
 
     @Override
     public void convert(String text, List<Pair<String, String>> tags, Consumer<CustomMetric> customMetricConsumer) {
-        convertLines(tags, customMetricConsumer, splitByLines(text));
-    }
+        final Conversion conversion = new Conversion(tags).feed(beforeConversion(text));
 
-    private void convertLines(List<Pair<String, String>> tags, Consumer<CustomMetric> customMetricConsumer, String[] metricLines) {
-        String metricName = "";
-        String metricType = "";
-        boolean shouldIgnore = false;
+        for (CustomMetric customMetric = conversion.next(); customMetric != null; customMetric = conversion.next()) {
+            customMetricConsumer.accept(customMetric);
+        }
+    }
 
-        for (String line : metricLines) {
-            if (line.startsWith("# TYPE")) {
-                final Matcher matcher = TYPE_PATTERN.matcher(line);
+    /**
+     * State of a single conversion, which may span several chunks of text.
+     */
+    private final class Conversion {
+        private final List<Pair<String, String>> tags;
+        private PrometheusTextScanner scanner;
+        private String metricName = "";
+        private String metricType = "";
+        // Samples before the first type line have no type and are never converted
+        private boolean shouldIgnore = true;
+
+        private Conversion(List<Pair<String, String>> tags) {
+            this.tags = tags;
+        }
 
-                while (matcher.find()) {
-                    shouldIgnore = false;
-                    metricName = matcher.group(NAME);
-                    metricType = matcher.group(TYPE);
-                }
-            } else if (line.charAt(0) != '#') {
-                // Ignore metrics with names that match the given regex
-                if (shouldIgnore || filterMetricName(metricName)) {
-                    shouldIgnore = true;
-                    continue;
-                }
+        private Conversion feed(String lines) {
+            scanner = new PrometheusTextScanner(lines);
+            return this;
+        }
 
-                final Matcher matcher = SAMPLE_PATTERN.matcher(line);
+        private Flowable<CustomMetric> toFlowable() {
+            return Flowable.generate(emitter -> {
+                final CustomMetric customMetric = next();
 
-                while (matcher.find()) {
-                    final String sampleMetricName = matcher.group(NAME);
-                    final String tagGroup = matcher.group(TAGS);
-                    final String value = matcher.group(VALUE);
+                if (customMetric != null) {
+                    emitter.onNext(customMetric);
+                } else {
+                    emitter.onComplete();
+                }
+            });
+        }
 
+        /**
+         * @return the next converted metric of the fed lines, or null when they are exhausted
+         */
+        private CustomMetric next() {
+            for (Line line = nextLine(); line != Line.END; line = nextLine()) {
+                if (line == Line.TYPE) {
+                    metricName = scanner.name();
+                    metricType = scanner.type();
+                    // Dropped families are skipped up to the next type line
+                    shouldIgnore = !shouldConvertFamily(metricName, metricType);
+                } else if (line == Line.SAMPLE) {
                     //TODO: statful histogram support
-                    if (!value.equals(NOT_A_NUMBER) && isHistogramAggregationOrValidType(metricType, sampleMetricName)) {
-                        CustomMetric customMetric = buildCustomMetric(metricName, metricType, sampleMetricName, tagGroup, value, tags);
-                        customMetricConsumer.accept(afterBuild(customMetric));
+                    if (isHistogramAggregationOrValidType(metricType, scanner)) {
+                        final double value = getValue(scanner);
+                        final List<Pair<String, String>> metricTags = Double.isNaN(value) ? null : getTags(scanner);
+
+                        if (metricTags != null) {
+                            return afterBuild(buildCustomMetric(metricName, metricType, scanner.name(), metricTags, value, tags));
+                        }
                     }
                 }
             }
+
+            return null;
+        }
+
+        private Line nextLine() {
+            if (shouldIgnore) {
+                scanner.skipToNextType();
+            }
+            return scanner.next();
         }
     }
 
-    private String[] splitByLines(String text) {
-        final String metrics = beforeConversion(text);
-        return metrics.split("\n");
+    /**
+     * Converts a sample decoded by other exposition formats, applying the same filters, replacements and value policy.
+     *
+     * @return the converted metric, or null when the sample should be dropped
+     */
+    CustomMetric convertSample(String metricName,
+                               String metricType,
+                               String sampleMetricName,
+                               List<Pair<String, String>> labels,
+                               double value,
+                               List<Pair<String, String>> tags) {
+        final double sampleValue = infiniteValuePolicy.apply(value);
+
+        if (Double.isNaN(sampleValue)) {
+            return null;
+        }
+
+        return afterBuild(buildCustomMetric(metricName, metricType, sampleMetricName, buildTags(labels), sampleValue, tags));
     }
 
     private CustomMetric buildCustomMetric(String metricName,
                                            String metricType,
                                            String sampleMetricName,
-                                           String tagGroup,
-                                           String value,
+                                           List<Pair<String, String>> sampleTags,
+                                           double value,
                                            List<Pair<String, String>> tags) {
-        final List<Pair<String, String>> metricTags = getTags(tagGroup);
+        final List<Pair<String, String>> metricTags = new ArrayList<>(sampleTags.size() + tags.size());
+        metricTags.addAll(sampleTags);
         metricTags.addAll(tags);
 
         final CustomMetric.Builder customMetricBuilder = new CustomMetric.Builder()
                 .withMetricName(sampleMetricName)
                 .withTags(metricTags)
                 .withMetricType(getMetricType(metricType, metricName, sampleMetricName))
-                .withValue(new BigDecimal(value).doubleValue());
+                .withValue(value);
 
         return beforeBuild(customMetricBuilder).build();
     }
 
+    /**
+     * @return the sample value after applying the infinite value policy, or NaN when the sample should be dropped
+     */
+    private double getValue(PrometheusTextScanner scanner) {
+        try {
+            return infiniteValuePolicy.apply(scanner.parseValue());
+        } catch (NumberFormatException e) {
+            log().warn("Dropping sample {0} with invalid value {1}", scanner.name(), scanner.value());
+            return Double.NaN;
+        }
+    }
+
     private MetricType getMetricType(String metricType, String metricName, String sampleMetricName) {
         if (metricType.equals(HISTOGRAM) || metricType.equals(SUMMARY)) {
             return MetricType.COUNTER;
@@ -187,35 +373,87 @@ public class PrometheusParser extends Converter implements Loggable {
         }
     }
 
-    private List<Pair<String, String>> getTags(String tagGroup) {
-        if (!Strings.isNullOrEmpty(tagGroup)) {
-            final String[] tags = tagGroup.split(",");
+    private List<Pair<String, String>> getTags(PrometheusTextScanner scanner) {
+        if (!scanner.hasLabels()) {
+            return Collections.emptyList();
+        }
+
+        // The same label groups show up on every scrape, so filtering and replacements are only applied once per group
+        final String labelGroup = scanner.labels();
+        List<Pair<String, String>> tags = tagsCache.getIfPresent(labelGroup);
+
+        if (tags == null) {
+            tags = buildTags(scanner);
+
+            if (tags != null) {
+                tagsCache.put(labelGroup, tags);
+            }
+        }
+
+        return tags;
+    }
+
+    private List<Pair<String, String>> buildTags(PrometheusTextScanner scanner) {
+        final List<Pair<String, String>> labels = scanner.readLabels();
+        return labels == null ? null : buildTags(labels);
+    }
+
+    private List<Pair<String, String>> buildTags(List<Pair<String, String>> labels) {
+        final List<Pair<String, String>> tags = new ArrayList<>(labels.size());
+
+        for (Pair<String, String> label : labels) {
+            if (!filterTagName(label.getLeft())) {
+                final String tagValue = getTagValue(label.getRight());
 
-            return Arrays.stream(tags)
-                    .map(tag -> tag.split("="))
-                    .filter(tag -> !filterTagName(tag[0]))
-                    .map(tag -> new Pair<>(tag[0], getTagValue(stripQuotes(tag[1]))))
-                    .filter(tag -> !Strings.isNullOrEmpty(tag.getRight()))
-                    .collect(Collectors.toList());
+                if (!Strings.isNullOrEmpty(tagValue)) {
+                    tags.add(new Pair<>(label.getLeft(), tagValue));
+                }
+            }
         }
 
-        return new ArrayList<>();
+        return Collections.unmodifiableList(tags);
     }
 
     private String getTagValue(String s) {
-        for (Pair<Pattern, String> entry : tagValueReplacements) {
-            s = entry.getLeft().matcher(s).replaceAll(entry.getRight());
+        if (tagValueReplacer.isEmpty() || !tagValueReplacer.mayMatch(s)) {
+            return s;
         }
-        return s;
+
+        String replaced = tagValueCache.getIfPresent(s);
+
+        if (replaced == null) {
+            replaced = tagValueReplacer.applyAll(s);
+            tagValueCache.put(s, replaced);
+        }
+
+        return replaced;
     }
 
-    private boolean isHistogramAggregationOrValidType(String metricType, String sampleMetricName) {
+    private boolean isHistogramAggregationOrValidType(String metricType, PrometheusTextScanner sample) {
         final boolean isCounterOrGauge = metricType.equals(COUNTER) || metricType.equals(GAUGE);
         final boolean isSummaryOrHistogram = metricType.equals(SUMMARY) || metricType.equals(HISTOGRAM);
-        final boolean isAggregation = sampleMetricName.endsWith(SUM_SUFFIX) || sampleMetricName.endsWith(COUNT_SUFFIX);
+        final boolean isAggregation = sample.nameEndsWith(SUM_SUFFIX) || sample.nameEndsWith(COUNT_SUFFIX);
         return isCounterOrGauge || (isSummaryOrHistogram && isAggregation);
     }
 
+    /**
+     * @return false for families of unsupported types (untyped) or with filtered names
+     */
+    boolean shouldConvertFamily(String metricName, String metricType) {
+        return METRIC_TYPE_CONVERTER.containsKey(metricType) && !isFamilyDropped(metricName);
+    }
+
+    /**
+     * The decision only depends on the family name, so it is taken once per family for the life of the parser.
+     */
+    private boolean isFamilyDropped(String metricName) {
+        return familyDecisions.computeIfAbsent(metricName, name -> !includeMetricName(name) || filterMetricName(name));
+    }
+
+    private boolean includeMetricName(String metricName) {
+        return !hasMetricNamesAllowlist || includeMetricNames.contains(metricName) || (shouldIncludeMetricNamesByPattern && includeMetricNamesPattern.matcher(metricName).find());
+    }
+
     private boolean filterMetricName(String metricName) {
         return !metricName.isEmpty() && (ignoreMetricNames.contains(metricName) || (shouldFilterMetricNamesByPattern && ignoreMetricNamesPattern.matcher(metricName).find()));
     }
@@ -223,14 +461,4 @@ public class PrometheusParser extends Converter implements Loggable {
     private boolean filterTagName(String tagName) {
         return !tagName.isEmpty() && (ignoreTagNames.contains(tagName) || (shouldFilterTagNamesByPattern && ignoreTagNamesPattern.matcher(tagName).find()));
     }
-
-    private String stripQuotes(String str) {
-        if (str.startsWith("\"")) {
-            str = str.substring(1);
-        }
-        if (str.endsWith("\"")) {
-            str = str.substring(0, str.length() - 1);
-        }
-        return str;
-    }
 }
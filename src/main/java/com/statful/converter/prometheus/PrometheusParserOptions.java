@@ -1,5 +1,6 @@
 package com.statful.converter.prometheus;
 
+import com.statful.converter.domain.InfiniteValuePolicy;
 import com.statful.utils.Pair;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
@@ -16,40 +17,80 @@ import static java.util.stream.Collectors.toSet;
 public class PrometheusParserOptions {
     private static final String COLLECTOR_IGNORE_METRIC_REGEX = "collector.ignore.metric.regex";
     private static final String COLLECTOR_IGNORE_METRIC = "collector.ignore.metric";
+    private static final String COLLECTOR_INCLUDE_METRIC_REGEX = "collector.include.metric.regex";
+    private static final String COLLECTOR_INCLUDE_METRIC = "collector.include.metric";
     private static final String COLLECTOR_IGNORE_TAGS_REGEX = "collector.ignore.tags.regex";
     private static final String COLLECTOR_IGNORE_TAGS = "collector.ignore.tags";
     private static final String COLLECTOR_REPLACEMENT_TAG = "collector.replacement.tag";
+    private static final String COLLECTOR_TAGS_CACHE_SIZE = "collector.tags.cache.size";
+    private static final String COLLECTOR_REPLACEMENT_TAG_CACHE_SIZE = "collector.replacement.tag.cache.size";
+    private static final String COLLECTOR_INFINITE_VALUES = "collector.infinite.values";
+    private static final String COLLECTOR_PARSER_THREADS = "collector.parser.threads";
+    private static final String COLLECTOR_PARSER_BATCH_SIZE = "collector.parser.batch.size";
     private static final String PATTERN = "pattern";
     private static final String REPLACEMENT = "replacement";
+    private static final long DEFAULT_TAGS_CACHE_SIZE = 10000;
+    private static final long DEFAULT_TAG_VALUE_CACHE_SIZE = 10000;
+    private static final int DEFAULT_PARSER_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final int DEFAULT_PARSER_BATCH_SIZE = 1024 * 1024;
 
     private final List<Pair<Pattern, String>> tagValueReplacements;
+    private final TagValueReplacer tagValueReplacer;
     private final boolean shouldFilterMetricNamesByPattern;
     private final Pattern ignoreMetricNamesPattern;
     private final Set<String> ignoreMetricNames;
+    private final boolean shouldIncludeMetricNamesByPattern;
+    private final Pattern includeMetricNamesPattern;
+    private final Set<String> includeMetricNames;
     private final boolean shouldFilterTagNamesByPattern;
     private final Pattern ignoreTagNamesPattern;
     private final Set<String> ignoreTagNames;
+    private final long tagsCacheSize;
+    private final long tagValueCacheSize;
+    private final InfiniteValuePolicy infiniteValuePolicy;
+    private final int parserThreads;
+    private final int parserBatchSize;
 
     public PrometheusParserOptions(List<Pair<String, String>> tagValueReplacements,
                                    String ignoreMetricNamesPattern,
                                    Set<String> ignoreMetricNames,
+                                   String includeMetricNamesPattern,
+                                   Set<String> includeMetricNames,
                                    String ignoreTagNamesPattern,
-                                   Set<String> ignoreTagNames) {
+                                   Set<String> ignoreTagNames,
+                                   long tagsCacheSize,
+                                   long tagValueCacheSize,
+                                   InfiniteValuePolicy infiniteValuePolicy,
+                                   int parserThreads,
+                                   int parserBatchSize) {
         this.tagValueReplacements = tagValueReplacements == null ? emptyList() : tagValueReplacements.stream()
                 .map(entry -> new Pair<>(Pattern.compile(entry.getLeft()), entry.getRight()))
                 .collect(toList());
+        this.tagValueReplacer = new TagValueReplacer(this.tagValueReplacements);
         this.shouldFilterMetricNamesByPattern = ignoreMetricNamesPattern != null && !ignoreMetricNamesPattern.isEmpty();
         this.ignoreMetricNamesPattern = shouldFilterMetricNamesByPattern ? Pattern.compile(ignoreMetricNamesPattern) : null;
         this.ignoreMetricNames = ignoreMetricNames == null ? emptySet() : ignoreMetricNames;
+        this.shouldIncludeMetricNamesByPattern = includeMetricNamesPattern != null && !includeMetricNamesPattern.isEmpty();
+        this.includeMetricNamesPattern = shouldIncludeMetricNamesByPattern ? Pattern.compile(includeMetricNamesPattern) : null;
+        this.includeMetricNames = includeMetricNames == null ? emptySet() : includeMetricNames;
         this.shouldFilterTagNamesByPattern = ignoreTagNamesPattern != null && !ignoreTagNamesPattern.isEmpty();
         this.ignoreTagNamesPattern = shouldFilterTagNamesByPattern ? Pattern.compile(ignoreTagNamesPattern) : null;
         this.ignoreTagNames = ignoreTagNames == null ? emptySet() : ignoreTagNames;
+        this.tagsCacheSize = tagsCacheSize;
+        this.tagValueCacheSize = tagValueCacheSize;
+        this.infiniteValuePolicy = infiniteValuePolicy == null ? InfiniteValuePolicy.DROP : infiniteValuePolicy;
+        this.parserThreads = Math.max(1, parserThreads);
+        this.parserBatchSize = Math.max(1, parserBatchSize);
     }
 
     public List<Pair<Pattern, String>> getTagValueReplacements() {
         return tagValueReplacements == null ? emptyList() : tagValueReplacements;
     }
 
+    public TagValueReplacer getTagValueReplacer() {
+        return tagValueReplacer;
+    }
+
     public Pattern getIgnoreMetricNamesPattern() {
         return ignoreMetricNamesPattern;
     }
@@ -62,6 +103,25 @@ public class PrometheusParserOptions {
         return ignoreMetricNames;
     }
 
+    public Pattern getIncludeMetricNamesPattern() {
+        return includeMetricNamesPattern;
+    }
+
+    public boolean shouldIncludeMetricNamesByPattern() {
+        return shouldIncludeMetricNamesByPattern;
+    }
+
+    public Set<String> getIncludeMetricNames() {
+        return includeMetricNames;
+    }
+
+    /**
+     * @return true if only metric names in the include list or matching the include regex should be kept
+     */
+    public boolean hasMetricNamesAllowlist() {
+        return shouldIncludeMetricNamesByPattern || !includeMetricNames.isEmpty();
+    }
+
     public Pattern getIgnoreTagNamesPattern() {
         return ignoreTagNamesPattern;
     }
@@ -74,12 +134,45 @@ public class PrometheusParserOptions {
         return ignoreTagNames;
     }
 
+    public long getTagsCacheSize() {
+        return tagsCacheSize;
+    }
+
+    public long getTagValueCacheSize() {
+        return tagValueCacheSize;
+    }
+
+    public InfiniteValuePolicy getInfiniteValuePolicy() {
+        return infiniteValuePolicy;
+    }
+
+    /**
+     * @return the number of batches of a single response converted at the same time, and the size of the worker pool
+     */
+    public int getParserThreads() {
+        return parserThreads;
+    }
+
+    /**
+     * @return the minimum size in bytes of the batches of whole families converted in parallel
+     */
+    public int getParserBatchSize() {
+        return parserBatchSize;
+    }
+
     public static final class Builder {
         private List<Pair<String, String>> tagValueReplacements;
         private String ignoreMetricNamesPattern;
         private Set<String> ignoreMetricNames;
+        private String includeMetricNamesPattern;
+        private Set<String> includeMetricNames;
         private String ignoreTagNamesPattern;
         private Set<String> ignoreTagNames;
+        private long tagsCacheSize = DEFAULT_TAGS_CACHE_SIZE;
+        private long tagValueCacheSize = DEFAULT_TAG_VALUE_CACHE_SIZE;
+        private InfiniteValuePolicy infiniteValuePolicy = InfiniteValuePolicy.DROP;
+        private int parserThreads = DEFAULT_PARSER_THREADS;
+        private int parserBatchSize = DEFAULT_PARSER_BATCH_SIZE;
 
         public Builder() {
         }
@@ -95,6 +188,10 @@ public class PrometheusParserOptions {
                     .map(String.class::cast)
                     .collect(toSet());
 
+            final Set<String> includeMetricNames = config.getJsonArray(COLLECTOR_INCLUDE_METRIC, new JsonArray(emptyList())).stream()
+                    .map(String.class::cast)
+                    .collect(toSet());
+
             final Set<String> ignoreTagNames = config.getJsonArray(COLLECTOR_IGNORE_TAGS, new JsonArray(emptyList())).stream()
                     .map(String.class::cast)
                     .collect(toSet());
@@ -103,8 +200,15 @@ public class PrometheusParserOptions {
                     .withTagValueReplacements(tagValueReplacements)
                     .withIgnoreMetricNamesPattern(config.getString(COLLECTOR_IGNORE_METRIC_REGEX, ""))
                     .withIgnoreMetricNames(ignoreMetricNames)
+                    .withIncludeMetricNamesPattern(config.getString(COLLECTOR_INCLUDE_METRIC_REGEX, ""))
+                    .withIncludeMetricNames(includeMetricNames)
                     .withIgnoreTagNamesPattern(config.getString(COLLECTOR_IGNORE_TAGS_REGEX, ""))
-                    .withIgnoreTagNames(ignoreTagNames);
+                    .withIgnoreTagNames(ignoreTagNames)
+                    .withTagsCacheSize(config.getLong(COLLECTOR_TAGS_CACHE_SIZE, DEFAULT_TAGS_CACHE_SIZE))
+                    .withTagValueCacheSize(config.getLong(COLLECTOR_REPLACEMENT_TAG_CACHE_SIZE, DEFAULT_TAG_VALUE_CACHE_SIZE))
+                    .withInfiniteValuePolicy(InfiniteValuePolicy.from(config.getString(COLLECTOR_INFINITE_VALUES, "")))
+                    .withParserThreads(config.getInteger(COLLECTOR_PARSER_THREADS, DEFAULT_PARSER_THREADS))
+                    .withParserBatchSize(config.getInteger(COLLECTOR_PARSER_BATCH_SIZE, DEFAULT_PARSER_BATCH_SIZE));
         }
 
         public Builder withTagValueReplacements(List<Pair<String, String>> tagValueReplacements) {
@@ -122,6 +226,16 @@ public class PrometheusParserOptions {
             return this;
         }
 
+        public Builder withIncludeMetricNamesPattern(String includeMetricNamesPattern) {
+            this.includeMetricNamesPattern = includeMetricNamesPattern;
+            return this;
+        }
+
+        public Builder withIncludeMetricNames(Set<String> includeMetricNames) {
+            this.includeMetricNames = includeMetricNames;
+            return this;
+        }
+
         public Builder withIgnoreTagNamesPattern(String ignoreTagNamesPattern) {
             this.ignoreTagNamesPattern = ignoreTagNamesPattern;
             return this;
@@ -132,8 +246,35 @@ public class PrometheusParserOptions {
             return this;
         }
 
+        public Builder withTagsCacheSize(long tagsCacheSize) {
+            this.tagsCacheSize = tagsCacheSize;
+            return this;
+        }
+
+        public Builder withTagValueCacheSize(long tagValueCacheSize) {
+            this.tagValueCacheSize = tagValueCacheSize;
+            return this;
+        }
+
+        public Builder withInfiniteValuePolicy(InfiniteValuePolicy infiniteValuePolicy) {
+            this.infiniteValuePolicy = infiniteValuePolicy;
+            return this;
+        }
+
+        public Builder withParserThreads(int parserThreads) {
+            this.parserThreads = parserThreads;
+            return this;
+        }
+
+        public Builder withParserBatchSize(int parserBatchSize) {
+            this.parserBatchSize = parserBatchSize;
+            return this;
+        }
+
         public PrometheusParserOptions build() {
-            return new PrometheusParserOptions(tagValueReplacements, ignoreMetricNamesPattern, ignoreMetricNames, ignoreTagNamesPattern, ignoreTagNames);
+            return new PrometheusParserOptions(tagValueReplacements, ignoreMetricNamesPattern, ignoreMetricNames, includeMetricNamesPattern,
+                    includeMetricNames, ignoreTagNamesPattern, ignoreTagNames, tagsCacheSize, tagValueCacheSize, infiniteValuePolicy,
+                    parserThreads, parserBatchSize);
         }
     }
 }
@@ -0,0 +1,217 @@
+package com.statful.converter.prometheus;
+
+import com.statful.client.CustomMetric;
+import com.statful.converter.util.DelimitedMessageAssembler;
+import com.statful.converter.util.ProtobufReader;
+import com.statful.utils.Pair;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.vertx.reactivex.core.buffer.Buffer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.statful.converter.util.ProtobufReader.*;
+
+/**
+ * Converts the delimited protobuf exposition format, a sequence of length prefixed {@code MetricFamily} messages,
+ * applying the same filters, replacements and value policy as the text format. Conversions of text are inherited, so
+ * responses that fell back to the text format can still be given to this parser.
+ */
+public class PrometheusProtobufParser extends PrometheusParser {
+    public static final String CONTENT_TYPE = "application/vnd.google.protobuf;proto=io.prometheus.client.MetricFamily;encoding=delimited";
+
+    private static final String PROTOBUF_MEDIA_TYPE = "application/vnd.google.protobuf";
+    private static final String DELIMITED_ENCODING = "encoding=delimited";
+
+    // MetricFamily fields
+    private static final int FAMILY_NAME = 1 << 3 | LENGTH_DELIMITED;
+    private static final int FAMILY_TYPE = 3 << 3 | VARINT;
+    private static final int FAMILY_METRIC = 4 << 3 | LENGTH_DELIMITED;
+
+    // Metric fields
+    private static final int METRIC_LABEL = 1 << 3 | LENGTH_DELIMITED;
+    private static final int METRIC_GAUGE = 2 << 3 | LENGTH_DELIMITED;
+    private static final int METRIC_COUNTER = 3 << 3 | LENGTH_DELIMITED;
+    private static final int METRIC_SUMMARY = 4 << 3 | LENGTH_DELIMITED;
+    private static final int METRIC_UNTYPED = 5 << 3 | LENGTH_DELIMITED;
+    private static final int METRIC_HISTOGRAM = 7 << 3 | LENGTH_DELIMITED;
+
+    // LabelPair fields
+    private static final int LABEL_NAME = 1 << 3 | LENGTH_DELIMITED;
+    private static final int LABEL_VALUE = 2 << 3 | LENGTH_DELIMITED;
+
+    // Gauge, Counter and Untyped fields
+    private static final int VALUE = 1 << 3 | FIXED64;
+
+    // Summary and Histogram fields
+    private static final int SAMPLE_COUNT = 1 << 3 | VARINT;
+    private static final int SAMPLE_SUM = 2 << 3 | FIXED64;
+    private static final int SAMPLE_COUNT_FLOAT = 4 << 3 | FIXED64;
+
+    // Indexed by the MetricType enum of the exposition format, untyped and gauge histograms are not supported
+    private static final String[] METRIC_TYPES = {COUNTER, GAUGE, SUMMARY, null, HISTOGRAM};
+
+    public PrometheusProtobufParser(PrometheusParserOptions options) {
+        super(options);
+    }
+
+    public PrometheusProtobufParser(PrometheusParserOptions options, Scheduler scheduler) {
+        super(options, scheduler);
+    }
+
+    public static boolean isProtobuf(String contentType) {
+        return contentType != null && contentType.startsWith(PROTOBUF_MEDIA_TYPE) && contentType.contains(DELIMITED_ENCODING);
+    }
+
+    @Override
+    public Flowable<CustomMetric> rxConvert(Flowable<Buffer> chunks, List<Pair<String, String>> tags) {
+        return Flowable.defer(() -> {
+            final DelimitedMessageAssembler messageAssembler = new DelimitedMessageAssembler(getBatchSize());
+
+            // Families are converted as their messages complete, each message is a batch of whole families
+            final Flowable<byte[]> messages = chunks.map(messageAssembler::append)
+                    .concatWith(Flowable.fromCallable(messageAssembler::flush))
+                    .filter(bytes -> bytes.length > 0);
+
+            return convertBatches(messages, bytes -> convert(bytes, tags));
+        });
+    }
+
+    /**
+     * @param messages complete length delimited metric families
+     */
+    public List<CustomMetric> convert(byte[] messages, List<Pair<String, String>> tags) {
+        final List<CustomMetric> convertedMetrics = new ArrayList<>();
+        final ProtobufReader reader = new ProtobufReader(messages);
+
+        while (reader.hasRemaining()) {
+            final int limit = reader.pushLimit();
+            convertFamily(reader, tags, convertedMetrics);
+            reader.popLimit(limit);
+        }
+
+        return convertedMetrics;
+    }
+
+    private void convertFamily(ProtobufReader reader, List<Pair<String, String>> tags, List<CustomMetric> convertedMetrics) {
+        final int start = reader.getPosition();
+        String metricName = "";
+        int type = 0;
+
+        // Fields may come in any order, so the name and type are read before the metrics
+        while (reader.hasRemaining()) {
+            final int tag = reader.readTag();
+
+            if (tag == FAMILY_NAME) {
+                metricName = reader.readString();
+            } else if (tag == FAMILY_TYPE) {
+                type = (int) reader.readVarint();
+            } else {
+                reader.skipField(tag);
+            }
+        }
+
+        final String metricType = type >= 0 && type < METRIC_TYPES.length ? METRIC_TYPES[type] : null;
+
+        if (metricType == null || !shouldConvertFamily(metricName, metricType)) {
+            return;
+        }
+
+        reader.setPosition(start);
+
+        while (reader.hasRemaining()) {
+            final int tag = reader.readTag();
+
+            if (tag == FAMILY_METRIC) {
+                final int limit = reader.pushLimit();
+                convertMetric(reader, metricName, metricType, tags, convertedMetrics);
+                reader.popLimit(limit);
+            } else {
+                reader.skipField(tag);
+            }
+        }
+    }
+
+    private void convertMetric(ProtobufReader reader,
+                               String metricName,
+                               String metricType,
+                               List<Pair<String, String>> tags,
+                               List<CustomMetric> convertedMetrics) {
+        final List<Pair<String, String>> labels = new ArrayList<>();
+        double value = Double.NaN;
+        double sum = Double.NaN;
+        double count = Double.NaN;
+
+        while (reader.hasRemaining()) {
+            final int tag = reader.readTag();
+
+            if (tag == METRIC_LABEL) {
+                final int limit = reader.pushLimit();
+                labels.add(readLabel(reader));
+                reader.popLimit(limit);
+            } else if (tag == METRIC_GAUGE || tag == METRIC_COUNTER || tag == METRIC_UNTYPED) {
+                final int limit = reader.pushLimit();
+                while (reader.hasRemaining()) {
+                    final int valueTag = reader.readTag();
+                    if (valueTag == VALUE) {
+                        value = reader.readDouble();
+                    } else {
+                        reader.skipField(valueTag);
+                    }
+                }
+                reader.popLimit(limit);
+            } else if (tag == METRIC_SUMMARY || tag == METRIC_HISTOGRAM) {
+                final int limit = reader.pushLimit();
+                while (reader.hasRemaining()) {
+                    final int aggregationTag = reader.readTag();
+                    if (aggregationTag == SAMPLE_COUNT) {
+                        count = reader.readVarint();
+                    } else if (aggregationTag == SAMPLE_COUNT_FLOAT && tag == METRIC_HISTOGRAM) {
+                        count = reader.readDouble();
+                    } else if (aggregationTag == SAMPLE_SUM) {
+                        sum = reader.readDouble();
+                    } else {
+                        reader.skipField(aggregationTag);
+                    }
+                }
+                reader.popLimit(limit);
+            } else {
+                reader.skipField(tag);
+            }
+        }
+
+        // Like the text format, only the sum and count of summaries and histograms are sent, quantiles and buckets are not
+        if (metricType.equals(SUMMARY) || metricType.equals(HISTOGRAM)) {
+            addSample(convertedMetrics, convertSample(metricName, metricType, metricName + SUM_SUFFIX, labels, sum, tags));
+            addSample(convertedMetrics, convertSample(metricName, metricType, metricName + COUNT_SUFFIX, labels, count, tags));
+        } else {
+            addSample(convertedMetrics, convertSample(metricName, metricType, metricName, labels, value, tags));
+        }
+    }
+
+    private static Pair<String, String> readLabel(ProtobufReader reader) {
+        String name = "";
+        String value = "";
+
+        while (reader.hasRemaining()) {
+            final int tag = reader.readTag();
+
+            if (tag == LABEL_NAME) {
+                name = reader.readString();
+            } else if (tag == LABEL_VALUE) {
+                value = reader.readString();
+            } else {
+                reader.skipField(tag);
+            }
+        }
+
+        return new Pair<>(name, value);
+    }
+
+    private static void addSample(List<CustomMetric> convertedMetrics, CustomMetric customMetric) {
+        if (customMetric != null) {
+            convertedMetrics.add(customMetric);
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package com.statful.converter.prometheus;
+
+import com.statful.converter.util.DoubleParser;
+import com.statful.utils.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single pass cursor over the prometheus text exposition format.
+ * Each call to {@link #next()} consumes one line and exposes the boundaries of its tokens, so callers only
+ * materialize the parts they actually need.
+ */
+class PrometheusTextScanner {
+
+    enum Line {
+        TYPE,
+        SAMPLE,
+        SKIPPED,
+        END
+    }
+
+    private static final String TYPE_KEYWORD = "TYPE";
+    private static final int ABSENT = -1;
+
+    private final CharSequence text;
+    private final int limit;
+    private int position;
+
+    private int lineStart;
+    private int lineEnd;
+    private int nameStart;
+    private int nameEnd;
+    private int typeStart;
+    private int typeEnd;
+    private int labelsStart;
+    private int labelsEnd;
+    private int valueStart;
+    private int valueEnd;
+
+    PrometheusTextScanner(CharSequence text) {
+        this(text, 0, text.length());
+    }
+
+    PrometheusTextScanner(CharSequence text, int start, int end) {
+        this.text = text;
+        this.position = start;
+        this.limit = end;
+    }
+
+    Line next() {
+        if (position >= limit) {
+            return Line.END;
+        }
+
+        lineStart = position;
+        lineEnd = lineEnd(position);
+        position = lineEnd + 1;
+
+        if (lineEnd > lineStart && text.charAt(lineEnd - 1) == '\r') {
+            lineEnd--;
+        }
+
+        final int cursor = skipWhitespace(lineStart);
+
+        if (cursor == lineEnd) {
+            return Line.SKIPPED;
+        } else if (text.charAt(cursor) == '#') {
+            return scanComment(cursor + 1);
+        } else {
+            return scanSample(cursor);
+        }
+    }
+
+    /**
+     * Moves to the start of the next type line without tokenizing the lines in between, so the following call to
+     * {@link #next()} returns {@link Line#TYPE} or {@link Line#END}.
+     */
+    void skipToNextType() {
+        while (position < limit) {
+            lineStart = position;
+            lineEnd = limit;
+            int cursor = skipWhitespace(position);
+
+            if (cursor < limit && text.charAt(cursor) == '#') {
+                lineEnd = lineEnd(cursor);
+                if (text.charAt(lineEnd - 1) == '\r') {
+                    lineEnd--;
+                }
+                if (scanComment(cursor + 1) == Line.TYPE) {
+                    position = lineStart;
+                    return;
+                }
+            }
+
+            while (cursor < limit && text.charAt(cursor) != '\n') {
+                cursor++;
+            }
+            position = cursor + 1;
+        }
+    }
+
+    String name() {
+        return substring(nameStart, nameEnd);
+    }
+
+    boolean nameEndsWith(String suffix) {
+        final int length = suffix.length();
+        return nameEnd - nameStart >= length && regionMatches(nameEnd - length, suffix);
+    }
+
+    String type() {
+        return substring(typeStart, typeEnd);
+    }
+
+    boolean hasLabels() {
+        return labelsStart != ABSENT && labelsEnd > labelsStart;
+    }
+
+    String labels() {
+        return hasLabels() ? substring(labelsStart, labelsEnd) : "";
+    }
+
+    String value() {
+        return substring(valueStart, valueEnd);
+    }
+
+    /**
+     * @throws NumberFormatException when the value of the current sample is not a number
+     */
+    double parseValue() {
+        return DoubleParser.parseDouble(text, valueStart, valueEnd);
+    }
+
+    /**
+     * Reads the label pairs of the current sample, unescaping their values.
+     *
+     * @return the label pairs, or null when the label group is malformed
+     */
+    List<Pair<String, String>> readLabels() {
+        final List<Pair<String, String>> labels = new ArrayList<>();
+
+        if (!hasLabels()) {
+            return labels;
+        }
+
+        int cursor = labelsStart;
+
+        while (true) {
+            cursor = skipWhitespace(cursor, labelsEnd);
+            if (cursor == labelsEnd) {
+                return labels;
+            }
+
+            final int labelNameStart = cursor;
+            cursor = scanLabelName(cursor, labelsEnd);
+            if (cursor == labelNameStart) {
+                return null;
+            }
+            final String labelName = substring(labelNameStart, cursor);
+
+            cursor = skipWhitespace(cursor, labelsEnd);
+            if (cursor == labelsEnd || text.charAt(cursor) != '=') {
+                return null;
+            }
+
+            cursor = skipWhitespace(cursor + 1, labelsEnd);
+            if (cursor == labelsEnd || text.charAt(cursor) != '"') {
+                return null;
+            }
+
+            final int labelValueStart = ++cursor;
+            StringBuilder escaped = null;
+
+            while (cursor < labelsEnd && text.charAt(cursor) != '"') {
+                final char c = text.charAt(cursor);
+                if (c == '\\' && cursor + 1 < labelsEnd) {
+                    if (escaped == null) {
+                        escaped = new StringBuilder().append(text, labelValueStart, cursor);
+                    }
+                    escaped.append(unescape(text.charAt(++cursor)));
+                } else if (escaped != null) {
+                    escaped.append(c);
+                }
+                cursor++;
+            }
+
+            if (cursor == labelsEnd) {
+                return null;
+            }
+
+            labels.add(new Pair<>(labelName, escaped != null ? escaped.toString() : substring(labelValueStart, cursor)));
+
+            cursor = skipWhitespace(cursor + 1, labelsEnd);
+            if (cursor < labelsEnd) {
+                if (text.charAt(cursor) != ',') {
+                    return null;
+                }
+                cursor++;
+            }
+        }
+    }
+
+    private int lineEnd(int cursor) {
+        while (cursor < limit && text.charAt(cursor) != '\n') {
+            cursor++;
+        }
+        return cursor;
+    }
+
+    private Line scanComment(int cursor) {
+        cursor = skipWhitespace(cursor);
+
+        if (!regionMatches(cursor, TYPE_KEYWORD)) {
+            return Line.SKIPPED;
+        }
+
+        cursor += TYPE_KEYWORD.length();
+        final int afterKeyword = cursor;
+        cursor = skipWhitespace(cursor);
+        if (cursor == afterKeyword) {
+            return Line.SKIPPED;
+        }
+
+        nameStart = cursor;
+        nameEnd = scanMetricName(cursor);
+        if (nameEnd == nameStart) {
+            return Line.SKIPPED;
+        }
+
+        cursor = skipWhitespace(nameEnd);
+        if (cursor == nameEnd) {
+            return Line.SKIPPED;
+        }
+
+        typeStart = cursor;
+        while (cursor < lineEnd && isLowerCaseLetter(text.charAt(cursor))) {
+            cursor++;
+        }
+        typeEnd = cursor;
+
+        return typeEnd > typeStart && skipWhitespace(cursor) == lineEnd ? Line.TYPE : Line.SKIPPED;
+    }
+
+    private Line scanSample(int cursor) {
+        nameStart = cursor;
+        nameEnd = scanMetricName(cursor);
+        if (nameEnd == nameStart) {
+            return Line.SKIPPED;
+        }
+
+        int tokenEnd = nameEnd;
+        cursor = skipWhitespace(nameEnd);
+        labelsStart = ABSENT;
+        labelsEnd = ABSENT;
+
+        if (cursor < lineEnd && text.charAt(cursor) == '{') {
+            labelsStart = cursor + 1;
+            labelsEnd = scanLabelGroup(labelsStart);
+            if (labelsEnd == ABSENT) {
+                return Line.SKIPPED;
+            }
+            tokenEnd = labelsEnd + 1;
+            cursor = skipWhitespace(tokenEnd);
+        }
+
+        if (cursor == tokenEnd || cursor == lineEnd) {
+            return Line.SKIPPED;
+        }
+
+        valueStart = cursor;
+        cursor = skipToken(cursor);
+        valueEnd = cursor;
+
+        // Optional timestamp, validated but not forwarded since statful timestamps on ingestion
+        cursor = skipWhitespace(cursor);
+
+        if (cursor < lineEnd) {
+            if (text.charAt(cursor) == '-') {
+                cursor++;
+            }
+            final int digitsStart = cursor;
+            while (cursor < lineEnd && isDigit(text.charAt(cursor))) {
+                cursor++;
+            }
+
+            if (cursor == digitsStart || skipWhitespace(cursor) != lineEnd) {
+                return Line.SKIPPED;
+            }
+        }
+
+        return Line.SAMPLE;
+    }
+
+    private int scanLabelGroup(int cursor) {
+        boolean quoted = false;
+
+        while (cursor < lineEnd) {
+            final char c = text.charAt(cursor);
+            if (quoted && c == '\\') {
+                cursor++;
+            } else if (c == '"') {
+                quoted = !quoted;
+            } else if (!quoted && c == '}') {
+                return cursor;
+            }
+            cursor++;
+        }
+
+        return ABSENT;
+    }
+
+    private int scanMetricName(int cursor) {
+        if (cursor < lineEnd && isNameStart(text.charAt(cursor))) {
+            cursor++;
+            while (cursor < lineEnd && (isNameStart(text.charAt(cursor)) || isDigit(text.charAt(cursor)))) {
+                cursor++;
+            }
+        }
+        return cursor;
+    }
+
+    private int scanLabelName(int cursor, int end) {
+        if (cursor < end && isLabelNameStart(text.charAt(cursor))) {
+            cursor++;
+            while (cursor < end && (isLabelNameStart(text.charAt(cursor)) || isDigit(text.charAt(cursor)))) {
+                cursor++;
+            }
+        }
+        return cursor;
+    }
+
+    private int skipToken(int cursor) {
+        while (cursor < lineEnd && !isWhitespace(text.charAt(cursor))) {
+            cursor++;
+        }
+        return cursor;
+    }
+
+    private int skipWhitespace(int cursor) {
+        return skipWhitespace(cursor, lineEnd);
+    }
+
+    private int skipWhitespace(int cursor, int end) {
+        while (cursor < end && isWhitespace(text.charAt(cursor))) {
+            cursor++;
+        }
+        return cursor;
+    }
+
+    private boolean regionMatches(int offset, String expected) {
+        final int length = expected.length();
+        if (offset + length > lineEnd) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(offset + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String substring(int start, int end) {
+        return text.subSequence(start, end).toString();
+    }
+
+    private static char unescape(char c) {
+        return c == 'n' ? '\n' : c;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLowerCaseLetter(char c) {
+        return c >= 'a' && c <= 'z';
+    }
+
+    private static boolean isLabelNameStart(char c) {
+        return isLowerCaseLetter(c) || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+
+    private static boolean isNameStart(char c) {
+        return isLabelNameStart(c) || c == ':';
+    }
+}
@@ -0,0 +1,235 @@
+package com.statful.converter.prometheus;
+
+import com.statful.utils.Pair;
+
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
+
+/**
+ * Tag value replacement rules compiled for the common case where a value matches none of them.
+ * <p>
+ * Rules are still applied one after the other, each to the result of the previous one, but a value only goes through
+ * them when it may match. A value that matches no rule is left untouched by every rule, so it can be skipped when it
+ * lacks the literal character every match of a rule requires, or else when a single combined pattern finds nothing.
+ */
+public final class TagValueReplacer {
+    private static final Pattern BACK_REFERENCE = Pattern.compile("\\\\([1-9]|k<)");
+    private static final Pattern INLINE_FLAGS = Pattern.compile("\\(\\?[idmsuxU-]");
+    private static final String SINGLE_CHARACTER_ESCAPES = "dDwWsSbBhHvVRXAzZGntrfea";
+    private static final char NO_REQUIRED_LITERAL = 0;
+
+    private final List<Pair<Pattern, String>> replacements;
+    private final Pattern combinedPattern;
+    private final char[] requiredLiterals;
+
+    TagValueReplacer(List<Pair<Pattern, String>> replacements) {
+        this.replacements = replacements;
+        this.combinedPattern = combine(replacements);
+        this.requiredLiterals = requiredLiterals(replacements);
+    }
+
+    public boolean isEmpty() {
+        return replacements.isEmpty();
+    }
+
+    /**
+     * @return false only if none of the rules can match the given value
+     */
+    public boolean mayMatch(String value) {
+        if (requiredLiterals != null) {
+            boolean hasRequiredLiteral = false;
+            for (char literal : requiredLiterals) {
+                if (value.indexOf(literal) >= 0) {
+                    hasRequiredLiteral = true;
+                    break;
+                }
+            }
+            if (!hasRequiredLiteral) {
+                return false;
+            }
+        }
+
+        return combinedPattern == null || combinedPattern.matcher(value).find();
+    }
+
+    public String replace(String value) {
+        return mayMatch(value) ? applyAll(value) : value;
+    }
+
+    /**
+     * Applies every rule in order, for callers that already know the value may match.
+     */
+    String applyAll(String value) {
+        for (Pair<Pattern, String> entry : replacements) {
+            value = entry.getLeft().matcher(value).replaceAll(entry.getRight());
+        }
+        return value;
+    }
+
+    private static Pattern combine(List<Pair<Pattern, String>> replacements) {
+        if (replacements.size() < 2) {
+            return replacements.isEmpty() ? null : replacements.get(0).getLeft();
+        }
+
+        // Numbered and named back references would point to other groups once the rules are combined
+        if (replacements.stream().anyMatch(entry -> entry.getLeft().flags() != 0
+                || BACK_REFERENCE.matcher(entry.getLeft().pattern()).find())) {
+            return null;
+        }
+
+        try {
+            return Pattern.compile(replacements.stream()
+                    .map(entry -> "(?:" + entry.getLeft().pattern() + ")")
+                    .collect(Collectors.joining("|")));
+        } catch (PatternSyntaxException e) {
+            return null;
+        }
+    }
+
+    private static char[] requiredLiterals(List<Pair<Pattern, String>> replacements) {
+        final char[] literals = new char[replacements.size()];
+
+        for (int i = 0; i < literals.length; i++) {
+            final Pattern pattern = replacements.get(i).getLeft();
+            literals[i] = pattern.flags() == 0 ? requiredLiteral(pattern.pattern()) : NO_REQUIRED_LITERAL;
+
+            if (literals[i] == NO_REQUIRED_LITERAL) {
+                return null;
+            }
+        }
+
+        return literals;
+    }
+
+    /**
+     * Finds a character that every match of the given expression contains, looking only at top level literals that
+     * are not optional. Any construct that is not understood yields no literal, which only disables the fast path.
+     */
+    static char requiredLiteral(String regex) {
+        if (INLINE_FLAGS.matcher(regex).find() || regex.contains("\\Q")) {
+            return NO_REQUIRED_LITERAL;
+        }
+
+        char required = NO_REQUIRED_LITERAL;
+        int i = 0;
+
+        while (i < regex.length()) {
+            final char c = regex.charAt(i);
+            char literal = NO_REQUIRED_LITERAL;
+
+            if (c == '|') {
+                return NO_REQUIRED_LITERAL;
+            } else if (c == '\\') {
+                if (i + 1 >= regex.length()) {
+                    return NO_REQUIRED_LITERAL;
+                }
+                final char escaped = regex.charAt(i + 1);
+                if (!Character.isLetterOrDigit(escaped)) {
+                    literal = escaped;
+                } else if (SINGLE_CHARACTER_ESCAPES.indexOf(escaped) < 0) {
+                    return NO_REQUIRED_LITERAL;
+                }
+                i += 2;
+            } else if (c == '[') {
+                i = skipClass(regex, i);
+            } else if (c == '(') {
+                i = skipGroup(regex, i);
+            } else if (c == '.' || c == '^' || c == '$' || c == ')' || c == ']') {
+                i++;
+            } else if (c == '?' || c == '*' || c == '+' || c == '{') {
+                return NO_REQUIRED_LITERAL;
+            } else {
+                literal = c;
+                i++;
+            }
+
+            if (i < 0) {
+                return NO_REQUIRED_LITERAL;
+            }
+
+            final int afterQuantifier = skipQuantifier(regex, i);
+            final boolean optional = afterQuantifier != i && isOptionalQuantifier(regex, i);
+            i = afterQuantifier;
+
+            if (literal != NO_REQUIRED_LITERAL && !optional && required == NO_REQUIRED_LITERAL) {
+                required = literal;
+            }
+        }
+
+        return required;
+    }
+
+    private static int skipClass(String regex, int i) {
+        // A closing bracket right after the opening one is a literal, leave those classes alone
+        if (regex.startsWith("[]", i) || regex.startsWith("[^]", i)) {
+            return -1;
+        }
+
+        int depth = 0;
+        for (; i < regex.length(); i++) {
+            final char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                depth++;
+            } else if (c == ']' && --depth == 0) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipGroup(String regex, int i) {
+        int depth = 0;
+        for (; i < regex.length(); i++) {
+            final char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                i = skipClass(regex, i) - 1;
+                if (i < 0) {
+                    return -1;
+                }
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipQuantifier(String regex, int i) {
+        if (i >= regex.length()) {
+            return i;
+        }
+
+        final char c = regex.charAt(i);
+        int end;
+
+        if (c == '?' || c == '*' || c == '+') {
+            end = i + 1;
+        } else if (c == '{') {
+            end = regex.indexOf('}', i);
+            if (end < 0) {
+                return i;
+            }
+            end++;
+        } else {
+            return i;
+        }
+
+        // Reluctant and possessive modifiers
+        if (end < regex.length() && (regex.charAt(end) == '?' || regex.charAt(end) == '+')) {
+            end++;
+        }
+        return end;
+    }
+
+    private static boolean isOptionalQuantifier(String regex, int i) {
+        final char c = regex.charAt(i);
+        return c == '?' || c == '*' || (c == '{' && regex.startsWith("{0", i));
+    }
+}
@@ -0,0 +1,92 @@
+package com.statful.converter.util;
+
+import io.vertx.reactivex.core.buffer.Buffer;
+
+/**
+ * Reassembles complete length delimited protobuf messages out of arbitrarily split buffer chunks.
+ * Only the trailing partial message of a chunk is kept between calls, like {@link LineAssembler} does for lines,
+ * unless a minimum batch size is given, then complete messages are also kept until they add up to it.
+ */
+public class DelimitedMessageAssembler {
+    private static final byte[] EMPTY = new byte[0];
+
+    private final int minBatchSize;
+    private Buffer partialMessage = Buffer.buffer();
+    // End of the complete messages already found in the partial message, so they are not scanned again
+    private int scanned;
+
+    public DelimitedMessageAssembler() {
+        this(0);
+    }
+
+    public DelimitedMessageAssembler(int minBatchSize) {
+        this.minBatchSize = minBatchSize;
+    }
+
+    /**
+     * @return the bytes of all messages completed by this chunk, length prefixes included, possibly empty
+     */
+    public byte[] append(Buffer chunk) {
+        final Buffer pending = partialMessage.length() == 0 ? chunk : partialMessage.appendBuffer(chunk);
+        final int end = endOfCompleteMessages(pending, pending == chunk ? 0 : scanned);
+
+        if (end == 0 || end < minBatchSize) {
+            // Chunks are not owned, so the first one is copied before anything gets appended to it, later ones are
+            // appended to the copy until messages complete
+            partialMessage = pending == chunk ? chunk.copy() : pending;
+            scanned = end;
+            return EMPTY;
+        }
+
+        partialMessage = pending.getBuffer(end, pending.length());
+        scanned = 0;
+
+        return pending.getBytes(0, end);
+    }
+
+    /**
+     * @return the bytes of the messages still kept for a batch once the body ended, possibly empty
+     * @throws IllegalStateException when the body ended in the middle of a message
+     */
+    public byte[] flush() {
+        final int end = endOfCompleteMessages(partialMessage, scanned);
+
+        if (end < partialMessage.length()) {
+            throw new IllegalStateException("Body ended with a truncated message of " + (partialMessage.length() - end) + " bytes");
+        }
+
+        final byte[] messages = end == 0 ? EMPTY : partialMessage.getBytes(0, end);
+        partialMessage = Buffer.buffer();
+        scanned = 0;
+        return messages;
+    }
+
+    private static int endOfCompleteMessages(Buffer buffer, int from) {
+        int position = from;
+
+        while (position < buffer.length()) {
+            long length = 0;
+            int cursor = position;
+            int shift = 0;
+            byte b;
+
+            do {
+                if (cursor >= buffer.length()) {
+                    return position;
+                }
+                b = buffer.getByte(cursor++);
+                length |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0 && shift < 64);
+
+            if (length < 0) {
+                throw new IllegalStateException("Malformed message length at " + position);
+            } else if (length > buffer.length() - cursor) {
+                return position;
+            }
+            position = cursor + (int) length;
+        }
+
+        return position;
+    }
+}
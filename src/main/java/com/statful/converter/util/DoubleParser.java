@@ -0,0 +1,178 @@
+package com.statful.converter.util;
+
+/**
+ * Parses decimal floating point numbers straight from a range of characters.
+ * <p>
+ * Values with up to 18 significant digits and a small decimal exponent, which is what exporters emit, are computed
+ * exactly with a single double operation and no allocation. Infinities and NaN are accepted in the spellings of the
+ * prometheus text format ({@code +Inf}, {@code -Inf}, {@code NaN}), case insensitively and with {@code Infinity} as a
+ * synonym. Anything else, including signed NaN and hexadecimal floats, falls back to {@link Double#parseDouble}, so
+ * results are always identical to it.
+ */
+public final class DoubleParser {
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long[] LONG_POWERS_OF_TEN = {
+            1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L,
+            10000000000L, 100000000000L, 1000000000000L, 10000000000000L, 100000000000000L, 1000000000000000L
+    };
+    private static final int MAX_EXACT_POWER = POWERS_OF_TEN.length - 1;
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final int MAX_MANTISSA_DIGITS = 18;
+    private static final int MAX_EXPONENT = 100000;
+
+    private static final String INFINITY = "infinity";
+    private static final String INF = "inf";
+    private static final String NAN = "nan";
+
+    private DoubleParser() {
+    }
+
+    public static double parseDouble(CharSequence text) {
+        return parseDouble(text, 0, text.length());
+    }
+
+    /**
+     * @throws NumberFormatException when the range is not an infinity or NaN and {@link Double#parseDouble} rejects it
+     */
+    public static double parseDouble(CharSequence text, int start, int end) {
+        int cursor = start;
+        boolean negative = false;
+
+        if (cursor < end && (text.charAt(cursor) == '+' || text.charAt(cursor) == '-')) {
+            negative = text.charAt(cursor) == '-';
+            cursor++;
+        }
+
+        if (cursor < end && !isDigit(text.charAt(cursor)) && text.charAt(cursor) != '.') {
+            if (equalsIgnoreCase(text, cursor, end, INF) || equalsIgnoreCase(text, cursor, end, INFINITY)) {
+                return negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+            } else if (cursor == start && equalsIgnoreCase(text, cursor, end, NAN)) {
+                return Double.NaN;
+            }
+            return fallback(text, start, end);
+        }
+
+        long mantissa = 0;
+        int mantissaDigits = 0;
+        int exponent = 0;
+        boolean truncated = false;
+        boolean hasDigits = false;
+
+        for (; cursor < end && isDigit(text.charAt(cursor)); cursor++) {
+            hasDigits = true;
+            if (mantissaDigits < MAX_MANTISSA_DIGITS) {
+                mantissa = mantissa * 10 + (text.charAt(cursor) - '0');
+                mantissaDigits += mantissa == 0 ? 0 : 1;
+            } else {
+                truncated |= text.charAt(cursor) != '0';
+                exponent++;
+            }
+        }
+
+        if (cursor < end && text.charAt(cursor) == '.') {
+            for (cursor++; cursor < end && isDigit(text.charAt(cursor)); cursor++) {
+                hasDigits = true;
+                if (mantissaDigits < MAX_MANTISSA_DIGITS) {
+                    mantissa = mantissa * 10 + (text.charAt(cursor) - '0');
+                    mantissaDigits += mantissa == 0 ? 0 : 1;
+                    exponent--;
+                } else {
+                    truncated |= text.charAt(cursor) != '0';
+                }
+            }
+        }
+
+        if (!hasDigits) {
+            return fallback(text, start, end);
+        }
+
+        if (cursor < end && (text.charAt(cursor) == 'e' || text.charAt(cursor) == 'E')) {
+            cursor++;
+            boolean negativeExponent = false;
+
+            if (cursor < end && (text.charAt(cursor) == '+' || text.charAt(cursor) == '-')) {
+                negativeExponent = text.charAt(cursor) == '-';
+                cursor++;
+            }
+
+            final int exponentStart = cursor;
+            int explicitExponent = 0;
+
+            for (; cursor < end && isDigit(text.charAt(cursor)); cursor++) {
+                // Saturate, anything this large is already zero or infinite
+                explicitExponent = Math.min(MAX_EXPONENT, explicitExponent * 10 + (text.charAt(cursor) - '0'));
+            }
+
+            if (cursor == exponentStart) {
+                return fallback(text, start, end);
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+
+        if (cursor != end) {
+            return fallback(text, start, end);
+        }
+
+        if (mantissa == 0) {
+            return negative ? -0d : 0d;
+        }
+
+        if (!truncated && mantissa <= MAX_EXACT_MANTISSA) {
+            final double value = exactValue(mantissa, exponent);
+
+            if (!Double.isNaN(value)) {
+                return negative ? -value : value;
+            }
+        }
+
+        return fallback(text, start, end);
+    }
+
+    private static double fallback(CharSequence text, int start, int end) {
+        return Double.parseDouble(text.subSequence(start, end).toString());
+    }
+
+    /**
+     * Both the mantissa and the power of ten are exact doubles, so a single multiplication or division is correctly
+     * rounded.
+     *
+     * @return the value, or NaN when it cannot be computed exactly
+     */
+    static double exactValue(long mantissa, int exponent) {
+        if (exponent == 0) {
+            return mantissa;
+        } else if (exponent > 0 && exponent <= MAX_EXACT_POWER) {
+            return mantissa * POWERS_OF_TEN[exponent];
+        } else if (exponent < 0 && exponent >= -MAX_EXACT_POWER) {
+            return mantissa / POWERS_OF_TEN[-exponent];
+        } else if (exponent > MAX_EXACT_POWER && exponent - MAX_EXACT_POWER < LONG_POWERS_OF_TEN.length) {
+            // Values like 12e30 still have an exact mantissa once some of the exponent is moved into it
+            final long scale = LONG_POWERS_OF_TEN[exponent - MAX_EXACT_POWER];
+
+            if (mantissa <= MAX_EXACT_MANTISSA / scale) {
+                return (mantissa * scale) * POWERS_OF_TEN[MAX_EXACT_POWER];
+            }
+        }
+        return Double.NaN;
+    }
+
+    private static boolean equalsIgnoreCase(CharSequence text, int start, int end, String expected) {
+        if (end - start != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (Character.toLowerCase(text.charAt(start + i)) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
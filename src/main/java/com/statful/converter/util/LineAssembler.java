@@ -0,0 +1,57 @@
+package com.statful.converter.util;
+
+import io.vertx.reactivex.core.buffer.Buffer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reassembles complete lines out of arbitrarily split buffer chunks.
+ * Only the trailing partial line of a chunk is kept between calls, so memory depends on the chunk size and not on the
+ * size of the whole body.
+ */
+public class LineAssembler {
+    private static final byte NEW_LINE = '\n';
+
+    private Buffer partialLine = Buffer.buffer();
+
+    /**
+     * @return the text of all lines completed by this chunk, possibly empty
+     */
+    public String append(Buffer chunk) {
+        final int lastNewLine = lastIndexOfNewLine(chunk);
+
+        if (lastNewLine < 0) {
+            partialLine.appendBuffer(chunk);
+            return "";
+        }
+
+        final String lines;
+        if (partialLine.length() == 0) {
+            lines = chunk.getString(0, lastNewLine + 1, StandardCharsets.UTF_8.name());
+        } else {
+            lines = partialLine.appendBuffer(chunk, 0, lastNewLine + 1).toString(StandardCharsets.UTF_8.name());
+        }
+
+        partialLine = chunk.getBuffer(lastNewLine + 1, chunk.length());
+
+        return lines;
+    }
+
+    /**
+     * @return the text of the last line when the body does not end with a new line, possibly empty
+     */
+    public String flush() {
+        final String lines = partialLine.toString(StandardCharsets.UTF_8.name());
+        partialLine = Buffer.buffer();
+        return lines;
+    }
+
+    private static int lastIndexOfNewLine(Buffer chunk) {
+        for (int i = chunk.length() - 1; i >= 0; i--) {
+            if (chunk.getByte(i) == NEW_LINE) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
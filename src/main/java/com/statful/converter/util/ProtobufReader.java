@@ -0,0 +1,185 @@
+package com.statful.converter.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal reader of the protocol buffers wire format over a byte array, enough to decode messages field by field
+ * without generated classes. Nested messages are read by narrowing the limit to their length.
+ */
+public class ProtobufReader {
+    public static final int VARINT = 0;
+    public static final int FIXED64 = 1;
+    public static final int LENGTH_DELIMITED = 2;
+    public static final int FIXED32 = 5;
+
+    private static final int WIRE_TYPE_BITS = 3;
+    private static final int WIRE_TYPE_MASK = 7;
+
+    private final byte[] bytes;
+    private int position;
+    private int limit;
+
+    public ProtobufReader(byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+    public ProtobufReader(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.position = offset;
+        this.limit = offset + length;
+    }
+
+    public boolean hasRemaining() {
+        return position < limit;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public void setPosition(int position) {
+        this.position = position;
+    }
+
+    public static int fieldNumber(int tag) {
+        return tag >>> WIRE_TYPE_BITS;
+    }
+
+    public static int wireType(int tag) {
+        return tag & WIRE_TYPE_MASK;
+    }
+
+    public int readTag() {
+        return (int) readVarint();
+    }
+
+    public long readVarint() {
+        long value = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IllegalArgumentException("Malformed varint at " + position);
+    }
+
+    public double readDouble() {
+        return Double.longBitsToDouble(readFixed64());
+    }
+
+    public String readString() {
+        final int length = readLength();
+        final String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    /**
+     * Reads a string, returning the one of the given values it is equal to instead of decoding a copy of it.
+     *
+     * @param encodedValues the utf-8 encoding of each value, at the same index
+     */
+    public String readString(String[] values, byte[][] encodedValues) {
+        final int length = readLength();
+
+        for (int i = 0; i < values.length; i++) {
+            if (matches(encodedValues[i], length)) {
+                position += length;
+                return values[i];
+            }
+        }
+
+        final String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    /**
+     * Narrows the limit to the length delimited field at the current position.
+     *
+     * @return the previous limit, to be given back to {@link #popLimit(int)} once the field is read
+     */
+    public int pushLimit() {
+        final int length = readLength();
+        final int previousLimit = limit;
+        limit = position + length;
+        return previousLimit;
+    }
+
+    public void popLimit(int previousLimit) {
+        position = limit;
+        limit = previousLimit;
+    }
+
+    public void skipField(int tag) {
+        switch (wireType(tag)) {
+            case VARINT:
+                readVarint();
+                break;
+            case FIXED64:
+                skip(8);
+                break;
+            case LENGTH_DELIMITED:
+                skip(readLength());
+                break;
+            case FIXED32:
+                skip(4);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported wire type " + wireType(tag) + " at " + position);
+        }
+    }
+
+    private int readLength() {
+        final long length = readVarint();
+
+        if (length < 0 || length > limit - position) {
+            throw new IllegalArgumentException("Truncated field of length " + length + " at " + position);
+        }
+        return (int) length;
+    }
+
+    private boolean matches(byte[] value, int length) {
+        if (value.length != length) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (bytes[position + i] != value[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long readFixed64() {
+        if (limit - position < 8) {
+            throw new IllegalArgumentException("Truncated fixed64 at " + position);
+        }
+
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value |= (bytes[position + i] & 0xFFL) << (8 * i);
+        }
+        position += 8;
+        return value;
+    }
+
+    private byte readByte() {
+        if (position >= limit) {
+            throw new IllegalArgumentException("Truncated varint at " + position);
+        }
+        return bytes[position++];
+    }
+
+    private void skip(int length) {
+        if (length > limit - position) {
+            throw new IllegalArgumentException("Truncated field at " + position);
+        }
+        position += length;
+    }
+}
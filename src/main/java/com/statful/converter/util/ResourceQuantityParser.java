@@ -1,49 +1,243 @@
 package com.statful.converter.util;
 
-import com.statful.converter.domain.MemorySuffix;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.math.BigDecimal;
 
+/**
+ * Parses kubernetes resource quantities: a signed decimal number followed by a binary SI suffix ({@code Ki} to
+ * {@code Ei}), a decimal SI suffix ({@code n}, {@code u}, {@code m}, {@code k} to {@code E}) or a decimal exponent
+ * ({@code 1e3}). The legacy {@code b} suffix for bytes is also accepted.
+ * <p>
+ * Quantities are scanned character by character without allocating and computed exactly whenever the digits fit a
+ * double. A cluster only uses a handful of distinct limits and requests, so those are cached once parsed, while usage
+ * quantities change on every scrape and are always parsed.
+ */
 public class ResourceQuantityParser {
 
-    private static final Pattern CPU_QUANTITY = Pattern.compile("([0-9.]+)(m)?");
-    private static final Pattern MEMORY_QUANTITY = Pattern.compile("([0-9.]+)(Ki|Mi|Gi|Ti|Pi|Ei|n|u|m|b|k|M|G|T|P|E)$");
+    private static final int MILLI = 3;
+    private static final long CACHE_SIZE = 1000;
+    private static final int MAX_MANTISSA_DIGITS = 18;
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final int MAX_EXPONENT = 100000;
 
+    private static final Cache<String, Double> CPU_RESOURCES = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
+    private static final Cache<String, Double> MEMORY_RESOURCES = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
+
+    /**
+     * @return the cpu limit or request in millicores, or 0 when it is missing or invalid
+     */
     public static double parseCpuResource(String cpu) {
-        if (cpu == null || cpu.isEmpty()) {
+        return parseResource(CPU_RESOURCES, cpu, MILLI);
+    }
+
+    /**
+     * @return the memory limit or request in bytes, or 0 when it is missing or invalid
+     */
+    public static double parseMemoryResource(String memory) {
+        return parseResource(MEMORY_RESOURCES, memory, 0);
+    }
+
+    /**
+     * @return the cpu usage in millicores, or NaN when it is missing or invalid
+     */
+    public static double parseCpuUsage(String cpu) {
+        return parseQuantity(cpu, MILLI);
+    }
+
+    /**
+     * @return the memory usage in bytes, or NaN when it is missing or invalid
+     */
+    public static double parseMemoryUsage(String memory) {
+        return parseQuantity(memory, 0);
+    }
+
+    private static double parseResource(Cache<String, Double> cache, String quantity, int decimalShift) {
+        if (quantity == null || quantity.isEmpty()) {
             return 0;
         }
 
-        final Matcher matcher = CPU_QUANTITY.matcher(cpu);
+        Double value = cache.getIfPresent(quantity);
+
+        if (value == null) {
+            final double parsed = parseQuantity(quantity, decimalShift);
+            value = Double.isNaN(parsed) ? 0 : parsed;
+            cache.put(quantity, value);
+        }
+
+        return value;
+    }
+
+    /**
+     * @param decimalShift power of ten the quantity is multiplied by, to get it in a smaller unit
+     * @return the quantity in its base unit times ten to the given power, or NaN when it is missing or invalid
+     */
+    static double parseQuantity(String quantity, int decimalShift) {
+        if (quantity == null) {
+            return Double.NaN;
+        }
+
+        final int end = quantity.length();
+        int cursor = 0;
+        boolean negative = false;
+
+        if (cursor < end && (quantity.charAt(cursor) == '+' || quantity.charAt(cursor) == '-')) {
+            negative = quantity.charAt(cursor) == '-';
+            cursor++;
+        }
+
+        final int numberStart = cursor;
+        long mantissa = 0;
+        int mantissaDigits = 0;
+        int exponent = 0;
+        boolean truncated = false;
+        boolean hasDigits = false;
 
-        if (matcher.find()) {
-            final double number = Double.parseDouble(matcher.group(1));
-            final String denom = matcher.group(2);
+        for (; cursor < end && isDigit(quantity.charAt(cursor)); cursor++) {
+            hasDigits = true;
+            if (mantissaDigits < MAX_MANTISSA_DIGITS) {
+                mantissa = mantissa * 10 + (quantity.charAt(cursor) - '0');
+                mantissaDigits += mantissa == 0 ? 0 : 1;
+            } else {
+                truncated |= quantity.charAt(cursor) != '0';
+                exponent++;
+            }
+        }
 
-            if (denom == null || denom.isEmpty()) {
-                return number * 1000; // Translate to millicores
-            } else if (denom.equals("m")) {
-                return number;
+        if (cursor < end && quantity.charAt(cursor) == '.') {
+            for (cursor++; cursor < end && isDigit(quantity.charAt(cursor)); cursor++) {
+                hasDigits = true;
+                if (mantissaDigits < MAX_MANTISSA_DIGITS) {
+                    mantissa = mantissa * 10 + (quantity.charAt(cursor) - '0');
+                    mantissaDigits += mantissa == 0 ? 0 : 1;
+                    exponent--;
+                } else {
+                    truncated |= quantity.charAt(cursor) != '0';
+                }
             }
         }
 
-        return 0;
+        if (!hasDigits) {
+            return Double.NaN;
+        }
+
+        final int numberEnd = cursor;
+        int suffixExponent = 0;
+        int binaryExponent = 0;
+
+        if (end - cursor == 1) {
+            suffixExponent = decimalSuffixExponent(quantity.charAt(cursor));
+        } else if (end - cursor == 2 && quantity.charAt(cursor + 1) == 'i') {
+            binaryExponent = binarySuffixExponent(quantity.charAt(cursor));
+        } else if (end - cursor > 1 && (quantity.charAt(cursor) == 'e' || quantity.charAt(cursor) == 'E')) {
+            suffixExponent = decimalExponent(quantity, cursor + 1, end);
+        } else if (cursor != end) {
+            return Double.NaN;
+        }
+
+        if (suffixExponent == Integer.MIN_VALUE || binaryExponent == Integer.MIN_VALUE) {
+            return Double.NaN;
+        }
+
+        double value = mantissa == 0 ? 0 : Double.NaN;
+
+        if (Double.isNaN(value) && !truncated && mantissa <= MAX_EXACT_MANTISSA) {
+            value = DoubleParser.exactValue(mantissa, exponent + suffixExponent + decimalShift);
+        }
+
+        if (Double.isNaN(value)) {
+            // Too many digits or too large an exponent to compute with a single rounding
+            value = new BigDecimal(quantity.substring(numberStart, numberEnd))
+                    .scaleByPowerOfTen(suffixExponent + decimalShift)
+                    .doubleValue();
+        }
+
+        return Math.scalb(negative ? -value : value, binaryExponent);
     }
 
-    public static double parseMemoryResource(String memory) {
-        if (memory == null || memory.isEmpty()) {
-            return 0;
+    /**
+     * @return the power of ten of the suffix, or {@link Integer#MIN_VALUE} when it is not one
+     */
+    private static int decimalSuffixExponent(char suffix) {
+        switch (suffix) {
+            case 'n':
+                return -9;
+            case 'u':
+                return -6;
+            case 'm':
+                return -3;
+            case 'b':
+                return 0;
+            case 'k':
+                return 3;
+            case 'M':
+                return 6;
+            case 'G':
+                return 9;
+            case 'T':
+                return 12;
+            case 'P':
+                return 15;
+            case 'E':
+                return 18;
+            default:
+                return Integer.MIN_VALUE;
         }
+    }
+
+    /**
+     * @return the power of two of the suffix, or {@link Integer#MIN_VALUE} when it is not one
+     */
+    private static int binarySuffixExponent(char suffix) {
+        switch (suffix) {
+            case 'K':
+                return 10;
+            case 'M':
+                return 20;
+            case 'G':
+                return 30;
+            case 'T':
+                return 40;
+            case 'P':
+                return 50;
+            case 'E':
+                return 60;
+            default:
+                return Integer.MIN_VALUE;
+        }
+    }
+
+    /**
+     * @return the signed integer exponent in the range, or {@link Integer#MIN_VALUE} when it is not one
+     */
+    private static int decimalExponent(String quantity, int start, int end) {
+        int cursor = start;
+        boolean negative = false;
 
-        final Matcher matcher = MEMORY_QUANTITY.matcher(memory);
+        if (quantity.charAt(cursor) == '+' || quantity.charAt(cursor) == '-') {
+            negative = quantity.charAt(cursor) == '-';
+            cursor++;
+        }
 
-        if (matcher.find()) {
-            final double number = Double.valueOf(matcher.group(1));
-            return MemorySuffix.from(matcher.group(2)).toBytes(number);
+        if (cursor == end) {
+            return Integer.MIN_VALUE;
         }
 
-        return 0;
+        int exponent = 0;
+
+        for (; cursor < end; cursor++) {
+            if (!isDigit(quantity.charAt(cursor))) {
+                return Integer.MIN_VALUE;
+            }
+            // Saturate, anything this large is already zero or infinite
+            exponent = Math.min(MAX_EXPONENT, exponent * 10 + (quantity.charAt(cursor) - '0'));
+        }
+
+        return negative ? -exponent : exponent;
     }
 
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
 }
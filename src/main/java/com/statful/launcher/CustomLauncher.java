@@ -2,6 +2,7 @@ package com.statful.launcher;
 
 import com.statful.client.StatfulMetricsFactoryImpl;
 import com.statful.client.StatfulMetricsOptions;
+import com.statful.collector.k8s.emission.MetricEmitter;
 import com.statful.collector.k8s.utils.Loggable;
 import com.statful.utils.Pair;
 import io.vertx.core.Launcher;
@@ -15,9 +16,14 @@ import static java.util.Objects.nonNull;
 
 public class CustomLauncher extends Launcher implements Loggable {
 
+    private static final int DEFAULT_STATFUL_BUFFER_SIZE = 15000;
+
     private String statfulToken;
     private String statfulHost;
     private boolean statfulDryRun;
+    private int statfulFlushSize;
+    private int statfulFlushInterval;
+    private int statfulBufferSize;
     private final List<Pair<String, String>> tags = new ArrayList<>(1);
 
     public static void main(String[] args) {
@@ -35,9 +41,9 @@ public class CustomLauncher extends Launcher implements Loggable {
                 .setToken(statfulToken)
                 .setNamespace("kubernetes")
                 .setTags(tags)
-                .setFlushSize(1000)
-                .setFlushInterval(10000)
-                .setMaxBufferSize(15000);
+                .setFlushSize(statfulFlushSize)
+                .setFlushInterval(statfulFlushInterval)
+                .setMaxBufferSize(statfulBufferSize);
 
         metricsOptions.setFactory(new StatfulMetricsFactoryImpl());
 
@@ -48,6 +54,9 @@ public class CustomLauncher extends Launcher implements Loggable {
         statfulToken = System.getProperty("statful.token");
         statfulHost = System.getProperty("statful.host", "api.statful.com");
         statfulDryRun = Boolean.valueOf(System.getProperty("statful.dryrun", String.valueOf(false)));
+        statfulFlushSize = Integer.getInteger("statful.flush.size", 1000);
+        statfulFlushInterval = Integer.getInteger("statful.flush.interval", 10000);
+        statfulBufferSize = getStatfulBufferSize();
         String statfulEnvironment = System.getProperty("statful.environment");
 
         if (nonNull(statfulEnvironment)) {
@@ -55,6 +64,22 @@ public class CustomLauncher extends Launcher implements Loggable {
         }
     }
 
+    /**
+     * Metrics leave the emission queue once handed to the statful client, so its buffer defaults to the capacity of the
+     * queue, as metrics beyond it would be discarded by the client without being reported. An unbounded queue keeps the
+     * default buffer of the client.
+     */
+    private int getStatfulBufferSize() {
+        final int queueCapacity = Integer.getInteger(MetricEmitter.COLLECTOR_EMIT_QUEUE_CAPACITY, MetricEmitter.DEFAULT_QUEUE_CAPACITY);
+        final int bufferSize = Integer.getInteger("statful.buffer.size", queueCapacity > 0 ? queueCapacity : DEFAULT_STATFUL_BUFFER_SIZE);
+
+        if (queueCapacity > 0 && bufferSize < queueCapacity) {
+            log().warn("statful.buffer.size " + bufferSize + " is smaller than collector.emit.queue.capacity " + queueCapacity
+                    + ", metrics beyond it are discarded by the statful client without being counted as dropped");
+        }
+        return bufferSize;
+    }
+
     @Override
     public void afterStartingVertx(Vertx vertx) {
         registerExceptionHandler(vertx);
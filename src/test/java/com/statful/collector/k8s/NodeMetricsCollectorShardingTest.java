@@ -0,0 +1,172 @@
+package com.statful.collector.k8s;
+
+import com.statful.collector.k8s.clients.KubeApi;
+import com.statful.collector.k8s.clients.SimpleWebClient;
+import com.statful.collector.k8s.emission.MetricEmitter;
+import com.statful.collector.k8s.inventory.Inventory;
+import com.statful.collector.k8s.scheduling.ScrapeScheduler;
+import com.statful.converter.prometheus.PrometheusParser;
+import com.statful.converter.prometheus.PrometheusParserOptions;
+import com.statful.converter.prometheus.PrometheusProtobufParser;
+import io.reactivex.schedulers.Schedulers;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.core.eventbus.EventBus;
+import io.vertx.reactivex.core.http.HttpServer;
+import io.vertx.reactivex.core.http.HttpServerRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs the collectors of several replicas against a stub api server, to check which nodes each one scrapes
+ */
+class NodeMetricsCollectorShardingTest {
+    private static final int NODES = 100;
+    private static final Pattern NODE_SCRAPE = Pattern.compile("/api/v1/nodes/([^/]+)/proxy/metrics");
+
+    private Vertx vertx;
+    private HttpServer server;
+    private List<String> paths;
+    private KubeApi.Client kubeApi;
+
+    @BeforeEach
+    void setUp() {
+        vertx = Vertx.vertx();
+        paths = new CopyOnWriteArrayList<>();
+        server = vertx.createHttpServer()
+                .requestHandler(request -> {
+                    paths.add(request.path());
+                    serve(request);
+                })
+                .rxListen(0)
+                .blockingGet();
+
+        vertx.rxDeployVerticle(new KubeApi(new JsonObject()
+                .put("kubernetes.api.host", "localhost")
+                .put("kubernetes.api.port", server.actualPort())))
+                .blockingGet();
+        kubeApi = new KubeApi.Client(vertx.eventBus());
+    }
+
+    @AfterEach
+    void tearDown() {
+        vertx.close();
+    }
+
+    @Test
+    void scrapeEveryNodeOnce() {
+        final Map<String, Integer> owners = collect(3);
+
+        assertEquals(NODES, owners.size());
+        for (int replica = 0; replica < 3; replica++) {
+            assertTrue(owners.containsValue(replica), "replica " + replica + " scraped no node");
+        }
+    }
+
+    @Test
+    void listPodsOnFirstReplicaOnly() {
+        for (int replica = 0; replica < 3; replica++) {
+            paths.clear();
+            collect(replica, 3);
+
+            assertEquals(replica == 0 ? 1 : 0, paths.stream().filter(path -> path.startsWith("/api/v1/pods")).count());
+        }
+    }
+
+    @Test
+    void moveOnlyNodesOfNewReplica() {
+        final Map<String, Integer> before = collect(3);
+        final Map<String, Integer> after = collect(4);
+        final Set<String> moved = new HashSet<>();
+
+        before.forEach((node, owner) -> {
+            if (!owner.equals(after.get(node))) {
+                moved.add(node);
+                assertEquals(3, after.get(node).intValue(), node + " moved between existing replicas");
+            }
+        });
+
+        // About a quarter of the nodes
+        assertTrue(moved.size() > NODES / 8 && moved.size() < NODES / 2, moved.size() + " nodes moved");
+    }
+
+    /**
+     * @return the replica that scraped each node
+     */
+    private Map<String, Integer> collect(int replicas) {
+        final Map<String, Integer> owners = new HashMap<>();
+
+        for (int replica = 0; replica < replicas; replica++) {
+            paths.clear();
+            collect(replica, replicas);
+
+            for (String path : paths) {
+                final Matcher matcher = NODE_SCRAPE.matcher(path);
+
+                if (matcher.matches()) {
+                    final Integer previous = owners.put(matcher.group(1), replica);
+                    assertTrue(previous == null || previous == replica, matcher.group(1) + " scraped by " + previous + " and " + replica);
+                }
+            }
+        }
+
+        return owners;
+    }
+
+    private void collect(int ordinal, int replicas) {
+        final JsonObject config = new JsonObject()
+                .put("collector.shard.ordinal", ordinal)
+                .put("collector.shard.replicas", replicas)
+                .put("collector.scrape.spread", 0)
+                .put("collector.emit.batch.size", 1)
+                .put("collector.emit.queue.capacity", 0)
+                .put("collector.cadvisor.disabled", true)
+                .put("collector.metricsserver.disabled", true);
+        final PrometheusParserOptions options = PrometheusParserOptions.Builder.fromConfig(config).build();
+
+        final NodeMetricsCollector collector = new NodeMetricsCollector(kubeApi, new SimpleWebClient.Client(vertx.eventBus()),
+                new MetricEmitter(mock(EventBus.class), config, Schedulers.trampoline()),
+                new PrometheusParser(options), new PrometheusProtobufParser(options),
+                new ScrapeScheduler(config, Schedulers.trampoline()),
+                Inventory.pods(kubeApi, Schedulers.trampoline()), Inventory.nodes(kubeApi, Schedulers.trampoline()), config);
+
+        assertTrue(collector.collect().blockingAwait(10, TimeUnit.SECONDS));
+    }
+
+    private static void serve(HttpServerRequest request) {
+        final JsonArray items = new JsonArray();
+
+        if (request.path().startsWith("/api/v1/nodes/") && request.path().endsWith("/proxy/metrics")) {
+            request.response()
+                    .putHeader(HttpHeaders.CONTENT_TYPE.toString(), "text/plain; version=0.0.4")
+                    .end("# TYPE up gauge\nup 1\n");
+            return;
+        } else if (request.path().equals("/api/v1/nodes/")) {
+            for (int node = 0; node < NODES; node++) {
+                items.add(new JsonObject().put("metadata", new JsonObject().put("name", "node-" + node)));
+            }
+        }
+
+        request.response().end(new JsonObject()
+                .put("metadata", new JsonObject().put("resourceVersion", "1"))
+                .put("items", items)
+                .encode());
+    }
+}
@@ -2,25 +2,53 @@ package com.statful.collector.k8s;
 
 import com.statful.client.CustomMetric;
 import com.statful.client.CustomMetricsConsumer;
+import com.statful.client.MetricType;
+import com.statful.collector.k8s.clients.BufferStream;
 import com.statful.collector.k8s.clients.KubeApi;
 import com.statful.collector.k8s.clients.SimpleWebClient;
+import com.statful.collector.k8s.domain.ContainerInfo;
+import com.statful.collector.k8s.domain.ListPage;
+import com.statful.collector.k8s.domain.NodeInfo;
+import com.statful.collector.k8s.domain.PodInfo;
+import com.statful.collector.k8s.emission.MetricEmitter;
+import com.statful.collector.k8s.inventory.Inventory;
+import com.statful.collector.k8s.scheduling.ScrapeScheduler;
 import com.statful.converter.Converter;
+import com.statful.converter.prometheus.PrometheusProtobufParser;
+import com.statful.utils.Pair;
+import io.reactivex.Flowable;
 import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.schedulers.Schedulers;
+import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.reactivex.core.buffer.Buffer;
 import io.vertx.reactivex.core.eventbus.EventBus;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 public class NodeMetricsCollectorTest {
+    private static final Flowable<Buffer> METRICS = Flowable.just(Buffer.buffer("metrics"));
 
     @Mock
     private KubeApi.Client kubeApi;
@@ -30,85 +58,357 @@ public class NodeMetricsCollectorTest {
     private EventBus eventBus;
     @Mock
     private Converter converter;
+    @Mock
+    private Converter protobufConverter;
+    @Mock
+    private BufferStream.Response response;
 
     private NodeMetricsCollector victim;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.initMocks(this);
-        victim = new NodeMetricsCollector(kubeApi, simpleWebClient, eventBus, converter, new JsonObject());
+        when(response.body()).thenReturn(METRICS);
+        // Every metric is sent on its own, as the batches are covered by the emitter tests
+        final JsonObject config = new JsonObject()
+                .put("collector.scrape.spread", 0)
+                .put("collector.emit.batch.size", 1)
+                .put("collector.emit.queue.capacity", 0)
+                .put("collector.emit.queue.capacity", 0);
+        victim = collector(config);
     }
 
     @Test
     void collect() {
         ArgumentCaptor<CustomMetric> captor = ArgumentCaptor.forClass(CustomMetric.class);
 
-        when(kubeApi.getPods()).thenReturn(mockPods());
-        when(kubeApi.getNodes()).thenReturn(mockNodes());
-        when(kubeApi.getNodeMetrics(anyString())).thenReturn(Single.just("metrics"));
-        when(kubeApi.getCAdvisorNodeMetrics(anyString())).thenReturn(Single.just("metrics"));
+        when(kubeApi.listPods()).thenReturn(mockPods().toFlowable());
+        when(kubeApi.listNodes()).thenReturn(mockNodes().toFlowable());
+        when(kubeApi.getNodeMetrics(anyString())).thenReturn(Single.just(response));
+        when(kubeApi.getCAdvisorNodeMetrics(anyString())).thenReturn(Single.just(response));
+        when(converter.rxConvert(eq(METRICS), anyList())).thenReturn(Flowable.empty());
         when(kubeApi.getMetricsServerNodeMetrics(anyString())).thenReturn(mockNodeMetrics());
         when(kubeApi.getMetricsServerPodsMetrics()).thenReturn(mockPodsMetrics());
 
-        victim.collect();
+        victim.collect().test().assertComplete();
 
         verify(kubeApi, times(3)).getMetricsServerNodeMetrics(anyString());
-        verify(converter, times(6)).convert(eq("metrics"), anyList(), any());
-        verify(eventBus, times(18)).send(eq(CustomMetricsConsumer.ADDRESS), captor.capture());
+        verify(converter, times(6)).rxConvert(eq(METRICS), anyList());
+        // Queue wait of the node, cAdvisor and metrics-server scrapes of each node and the cycle metrics included
+        verify(eventBus, times(30)).send(eq(CustomMetricsConsumer.ADDRESS), captor.capture());
+        assertEquals(9, captor.getAllValues().stream().filter(metric -> metric.getMetricName().equals("scrape.queue.wait")).count());
+    }
+
+    @Test
+    void collectMetricsServerUsageWithUnits() {
+        ArgumentCaptor<CustomMetric> captor = ArgumentCaptor.forClass(CustomMetric.class);
+
+        when(kubeApi.listPods()).thenReturn(Flowable.just(new ListPage<>(Collections.emptyList(), "1", null)));
+        when(kubeApi.listNodes()).thenReturn(Flowable.just(new ListPage<>(Collections.emptyList(), "1", null)));
+        when(kubeApi.getMetricsServerPodsMetrics()).thenReturn(mockPodsMetrics());
+
+        victim.collect().test().assertComplete();
+
+        verify(eventBus, times(5)).send(eq(CustomMetricsConsumer.ADDRESS), captor.capture());
+        assertEquals("pod.cpu", captor.getAllValues().get(0).getMetricName());
+        assertEquals(28d, captor.getAllValues().get(0).getValue().doubleValue());
+        assertEquals(MetricType.GAUGE, captor.getAllValues().get(0).getMetricType());
+        assertEquals("pod.memory", captor.getAllValues().get(1).getMetricName());
+        assertEquals(291283d * 1024, captor.getAllValues().get(1).getValue().doubleValue());
+    }
+
+    @Test
+    void collectReportsCycle() {
+        ArgumentCaptor<CustomMetric> captor = ArgumentCaptor.forClass(CustomMetric.class);
+
+        when(kubeApi.listPods()).thenReturn(Flowable.just(new ListPage<>(Collections.emptyList(), "1", null)));
+        when(kubeApi.listNodes()).thenReturn(Flowable.just(new ListPage<>(Collections.emptyList(), "1", null)));
+        when(kubeApi.getMetricsServerPodsMetrics()).thenReturn(mockPodsMetrics());
+
+        victim.collect().test().assertComplete();
+
+        verify(eventBus, times(5)).send(eq(CustomMetricsConsumer.ADDRESS), captor.capture());
+        final Map<String, CustomMetric> cycle = cycleMetrics(captor.getAllValues());
+        assertEquals(0, cycle.get("collection.requests.outstanding").getValue().intValue());
+        assertEquals(2, cycle.get("collection.samples").getValue().intValue());
+        assertEquals("complete", cycle.get("collection.duration").getTags().get(0).getRight());
+    }
+
+    @Test
+    void collectCancelled() {
+        ArgumentCaptor<CustomMetric> captor = ArgumentCaptor.forClass(CustomMetric.class);
+        final PublishProcessor<Buffer> body = PublishProcessor.create();
+
+        when(kubeApi.listPods()).thenReturn(Flowable.never());
+        when(kubeApi.listNodes()).thenReturn(mockNodes().toFlowable());
+        when(kubeApi.getNodeMetrics(anyString())).thenReturn(Single.just(response));
+        when(kubeApi.getCAdvisorNodeMetrics(anyString())).thenReturn(Single.just(response));
+        when(converter.rxConvert(eq(METRICS), anyList())).thenReturn(body.map($ -> mock(CustomMetric.class)));
+        when(kubeApi.getMetricsServerNodeMetrics(anyString())).thenReturn(mockNodeMetrics());
+        when(kubeApi.getMetricsServerPodsMetrics()).thenReturn(mockPodsMetrics());
+
+        final TestObserver<Void> cycle = victim.collect().test();
+        cycle.dispose();
+
+        assertFalse(body.hasSubscribers());
+        verify(eventBus, atLeastOnce()).send(eq(CustomMetricsConsumer.ADDRESS), captor.capture());
+        final Map<String, CustomMetric> cycleMetrics = cycleMetrics(captor.getAllValues());
+        // The pods listing and the node and cAdvisor scrapes of each node
+        assertEquals(7, cycleMetrics.get("collection.requests.outstanding").getValue().intValue());
+        assertEquals("cancelled", cycleMetrics.get("collection.duration").getTags().get(0).getRight());
+    }
+
+    @Test
+    void collectSharded() {
+        when(kubeApi.listPods()).thenReturn(mockPods().toFlowable());
+        when(kubeApi.listNodes()).thenReturn(mockNodes().toFlowable());
+        when(kubeApi.getNodeMetrics(anyString())).thenReturn(Single.just(response));
+        when(kubeApi.getCAdvisorNodeMetrics(anyString())).thenReturn(Single.just(response));
+        when(converter.rxConvert(eq(METRICS), anyList())).thenReturn(Flowable.empty());
+        when(kubeApi.getMetricsServerNodeMetrics(anyString())).thenReturn(mockNodeMetrics());
+        when(kubeApi.getMetricsServerPodsMetrics()).thenReturn(mockPodsMetrics());
+
+        for (int ordinal = 0; ordinal < 2; ordinal++) {
+            final JsonObject config = new JsonObject()
+                    .put("collector.scrape.spread", 0)
+                    .put("collector.shard.ordinal", ordinal)
+                    .put("collector.shard.replicas", 2)
+                    .put("collector.emit.batch.size", 1)
+                .put("collector.emit.queue.capacity", 0)
+                    .put("collector.emit.queue.capacity", 0);
+
+            collector(config).collect().test().assertComplete();
+        }
+
+        verify(kubeApi, times(2)).listNodes();
+        verify(kubeApi, times(1)).listPods();
+        verify(kubeApi, times(1)).getMetricsServerPodsMetrics();
+        Stream.of("node1", "node2", "node3").forEach(node -> {
+            verify(kubeApi, times(1)).getNodeMetrics(node);
+            verify(kubeApi, times(1)).getCAdvisorNodeMetrics(node);
+            verify(kubeApi, times(1)).getMetricsServerNodeMetrics(node);
+        });
     }
 
     @Test
     void collectWithErrorSending() {
-        when(kubeApi.getPods()).thenReturn(mockPods());
-        when(kubeApi.getNodes()).thenReturn(mockNodes());
-        when(kubeApi.getNodeMetrics(anyString())).thenReturn(Single.just("metrics"));
-        when(kubeApi.getCAdvisorNodeMetrics(anyString())).thenReturn(Single.just("metrics"));
+        when(kubeApi.listPods()).thenReturn(mockPods().toFlowable());
+        when(kubeApi.listNodes()).thenReturn(mockNodes().toFlowable());
+        when(kubeApi.getNodeMetrics(anyString())).thenReturn(Single.just(response));
+        when(kubeApi.getCAdvisorNodeMetrics(anyString())).thenReturn(Single.just(response));
+        when(converter.rxConvert(eq(METRICS), anyList())).thenReturn(Flowable.empty());
         when(eventBus.send(eq(CustomMetricsConsumer.ADDRESS), any(CustomMetric.class)))
                 .thenThrow(new IllegalArgumentException())
                 .then(invocationOnMock -> null);
         when(kubeApi.getMetricsServerNodeMetrics(anyString())).thenReturn(mockNodeMetrics());
         when(kubeApi.getMetricsServerPodsMetrics()).thenReturn(mockPodsMetrics());
 
-        victim.collect();
+        victim.collect().test().assertComplete();
 
         verify(kubeApi, times(3)).getMetricsServerNodeMetrics(anyString());
-        verify(converter, times(6)).convert(eq("metrics"), anyList(), any());
-        verify(eventBus, times(17)).send(eq(CustomMetricsConsumer.ADDRESS), any(CustomMetric.class));
-    }
-
-    private Single<JsonObject> mockPods() {
-        final JsonArray items = Stream.of("pod1-1234567-1234", "pod2-1234567-1234", "pod1-1234567-1234")
-                .map(node -> new JsonObject()
-                        .put("name", node))
-                .map(metadata -> new JsonObject()
-                        .put("metadata", metadata)
-                        .put("spec", new JsonObject()
-                                .put("nodeName", "node1")
-                                .put("containers", new JsonArray()
-                                        .add(new JsonObject()
-                                                .put("name", "container1")
-                                                .put("resources", new JsonObject()
-                                                        .put("limits", new JsonObject()
-                                                                .put("cpu", "2")
-                                                                .put("memory", "2Gi"))
-                                                        .put("requests", new JsonObject()
-                                                                .put("cpu", "0.5")
-                                                                .put("memory", "1G")))))))
-                .reduce(new JsonArray(), JsonArray::add, JsonArray::addAll);
-
-        return Single.just(new JsonObject().put("items", items));
-    }
-
-    private Single<JsonObject> mockNodes() {
-        final JsonArray items = Stream.of("node1", "node2", "node3")
-                .map(node -> new JsonObject()
-                        .put("labels", new JsonObject().put("kubernetes.io/role", "node"))
-                        .put("name", node))
-                .map(metadata -> new JsonObject()
-                        .put("metadata", metadata))
-                .reduce(new JsonArray(), JsonArray::add, JsonArray::addAll);
-
-        return Single.just(new JsonObject().put("items", items));
+        verify(converter, times(6)).rxConvert(eq(METRICS), anyList());
+        // The failed send is only logged, the metrics after it are still sent
+        verify(eventBus, times(30)).send(eq(CustomMetricsConsumer.ADDRESS), any(CustomMetric.class));
+    }
+
+    @Test
+    void collectProtobuf() {
+        when(kubeApi.listPods()).thenReturn(mockPods().toFlowable());
+        when(kubeApi.listNodes()).thenReturn(mockNodes().toFlowable());
+        when(kubeApi.getNodeMetrics(anyString())).thenReturn(Single.just(response));
+        when(kubeApi.getCAdvisorNodeMetrics(anyString())).thenReturn(Single.just(response));
+        when(response.getHeader(HttpHeaders.CONTENT_TYPE.toString())).thenReturn(PrometheusProtobufParser.CONTENT_TYPE);
+        when(protobufConverter.rxConvert(eq(METRICS), anyList())).thenReturn(Flowable.empty());
+        when(kubeApi.getMetricsServerNodeMetrics(anyString())).thenReturn(mockNodeMetrics());
+        when(kubeApi.getMetricsServerPodsMetrics()).thenReturn(mockPodsMetrics());
+
+        victim.collect().test().assertComplete();
+
+        verify(protobufConverter, times(6)).rxConvert(eq(METRICS), anyList());
+        verify(converter, never()).rxConvert(ArgumentMatchers.<Flowable<Buffer>>any(), anyList());
+    }
+
+    @Test
+    void collectRollupsAcrossNodes() {
+        ArgumentCaptor<CustomMetric> captor = ArgumentCaptor.forClass(CustomMetric.class);
+        final JsonObject config = new JsonObject()
+                .put("collector.scrape.spread", 0)
+                .put("collector.emit.batch.size", 1)
+                .put("collector.emit.queue.capacity", 0)
+                .put("collector.rollups", new JsonArray().add(new JsonObject()
+                        .put("metric", "container_cpu_usage_seconds_total")
+                        .put("aggregation", "sum")
+                        .put("groupBy", new JsonArray().add("namespace"))));
+        final CustomMetric sample = new CustomMetric.Builder()
+                .withMetricName("container_cpu_usage_seconds_total")
+                .withValue(2)
+                .withTags(Collections.singletonList(new Pair<>("namespace", "default")))
+                .withMetricType(MetricType.COUNTER)
+                .build();
+
+        when(kubeApi.listPods()).thenReturn(Flowable.just(new ListPage<>(Collections.emptyList(), "1", null)));
+        when(kubeApi.listNodes()).thenReturn(mockNodes().toFlowable());
+        when(kubeApi.getNodeMetrics(anyString())).thenReturn(Single.just(response));
+        when(kubeApi.getCAdvisorNodeMetrics(anyString())).thenReturn(Single.just(response));
+        when(converter.rxConvert(eq(METRICS), anyList())).thenReturn(Flowable.just(sample));
+        when(kubeApi.getMetricsServerNodeMetrics(anyString())).thenReturn(mockNodeMetrics());
+        when(kubeApi.getMetricsServerPodsMetrics()).thenReturn(mockPodsMetrics());
+
+        collector(config).collect().test().assertComplete();
+
+        verify(eventBus, atLeastOnce()).send(eq(CustomMetricsConsumer.ADDRESS), captor.capture());
+        final List<CustomMetric> cpu = captor.getAllValues().stream()
+                .filter(metric -> metric.getMetricName().startsWith("container_cpu_usage_seconds_total"))
+                .collect(Collectors.toList());
+        // The node and cAdvisor scrapes of the 3 nodes, rolled up into a single sample
+        assertEquals(1, cpu.size());
+        assertEquals("container_cpu_usage_seconds_total.sum", cpu.get(0).getMetricName());
+        assertEquals(12d, cpu.get(0).getValue().doubleValue());
+    }
+
+    @Test
+    void rollUpCounterIncreases() throws InterruptedException {
+        ArgumentCaptor<CustomMetric> captor = ArgumentCaptor.forClass(CustomMetric.class);
+        final AtomicInteger scrapes = new AtomicInteger();
+        final JsonObject config = new JsonObject()
+                .put("collector.scrape.spread", 0)
+                .put("collector.emit.batch.size", 1)
+                .put("collector.emit.queue.capacity", 0)
+                .put("collector.cadvisor.disabled", true)
+                .put("collector.metricsserver.disabled", true)
+                .put("collector.counters", "delta")
+                .put("collector.rollups", new JsonArray().add(new JsonObject()
+                        .put("metric", "container_cpu_usage_seconds_total")
+                        .put("aggregation", "sum")
+                        .put("groupBy", new JsonArray().add("namespace"))));
+
+        when(kubeApi.listPods()).thenReturn(Flowable.just(new ListPage<>(Collections.emptyList(), "1", null)));
+        when(kubeApi.listNodes()).thenReturn(mockNodes().toFlowable());
+        when(kubeApi.getNodeMetrics(anyString())).thenReturn(Single.just(response));
+        // The counter of each node goes from 10 in the first cycle to 25 in the second
+        when(converter.rxConvert(eq(METRICS), anyList())).thenAnswer(invocation -> {
+            final List<Pair<String, String>> tags = new ArrayList<>(invocation.<List<Pair<String, String>>>getArgument(1));
+            tags.add(new Pair<>("namespace", "default"));
+
+            return Flowable.just(new CustomMetric.Builder()
+                    .withMetricName("container_cpu_usage_seconds_total")
+                    .withValue(scrapes.getAndIncrement() < 3 ? 10 : 25)
+                    .withTags(tags)
+                    .withMetricType(MetricType.COUNTER)
+                    .build());
+        });
+
+        final NodeMetricsCollector collector = collector(config);
+        collector.collect().test().assertComplete();
+        // Counters are only converted once time passed since their previous sample
+        Thread.sleep(5);
+        collector.collect().test().assertComplete();
+
+        verify(eventBus, atLeastOnce()).send(eq(CustomMetricsConsumer.ADDRESS), captor.capture());
+        final List<CustomMetric> cpu = captor.getAllValues().stream()
+                .filter(metric -> metric.getMetricName().startsWith("container_cpu_usage_seconds_total"))
+                .collect(Collectors.toList());
+        // The first cycle has no previous samples, the second sums the increases of the 3 nodes rather than their totals
+        assertEquals(1, cpu.size());
+        assertEquals(45d, cpu.get(0).getValue().doubleValue());
+    }
+
+    @Test
+    void skipUnchangedSeries() {
+        ArgumentCaptor<CustomMetric> captor = ArgumentCaptor.forClass(CustomMetric.class);
+        final JsonObject config = new JsonObject()
+                .put("collector.scrape.spread", 0)
+                .put("collector.emit.batch.size", 1)
+                .put("collector.emit.queue.capacity", 0)
+                .put("collector.delta.heartbeat", 1000);
+
+        when(kubeApi.listPods()).thenReturn(mockPods().toFlowable());
+        when(kubeApi.listNodes()).thenReturn(mockNodes().toFlowable());
+        when(kubeApi.getNodeMetrics(anyString())).thenReturn(Single.just(response));
+        when(kubeApi.getCAdvisorNodeMetrics(anyString())).thenReturn(Single.just(response));
+        when(converter.rxConvert(eq(METRICS), anyList())).thenReturn(Flowable.empty());
+        when(kubeApi.getMetricsServerNodeMetrics(anyString())).thenReturn(mockNodeMetrics());
+        when(kubeApi.getMetricsServerPodsMetrics()).thenReturn(mockPodsMetrics());
+
+        final NodeMetricsCollector collector = collector(config);
+        collector.collect().test().assertComplete();
+        collector.collect().test().assertComplete();
+        collector.collect().test().assertComplete();
+
+        verify(eventBus, atLeastOnce()).send(eq(CustomMetricsConsumer.ADDRESS), captor.capture());
+        final List<CustomMetric> metrics = captor.getAllValues();
+        // The counts of the 2 pod groups are only sent by the first cycle, their resources by the first two, as the
+        // first one lists the pods before the nodes they are tagged with
+        assertEquals(2, metrics.stream().filter(metric -> metric.getMetricName().equals("pod")).count());
+        assertEquals(4, metrics.stream().filter(metric -> metric.getMetricName().equals("pod.cpu.limit")).count());
+        assertEquals(10d, metrics.stream()
+                .filter(metric -> metric.getMetricName().equals("delta.suppressed"))
+                .reduce((first, last) -> last).get().getValue().doubleValue());
+    }
+
+    @Test
+    void groupPodsByOwner() {
+        ArgumentCaptor<CustomMetric> captor = ArgumentCaptor.forClass(CustomMetric.class);
+        final List<ContainerInfo> containers = Collections.singletonList(new ContainerInfo("container1", "2", "2Gi", "0.5", "1G"));
+        final List<PodInfo> items = Stream.of(
+                new PodInfo("api-5b6c8d7f9x-abcde", "default", "node1", containers, "ReplicaSet", "api-5b6c8d7f9x"),
+                new PodInfo("api-5b6c8d7f9x-fghij", "default", "node1", containers, "ReplicaSet", "api-5b6c8d7f9x"),
+                new PodInfo("web-0", "default", "node1", containers, "StatefulSet", "web"),
+                new PodInfo("web-1", "default", "node1", containers, "StatefulSet", "web"),
+                new PodInfo("fluentd-x7k2p", "default", "node1", containers, "DaemonSet", "fluentd"),
+                // A replica set created on its own, without the hash of a deployment
+                new PodInfo("my-frontend-q9z4t", "default", "node1", containers, "ReplicaSet", "my-frontend"),
+                new PodInfo("debug", "default", "node1", containers))
+                .collect(Collectors.toList());
+
+        when(kubeApi.listPods()).thenReturn(Flowable.just(new ListPage<>(items, "1", null)));
+        when(kubeApi.listNodes()).thenReturn(Flowable.just(new ListPage<>(Collections.emptyList(), "1", null)));
+        when(kubeApi.getMetricsServerPodsMetrics()).thenReturn(Single.just(new JsonObject().put("items", new JsonArray())));
+
+        victim.collect().test().assertComplete();
+
+        verify(eventBus, atLeastOnce()).send(eq(CustomMetricsConsumer.ADDRESS), captor.capture());
+        final Map<String, Number> podCounts = captor.getAllValues().stream()
+                .filter(metric -> metric.getMetricName().equals("pod"))
+                .collect(Collectors.toMap(metric -> metric.getTags().get(0).getRight(), CustomMetric::getValue));
+
+        assertEquals(5, podCounts.size());
+        assertEquals(2L, podCounts.get("api"));
+        assertEquals(2L, podCounts.get("web"));
+        assertEquals(1L, podCounts.get("fluentd"));
+        assertEquals(1L, podCounts.get("debug"));
+        assertEquals(1L, podCounts.get("my-frontend"));
+        // The resources of the first pod of each workload
+        assertEquals(5, captor.getAllValues().stream().filter(metric -> metric.getMetricName().equals("pod.cpu.limit")).count());
+    }
+
+    private NodeMetricsCollector collector(JsonObject config) {
+        return new NodeMetricsCollector(kubeApi, simpleWebClient, new MetricEmitter(eventBus, config, Schedulers.trampoline()), converter, protobufConverter,
+                new ScrapeScheduler(config, Schedulers.trampoline()),
+                Inventory.pods(kubeApi, Schedulers.trampoline()), Inventory.nodes(kubeApi, Schedulers.trampoline()), config);
+    }
+
+    private Map<String, CustomMetric> cycleMetrics(List<CustomMetric> metrics) {
+        return metrics.stream()
+                .filter(metric -> metric.getMetricName().startsWith("collection."))
+                .collect(Collectors.toMap(CustomMetric::getMetricName, Function.identity()));
+    }
+
+    private Single<ListPage<PodInfo>> mockPods() {
+        final List<PodInfo> items = Stream.of("pod1-1234567-1234", "pod2-1234567-1234", "pod1-1234567-1234")
+                .map(pod -> new PodInfo(pod, "default", "node1", Collections.singletonList(
+                        new ContainerInfo("container1", "2", "2Gi", "0.5", "1G"))))
+                .collect(Collectors.toList());
+
+        return Single.just(new ListPage<>(items, "1", null));
+    }
+
+    private Single<ListPage<NodeInfo>> mockNodes() {
+        final List<NodeInfo> items = Stream.of("node1", "node2", "node3")
+                .map(node -> new NodeInfo(node, Collections.singletonMap("kubernetes.io/role", "node")))
+                .collect(Collectors.toList());
+
+        return Single.just(new ListPage<>(items, "1", null));
     }
 
     private Single<JsonObject> mockNodeMetrics() {
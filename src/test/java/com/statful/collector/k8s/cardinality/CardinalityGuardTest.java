@@ -0,0 +1,141 @@
+package com.statful.collector.k8s.cardinality;
+
+import com.statful.client.CustomMetric;
+import com.statful.client.MetricType;
+import com.statful.collector.k8s.utils.Fingerprints;
+import com.statful.utils.Pair;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CardinalityGuardTest {
+
+    @Test
+    void limitSeriesOfEachMetric() {
+        final CardinalityGuard victim = new CardinalityGuard(2, 0, false, 10);
+        final CustomMetric first = sample("requests", "a");
+        final CustomMetric second = sample("requests", "b");
+
+        assertSame(first, admit(victim, first));
+        assertSame(second, admit(victim, second));
+        assertNull(admit(victim, sample("requests", "c")));
+        // Series already admitted keep passing, other metrics have their own limit
+        final CustomMetric again = sample("requests", "a");
+        assertSame(again, admit(victim, again));
+        final CustomMetric other = sample("errors", "c");
+        assertSame(other, admit(victim, other));
+    }
+
+    @Test
+    void limitSeriesOfAllMetrics() {
+        final CardinalityGuard victim = new CardinalityGuard(0, 3, false, 10);
+
+        admit(victim, sample("requests", "a"));
+        admit(victim, sample("requests", "b"));
+        admit(victim, sample("errors", "a"));
+
+        assertNull(admit(victim, sample("errors", "b")));
+        assertNull(admit(victim, sample("latency", "a")));
+    }
+
+    @Test
+    void collapseOverflowingSeries() {
+        final CardinalityGuard victim = new CardinalityGuard(1, 0, true, 10);
+
+        admit(victim, sample("requests", "a"));
+        assertNull(admit(victim, sample("requests", "b")));
+        assertNull(admit(victim, sample("requests", "c")));
+
+        final List<CustomMetric> collapsed = victim.report().stream()
+                .filter(metric -> metric.getMetricName().equals("requests"))
+                .collect(Collectors.toList());
+
+        assertEquals(2, collapsed.size());
+        assertEquals(CardinalityGuard.OVERFLOW_COUNT_TAGS, collapsed.get(0).getTags());
+        assertEquals(2d, collapsed.get(0).getValue().doubleValue());
+        assertEquals(CardinalityGuard.OVERFLOW_SUM_TAGS, collapsed.get(1).getTags());
+        assertEquals(2d, collapsed.get(1).getValue().doubleValue());
+        assertEquals(MetricType.COUNTER, collapsed.get(1).getMetricType());
+    }
+
+    @Test
+    void admitEverySampleWithoutLimits() {
+        final CardinalityGuard victim = CardinalityGuard.fromConfig(new JsonObject());
+
+        for (int i = 0; i < 100; i++) {
+            final CustomMetric metric = sample("exploding", String.valueOf(i));
+            assertSame(metric, admit(victim, metric));
+        }
+        assertTrue(victim.report().isEmpty());
+    }
+
+    @Test
+    void reportWorstOffenders() {
+        final CardinalityGuard victim = new CardinalityGuard(10, 0, false, 1);
+
+        for (int i = 0; i < 100; i++) {
+            admit(victim, sample("exploding", String.valueOf(i)));
+        }
+        for (int i = 0; i < 20; i++) {
+            admit(victim, sample("growing", String.valueOf(i)));
+        }
+
+        final Map<String, CustomMetric> report = victim.report().stream()
+                .collect(Collectors.toMap(metric -> metric.getMetricName() + metric.getTags(), metric -> metric));
+
+        assertEquals(3, report.size());
+        assertEquals(20, report.get("cardinality.series.admitted[]").getValue().intValue());
+        assertEquals(90, report.get("cardinality.overflow[metric=exploding]").getValue().intValue());
+        assertEquals(100, report.get("cardinality.series[metric=exploding]").getValue().doubleValue(), 10);
+    }
+
+    @Test
+    void startOverAfterReset() {
+        final CardinalityGuard victim = new CardinalityGuard(1, 0, false, 10);
+
+        admit(victim, sample("requests", "a"));
+        assertNull(admit(victim, sample("requests", "b")));
+        victim.reset();
+
+        assertTrue(victim.report().isEmpty());
+        final CustomMetric next = sample("requests", "b");
+        assertSame(next, admit(victim, next));
+    }
+
+    @Test
+    void readConfig() {
+        final CardinalityGuard victim = CardinalityGuard.fromConfig(new JsonObject()
+                .put("collector.cardinality.limit.metric", 1)
+                .put("collector.cardinality.overflow", "drop"));
+
+        admit(victim, sample("requests", "a"));
+
+        assertNull(admit(victim, sample("requests", "b")));
+        assertThrows(IllegalArgumentException.class, () -> CardinalityGuard.fromConfig(new JsonObject().put("collector.cardinality.overflow", "keep")));
+    }
+
+    private static CustomMetric admit(CardinalityGuard victim, CustomMetric metric) {
+        return victim.admit(metric, Fingerprints.of(metric));
+    }
+
+    private static CustomMetric sample(String name, String path) {
+        final List<Pair<String, String>> tags = Collections.singletonList(new Pair<>("path", path));
+
+        return new CustomMetric.Builder()
+                .withMetricName(name)
+                .withValue(1)
+                .withTags(tags)
+                .withMetricType(MetricType.COUNTER)
+                .build();
+    }
+}
@@ -0,0 +1,40 @@
+package com.statful.collector.k8s.cardinality;
+
+import com.google.common.hash.Hashing;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HyperLogLogTest {
+
+    @Test
+    void estimateDistinctValues() {
+        for (int distinct : new int[]{10, 1000, 100000}) {
+            final HyperLogLog victim = new HyperLogLog(10);
+
+            for (int repeat = 0; repeat < 2; repeat++) {
+                for (int i = 0; i < distinct; i++) {
+                    victim.add(Hashing.murmur3_128().hashInt(i).asLong());
+                }
+            }
+
+            assertEquals(distinct, victim.estimate(), distinct * 0.1);
+        }
+    }
+
+    @Test
+    void clearEstimate() {
+        final HyperLogLog victim = new HyperLogLog(4);
+
+        victim.add(Hashing.murmur3_128().hashInt(1).asLong());
+        victim.clear();
+
+        assertEquals(0, victim.estimate());
+    }
+
+    @Test
+    void failWithInvalidPrecision() {
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(17));
+    }
+}
@@ -0,0 +1,120 @@
+package com.statful.collector.k8s.clients;
+
+import io.reactivex.Flowable;
+import io.reactivex.subscribers.TestSubscriber;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.core.buffer.Buffer;
+import io.vertx.reactivex.core.eventbus.EventBus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BufferStreamTest {
+    private static final String ADDRESS = "stream";
+
+    private Vertx vertx;
+    private EventBus eventBus;
+
+    @BeforeEach
+    void setUp() {
+        vertx = Vertx.vertx();
+        eventBus = vertx.eventBus();
+    }
+
+    @AfterEach
+    void tearDown() {
+        vertx.close();
+    }
+
+    @Test
+    void streamChunksInOrder() {
+        eventBus.<String>consumer(ADDRESS, message -> {
+            BufferStream.respond(eventBus, message, new DeliveryOptions(), Flowable.range(0, 100).map(i -> Buffer.buffer(message.body() + i + "\n")))
+                    .subscribe();
+        });
+
+        final String body = BufferStream.request(eventBus, ADDRESS, "chunk")
+                .flatMapPublisher(BufferStream.Response::body)
+                .reduce(Buffer.buffer(), Buffer::appendBuffer)
+                .map(Buffer::toString)
+                .blockingGet();
+
+        assertEquals(100, body.split("\n").length);
+        assertEquals("chunk0", body.split("\n")[0]);
+        assertEquals("chunk99", body.split("\n")[99]);
+    }
+
+    @Test
+    void sendNextChunkOnlyWhenRequested() throws InterruptedException {
+        final AtomicInteger sent = new AtomicInteger();
+
+        eventBus.<String>consumer(ADDRESS, message -> {
+            BufferStream.respond(eventBus, message, new DeliveryOptions(), Flowable.range(0, 100).map(i -> Buffer.buffer("chunk")).doOnNext(chunk -> sent.incrementAndGet()))
+                    .subscribe();
+        });
+
+        final TestSubscriber<Buffer> subscriber = BufferStream.request(eventBus, ADDRESS, "")
+                .flatMapPublisher(BufferStream.Response::body)
+                .test(2);
+
+        subscriber.awaitCount(2);
+        Thread.sleep(200);
+
+        subscriber.assertValueCount(2).assertNotComplete();
+        // Only the chunk waiting for acknowledgement and the prefetched ones may have been read
+        assertTrue(sent.get() < 10, "sent " + sent.get());
+
+        subscriber.requestMore(Long.MAX_VALUE)
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertValueCount(100)
+                .assertComplete();
+    }
+
+    @Test
+    void propagateFailures() {
+        eventBus.<String>consumer(ADDRESS, message -> message.fail(404, "Not Found"));
+
+        BufferStream.request(eventBus, ADDRESS, "")
+                .flatMapPublisher(BufferStream.Response::body)
+                .test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertError(ReplyException.class);
+    }
+
+    @Test
+    void propagateFailuresAfterStreamStarted() {
+        eventBus.<String>consumer(ADDRESS, message -> {
+            BufferStream.respond(eventBus, message, new DeliveryOptions(), Flowable.just(Buffer.buffer("chunk")).concatWith(Flowable.error(new IllegalStateException("reset"))))
+                    .subscribe(() -> {
+                    }, e -> {
+                    });
+        });
+
+        BufferStream.request(eventBus, ADDRESS, "")
+                .flatMapPublisher(BufferStream.Response::body)
+                .test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertValueCount(1)
+                .assertError(ReplyException.class);
+    }
+
+    @Test
+    void forwardHeadersBeforeBody() {
+        eventBus.<String>consumer(ADDRESS, message -> BufferStream.respond(eventBus, message, new DeliveryOptions().addHeader("Content-Type", "text/plain"),
+                Flowable.just(Buffer.buffer("chunk")))
+                .subscribe());
+
+        final BufferStream.Response response = BufferStream.request(eventBus, ADDRESS, "").blockingGet();
+
+        assertEquals("text/plain", response.getHeader("Content-Type"));
+        assertEquals("chunk", response.body().reduce(Buffer.buffer(), Buffer::appendBuffer).map(Buffer::toString).blockingGet());
+    }
+}
@@ -0,0 +1,253 @@
+package com.statful.collector.k8s.clients;
+
+import com.statful.collector.k8s.domain.KubernetesObject;
+import com.statful.collector.k8s.domain.ListPage;
+import com.statful.collector.k8s.domain.PodInfo;
+import com.statful.collector.k8s.domain.WatchEvent;
+import com.statful.converter.prometheus.PrometheusProtobufParser;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.core.buffer.Buffer;
+import io.vertx.reactivex.core.http.HttpServer;
+import io.vertx.reactivex.core.http.HttpServerRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KubeApiTest {
+    private static final String TEXT_CONTENT_TYPE = "text/plain; version=0.0.4";
+    private static final int PODS = 5;
+    private static final String WATCH_EVENT = "{\"type\":\"ADDED\",\"object\":{\"metadata\":{\"name\":\"pod5\",\"namespace\":\"default\",\"resourceVersion\":\"11\"}}}\n";
+
+    private Vertx vertx;
+    private HttpServer server;
+    private boolean supportsProtobuf;
+    private List<String> podQueries;
+
+    @BeforeEach
+    void setUp() {
+        vertx = Vertx.vertx();
+        podQueries = new CopyOnWriteArrayList<>();
+        server = vertx.createHttpServer()
+                .requestHandler(request -> {
+                    if (request.path().startsWith("/api/v1/pods")) {
+                        podQueries.add(request.query() == null ? "" : request.query());
+                        servePods(request);
+                        return;
+                    }
+
+                    final String accept = request.getHeader(HttpHeaders.ACCEPT.toString());
+
+                    if (supportsProtobuf && accept != null && accept.contains("application/vnd.google.protobuf")) {
+                        request.response().putHeader(HttpHeaders.CONTENT_TYPE.toString(), PrometheusProtobufParser.CONTENT_TYPE).end("protobuf");
+                    } else {
+                        request.response().putHeader(HttpHeaders.CONTENT_TYPE.toString(), TEXT_CONTENT_TYPE).end("text");
+                    }
+                })
+                .rxListen(0)
+                .blockingGet();
+    }
+
+    @AfterEach
+    void tearDown() {
+        vertx.close();
+    }
+
+    @Test
+    void negotiateProtobuf() {
+        supportsProtobuf = true;
+
+        final BufferStream.Response response = deployKubeApi(new JsonObject()).getNodeMetrics("node").blockingGet();
+
+        assertEquals(PrometheusProtobufParser.CONTENT_TYPE, response.getHeader(HttpHeaders.CONTENT_TYPE.toString()));
+        assertEquals("protobuf", body(response));
+    }
+
+    @Test
+    void fallbackToText() {
+        supportsProtobuf = false;
+
+        final BufferStream.Response response = deployKubeApi(new JsonObject()).getCAdvisorNodeMetrics("node").blockingGet();
+
+        assertEquals(TEXT_CONTENT_TYPE, response.getHeader(HttpHeaders.CONTENT_TYPE.toString()));
+        assertEquals("text", body(response));
+    }
+
+    @Test
+    void protobufDisabled() {
+        supportsProtobuf = true;
+
+        final BufferStream.Response response = deployKubeApi(new JsonObject().put("collector.protobuf.disabled", true))
+                .getNodeMetrics("node")
+                .blockingGet();
+
+        assertEquals(TEXT_CONTENT_TYPE, response.getHeader(HttpHeaders.CONTENT_TYPE.toString()));
+        assertEquals("text", body(response));
+    }
+
+    @Test
+    void listPodsInPages() {
+        final List<ListPage<PodInfo>> pages = deployKubeApi(new JsonObject().put("collector.list.page.size", 2))
+                .listPods()
+                .toList()
+                .blockingGet();
+
+        assertEquals(3, pages.size());
+        assertEquals(Arrays.asList("pod0", "pod1", "pod2", "pod3", "pod4"), pages.stream()
+                .flatMap(page -> page.getItems().stream())
+                .map(PodInfo::getName)
+                .collect(Collectors.toList()));
+        assertEquals(Arrays.asList("limit=2", "limit=2&continue=2", "limit=2&continue=4"), podQueries);
+    }
+
+    @Test
+    void listPodsUnpaginated() {
+        final List<ListPage<PodInfo>> pages = deployKubeApi(new JsonObject().put("collector.list.page.size", 0))
+                .listPods()
+                .toList()
+                .blockingGet();
+
+        assertEquals(1, pages.size());
+        assertEquals(PODS, pages.get(0).getItems().size());
+        assertEquals(Collections.singletonList(""), podQueries);
+    }
+
+    @Test
+    void watchPods() {
+        final List<WatchEvent<PodInfo>> events = deployKubeApi(new JsonObject()).watchPods("10").toList().blockingGet();
+
+        assertEquals(1, events.size());
+        assertEquals(WatchEvent.ADDED, events.get(0).getType());
+        assertEquals("default/pod5", events.get(0).getObject().getKey());
+        assertEquals("11", events.get(0).getResourceVersion());
+        assertEquals(1, podQueries.size());
+        assertTrue(podQueries.get(0).matches("watch=true&allowWatchBookmarks=true&timeoutSeconds=([3-5]\\d\\d)&resourceVersion=10"), podQueries.get(0));
+    }
+
+    @Test
+    void failWatchWithStatus() {
+        final ReplyException error = assertThrows(ReplyException.class, () -> deployKubeApi(new JsonObject()).watchPods("1").blockingSubscribe());
+
+        assertEquals(HttpResponseStatus.GONE.code(), error.failureCode());
+    }
+
+    @Test
+    void listPodsInProtobuf() {
+        supportsProtobuf = true;
+
+        final ListPage<PodInfo> page = deployKubeApi(new JsonObject().put("collector.list.protobuf.enabled", true))
+                .getPods("")
+                .blockingGet();
+
+        assertEquals("1234", page.getResourceVersion());
+        assertEquals(Arrays.asList("api-7d9f", "worker-0", "pending-1"), names(page));
+    }
+
+    @Test
+    void listPodsInJsonWithoutProtobufSupport() {
+        supportsProtobuf = false;
+
+        final ListPage<PodInfo> page = deployKubeApi(new JsonObject()
+                .put("collector.list.protobuf.enabled", true)
+                .put("collector.list.page.size", 0))
+                .getPods("")
+                .blockingGet();
+
+        assertEquals(Arrays.asList("pod0", "pod1", "pod2", "pod3", "pod4"), names(page));
+    }
+
+    @Test
+    void listPodsInJsonByDefault() {
+        supportsProtobuf = true;
+
+        final ListPage<PodInfo> page = deployKubeApi(new JsonObject().put("collector.list.page.size", 0))
+                .getPods("")
+                .blockingGet();
+
+        assertEquals(PODS, page.getItems().size());
+    }
+
+    private void servePods(HttpServerRequest request) {
+        if ("true".equals(request.getParam("watch"))) {
+            if ("1".equals(request.getParam("resourceVersion"))) {
+                request.response().setStatusCode(HttpResponseStatus.GONE.code()).end();
+            } else {
+                // The event is split across chunks
+                request.response().setChunked(true).write(WATCH_EVENT.substring(0, 20));
+                request.response().end(WATCH_EVENT.substring(20));
+            }
+            return;
+        }
+
+        final String accept = request.getHeader(HttpHeaders.ACCEPT.toString());
+
+        if (supportsProtobuf && accept != null && accept.contains(KubernetesProtobufDecoder.CONTENT_TYPE)) {
+            request.response()
+                    .putHeader(HttpHeaders.CONTENT_TYPE.toString(), KubernetesProtobufDecoder.CONTENT_TYPE)
+                    .end(Buffer.buffer(fixture("/fixtures/pods.pb")));
+            return;
+        }
+
+        final int start = request.getParam("continue") == null ? 0 : Integer.parseInt(request.getParam("continue"));
+        final int end = request.getParam("limit") == null ? PODS : Math.min(PODS, start + Integer.parseInt(request.getParam("limit")));
+        final JsonArray items = new JsonArray();
+
+        for (int pod = start; pod < end; pod++) {
+            items.add(new JsonObject().put("metadata", new JsonObject().put("name", "pod" + pod)));
+        }
+
+        final JsonObject metadata = new JsonObject().put("resourceVersion", "10");
+
+        if (end < PODS) {
+            metadata.put("continue", String.valueOf(end));
+        }
+
+        request.response().end(new JsonObject().put("metadata", metadata).put("items", items).encode());
+    }
+
+    private KubeApi.Client deployKubeApi(JsonObject config) {
+        vertx.rxDeployVerticle(new KubeApi(config
+                .put("kubernetes.api.host", "localhost")
+                .put("kubernetes.api.port", server.actualPort())))
+                .blockingGet();
+
+        return new KubeApi.Client(vertx.eventBus());
+    }
+
+    private static List<String> names(ListPage<PodInfo> page) {
+        return page.getItems().stream()
+                .map(KubernetesObject::getName)
+                .collect(Collectors.toList());
+    }
+
+    private static byte[] fixture(String resource) {
+        try {
+            return Files.readAllBytes(Paths.get(KubeApiTest.class.getResource(resource).toURI()));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String body(BufferStream.Response response) {
+        return response.body()
+                .reduce(Buffer.buffer(), Buffer::appendBuffer)
+                .map(Buffer::toString)
+                .blockingGet();
+    }
+}
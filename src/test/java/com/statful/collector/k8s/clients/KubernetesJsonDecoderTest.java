@@ -0,0 +1,136 @@
+package com.statful.collector.k8s.clients;
+
+import com.statful.collector.k8s.domain.ListPage;
+import com.statful.collector.k8s.domain.NodeInfo;
+import com.statful.collector.k8s.domain.PodInfo;
+import com.statful.collector.k8s.domain.WatchEvent;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static com.statful.collector.k8s.clients.KubernetesProtobufDecoderTest.assertContainer;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KubernetesJsonDecoderTest {
+
+    @Test
+    void decodePodList() {
+        final JsonObject list = new JsonObject()
+                .put("kind", "PodList")
+                .put("metadata", new JsonObject().put("resourceVersion", "1234").put("continue", "token"))
+                .put("items", new JsonArray()
+                        .add(pod("api-7d9f", "node-a")
+                                .put("status", new JsonObject().put("phase", "Running").put("conditions", new JsonArray().add(new JsonObject()))))
+                        .add(pod("pending-1", null)));
+
+        final ListPage<PodInfo> pods = KubernetesJsonDecoder.decodePodList(list.toBuffer().getBytes());
+
+        assertEquals("1234", pods.getResourceVersion());
+        assertEquals("token", pods.getContinueToken());
+        assertFalse(pods.isLast());
+        assertEquals(2, pods.getItems().size());
+
+        final PodInfo pod = pods.getItems().get(0);
+        assertEquals("default/api-7d9f", pod.getKey());
+        assertEquals("node-a", pod.getNodeName());
+        assertEquals(2, pod.getContainers().size());
+        assertContainer(pod.getContainers().get(0), "api", "500m", "256Mi", "250m", "128Mi");
+        assertContainer(pod.getContainers().get(1), "sidecar", "", "", "10m", "");
+        // The controller is kept among the owners
+        assertEquals("ReplicaSet", pod.getOwnerKind());
+        assertEquals("api-5b6c8d", pod.getOwnerName());
+
+        assertNull(pods.getItems().get(1).getNodeName());
+    }
+
+    @Test
+    void decodeNodeList() {
+        final JsonObject list = new JsonObject()
+                .put("items", new JsonArray()
+                        .add(new JsonObject().put("metadata", new JsonObject()
+                                .put("name", "node-a")
+                                .put("labels", new JsonObject().put("kubernetes.io/role", "node"))))
+                        .add(new JsonObject().put("metadata", new JsonObject().put("name", "node-b"))))
+                .put("metadata", new JsonObject().put("resourceVersion", "5678"));
+
+        final ListPage<NodeInfo> nodes = KubernetesJsonDecoder.decodeNodeList(list.toBuffer().getBytes());
+
+        assertEquals("5678", nodes.getResourceVersion());
+        assertTrue(nodes.isLast());
+        assertEquals("node-a", nodes.getItems().get(0).getKey());
+        assertEquals(Collections.singletonMap("kubernetes.io/role", "node"), nodes.getItems().get(0).getLabels());
+        assertTrue(nodes.getItems().get(1).getLabels().isEmpty());
+    }
+
+    @Test
+    void decodeWatchEvents() {
+        final WatchEvent<PodInfo> added = KubernetesJsonDecoder.decodePodEvent(new JsonObject()
+                .put("type", "ADDED")
+                .put("object", pod("api-7d9f", "node-a"))
+                .encode());
+
+        assertEquals(WatchEvent.ADDED, added.getType());
+        assertEquals("default/api-7d9f", added.getObject().getKey());
+        assertEquals("12", added.getResourceVersion());
+
+        // The object may come before the type
+        final WatchEvent<NodeInfo> bookmark = KubernetesJsonDecoder.decodeNodeEvent(new JsonObject()
+                .put("object", new JsonObject().put("kind", "Node").put("metadata", new JsonObject().put("resourceVersion", "15")))
+                .put("type", "BOOKMARK")
+                .encode());
+
+        assertEquals(WatchEvent.BOOKMARK, bookmark.getType());
+        assertNull(bookmark.getObject());
+        assertEquals("15", bookmark.getResourceVersion());
+
+        final WatchEvent<PodInfo> error = KubernetesJsonDecoder.decodePodEvent(new JsonObject()
+                .put("type", "ERROR")
+                .put("object", new JsonObject().put("kind", "Status").put("code", 410).put("message", "too old resource version"))
+                .encode());
+
+        assertEquals(410, error.getCode());
+        assertEquals("too old resource version", error.getMessage());
+    }
+
+    @Test
+    void failOnMalformedJson() {
+        assertThrows(DecodeException.class, () -> KubernetesJsonDecoder.decodePodList("{\"items\":[{".getBytes()));
+        assertThrows(DecodeException.class, () -> KubernetesJsonDecoder.decodePodEvent("[]"));
+    }
+
+    private static JsonObject pod(String name, String nodeName) {
+        return new JsonObject()
+                .put("metadata", new JsonObject()
+                        .put("name", name)
+                        .put("namespace", "default")
+                        .put("resourceVersion", "12")
+                        .put("labels", new JsonObject().put("app", "api"))
+                        .put("ownerReferences", new JsonArray()
+                                .add(new JsonObject().put("kind", "Node").put("name", "node-a"))
+                                .add(new JsonObject().put("kind", "ReplicaSet").put("name", "api-5b6c8d").put("controller", true))))
+                .put("spec", new JsonObject()
+                        .put("nodeName", nodeName)
+                        .put("containers", new JsonArray()
+                                .add(container("api",
+                                        new JsonObject().put("cpu", "500m").put("memory", "256Mi"),
+                                        new JsonObject().put("cpu", "250m").put("memory", "128Mi"))
+                                        .put("image", "api:1.0.0")
+                                        .put("ports", new JsonArray().add(new JsonObject().put("containerPort", 8080))))
+                                .add(container("sidecar",
+                                        new JsonObject().put("ephemeral-storage", "1Gi"),
+                                        new JsonObject().put("cpu", "10m")))));
+    }
+
+    private static JsonObject container(String name, JsonObject limits, JsonObject requests) {
+        return new JsonObject()
+                .put("name", name)
+                .put("resources", new JsonObject().put("limits", limits).put("requests", requests));
+    }
+}
@@ -0,0 +1,82 @@
+package com.statful.collector.k8s.clients;
+
+import com.statful.collector.k8s.domain.ContainerInfo;
+import com.statful.collector.k8s.domain.ListPage;
+import com.statful.collector.k8s.domain.NodeInfo;
+import com.statful.collector.k8s.domain.PodInfo;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KubernetesProtobufDecoderTest {
+
+    @Test
+    void decodePodList() throws Exception {
+        final ListPage<PodInfo> pods = KubernetesProtobufDecoder.decodePodList(fixture("/fixtures/pods.pb"));
+
+        assertEquals("1234", pods.getResourceVersion());
+        assertEquals("token", pods.getContinueToken());
+        assertEquals(3, pods.getItems().size());
+
+        final PodInfo pod = pods.getItems().get(0);
+        assertEquals("default/api-7d9f", pod.getKey());
+        assertEquals("node-a", pod.getNodeName());
+        assertEquals(2, pod.getContainers().size());
+        assertContainer(pod.getContainers().get(0), "api", "500m", "256Mi", "250m", "128Mi");
+        assertContainer(pod.getContainers().get(1), "sidecar", "", "", "10m", "");
+        assertEquals("ReplicaSet", pod.getOwnerKind());
+        assertEquals("api-7d9f-rs", pod.getOwnerName());
+
+        assertEquals("node-b", pods.getItems().get(1).getNodeName());
+        assertNull(pods.getItems().get(2).getNodeName());
+    }
+
+    @Test
+    void decodeNodeList() throws Exception {
+        final ListPage<NodeInfo> nodes = KubernetesProtobufDecoder.decodeNodeList(fixture("/fixtures/nodes.pb"));
+        final Map<String, String> labels = new HashMap<>();
+        labels.put("kubernetes.io/hostname", "node-a");
+        labels.put("node.kubernetes.io/instance-type", "m5.xlarge");
+
+        assertEquals("5678", nodes.getResourceVersion());
+        assertTrue(nodes.isLast());
+        assertEquals(2, nodes.getItems().size());
+        assertEquals("node-a", nodes.getItems().get(0).getKey());
+        assertEquals(labels, nodes.getItems().get(0).getLabels());
+        assertEquals("node-b", nodes.getItems().get(1).getName());
+        assertTrue(nodes.getItems().get(1).getLabels().isEmpty());
+    }
+
+    @Test
+    void failWithoutMagicNumber() {
+        assertThrows(IllegalArgumentException.class, () -> KubernetesProtobufDecoder.decodePodList("{}".getBytes()));
+    }
+
+    @Test
+    void detectContentType() {
+        assertTrue(KubernetesProtobufDecoder.isProtobuf("application/vnd.kubernetes.protobuf"));
+        assertFalse(KubernetesProtobufDecoder.isProtobuf("application/json"));
+        assertFalse(KubernetesProtobufDecoder.isProtobuf(null));
+    }
+
+    static void assertContainer(ContainerInfo container, String name, String cpuLimit, String memoryLimit, String cpuRequest, String memoryRequest) {
+        assertEquals(name, container.getName());
+        assertEquals(cpuLimit, container.getCpuLimit());
+        assertEquals(memoryLimit, container.getMemoryLimit());
+        assertEquals(cpuRequest, container.getCpuRequest());
+        assertEquals(memoryRequest, container.getMemoryRequest());
+    }
+
+    private byte[] fixture(String resource) throws Exception {
+        return Files.readAllBytes(Paths.get(getClass().getResource(resource).toURI()));
+    }
+}
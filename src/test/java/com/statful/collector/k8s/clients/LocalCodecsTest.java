@@ -0,0 +1,119 @@
+package com.statful.collector.k8s.clients;
+
+import com.statful.collector.k8s.domain.ContainerInfo;
+import com.statful.collector.k8s.domain.ListPage;
+import com.statful.collector.k8s.domain.NodeInfo;
+import com.statful.collector.k8s.domain.PodInfo;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.statful.collector.k8s.clients.KubernetesProtobufDecoderTest.assertContainer;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocalCodecsTest {
+    private static final String ADDRESS = "local";
+
+    private Vertx vertx;
+    private EventBus eventBus;
+    private LocalCodecs victim;
+
+    @BeforeEach
+    void setUp() {
+        vertx = Vertx.vertx();
+        eventBus = vertx.eventBus();
+        victim = LocalCodecs.register(eventBus, "test");
+    }
+
+    @AfterEach
+    void tearDown() {
+        vertx.close();
+    }
+
+    @Test
+    void passLocalMessagesWithoutCopy() throws Exception {
+        final JsonObject json = new JsonObject().put("items", Collections.emptyList());
+        final Buffer buffer = Buffer.buffer("chunk");
+
+        assertSame(json, send(json, victim.json()));
+        assertSame(buffer, send(buffer, victim.buffer()));
+        assertNotSame(json, send(json, new DeliveryOptions()));
+    }
+
+    @Test
+    void encodePodPagesForOtherNodes() {
+        final ListPage<PodInfo> page = new ListPage<>(Arrays.asList(
+                new PodInfo("api-7d9f", "default", "node-a", Collections.singletonList(new ContainerInfo("api", "500m", "", "250m", "128Mi"))),
+                new PodInfo("pending-1", "jobs", null, Collections.emptyList())), "1234", "token");
+
+        @SuppressWarnings("unchecked")
+        final ListPage<PodInfo> decoded = (ListPage<PodInfo>) roundTrip(page);
+
+        assertEquals("1234", decoded.getResourceVersion());
+        assertEquals("token", decoded.getContinueToken());
+        assertEquals("default/api-7d9f", decoded.getItems().get(0).getKey());
+        assertEquals("node-a", decoded.getItems().get(0).getNodeName());
+        assertContainer(decoded.getItems().get(0).getContainers().get(0), "api", "500m", "", "250m", "128Mi");
+        assertEquals("jobs/pending-1", decoded.getItems().get(1).getKey());
+        assertNull(decoded.getItems().get(1).getNodeName());
+        assertTrue(decoded.getItems().get(1).getContainers().isEmpty());
+    }
+
+    @Test
+    void encodeNodePagesForOtherNodes() {
+        final ListPage<NodeInfo> page = new ListPage<>(Collections.singletonList(
+                new NodeInfo("node-a", Collections.singletonMap("kubernetes.io/role", "node"))), "5678", null);
+
+        @SuppressWarnings("unchecked")
+        final ListPage<NodeInfo> decoded = (ListPage<NodeInfo>) roundTrip(page);
+
+        assertEquals("5678", decoded.getResourceVersion());
+        assertTrue(decoded.isLast());
+        assertEquals("node-a", decoded.getItems().get(0).getKey());
+        assertEquals(Collections.singletonMap("kubernetes.io/role", "node"), decoded.getItems().get(0).getLabels());
+    }
+
+    @Test
+    void unregisterCodecs() {
+        victim.unregister();
+
+        assertThrows(IllegalArgumentException.class, () -> eventBus.send(ADDRESS, new JsonObject(), victim.json()));
+    }
+
+    private Object send(Object body, DeliveryOptions options) throws Exception {
+        final CompletableFuture<Object> received = new CompletableFuture<>();
+
+        final MessageConsumer<Object> consumer = eventBus.consumer(ADDRESS, message -> received.complete(message.body()));
+
+        try {
+            eventBus.send(ADDRESS, body, options);
+            return received.get(5, TimeUnit.SECONDS);
+        } finally {
+            consumer.unregister();
+        }
+    }
+
+    private static ListPage<?> roundTrip(ListPage<?> page) {
+        final ListPageWireCodec codec = new ListPageWireCodec();
+        final Buffer wire = Buffer.buffer().appendString("header");
+
+        codec.encodeToWire(wire, page);
+        return codec.decodeFromWire("header".length(), wire);
+    }
+}
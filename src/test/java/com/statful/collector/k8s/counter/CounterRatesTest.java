@@ -0,0 +1,131 @@
+package com.statful.collector.k8s.counter;
+
+import com.statful.client.CustomMetric;
+import com.statful.client.MetricType;
+import com.statful.collector.k8s.utils.Fingerprints;
+import com.statful.utils.Pair;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CounterRatesTest {
+    private static final long GAP = 180000;
+
+    private final AtomicLong now = new AtomicLong(1000000);
+
+    @Test
+    void convertCountersToRates() {
+        final CounterRates victim = new CounterRates(CounterMode.RATE, GAP, now::get);
+
+        assertNull(convert(victim, counter("api", 100)));
+        now.addAndGet(60000);
+        final CustomMetric rate = convert(victim, counter("api", 160));
+
+        assertEquals("container_cpu_usage_seconds_total", rate.getMetricName());
+        assertEquals(1d, rate.getValue().doubleValue());
+        assertEquals(MetricType.GAUGE, rate.getMetricType());
+        assertEquals("[pod_name=api]", rate.getTags().toString());
+    }
+
+    @Test
+    void convertCountersToDeltasAcrossResets() {
+        final CounterRates victim = new CounterRates(CounterMode.DELTA, GAP, now::get);
+
+        convert(victim, counter("api", 100));
+        now.addAndGet(60000);
+        assertEquals(50d, convert(victim, counter("api", 150)).getValue().doubleValue());
+        now.addAndGet(60000);
+        final CustomMetric reset = convert(victim, counter("api", 20));
+
+        assertEquals(20d, reset.getValue().doubleValue());
+        assertEquals(MetricType.COUNTER, reset.getMetricType());
+        assertEquals(1, report(victim).get("counters.resets").getValue().intValue());
+    }
+
+    @Test
+    void startOverAfterGap() {
+        final CounterRates victim = new CounterRates(CounterMode.DELTA, GAP, now::get);
+
+        convert(victim, counter("api", 100));
+        now.addAndGet(GAP + 1);
+        assertNull(convert(victim, counter("api", 200)));
+        now.addAndGet(60000);
+        assertEquals(10d, convert(victim, counter("api", 210)).getValue().doubleValue());
+        // The same series again at once keeps the first sample
+        assertNull(convert(victim, counter("api", 220)));
+    }
+
+    @Test
+    void sendOtherMetricsAsIs() {
+        final CounterRates victim = new CounterRates(CounterMode.RATE, GAP, now::get);
+        final CustomMetric gauge = new CustomMetric.Builder()
+                .withMetricName("container_memory_usage_bytes")
+                .withValue(10)
+                .withTags(Collections.emptyList())
+                .withMetricType(MetricType.GAUGE)
+                .build();
+
+        assertSame(gauge, convert(victim, gauge));
+
+        final CounterRates raw = CounterRates.fromConfig(new JsonObject());
+        final CustomMetric counter = counter("api", 1);
+
+        assertSame(counter, convert(raw, counter));
+        assertTrue(raw.report().isEmpty());
+    }
+
+    @Test
+    void evictSeriesWithoutRecentSamples() {
+        final CounterRates victim = new CounterRates(CounterMode.RATE, GAP, now::get);
+
+        IntStream.range(0, 100).forEach(pod -> convert(victim, counter("pod-" + pod, 1)));
+        final long memory = report(victim).get("counters.memory").getValue().longValue();
+
+        now.addAndGet(GAP);
+        convert(victim, counter("pod-0", 2));
+        now.addAndGet(1);
+        victim.advance();
+
+        final Map<String, CustomMetric> report = report(victim);
+        assertEquals(1, report.get("counters.series").getValue().intValue());
+        assertTrue(report.get("counters.memory").getValue().longValue() < memory);
+        assertNull(convert(victim, counter("pod-1", 2)));
+    }
+
+    @Test
+    void rejectUnknownMode() {
+        final IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> CounterRates.fromConfig(new JsonObject().put("collector.counters", "rates")));
+
+        assertEquals("Invalid counter mode 'rates', expected one of raw, rate, delta", e.getMessage());
+    }
+
+    private static CustomMetric convert(CounterRates victim, CustomMetric metric) {
+        return victim.convert(metric, Fingerprints.of(metric));
+    }
+
+    private static Map<String, CustomMetric> report(CounterRates victim) {
+        return victim.report().stream().collect(Collectors.toMap(CustomMetric::getMetricName, Function.identity()));
+    }
+
+    private static CustomMetric counter(String pod, double value) {
+        return new CustomMetric.Builder()
+                .withMetricName("container_cpu_usage_seconds_total")
+                .withValue(value)
+                .withTags(Collections.singletonList(new Pair<>("pod_name", pod)))
+                .withMetricType(MetricType.COUNTER)
+                .build();
+    }
+}
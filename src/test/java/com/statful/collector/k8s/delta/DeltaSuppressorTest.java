@@ -0,0 +1,126 @@
+package com.statful.collector.k8s.delta;
+
+import com.statful.client.CustomMetric;
+import com.statful.client.MetricType;
+import com.statful.collector.k8s.utils.Fingerprints;
+import com.statful.utils.Pair;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeltaSuppressorTest {
+    private static final int HEARTBEAT = 5;
+
+    @Test
+    void sendChangedValuesOnly() {
+        final DeltaSuppressor victim = new DeltaSuppressor(1000);
+
+        victim.advance();
+        assertTrue(changed(victim, sample("api", 1)));
+        victim.advance();
+
+        assertFalse(changed(victim, sample("api", 1)));
+        // Tags in another order are the same series
+        assertFalse(changed(victim, new CustomMetric.Builder()
+                .withMetricName("pod.cpu.limit")
+                .withValue(1)
+                .withTags(Arrays.asList(new Pair<>("namespace", "default"), new Pair<>("pod_name", "api")))
+                .withMetricType(MetricType.GAUGE)
+                .build()));
+        assertTrue(changed(victim, sample("api", 2)));
+        assertTrue(changed(victim, sample("web", 2)));
+    }
+
+    @Test
+    void sendUnchangedSeriesOncePerHeartbeat() {
+        final DeltaSuppressor victim = new DeltaSuppressor(HEARTBEAT);
+        final List<CustomMetric> samples = IntStream.range(0, 100)
+                .mapToObj(pod -> sample("pod-" + pod, 1))
+                .collect(Collectors.toList());
+
+        victim.advance();
+        samples.forEach(sample -> assertTrue(changed(victim, sample)));
+
+        final int[] sent = new int[samples.size()];
+        for (int cycle = 0; cycle < HEARTBEAT; cycle++) {
+            victim.advance();
+            for (int i = 0; i < samples.size(); i++) {
+                sent[i] += changed(victim, samples.get(i)) ? 1 : 0;
+            }
+        }
+
+        assertTrue(Arrays.stream(sent).allMatch(count -> count == 1));
+        assertEquals(samples.size() * (HEARTBEAT - 1), report(victim).get("delta.suppressed").getValue().intValue());
+    }
+
+    @Test
+    void evictSeriesNotSeenInPreviousCycle() {
+        final DeltaSuppressor victim = new DeltaSuppressor(1000);
+
+        victim.advance();
+        IntStream.range(0, 100).forEach(pod -> changed(victim, sample("pod-" + pod, 1)));
+        final long memory = report(victim).get("delta.memory").getValue().longValue();
+
+        victim.advance();
+        changed(victim, sample("pod-0", 1));
+        victim.advance();
+
+        final Map<String, CustomMetric> report = report(victim);
+        assertEquals(1, report.get("delta.series").getValue().intValue());
+        assertTrue(report.get("delta.memory").getValue().longValue() < memory);
+        assertTrue(changed(victim, sample("pod-1", 1)));
+    }
+
+    @Test
+    void sendForgottenSeriesAgain() {
+        final DeltaSuppressor victim = new DeltaSuppressor(1000);
+        final CustomMetric dropped = sample("api", 1);
+
+        victim.advance();
+        assertTrue(changed(victim, sample("api", 1)));
+        assertTrue(changed(victim, sample("web", 1)));
+        victim.forget(Fingerprints.of(dropped));
+        victim.advance();
+
+        assertTrue(changed(victim, sample("api", 1)));
+        assertFalse(changed(victim, sample("web", 1)));
+        assertFalse(changed(victim, sample("api", 1)));
+    }
+
+    @Test
+    void sendEverySampleWhenDisabled() {
+        final DeltaSuppressor victim = new DeltaSuppressor(0);
+
+        victim.advance();
+        assertTrue(changed(victim, sample("api", 1)));
+        victim.advance();
+        assertTrue(changed(victim, sample("api", 1)));
+        assertTrue(victim.report().isEmpty());
+    }
+
+    private static boolean changed(DeltaSuppressor victim, CustomMetric metric) {
+        return victim.changed(metric, Fingerprints.of(metric));
+    }
+
+    private static Map<String, CustomMetric> report(DeltaSuppressor victim) {
+        return victim.report().stream().collect(Collectors.toMap(CustomMetric::getMetricName, Function.identity()));
+    }
+
+    private static CustomMetric sample(String pod, double value) {
+        return new CustomMetric.Builder()
+                .withMetricName("pod.cpu.limit")
+                .withValue(value)
+                .withTags(Arrays.asList(new Pair<>("pod_name", pod), new Pair<>("namespace", "default")))
+                .withMetricType(MetricType.GAUGE)
+                .build();
+    }
+}
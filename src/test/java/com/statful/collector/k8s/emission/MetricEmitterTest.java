@@ -0,0 +1,271 @@
+package com.statful.collector.k8s.emission;
+
+import com.statful.client.CustomMetric;
+import com.statful.client.CustomMetricsConsumer;
+import com.statful.client.MetricType;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.MessageCodec;
+import io.vertx.core.json.JsonObject;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.core.eventbus.EventBus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MetricEmitterTest {
+    private EventBus eventBus;
+    private TestScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        eventBus = mock(EventBus.class);
+        scheduler = new TestScheduler();
+    }
+
+    @Test
+    void sendFullBatches() {
+        final MetricEmitter victim = new MetricEmitter(eventBus, config(3, 0), scheduler);
+        final List<CustomMetric> metrics = metrics(7);
+
+        metrics.forEach(victim::emit);
+
+        assertArrayEquals(new CustomMetric[][]{
+                {metrics.get(0), metrics.get(1), metrics.get(2)},
+                {metrics.get(3), metrics.get(4), metrics.get(5)}}, sentBatches(2));
+
+        victim.flush();
+
+        assertArrayEquals(new CustomMetric[]{metrics.get(6)}, sentBatches(3)[2]);
+    }
+
+    @Test
+    void sendBatchesAfterLinger() {
+        final MetricEmitter victim = new MetricEmitter(eventBus, config(10, 100), scheduler);
+        final List<CustomMetric> metrics = metrics(3);
+
+        victim.emit(metrics.get(0));
+        victim.emit(metrics.get(1));
+        scheduler.advanceTimeBy(99, TimeUnit.MILLISECONDS);
+
+        verify(eventBus, never()).send(eq(MetricEmitter.BATCH_ADDRESS), any(), any(DeliveryOptions.class));
+
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+
+        assertArrayEquals(new CustomMetric[]{metrics.get(0), metrics.get(1)}, sentBatches(1)[0]);
+
+        // The linger of a batch already flushed does not cut the next one short
+        victim.emit(metrics.get(2));
+        victim.flush();
+        victim.emit(metrics.get(0));
+        scheduler.advanceTimeBy(50, TimeUnit.MILLISECONDS);
+
+        assertEquals(2, sentBatches(2).length);
+    }
+
+    @Test
+    void sendMetricsWithoutBatching() {
+        final MetricEmitter victim = new MetricEmitter(eventBus, config(1, 100).put("collector.emit.queue.capacity", 0), scheduler);
+        final CustomMetric metric = metrics(1).get(0);
+
+        victim.emit(metric);
+
+        verify(eventBus).send(CustomMetricsConsumer.ADDRESS, metric);
+    }
+
+    @Test
+    void rejectUnbatchedMetricsWithCapacity() {
+        final IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new MetricEmitter(eventBus, config(1, 100), scheduler));
+
+        assertEquals("Invalid collector.emit.batch.size '1', expected more than 1 while collector.emit.queue.capacity is 50000, "
+                + "or a capacity of 0 to send metrics without queueing them", e.getMessage());
+    }
+
+    @Test
+    void admitEveryMetricWithoutCapacity() {
+        final MetricEmitter victim = new MetricEmitter(eventBus, config(1000, 0).put("collector.emit.queue.capacity", 0), scheduler);
+
+        metrics(600).forEach(metric -> victim.emit(metric, Priority.LOW));
+        victim.flush();
+
+        assertEquals(600, sentBatches(1)[0].length);
+        victim.awaitCapacity().test().assertComplete();
+    }
+
+    @Test
+    void shedLowerPrioritiesFirst() {
+        final MetricEmitter victim = new MetricEmitter(eventBus, config(100, 0).put("collector.emit.queue.capacity", 8), scheduler);
+        final List<CustomMetric> metrics = metrics(11);
+
+        metrics.subList(0, 4).forEach(metric -> assertTrue(victim.emit(metric, Priority.LOW)));
+        assertFalse(victim.emit(metrics.get(4), Priority.LOW));
+        metrics.subList(5, 8).forEach(metric -> victim.emit(metric, Priority.NORMAL));
+        metrics.subList(8, 11).forEach(metric -> victim.emit(metric, Priority.HIGH));
+        victim.flush();
+
+        assertArrayEquals(new CustomMetric[]{metrics.get(0), metrics.get(1), metrics.get(2), metrics.get(3),
+                metrics.get(5), metrics.get(6), metrics.get(8), metrics.get(9)}, sentBatches(1)[0]);
+
+        victim.reportStatistics();
+
+        final Map<String, Number> statistics = sentMetrics().stream()
+                .collect(Collectors.toMap(metric -> metric.getMetricName() + metric.getTags(), CustomMetric::getValue));
+        assertEquals(4L, statistics.get("emission.enqueued[priority=low]"));
+        assertEquals(1L, statistics.get("emission.dropped[priority=low]"));
+        assertEquals(1L, statistics.get("emission.dropped[priority=normal]"));
+        assertEquals(1L, statistics.get("emission.dropped[priority=high]"));
+        assertEquals(0L, statistics.get("emission.forwarded[]"));
+        assertEquals(8L, statistics.get("emission.queued[]"));
+    }
+
+    @Test
+    void resumeScrapesOnceDrained() {
+        final MetricEmitter victim = new MetricEmitter(eventBus, config(2, 0).put("collector.emit.queue.capacity", 4), scheduler);
+
+        victim.awaitCapacity().test().assertComplete();
+
+        metrics(3).forEach(victim::emit);
+        final TestObserver<Void> waiting = victim.awaitCapacity().test();
+
+        waiting.assertNotComplete();
+        // Waiting flushes the pending metric, which may be all there is to drain
+        final CustomMetric[][] batches = sentBatches(2);
+
+        victim.forward(new MetricBatch(batches[1], System.nanoTime()));
+
+        waiting.assertNotComplete();
+
+        victim.forward(new MetricBatch(batches[0], System.nanoTime()));
+
+        waiting.assertComplete();
+    }
+
+    @Test
+    void releaseMetricsFailingToForward() {
+        final MetricEmitter victim = new MetricEmitter(eventBus, config(2, 0).put("collector.emit.queue.capacity", 4), scheduler);
+
+        when(eventBus.send(eq(CustomMetricsConsumer.ADDRESS), any(CustomMetric.class))).thenThrow(new IllegalStateException());
+        metrics(3).forEach(victim::emit);
+        final TestObserver<Void> waiting = victim.awaitCapacity().test();
+
+        for (CustomMetric[] batch : sentBatches(2)) {
+            victim.forward(new MetricBatch(batch, System.nanoTime()));
+        }
+
+        // Every metric was attempted, and their room is free again
+        verify(eventBus, times(3)).send(eq(CustomMetricsConsumer.ADDRESS), any(CustomMetric.class));
+        waiting.assertComplete();
+    }
+
+    @Test
+    void forwardBatchesToStatfulClient() throws Exception {
+        final Vertx vertx = Vertx.vertx();
+
+        try {
+            final List<CustomMetric> metrics = metrics(5);
+            final List<CustomMetric> received = new ArrayList<>();
+            final CompletableFuture<List<CustomMetric>> done = new CompletableFuture<>();
+
+            // Registered by the statful client alongside its consumer
+            vertx.eventBus().getDelegate().registerDefaultCodec(CustomMetric.class, new StatfulCodec());
+            vertx.eventBus().<CustomMetric>localConsumer(CustomMetricsConsumer.ADDRESS, message -> {
+                received.add(message.body());
+                if (received.size() == metrics.size()) {
+                    done.complete(received);
+                }
+            });
+
+            final MetricEmitter victim = new MetricEmitter(vertx.eventBus(), config(2, 0), scheduler).register();
+            metrics.forEach(victim::emit);
+            victim.flush();
+
+            assertEquals(metrics, done.get(5, TimeUnit.SECONDS));
+            victim.unregister();
+        } finally {
+            vertx.close();
+        }
+    }
+
+    private CustomMetric[][] sentBatches(int count) {
+        final ArgumentCaptor<MetricBatch> captor = ArgumentCaptor.forClass(MetricBatch.class);
+
+        verify(eventBus, times(count)).send(eq(MetricEmitter.BATCH_ADDRESS), captor.capture(), any(DeliveryOptions.class));
+        return captor.getAllValues().stream().map(MetricBatch::getMetrics).toArray(CustomMetric[][]::new);
+    }
+
+    private List<CustomMetric> sentMetrics() {
+        final ArgumentCaptor<CustomMetric> captor = ArgumentCaptor.forClass(CustomMetric.class);
+
+        verify(eventBus, atLeastOnce()).send(eq(CustomMetricsConsumer.ADDRESS), captor.capture());
+        return captor.getAllValues();
+    }
+
+    private static JsonObject config(int batchSize, int linger) {
+        return new JsonObject()
+                .put("collector.emit.batch.size", batchSize)
+                .put("collector.emit.batch.linger", linger);
+    }
+
+    private static List<CustomMetric> metrics(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new CustomMetric.Builder()
+                        .withMetricName("metric" + i)
+                        .withValue(i)
+                        .withTags(Collections.emptyList())
+                        .withMetricType(MetricType.GAUGE)
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    private static final class StatfulCodec implements MessageCodec<CustomMetric, CustomMetric> {
+        @Override
+        public void encodeToWire(Buffer buffer, CustomMetric metric) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CustomMetric decodeFromWire(int position, Buffer buffer) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CustomMetric transform(CustomMetric metric) {
+            return metric;
+        }
+
+        @Override
+        public String name() {
+            return "statful";
+        }
+
+        @Override
+        public byte systemCodecID() {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.statful.collector.k8s.inventory;
+
+import com.statful.collector.k8s.domain.ContainerInfo;
+import com.statful.collector.k8s.domain.ListPage;
+import com.statful.collector.k8s.domain.PodInfo;
+import com.statful.collector.k8s.domain.WatchEvent;
+import io.reactivex.Flowable;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.SingleSubject;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InventoryTest {
+    private TestScheduler scheduler;
+    private AtomicInteger lists;
+    private List<String> watchedVersions;
+    private List<PublishProcessor<WatchEvent<PodInfo>>> watches;
+    private ListPage<PodInfo> podList;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new TestScheduler();
+        lists = new AtomicInteger();
+        watchedVersions = new ArrayList<>();
+        watches = new ArrayList<>();
+        podList = podList("10", pod("default", "pod1", "node1"), pod("default", "pod2", "node2"));
+    }
+
+    @Test
+    void listOnEveryCallWhenNotWatched() {
+        final Inventory<PodInfo> victim = inventory();
+
+        assertEquals(Arrays.asList("pod1", "pod2"), names(victim));
+        assertEquals(Arrays.asList("pod1", "pod2"), names(victim));
+        assertEquals(2, lists.get());
+    }
+
+    @Test
+    void listInPages() {
+        final ListPage<PodInfo> secondPage = podList("10", pod("default", "pod3", "node1"));
+        final Inventory<PodInfo> victim = new Inventory<>("pods", () -> Flowable.just(podList, secondPage), this::watch, scheduler);
+
+        victim.watch().subscribe();
+
+        assertEquals(Arrays.asList("pod1", "pod2", "pod3"), names(victim));
+        assertEquals(Collections.singletonList("10"), watchedVersions);
+    }
+
+    @Test
+    void applyWatchEvents() {
+        final Inventory<PodInfo> victim = inventory();
+
+        victim.watch().subscribe();
+
+        assertTrue(victim.isSynced());
+        assertEquals(Collections.singletonList("10"), watchedVersions);
+
+        send(event(WatchEvent.ADDED, pod("default", "pod3", "node1"), "11"),
+                event(WatchEvent.MODIFIED, pod("default", "pod1", "node3"), "12"),
+                event(WatchEvent.DELETED, pod("default", "pod2", "node2"), "13"));
+
+        assertEquals(Arrays.asList("pod1", "pod3"), names(victim));
+        assertEquals("node3", victim.list()
+                .filter(pod -> pod.getName().equals("pod1"))
+                .blockingFirst()
+                .getNodeName());
+        assertEquals(1, lists.get());
+    }
+
+    @Test
+    void keepPodsOfOtherNamespaces() {
+        final Inventory<PodInfo> victim = inventory();
+
+        victim.watch().subscribe();
+        send(event(WatchEvent.ADDED, pod("jobs", "pod1", "node1"), "11"));
+
+        assertEquals(Arrays.asList("pod1", "pod1", "pod2"), names(victim));
+    }
+
+    @Test
+    void resumeFromLastVersionWhenWatchEnds() {
+        final Inventory<PodInfo> victim = inventory();
+
+        victim.watch().subscribe();
+        send(event(WatchEvent.ADDED, pod("default", "pod3", "node1"), "11"),
+                new WatchEvent<>(WatchEvent.BOOKMARK, null, "15", 0, null));
+        watches.get(0).onComplete();
+
+        assertEquals(Arrays.asList("10", "15"), watchedVersions);
+        assertEquals(1, lists.get());
+    }
+
+    @Test
+    void listAgainWhenVersionIsGone() {
+        final Inventory<PodInfo> victim = inventory();
+
+        victim.watch().subscribe();
+        podList = podList("20", pod("default", "pod4", "node1"));
+        send(new WatchEvent<>(WatchEvent.ERROR, null, null, 410, "too old resource version: 10 (15)"));
+
+        assertEquals(2, lists.get());
+        assertEquals(Arrays.asList("10", "20"), watchedVersions);
+        assertEquals(Collections.singletonList("pod4"), names(victim));
+    }
+
+    @Test
+    void listAgainWhenWatchIsAnsweredGone() {
+        final List<String> versions = new ArrayList<>();
+        final Inventory<PodInfo> victim = new Inventory<>("pods", this::list, version -> {
+            versions.add(version);
+            return versions.size() == 1
+                    ? Flowable.error(new ReplyException(ReplyFailure.RECIPIENT_FAILURE, 410, "Gone"))
+                    : Flowable.never();
+        }, scheduler);
+
+        victim.watch().subscribe();
+
+        assertEquals(2, lists.get());
+        assertEquals(Arrays.asList("10", "10"), versions);
+    }
+
+    @Test
+    void retryFailedWatchFromLastVersion() {
+        final Inventory<PodInfo> victim = inventory();
+
+        victim.watch().subscribe();
+        send(event(WatchEvent.ADDED, pod("default", "pod3", "node1"), "11"));
+        watches.get(0).onError(new IllegalStateException());
+
+        assertEquals(1, watchedVersions.size());
+
+        scheduler.advanceTimeBy(5, TimeUnit.SECONDS);
+
+        assertEquals(Arrays.asList("10", "11"), watchedVersions);
+        assertEquals(1, lists.get());
+        assertEquals(Arrays.asList("pod1", "pod2", "pod3"), names(victim));
+    }
+
+    @Test
+    void watchAgainWhenWatchStalls() {
+        final Inventory<PodInfo> victim = inventory();
+
+        victim.watch().subscribe();
+        send(event(WatchEvent.ADDED, pod("default", "pod3", "node1"), "11"));
+        scheduler.advanceTimeBy(10, TimeUnit.MINUTES);
+        send(new WatchEvent<>(WatchEvent.BOOKMARK, null, "12", 0, null));
+        scheduler.advanceTimeBy(10, TimeUnit.MINUTES);
+
+        assertEquals(Collections.singletonList("10"), watchedVersions);
+
+        scheduler.advanceTimeBy(1, TimeUnit.MINUTES);
+
+        assertEquals(Arrays.asList("10", "12"), watchedVersions);
+        assertEquals(1, lists.get());
+    }
+
+    @Test
+    void waitForFirstListWhenWatched() {
+        final SingleSubject<ListPage<PodInfo>> list = SingleSubject.create();
+        final Inventory<PodInfo> victim = new Inventory<>("pods", list::toFlowable, version -> Flowable.never(), scheduler);
+
+        victim.watch().subscribe();
+
+        final List<String> listed = new ArrayList<>();
+        victim.list().map(PodInfo::getName).subscribe(listed::add);
+
+        assertFalse(victim.isSynced());
+        assertTrue(listed.isEmpty());
+
+        list.onSuccess(podList);
+
+        assertEquals(Arrays.asList("pod1", "pod2"), listed.stream().sorted().collect(Collectors.toList()));
+    }
+
+    private Inventory<PodInfo> inventory() {
+        return new Inventory<>("pods", this::list, this::watch, scheduler);
+    }
+
+    private Flowable<ListPage<PodInfo>> list() {
+        return Flowable.fromCallable(() -> {
+            lists.incrementAndGet();
+            return podList;
+        });
+    }
+
+    private Flowable<WatchEvent<PodInfo>> watch(String resourceVersion) {
+        watchedVersions.add(resourceVersion);
+        final PublishProcessor<WatchEvent<PodInfo>> events = PublishProcessor.create();
+        watches.add(events);
+
+        return events;
+    }
+
+    @SafeVarargs
+    private final void send(WatchEvent<PodInfo>... events) {
+        final PublishProcessor<WatchEvent<PodInfo>> watch = watches.get(watches.size() - 1);
+
+        for (WatchEvent<PodInfo> event : events) {
+            watch.onNext(event);
+        }
+    }
+
+    private static List<String> names(Inventory<PodInfo> inventory) {
+        return inventory.list()
+                .map(PodInfo::getName)
+                .sorted()
+                .toList()
+                .blockingGet();
+    }
+
+    private static WatchEvent<PodInfo> event(String type, PodInfo pod, String resourceVersion) {
+        return new WatchEvent<>(type, pod, resourceVersion, 0, null);
+    }
+
+    private static ListPage<PodInfo> podList(String resourceVersion, PodInfo... pods) {
+        return new ListPage<>(Arrays.asList(pods), resourceVersion, null);
+    }
+
+    private static PodInfo pod(String namespace, String name, String node) {
+        return new PodInfo(name, namespace, node, Collections.singletonList(new ContainerInfo("container", "1", "", "", "")));
+    }
+}
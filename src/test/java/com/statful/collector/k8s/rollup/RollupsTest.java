@@ -0,0 +1,118 @@
+package com.statful.collector.k8s.rollup;
+
+import com.statful.client.CustomMetric;
+import com.statful.client.MetricType;
+import com.statful.utils.Pair;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RollupsTest {
+
+    @Test
+    void rollUpByGroupingTags() {
+        final Rollups victim = Rollups.fromConfig(config(
+                rule("container_cpu_usage_seconds_total", "sum", "namespace"),
+                rule("container_memory_usage_bytes", "max", "namespace", "pod_name").put("name", "pod.memory.max"),
+                rule("container_memory_usage_bytes", "avg", "namespace")));
+
+        assertFalse(victim.accumulate(sample("container_cpu_usage_seconds_total", 1, "default", "api", "node-a")));
+        assertFalse(victim.accumulate(sample("container_cpu_usage_seconds_total", 2, "default", "web", "node-b")));
+        assertFalse(victim.accumulate(sample("container_cpu_usage_seconds_total", 4, "jobs", "batch", "node-a")));
+        assertFalse(victim.accumulate(sample("container_memory_usage_bytes", 10, "default", "api", "node-a")));
+        assertFalse(victim.accumulate(sample("container_memory_usage_bytes", 30, "default", "api", "node-b")));
+        assertTrue(victim.accumulate(sample("container_fs_usage_bytes", 1, "default", "api", "node-a")));
+
+        final Map<String, CustomMetric> rolledUp = byNameAndTags(victim.drain());
+
+        assertEquals(4, rolledUp.size());
+        assertEquals(3d, rolledUp.get("container_cpu_usage_seconds_total.sum[namespace=default]").getValue().doubleValue());
+        assertEquals(4d, rolledUp.get("container_cpu_usage_seconds_total.sum[namespace=jobs]").getValue().doubleValue());
+        assertEquals(30d, rolledUp.get("pod.memory.max[namespace=default, pod_name=api]").getValue().doubleValue());
+        assertEquals(20d, rolledUp.get("container_memory_usage_bytes.avg[namespace=default]").getValue().doubleValue());
+        assertEquals(MetricType.GAUGE, rolledUp.get("pod.memory.max[namespace=default, pod_name=api]").getMetricType());
+    }
+
+    @Test
+    void keepRawSamples() {
+        final Rollups victim = Rollups.fromConfig(config(rule("container_cpu_usage_seconds_total", "sum", "namespace").put("keepRaw", true)));
+
+        assertTrue(victim.accumulate(sample("container_cpu_usage_seconds_total", 1, "default", "api", "node-a")));
+        assertEquals(1, victim.drain().size());
+    }
+
+    @Test
+    void groupSamplesWithoutTag() {
+        final Rollups victim = Rollups.fromConfig(config(rule("container_cpu_usage_seconds_total", "sum", "namespace")));
+
+        victim.accumulate(new CustomMetric.Builder()
+                .withMetricName("container_cpu_usage_seconds_total")
+                .withValue(1)
+                .withTags(Collections.emptyList())
+                .withMetricType(MetricType.COUNTER)
+                .build());
+        victim.accumulate(sample("container_cpu_usage_seconds_total", 2, "", "api", "node-a"));
+
+        final List<CustomMetric> rolledUp = victim.drain();
+
+        assertEquals(1, rolledUp.size());
+        assertEquals(3d, rolledUp.get(0).getValue().doubleValue());
+        assertTrue(rolledUp.get(0).getTags().isEmpty());
+    }
+
+    @Test
+    void startOverAfterDrainOrReset() {
+        final Rollups victim = Rollups.fromConfig(config(rule("container_cpu_usage_seconds_total", "sum", "namespace")));
+
+        victim.accumulate(sample("container_cpu_usage_seconds_total", 1, "default", "api", "node-a"));
+        victim.drain();
+        victim.accumulate(sample("container_cpu_usage_seconds_total", 2, "default", "api", "node-a"));
+
+        assertEquals(2d, victim.drain().get(0).getValue().doubleValue());
+
+        victim.accumulate(sample("container_cpu_usage_seconds_total", 2, "default", "api", "node-a"));
+        victim.reset();
+
+        assertTrue(victim.drain().isEmpty());
+    }
+
+    @Test
+    void failWithoutMetric() {
+        assertThrows(IllegalArgumentException.class, () -> Rollups.fromConfig(config(new JsonObject().put("aggregation", "sum"))));
+    }
+
+    private static JsonObject config(JsonObject... rules) {
+        return new JsonObject().put("collector.rollups", new JsonArray(Arrays.asList(rules)));
+    }
+
+    private static JsonObject rule(String metric, String aggregation, String... groupBy) {
+        return new JsonObject()
+                .put("metric", metric)
+                .put("aggregation", aggregation)
+                .put("groupBy", new JsonArray(Arrays.asList(groupBy)));
+    }
+
+    private static CustomMetric sample(String name, double value, String namespace, String pod, String node) {
+        return new CustomMetric.Builder()
+                .withMetricName(name)
+                .withValue(value)
+                .withTags(Arrays.asList(new Pair<>("namespace", namespace), new Pair<>("pod_name", pod), new Pair<>("node", node)))
+                .withMetricType(MetricType.GAUGE)
+                .build();
+    }
+
+    private static Map<String, CustomMetric> byNameAndTags(List<CustomMetric> metrics) {
+        return metrics.stream().collect(Collectors.toMap(metric -> metric.getMetricName() + metric.getTags(), metric -> metric));
+    }
+}
@@ -0,0 +1,122 @@
+package com.statful.collector.k8s.scheduling;
+
+import io.reactivex.Completable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.CompletableSubject;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CycleSchedulerTest {
+    private TestScheduler scheduler;
+    private List<CompletableSubject> cycles;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new TestScheduler();
+        cycles = new ArrayList<>();
+    }
+
+    @Test
+    void runCycleEveryPeriod() {
+        final Disposable running = new CycleScheduler(config(1000, 1000, "skip"), scheduler).run(this::completedCycle).subscribe();
+
+        scheduler.advanceTimeBy(999, TimeUnit.MILLISECONDS);
+        assertEquals(0, cycles.size());
+
+        scheduler.advanceTimeBy(2001, TimeUnit.MILLISECONDS);
+        assertEquals(3, cycles.size());
+
+        running.dispose();
+    }
+
+    @Test
+    void skipTicksWhileOverrunning() {
+        new CycleScheduler(config(1000, 5000, "skip"), scheduler).run(this::cycle).subscribe();
+
+        scheduler.advanceTimeBy(2500, TimeUnit.MILLISECONDS);
+        assertEquals(1, cycles.size());
+
+        cycles.get(0).onComplete();
+        assertEquals(1, cycles.size());
+
+        scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS);
+        assertEquals(2, cycles.size());
+    }
+
+    @Test
+    void delayNextCycleWhenOverrunning() {
+        new CycleScheduler(config(1000, 5000, "delay"), scheduler).run(this::cycle).subscribe();
+
+        scheduler.advanceTimeBy(3500, TimeUnit.MILLISECONDS);
+        assertEquals(1, cycles.size());
+
+        cycles.get(0).onComplete();
+        assertEquals(2, cycles.size());
+
+        cycles.get(1).onComplete();
+        assertEquals(2, cycles.size());
+    }
+
+    @Test
+    void cancelCycleAtDeadline() {
+        new CycleScheduler(config(1000, 1500, "skip"), scheduler).run(this::cycle).subscribe();
+
+        scheduler.advanceTimeBy(2000, TimeUnit.MILLISECONDS);
+        assertTrue(cycles.get(0).hasObservers());
+
+        scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS);
+        assertFalse(cycles.get(0).hasObservers());
+
+        scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS);
+        assertEquals(2, cycles.size());
+    }
+
+    @Test
+    void keepRunningAfterFailedCycle() {
+        new CycleScheduler(config(1000, 1000, "skip"), scheduler).run(this::cycle).subscribe();
+
+        scheduler.advanceTimeBy(1000, TimeUnit.MILLISECONDS);
+        cycles.get(0).onError(new IllegalStateException());
+
+        scheduler.advanceTimeBy(1000, TimeUnit.MILLISECONDS);
+        assertEquals(2, cycles.size());
+    }
+
+    @Test
+    void rejectUnknownOverrunPolicy() {
+        final IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> new CycleScheduler(config(1000, 1000, "wait"), scheduler));
+
+        assertEquals("Invalid cycle overrun policy 'wait', expected one of skip, delay", e.getMessage());
+    }
+
+    private Completable cycle() {
+        final CompletableSubject cycle = CompletableSubject.create();
+        cycles.add(cycle);
+        return cycle;
+    }
+
+    private Completable completedCycle() {
+        final Completable cycle = cycle();
+        cycles.get(cycles.size() - 1).onComplete();
+        return cycle;
+    }
+
+    private JsonObject config(int period, int deadline, String overrun) {
+        return new JsonObject()
+                .put("collector.period", period)
+                .put("collector.cycle.deadline", deadline)
+                .put("collector.cycle.overrun", overrun);
+    }
+}
@@ -0,0 +1,160 @@
+package com.statful.collector.k8s.scheduling;
+
+import io.reactivex.Flowable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subscribers.TestSubscriber;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScrapeSchedulerTest {
+    private TestScheduler scheduler;
+    private List<Long> queueWaits;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new TestScheduler();
+        queueWaits = new ArrayList<>();
+    }
+
+    @Test
+    void limitScrapesInFlight() {
+        final ScrapeScheduler victim = new ScrapeScheduler(config(2, 10, 0), scheduler);
+        final List<PublishProcessor<String>> scrapes = scrapes(5);
+
+        scrapes.forEach(scrape -> victim.schedule("node", "node1", scrape, queueWaits::add).subscribe());
+
+        assertEquals(2, countSubscribed(scrapes));
+        assertEquals(3, victim.getWaiting());
+
+        scrapes.get(0).onComplete();
+        scrapes.get(1).onError(new IllegalStateException());
+
+        assertTrue(scrapes.get(2).hasSubscribers() && scrapes.get(3).hasSubscribers());
+        assertEquals(2, countSubscribed(scrapes));
+        assertEquals(1, victim.getWaiting());
+    }
+
+    @Test
+    void limitScrapesInFlightPerSource() {
+        final ScrapeScheduler victim = new ScrapeScheduler(config(10, 1, 0), scheduler);
+        final List<PublishProcessor<String>> scrapes = scrapes(4);
+
+        victim.schedule("node", "node1", scrapes.get(0), queueWaits::add).subscribe();
+        victim.schedule("node", "node2", scrapes.get(1), queueWaits::add).subscribe();
+        victim.schedule("cadvisor", "node1", scrapes.get(2), queueWaits::add).subscribe();
+        victim.schedule("cadvisor", "node2", scrapes.get(3), queueWaits::add).subscribe();
+
+        assertTrue(scrapes.get(0).hasSubscribers() && scrapes.get(2).hasSubscribers());
+        assertEquals(2, countSubscribed(scrapes));
+
+        scrapes.get(2).onComplete();
+
+        assertTrue(scrapes.get(3).hasSubscribers());
+        assertEquals(2, countSubscribed(scrapes));
+    }
+
+    @Test
+    void releasePermitsOfCancelledScrapes() {
+        final ScrapeScheduler victim = new ScrapeScheduler(config(1, 1, 0), scheduler);
+        final List<PublishProcessor<String>> scrapes = scrapes(3);
+
+        final Disposable running = victim.schedule("node", "node1", scrapes.get(0), queueWaits::add).subscribe();
+        final Disposable waiting = victim.schedule("node", "node2", scrapes.get(1), queueWaits::add).subscribe();
+        victim.schedule("node", "node3", scrapes.get(2), queueWaits::add).subscribe();
+
+        waiting.dispose();
+        assertEquals(1, victim.getWaiting());
+
+        running.dispose();
+        assertEquals(0, victim.getWaiting());
+        assertTrue(scrapes.get(2).hasSubscribers());
+        assertEquals(1, countSubscribed(scrapes));
+    }
+
+    @Test
+    void reportQueueWait() {
+        final ScrapeScheduler victim = new ScrapeScheduler(config(1, 1, 0), scheduler);
+        final List<PublishProcessor<String>> scrapes = scrapes(2);
+
+        victim.schedule("node", "node1", scrapes.get(0), queueWaits::add).subscribe();
+        victim.schedule("node", "node2", scrapes.get(1), queueWaits::add).subscribe();
+
+        scheduler.advanceTimeBy(200, TimeUnit.MILLISECONDS);
+        scrapes.get(0).onComplete();
+
+        assertEquals(2, queueWaits.size());
+        assertEquals(0, (long) queueWaits.get(0));
+        assertEquals(200, (long) queueWaits.get(1));
+    }
+
+    @Test
+    void spreadStartsAcrossThePeriod() {
+        final ScrapeScheduler victim = new ScrapeScheduler(config(1000, 1000, 0.5), scheduler);
+        final List<Long> offsets = IntStream.range(0, 100)
+                .mapToObj(node -> victim.getOffset("node", "node" + node))
+                .collect(Collectors.toList());
+
+        assertTrue(offsets.stream().allMatch(offset -> offset >= 0 && offset < 30000), offsets.toString());
+        assertTrue(offsets.stream().distinct().count() > 90, offsets.toString());
+        assertEquals(offsets.get(7), (Long) new ScrapeScheduler(config(1, 1, 0.5), scheduler).getOffset("node", "node7"));
+        assertTrue(victim.getOffset("node", "node7") != victim.getOffset("cadvisor", "node7"));
+
+        final PublishProcessor<String> scrape = PublishProcessor.create();
+        final TestSubscriber<String> subscriber = victim.schedule("node", "node7", scrape, queueWaits::add).test();
+
+        scheduler.advanceTimeBy(offsets.get(7) - 1, TimeUnit.MILLISECONDS);
+        assertFalse(scrape.hasSubscribers());
+
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        assertTrue(scrape.hasSubscribers());
+
+        scrape.onNext("metric");
+        scrape.onComplete();
+        subscriber.assertValue("metric").assertComplete();
+    }
+
+    @Test
+    void runScrapesCompletingRightAway() {
+        final ScrapeScheduler victim = new ScrapeScheduler(config(1, 1, 0), scheduler);
+        final AtomicInteger scraped = new AtomicInteger();
+
+        Flowable.range(0, 10000)
+                .flatMap(node -> victim.schedule("node", "node" + node, Flowable.just(node), queueWaits::add))
+                .subscribe(node -> scraped.incrementAndGet());
+
+        assertEquals(10000, scraped.get());
+        assertEquals(0, victim.getWaiting());
+    }
+
+    private static JsonObject config(int concurrency, int sourceConcurrency, double spread) {
+        return new JsonObject()
+                .put("collector.period", 60000)
+                .put("collector.scrape.concurrency", concurrency)
+                .put("collector.scrape.concurrency.source", sourceConcurrency)
+                .put("collector.scrape.spread", spread);
+    }
+
+    private static List<PublishProcessor<String>> scrapes(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> PublishProcessor.<String>create())
+                .collect(Collectors.toList());
+    }
+
+    private static long countSubscribed(List<PublishProcessor<String>> scrapes) {
+        return scrapes.stream().filter(PublishProcessor::hasSubscribers).count();
+    }
+}
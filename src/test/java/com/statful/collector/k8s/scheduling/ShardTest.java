@@ -0,0 +1,93 @@
+package com.statful.collector.k8s.scheduling;
+
+import io.vertx.config.spi.utils.JsonObjectHelper;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardTest {
+    private static final List<String> NODES = IntStream.range(0, 10000)
+            .mapToObj(node -> "ip-10-0-" + node / 256 + "-" + node % 256 + ".eu-west-1.compute.internal")
+            .collect(Collectors.toList());
+
+    @Test
+    void ownEverythingWithoutReplicas() {
+        final Shard victim = Shard.fromConfig(new JsonObject());
+
+        assertTrue(NODES.stream().allMatch(victim::owns));
+        assertTrue(victim.ownsClusterSources());
+    }
+
+    @Test
+    void assignEachTargetToOneReplica() {
+        final List<Shard> shards = IntStream.range(0, 4).mapToObj(ordinal -> new Shard(ordinal, 4)).collect(Collectors.toList());
+
+        NODES.forEach(node -> assertEquals(1, shards.stream().filter(shard -> shard.owns(node)).count()));
+        shards.forEach(shard -> {
+            final long owned = NODES.stream().filter(shard::owns).count();
+            assertTrue(owned > NODES.size() / 4 * 0.9 && owned < NODES.size() / 4 * 1.1, "Shard owns " + owned);
+        });
+    }
+
+    @Test
+    void collectClusterSourcesOnFirstReplica() {
+        assertTrue(new Shard(0, 3).ownsClusterSources());
+        assertFalse(new Shard(1, 3).ownsClusterSources());
+        assertFalse(new Shard(2, 3).ownsClusterSources());
+    }
+
+    @Test
+    void moveOnlyTargetsOfNewReplica() {
+        for (int replicas = 1; replicas < 8; replicas++) {
+            final int before = replicas;
+            final int after = replicas + 1;
+            final List<String> moved = NODES.stream()
+                    .filter(node -> Shard.getOwner(node, before) != Shard.getOwner(node, after))
+                    .collect(Collectors.toList());
+
+            assertTrue(moved.stream().allMatch(node -> Shard.getOwner(node, after) == before));
+            assertTrue(moved.size() < NODES.size() / after * 1.1, "Moved " + moved.size() + " going to " + after);
+        }
+    }
+
+    @Test
+    void rejectInvalidShard() {
+        assertThrows(IllegalArgumentException.class, () -> new Shard(2, 2));
+        assertThrows(IllegalArgumentException.class, () -> new Shard(-1, 2));
+        assertThrows(IllegalArgumentException.class, () -> new Shard(0, 0));
+    }
+
+    @Test
+    void rejectOrdinalOutsideStatefulSet() {
+        final IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> Shard.fromConfig(new JsonObject()
+                .put("collector.shard.replicas", 3)
+                .put("collector.shard.ordinal", "5b6c8d-x2kqp")));
+
+        assertEquals("Invalid collector.shard.ordinal '5b6c8d-x2kqp', expected a whole number", e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> Shard.fromConfig(new JsonObject()
+                .put("collector.shard.replicas", 3)
+                .put("collector.shard.ordinal", 1.5)));
+    }
+
+    @Test
+    void readShardFromSystemProperties() {
+        final Properties properties = new Properties();
+        properties.setProperty("collector.shard.ordinal", "2");
+        properties.setProperty("collector.shard.replicas", "3");
+
+        // Like the system properties of run.sh, read by the sys store of the configuration
+        final Shard victim = Shard.fromConfig(JsonObjectHelper.from(properties, false));
+
+        assertEquals(2, victim.getOrdinal());
+        assertEquals(3, victim.getReplicas());
+    }
+}
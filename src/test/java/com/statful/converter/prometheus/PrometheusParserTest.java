@@ -3,15 +3,25 @@ package com.statful.converter.prometheus;
 import com.google.common.collect.Sets;
 import com.statful.client.CustomMetric;
 import com.statful.client.StatfulMetricsOptions;
+import com.statful.converter.domain.InfiniteValuePolicy;
 import com.statful.utils.Pair;
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
+import io.vertx.reactivex.core.buffer.Buffer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -45,6 +55,13 @@ public class PrometheusParserTest {
                     "metric_name{key=\"value\",key2=\"value2\"} 3\n" +
                     "metric_name{key=\"value\",key2=\"value2\"} 3e+2\n" +
                     "metric_name{key=\"value\",key2=\"value2\"} NaN";
+    private static final String INFINITE_GAUGE_METRIC =
+            "# TYPE metric_name gauge\n" +
+                    "metric_name{key=\"a\"} +Inf\n" +
+                    "metric_name{key=\"b\"} -Inf\n" +
+                    "metric_name{key=\"c\"} NaN\n" +
+                    "metric_name{key=\"d\"} not_a_number\n" +
+                    "metric_name{key=\"e\"} 1.5e3";
     private static final String SUMMARY_METRIC =
             "# HELP metric_name some comment about the metric\n" +
                     "# TYPE metric_name summary\n" +
@@ -59,6 +76,15 @@ public class PrometheusParserTest {
                     "metric_name_sum{key=\"value\"} 2\n" +
                     "metric_name_count{key=\"value\",key2=\"value2\"} 3\n" +
                     "metric_name_bucket{key=\"value\",key2=\"value2\"} 3e+2";
+    private static final String EXPOSITION_GRAMMAR_METRIC =
+            "# HELP job:http_requests:rate5m some comment about the metric\r\n" +
+                    "# TYPE job:http_requests:rate5m gauge\r\n" +
+                    "\r\n" +
+                    "job:http_requests:rate5m{code=\"200\", path=\"/api/v1/pods?limit=500&continue=a b\",} 3 1559215312486\r\n" +
+                    "job:http_requests:rate5m{code=\"500\",msg=\"say \\\"hi\\\"\",path=\"C:\\\\temp\"} 4 -1\r\n" +
+                    "job:http_requests:rate5m{code=\"404\"} 5 not_a_timestamp\r\n" +
+                    "job:http_requests:rate5m{code=\"404\",path} 6\r\n" +
+                    "job:http_requests:rate5m{code=\"404\"}7\r\n";
     private static final String ALL_METRICS = COUNT_METRIC + '\n' + GAUGE_METRIC + '\n' + SUMMARY_METRIC + '\n' + HISTOGRAM_METRIC;
 
     private static final String EXPECTED_COUNT = "test.counter.metric_name 1 \\d.* count,sum,10 100\n" +
@@ -77,6 +103,8 @@ public class PrometheusParserTest {
             "test.counter.metric_name_count,key2=value2,key=value 3 \\d.* count,sum,10 100";
     private static final String EXPECTED_HISTOGRAM = "test.counter.metric_name_sum,key=value 2 \\d.* count,sum,10 100\n" +
             "test.counter.metric_name_count,key2=value2,key=value 3 \\d.* count,sum,10 100";
+    private static final String EXPECTED_EXPOSITION_GRAMMAR = "test.gauge.job:http_requests:rate5m,path=/api/v1/pods\\?limit=500&continue=a b,code=200 3 \\d.* 100\n" +
+            "test.gauge.job:http_requests:rate5m,path=C:\\\\temp,msg=say \"hi\",code=500 4 \\d.* 100";
     private static final String ALL_EXPECTATIONS = EXPECTED_COUNT + '\n' + EXPECTED_GAUGE + '\n' + EXPECTED_SUMMARY + '\n' + EXPECTED_HISTOGRAM;
     private static final String EXPECTED_TAG_NAME_PATTERN_FILTER = "test.counter.ignore_metric_name 1 \\d.* count,sum,10 100\n" +
             "test.counter.ignore_metric_name 2 \\d.* count,sum,10 100\n" +
@@ -87,6 +115,11 @@ public class PrometheusParserTest {
             "test.counter.ignore_metric_name,key2=value2 3 \\d.* count,sum,10 100\n" +
             "test.counter.ignore_metric_name,key2=value2 0.03 \\d.* count,sum,10 100";
 
+    private static final int CHUNK_SIZE = 7;
+
+    // The timestamp of a line, before the aggregations of counters and the sample rate
+    private static final String TIMESTAMP = "(?m) \\d{10,}((?: [a-z,]+\\d+)? \\d+)$";
+
     private static final StatfulMetricsOptions STATFUL_METRICS_OPTIONS = new StatfulMetricsOptions()
             .setNamespace("test");
 
@@ -118,6 +151,81 @@ public class PrometheusParserTest {
                 .assertComplete();
     }
 
+    @ParameterizedTest
+    @MethodSource("parameterProvider")
+    void rxConvertChunks(String metrics, String expected) {
+        final byte[] bytes = metrics.getBytes(StandardCharsets.UTF_8);
+        final Flowable<Buffer> chunks = Flowable.range(0, (bytes.length + CHUNK_SIZE - 1) / CHUNK_SIZE)
+                .map(i -> Buffer.buffer(Arrays.copyOfRange(bytes, i * CHUNK_SIZE, Math.min(bytes.length, (i + 1) * CHUNK_SIZE))));
+
+        victim.rxConvert(chunks)
+                .doOnNext(metric -> metric.setOptions(STATFUL_METRICS_OPTIONS))
+                .map(CustomMetric::toMetricLine)
+                .reduce((acc, ele) -> acc + '\n' + ele)
+                .test()
+                .assertValue(actual -> Pattern.compile(expected).matcher(actual).matches())
+                .assertComplete();
+    }
+
+    @ParameterizedTest
+    @MethodSource("parameterProvider")
+    void rxConvertChunksInParallel(String metrics, String expected) {
+        // Every family is a batch of its own
+        PrometheusParser victim = new PrometheusParser(new PrometheusParserOptions.Builder()
+                .withParserThreads(4)
+                .withParserBatchSize(1)
+                .build(), Schedulers.computation());
+
+        final byte[] bytes = metrics.getBytes(StandardCharsets.UTF_8);
+        final Flowable<Buffer> chunks = Flowable.range(0, (bytes.length + CHUNK_SIZE - 1) / CHUNK_SIZE)
+                .map(i -> Buffer.buffer(Arrays.copyOfRange(bytes, i * CHUNK_SIZE, Math.min(bytes.length, (i + 1) * CHUNK_SIZE))));
+
+        victim.rxConvert(chunks)
+                .doOnNext(metric -> metric.setOptions(STATFUL_METRICS_OPTIONS))
+                .map(CustomMetric::toMetricLine)
+                .reduce((acc, ele) -> acc + '\n' + ele)
+                .test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertValue(actual -> Pattern.compile(expected).matcher(actual).matches())
+                .assertComplete();
+    }
+
+    @Test
+    void rxConvertRecordedCAdvisorMetricsInParallel() throws Exception {
+        PrometheusParser victim = new PrometheusParser(new PrometheusParserOptions.Builder()
+                .withParserThreads(4)
+                .withParserBatchSize(512)
+                .build(), Schedulers.computation());
+
+        final byte[] bytes = Files.readAllBytes(Paths.get(getClass().getResource("/fixtures/cadvisor.txt").toURI()));
+        final Flowable<Buffer> chunks = Flowable.range(0, (bytes.length + CHUNK_SIZE - 1) / CHUNK_SIZE)
+                .map(i -> Buffer.buffer(Arrays.copyOfRange(bytes, i * CHUNK_SIZE, Math.min(bytes.length, (i + 1) * CHUNK_SIZE))));
+
+        final List<String> expected = Arrays.asList(printMetrics(this.victim.convert(new String(bytes, StandardCharsets.UTF_8)))
+                .replaceAll(TIMESTAMP, "$1")
+                .split("\n"));
+
+        victim.rxConvert(chunks)
+                .doOnNext(metric -> metric.setOptions(STATFUL_METRICS_OPTIONS))
+                .map(metric -> metric.toMetricLine().replaceAll(TIMESTAMP, "$1"))
+                .toList()
+                .test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertValue(expected)
+                .assertComplete();
+    }
+
+    @Test
+    void rxConvertWithBackpressure() {
+        victim.rxConvert(ALL_METRICS)
+                .test(2)
+                .assertValueCount(2)
+                .assertNotComplete()
+                .requestMore(Long.MAX_VALUE)
+                .assertValueCount(12)
+                .assertComplete();
+    }
+
     @Test
     void convertWithMetricNamePatternFilter() {
         PrometheusParser victim = new PrometheusParser(new PrometheusParserOptions.Builder()
@@ -140,6 +248,51 @@ public class PrometheusParserTest {
         assertEquals("", actual);
     }
 
+    @Test
+    void convertWithMetricNameAllowlist() {
+        PrometheusParser victim = new PrometheusParser(new PrometheusParserOptions.Builder()
+                .withIncludeMetricNames(Sets.newHashSet("metric_name"))
+                .build());
+
+        final String actual = printMetrics(victim.convert(IGNORED_COUNT_METRIC + '\n' + COUNT_METRIC));
+        assertTrue(Pattern.compile(EXPECTED_COUNT).matcher(actual).matches(), "\nexpected: " + EXPECTED_COUNT + "\nactual: " + actual + "\n");
+    }
+
+    @Test
+    void convertWithMetricNamePatternAllowlist() throws Exception {
+        PrometheusParser victim = new PrometheusParser(new PrometheusParserOptions.Builder()
+                .withIncludeMetricNamesPattern("^(container_cpu|machine)_")
+                .withIgnoreMetricNames(Sets.newHashSet("container_cpu_cfs_periods_total"))
+                .build());
+
+        final String cAdvisorMetrics = new String(Files.readAllBytes(Paths.get(getClass().getResource("/fixtures/cadvisor.txt").toURI())), StandardCharsets.UTF_8);
+        final List<String> names = victim.convert(cAdvisorMetrics).stream()
+                .map(CustomMetric::getMetricName)
+                .distinct()
+                .collect(Collectors.toList());
+
+        assertEquals(Arrays.asList("container_cpu_load_average_10s", "container_cpu_usage_seconds_total", "machine_cpu_cores", "machine_memory_bytes"), names);
+    }
+
+    @Test
+    void rxConvertChunksWithMetricNameAllowlist() {
+        PrometheusParser victim = new PrometheusParser(new PrometheusParserOptions.Builder()
+                .withIncludeMetricNames(Sets.newHashSet("metric_name"))
+                .build());
+
+        final byte[] bytes = (IGNORED_COUNT_METRIC + '\n' + COUNT_METRIC).getBytes(StandardCharsets.UTF_8);
+        final Flowable<Buffer> chunks = Flowable.range(0, (bytes.length + CHUNK_SIZE - 1) / CHUNK_SIZE)
+                .map(i -> Buffer.buffer(Arrays.copyOfRange(bytes, i * CHUNK_SIZE, Math.min(bytes.length, (i + 1) * CHUNK_SIZE))));
+
+        victim.rxConvert(chunks)
+                .doOnNext(metric -> metric.setOptions(STATFUL_METRICS_OPTIONS))
+                .map(CustomMetric::toMetricLine)
+                .reduce((acc, ele) -> acc + '\n' + ele)
+                .test()
+                .assertValue(actual -> Pattern.compile(EXPECTED_COUNT).matcher(actual).matches())
+                .assertComplete();
+    }
+
     @Test
     void convertWithTagNamePatternFilter() {
         PrometheusParser victim = new PrometheusParser(new PrometheusParserOptions.Builder()
@@ -177,12 +330,106 @@ public class PrometheusParserTest {
         assertTrue(matcher.matches(), "\nexpected: " + EXPECTED_COUNT_WITH_REPLACEMENT + "\nactual: " + actual + "\n");
     }
 
+    @Test
+    void convertWithTagsCache() {
+        victim.convert(COUNT_METRIC);
+        final String actual = printMetrics(victim.convert(COUNT_METRIC));
+
+        assertTrue(Pattern.compile(EXPECTED_COUNT).matcher(actual).matches(), "\nexpected: " + EXPECTED_COUNT + "\nactual: " + actual + "\n");
+        assertEquals(2, victim.getTagsCacheStats().missCount());
+        assertEquals(4, victim.getTagsCacheStats().hitCount());
+    }
+
+    @Test
+    void convertWithTagsCacheEvictions() {
+        PrometheusParser victim = new PrometheusParser(new PrometheusParserOptions.Builder()
+                .withTagsCacheSize(1)
+                .build());
+
+        final String actual = printMetrics(victim.convert(COUNT_METRIC));
+
+        assertTrue(Pattern.compile(EXPECTED_COUNT).matcher(actual).matches(), "\nexpected: " + EXPECTED_COUNT + "\nactual: " + actual + "\n");
+        assertEquals(1, victim.getTagsCacheStats().evictionCount());
+    }
+
+    @Test
+    void reportTagsCacheSinceLastReport() {
+        victim.convert(COUNT_METRIC);
+        victim.report(Collections.emptyList());
+        victim.convert(COUNT_METRIC);
+
+        final Map<String, Number> report = victim.report(Collections.singletonList(new Pair<>("format", "text"))).stream()
+                .collect(Collectors.toMap(CustomMetric::getMetricName, CustomMetric::getValue));
+
+        assertEquals(0L, report.get("parser.tags.cache.misses"));
+        assertEquals(3L, report.get("parser.tags.cache.hits"));
+        assertEquals(0L, report.get("parser.tags.cache.evictions"));
+    }
+
+    @Test
+    void convertWithReplacementCache() {
+        PrometheusParser victim = new PrometheusParser(new PrometheusParserOptions.Builder()
+                .withTagValueReplacements(Arrays.asList(new Pair<>("\\w{8}-\\w{4}-\\w{4}-\\w{4}-\\w{12}", "_uuid_"),
+                        new Pair<>("-?\\w{9,10}-\\w{5}($|_)", "")))
+                .withTagsCacheSize(0)
+                .build());
+
+        final String actual = printMetrics(victim.convert(COUNT_METRIC));
+
+        assertTrue(Pattern.compile(EXPECTED_COUNT_WITH_REPLACEMENT).matcher(actual).matches(),
+                "\nexpected: " + EXPECTED_COUNT_WITH_REPLACEMENT + "\nactual: " + actual + "\n");
+        assertEquals(2, victim.getTagValueCacheStats().missCount());
+        assertEquals(3, victim.getTagValueCacheStats().hitCount());
+
+        final Map<String, Number> report = victim.report(Collections.emptyList()).stream()
+                .collect(Collectors.toMap(CustomMetric::getMetricName, CustomMetric::getValue));
+
+        assertEquals(2L, report.get("parser.tagvalues.cache.misses"));
+        assertEquals(3L, report.get("parser.tagvalues.cache.hits"));
+    }
+
+    @Test
+    void convertDroppingInfiniteValues() {
+        final List<CustomMetric> result = victim.convert(INFINITE_GAUGE_METRIC);
+
+        assertEquals(1, result.size());
+        assertEquals(1500d, result.get(0).getValue().doubleValue());
+    }
+
+    @Test
+    void convertClampingInfiniteValues() {
+        PrometheusParser victim = new PrometheusParser(new PrometheusParserOptions.Builder()
+                .withInfiniteValuePolicy(InfiniteValuePolicy.CLAMP)
+                .build());
+
+        final List<Double> values = victim.convert(INFINITE_GAUGE_METRIC).stream()
+                .map(metric -> metric.getValue().doubleValue())
+                .collect(Collectors.toList());
+
+        assertEquals(Arrays.asList(Double.MAX_VALUE, -Double.MAX_VALUE, 1500d), values);
+    }
+
+    @Test
+    void convertRecordedCAdvisorMetrics() throws Exception {
+        final String cAdvisorMetrics = new String(Files.readAllBytes(Paths.get(getClass().getResource("/fixtures/cadvisor.txt").toURI())), StandardCharsets.UTF_8);
+
+        final List<CustomMetric> result = victim.convert(cAdvisorMetrics);
+        final String actual = printMetrics(result);
+
+        assertEquals(21, result.size());
+        assertTrue(actual.contains("test.gauge.cadvisor_version_info,osVersion=Amazon Linux 2,"), actual);
+        assertTrue(actual.contains("test.gauge.container_cpu_load_average_10s,pod_name=kube-proxy-8xk2z,"), actual);
+        assertTrue(actual.contains("image=602401143452.dkr.ecr.eu-west-1.amazonaws.com/eks/kube-proxy@sha256:"), actual);
+        assertTrue(actual.contains("test.gauge.machine_memory_bytes 16426209280 "), actual);
+    }
+
     private static Stream<Arguments> parameterProvider() {
         return Stream.of(
                 Arguments.arguments(COUNT_METRIC, EXPECTED_COUNT),
                 Arguments.arguments(GAUGE_METRIC, EXPECTED_GAUGE),
                 Arguments.arguments(SUMMARY_METRIC, EXPECTED_SUMMARY),
                 Arguments.arguments(HISTOGRAM_METRIC, EXPECTED_HISTOGRAM),
+                Arguments.arguments(EXPOSITION_GRAMMAR_METRIC, EXPECTED_EXPOSITION_GRAMMAR),
                 Arguments.arguments(ALL_METRICS, ALL_EXPECTATIONS)
         );
     }
@@ -0,0 +1,206 @@
+package com.statful.converter.prometheus;
+
+import com.google.common.collect.Sets;
+import com.statful.client.CustomMetric;
+import com.statful.client.StatfulMetricsOptions;
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
+import io.vertx.reactivex.core.buffer.Buffer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PrometheusProtobufParserTest {
+    private static final int COUNTER = 0;
+    private static final int GAUGE = 1;
+    private static final int SUMMARY = 2;
+    private static final int UNTYPED = 3;
+    private static final int HISTOGRAM = 4;
+
+    private static final byte[] METRIC_FAMILIES = concat(
+            family("metric_name", COUNTER,
+                    metric(3, value(1)),
+                    metric(3, value(2), label("key", "value")),
+                    metric(3, value(0.03), label("key", "value"), label("key2", "value2"))),
+            family("gauge_name", GAUGE,
+                    metric(2, value(Double.POSITIVE_INFINITY), label("key", "a")),
+                    metric(2, value(300), label("key", "b"))),
+            family("summary_name", SUMMARY,
+                    metric(4, concat(varint(1, 3), fixed64(2, 2), message(3, concat(fixed64(1, 0.5), fixed64(2, 1)))), label("key", "value"))),
+            family("histogram_name", HISTOGRAM,
+                    metric(7, concat(varint(1, 5), fixed64(2, 7.5), message(3, concat(varint(1, 5), fixed64(2, 10)))))),
+            family("untyped_name", UNTYPED,
+                    metric(5, value(1))),
+            // Metrics before the name and unknown fields
+            delimited(concat(message(4, metric(2, value(4))), string(2, "help"), string(1, "reordered_name"), varint(3, GAUGE), varint(9, 1))));
+
+    private static final String EXPECTED = "test.counter.metric_name 1 \\d.* count,sum,10 100\n" +
+            "test.counter.metric_name,key=value 2 \\d.* count,sum,10 100\n" +
+            "test.counter.metric_name,key2=value2,key=value 0.03 \\d.* count,sum,10 100\n" +
+            "test.gauge.gauge_name,key=b 300 \\d.* 100\n" +
+            "test.counter.summary_name_sum,key=value 2 \\d.* count,sum,10 100\n" +
+            "test.counter.summary_name_count,key=value 3 \\d.* count,sum,10 100\n" +
+            "test.counter.histogram_name_sum 7.5 \\d.* count,sum,10 100\n" +
+            "test.counter.histogram_name_count 5 \\d.* count,sum,10 100\n" +
+            "test.gauge.reordered_name 4 \\d.* 100";
+
+    private static final int CHUNK_SIZE = 7;
+
+    private static final StatfulMetricsOptions STATFUL_METRICS_OPTIONS = new StatfulMetricsOptions()
+            .setNamespace("test");
+
+    private PrometheusProtobufParser victim;
+
+    @BeforeEach
+    void setUp() {
+        victim = new PrometheusProtobufParser(new PrometheusParserOptions.Builder().build());
+    }
+
+    @Test
+    void convert() {
+        final String actual = printMetrics(victim.convert(METRIC_FAMILIES, Collections.emptyList()));
+        assertTrue(Pattern.compile(EXPECTED).matcher(actual).matches(), "\nexpected: " + EXPECTED + "\nactual: " + actual + "\n");
+    }
+
+    @Test
+    void rxConvertChunks() {
+        victim.rxConvert(chunks(METRIC_FAMILIES))
+                .doOnNext(metric -> metric.setOptions(STATFUL_METRICS_OPTIONS))
+                .map(CustomMetric::toMetricLine)
+                .reduce((acc, ele) -> acc + '\n' + ele)
+                .test()
+                .assertValue(actual -> Pattern.compile(EXPECTED).matcher(actual).matches())
+                .assertComplete();
+    }
+
+    @Test
+    void rxConvertChunksInParallel() {
+        PrometheusProtobufParser victim = new PrometheusProtobufParser(new PrometheusParserOptions.Builder()
+                .withParserThreads(4)
+                .withParserBatchSize(16)
+                .build(), Schedulers.computation());
+
+        victim.rxConvert(chunks(METRIC_FAMILIES))
+                .doOnNext(metric -> metric.setOptions(STATFUL_METRICS_OPTIONS))
+                .map(CustomMetric::toMetricLine)
+                .reduce((acc, ele) -> acc + '\n' + ele)
+                .test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertValue(actual -> Pattern.compile(EXPECTED).matcher(actual).matches())
+                .assertComplete();
+    }
+
+    @Test
+    void rxConvertTruncatedBody() {
+        victim.rxConvert(chunks(Arrays.copyOf(METRIC_FAMILIES, METRIC_FAMILIES.length - 1)))
+                .test()
+                .assertError(IllegalStateException.class);
+    }
+
+    @Test
+    void convertWithFilters() {
+        PrometheusProtobufParser victim = new PrometheusProtobufParser(new PrometheusParserOptions.Builder()
+                .withIncludeMetricNamesPattern("^metric_")
+                .withIgnoreTagNames(Sets.newHashSet("key2"))
+                .build());
+
+        final String actual = printMetrics(victim.convert(METRIC_FAMILIES, Collections.emptyList()));
+
+        assertEquals("test.counter.metric_name 1 ", actual.split("\n")[0].substring(0, 27));
+        assertEquals(3, actual.split("\n").length);
+        assertFalse(actual.contains("key2"), actual);
+    }
+
+    @Test
+    void isProtobuf() {
+        assertTrue(PrometheusProtobufParser.isProtobuf(PrometheusProtobufParser.CONTENT_TYPE));
+        assertTrue(PrometheusProtobufParser.isProtobuf("application/vnd.google.protobuf; proto=io.prometheus.client.MetricFamily; encoding=delimited"));
+        assertFalse(PrometheusProtobufParser.isProtobuf("text/plain; version=0.0.4"));
+        assertFalse(PrometheusProtobufParser.isProtobuf(null));
+    }
+
+    private static byte[] family(String name, int type, byte[]... metrics) {
+        return delimited(concat(string(1, name), string(2, "help"), varint(3, type), concat(Arrays.stream(metrics)
+                .map(metric -> message(4, metric))
+                .toArray(byte[][]::new))));
+    }
+
+    private static byte[] metric(int valueField, byte[] value, byte[]... labels) {
+        return concat(concat(labels), message(valueField, value), varint(6, 1559215312486L));
+    }
+
+    private static byte[] label(String name, String value) {
+        return message(1, concat(string(1, name), string(2, value)));
+    }
+
+    private static byte[] value(double value) {
+        return fixed64(1, value);
+    }
+
+    private static byte[] string(int field, String value) {
+        return message(field, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] message(int field, byte[] message) {
+        return concat(rawVarint(field << 3 | 2), delimited(message));
+    }
+
+    private static byte[] delimited(byte[] message) {
+        return concat(rawVarint(message.length), message);
+    }
+
+    private static byte[] varint(int field, long value) {
+        return concat(rawVarint(field << 3), rawVarint(value));
+    }
+
+    private static byte[] fixed64(int field, double value) {
+        final long bits = Double.doubleToLongBits(value);
+        final byte[] bytes = new byte[8];
+        for (int i = 0; i < 8; i++) {
+            bytes[i] = (byte) (bits >>> (8 * i));
+        }
+        return concat(rawVarint(field << 3 | 1), bytes);
+    }
+
+    private static byte[] rawVarint(long value) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        while ((value & ~0x7FL) != 0) {
+            bytes.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        bytes.write((int) value);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            bytes.write(part, 0, part.length);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Flowable<Buffer> chunks(byte[] bytes) {
+        return Flowable.range(0, (bytes.length + CHUNK_SIZE - 1) / CHUNK_SIZE)
+                .map(i -> Buffer.buffer(Arrays.copyOfRange(bytes, i * CHUNK_SIZE, Math.min(bytes.length, (i + 1) * CHUNK_SIZE))));
+    }
+
+    private String printMetrics(List<CustomMetric> metrics) {
+        return metrics.stream()
+                .peek(metric -> metric.setOptions(STATFUL_METRICS_OPTIONS))
+                .map(CustomMetric::toMetricLine)
+                .collect(Collectors.joining("\n"));
+    }
+}
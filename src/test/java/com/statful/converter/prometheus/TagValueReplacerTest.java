@@ -0,0 +1,60 @@
+package com.statful.converter.prometheus;
+
+import com.statful.utils.Pair;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Arrays;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TagValueReplacerTest {
+
+    private static Stream<Arguments> requiredLiteralProvider() {
+        return Stream.of(
+                Arguments.of("\\w{8}-\\w{4}-\\w{4}-\\w{4}-\\w{12}", '-'),
+                Arguments.of("-?\\w{9,10}-\\w{5}($|_)", '-'),
+                Arguments.of("^kube-proxy", 'k'),
+                Arguments.of("a?b*c+", 'c'),
+                Arguments.of("x{0,2}\\.y", '.'),
+                Arguments.of("[a-z]+(foo|bar)", (char) 0),
+                Arguments.of("foo|bar", (char) 0),
+                Arguments.of("(?i)foo", (char) 0),
+                Arguments.of("\\x41", (char) 0),
+                Arguments.of("[]a]", (char) 0)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("requiredLiteralProvider")
+    void requiredLiteral(String regex, char expected) {
+        assertEquals(expected, TagValueReplacer.requiredLiteral(regex));
+    }
+
+    @Test
+    void replaceInOrder() {
+        final TagValueReplacer victim = new TagValueReplacer(Arrays.asList(
+                new Pair<>(Pattern.compile("a-b"), "x_y"),
+                new Pair<>(Pattern.compile("_"), ".")));
+
+        assertEquals("x.y", victim.replace("a-b"));
+        assertEquals("c.d", victim.replace("c_d"));
+        assertEquals("cd", victim.replace("cd"));
+        assertFalse(victim.mayMatch("cd"));
+        assertTrue(victim.mayMatch("c_d"));
+    }
+
+    @Test
+    void replaceWithBackReferences() {
+        final TagValueReplacer victim = new TagValueReplacer(Arrays.asList(
+                new Pair<>(Pattern.compile("(a)\\1"), "b"),
+                new Pair<>(Pattern.compile("(c)\\1"), "$1")));
+
+        assertEquals("bc", victim.replace("aacc"));
+        assertEquals("ac", victim.replace("ac"));
+    }
+}
@@ -0,0 +1,79 @@
+package com.statful.converter.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DoubleParserTest {
+
+    private static Stream<Arguments> specialValuesProvider() {
+        return Stream.of(
+                Arguments.arguments("+Inf", Double.POSITIVE_INFINITY),
+                Arguments.arguments("Inf", Double.POSITIVE_INFINITY),
+                Arguments.arguments("-Inf", Double.NEGATIVE_INFINITY),
+                Arguments.arguments("-infinity", Double.NEGATIVE_INFINITY),
+                Arguments.arguments("NaN", Double.NaN),
+                Arguments.arguments("nan", Double.NaN),
+                Arguments.arguments("+NaN", Double.NaN),
+                Arguments.arguments("-NaN", Double.NaN),
+                Arguments.arguments("-0", -0d),
+                Arguments.arguments("0e-400", 0d),
+                Arguments.arguments("1e400", Double.POSITIVE_INFINITY)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("specialValuesProvider")
+    void parseSpecialValues(String text, double expected) {
+        assertEquals(expected, DoubleParser.parseDouble(text));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "0", "1", "-1", "+1", "3e-2", "3e+2", "3E2", ".5", "5.", "0.000123", "1.5e3", "16426209280", "1.0000000000000002",
+            "9007199254740993", "123456789012345678901234567890", "0.1e-320", "4.9e-324", "1.7976931348623157e308",
+            "2.2250738585072014E-308", "1e22", "1e23", "12e30", "9007199254740992e20", "0.30000000000000004", "1.234567890123456789e-5",
+            "0x1p3", "-0x1.8p1", "0x1.fffffffffffffp1023", "1d", "1f"
+    })
+    void parseAsDouble(String text) {
+        assertEquals(Double.doubleToRawLongBits(Double.parseDouble(text)), Double.doubleToRawLongBits(DoubleParser.parseDouble(text)), text);
+    }
+
+    @Test
+    void parseRoundTrip() {
+        final Random random = new Random(42);
+
+        for (int i = 0; i < 100000; i++) {
+            final double value = Double.longBitsToDouble(random.nextLong());
+            final double scaled = random.nextDouble() * Math.pow(10, random.nextInt(40) - 20);
+            final long integer = random.nextLong() >> random.nextInt(64);
+
+            for (String text : new String[]{Double.toString(value), Double.toString(scaled), Long.toString(integer),
+                    String.format(Locale.ROOT, "%.6f", scaled), String.format(Locale.ROOT, "%.9e", scaled)}) {
+                if (!text.contains("N") && !text.contains("I")) {
+                    assertEquals(Double.doubleToRawLongBits(Double.parseDouble(text)), Double.doubleToRawLongBits(DoubleParser.parseDouble(text)), text);
+                }
+            }
+        }
+    }
+
+    @Test
+    void parseRange() {
+        assertEquals(12.5d, DoubleParser.parseDouble("metric 12.5 1395066363000", 7, 11));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "-", ".", "e3", "1e", "1e+", "1.2.3", "0x10", "Infinit", "NaNa", "1,5"})
+    void parseInvalid(String text) {
+        assertThrows(NumberFormatException.class, () -> DoubleParser.parseDouble(text));
+    }
+}
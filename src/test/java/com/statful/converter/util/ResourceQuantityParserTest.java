@@ -1,9 +1,12 @@
 package com.statful.converter.util;
 
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.math.BigDecimal;
+import java.util.Random;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -17,9 +20,17 @@ class ResourceQuantityParserTest {
                 Arguments.arguments("1", 1000d),
                 Arguments.arguments("2", 2000d),
                 Arguments.arguments("0.5", 500d),
+                Arguments.arguments("1e3", 1000000d),
+                Arguments.arguments("1.5E-1", 150d),
+                Arguments.arguments("+2", 2000d),
+                Arguments.arguments(".1", 100d),
+                Arguments.arguments("250000000n", 250d),
                 Arguments.arguments(null, 0d),
                 Arguments.arguments("", 0d),
-                Arguments.arguments("w", 0d)
+                Arguments.arguments("w", 0d),
+                Arguments.arguments("1x", 0d),
+                Arguments.arguments("100mx", 0d),
+                Arguments.arguments("1e", 0d)
         );
     }
 
@@ -46,9 +57,28 @@ class ResourceQuantityParserTest {
                 Arguments.arguments("1000m", 1d),
                 Arguments.arguments("0.5Mi", 524288d),
                 Arguments.arguments("0.5Gi", 536870912d),
+                Arguments.arguments("128974848", 128974848d),
+                Arguments.arguments("129e6", 129000000d),
+                Arguments.arguments("129E6", 129000000d),
+                Arguments.arguments("123456789012345678901234", 123456789012345678901234d),
+                Arguments.arguments("1.5Ki", 1536d),
                 Arguments.arguments(null, 0d),
                 Arguments.arguments("", 0d),
-                Arguments.arguments("w", 0d)
+                Arguments.arguments("w", 0d),
+                Arguments.arguments("1Xi", 0d),
+                Arguments.arguments("1KiB", 0d),
+                Arguments.arguments("Mi", 0d)
+        );
+    }
+
+    private static Stream<Arguments> usageParameterProvider() {
+        return Stream.of(
+                Arguments.arguments("123456789n", "2048Ki", 123.456789d, 2097152d),
+                Arguments.arguments("28m", "291283Ki", 28d, 298273792d),
+                Arguments.arguments("1", "1Gi", 1000d, 1073741824d),
+                Arguments.arguments("0", "0", 0d, 0d),
+                Arguments.arguments("", null, Double.NaN, Double.NaN),
+                Arguments.arguments("12z", "1Zi", Double.NaN, Double.NaN)
         );
     }
 
@@ -62,5 +92,25 @@ class ResourceQuantityParserTest {
     @MethodSource("memParameterProvider")
     void parseMemoryResource(String value, double expected) {
         assertEquals(expected, ResourceQuantityParser.parseMemoryResource(value));
+        // Served from the cache the second time
+        assertEquals(expected, ResourceQuantityParser.parseMemoryResource(value));
+    }
+
+    @ParameterizedTest
+    @MethodSource("usageParameterProvider")
+    void parseUsage(String cpu, String memory, double expectedCpu, double expectedMemory) {
+        assertEquals(expectedCpu, ResourceQuantityParser.parseCpuUsage(cpu));
+        assertEquals(expectedMemory, ResourceQuantityParser.parseMemoryUsage(memory));
+    }
+
+    @Test
+    void parseLikeDoubles() {
+        final Random random = new Random(7);
+
+        for (int i = 0; i < 10000; i++) {
+            final String quantity = BigDecimal.valueOf(random.nextLong(), random.nextInt(30) - 10).toPlainString();
+            assertEquals(Double.parseDouble(quantity), ResourceQuantityParser.parseMemoryUsage(quantity), quantity);
+            assertEquals(new BigDecimal(quantity).scaleByPowerOfTen(3).doubleValue(), ResourceQuantityParser.parseCpuUsage(quantity), quantity);
+        }
     }
 }
\ No newline at end of file